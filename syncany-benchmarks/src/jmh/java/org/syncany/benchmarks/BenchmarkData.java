@@ -0,0 +1,97 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Creates reproducible benchmark input data of a given size and entropy. 
+ * 
+ * <p>The entropy is given as the ratio of random bytes in the data (0.0 - 1.0).
+ * Data with an entropy of 0.0 consists of a repeated text pattern only (highly 
+ * compressible, few distinct chunks), data with an entropy of 1.0 is completely 
+ * random (incompressible). Random and repeated blocks are interleaved in blocks of
+ * {@link #BLOCK_SIZE} bytes, so that chunkers and compressors see a mix of both.
+ * 
+ * @author agent <agent@local>
+ */
+public class BenchmarkData {
+	public static final int BLOCK_SIZE = 4*1024;
+	public static final long SEED = 0x5ca1ab1eL;
+	private static final byte[] PATTERN = "Syncany is an open-source cloud storage and filesharing application. ".getBytes();
+	
+	public static byte[] createData(int size, double entropy) {
+		Random random = new Random(SEED);		
+		byte[] data = new byte[size];
+		byte[] randomBlock = new byte[BLOCK_SIZE];
+		
+		for (int offset = 0; offset < size; offset += BLOCK_SIZE) {
+			int blockLength = Math.min(BLOCK_SIZE, size - offset);
+			
+			if (random.nextDouble() < entropy) {
+				random.nextBytes(randomBlock);
+				System.arraycopy(randomBlock, 0, data, offset, blockLength);
+			}
+			else {
+				for (int i = 0; i < blockLength; i++) {
+					data[offset + i] = PATTERN[(offset + i) % PATTERN.length];
+				}
+			}
+		}
+		
+		return data;
+	}
+	
+	public static File createFile(int size, double entropy) throws IOException {
+		File file = File.createTempFile("syncany-benchmark-", ".dat");
+		file.deleteOnExit();
+		
+		writeFile(file, createData(size, entropy));		
+		return file;
+	}
+	
+	public static void writeFile(File file, byte[] data) throws IOException {
+		try (FileOutputStream fileOutputStream = new FileOutputStream(file)) {
+			fileOutputStream.write(data);
+		}
+	}
+	
+	public static File createTempDir() throws IOException {
+		File tempDir = File.createTempFile("syncany-benchmark-", ".dir");
+		
+		tempDir.delete();
+		tempDir.mkdirs();
+		
+		return tempDir;
+	}
+	
+	public static void deleteRecursively(File file) {
+		File[] children = file.listFiles();
+		
+		if (children != null) {
+			for (File child : children) {
+				deleteRecursively(child);
+			}
+		}
+		
+		file.delete();
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.syncany.chunk.Chunk;
+import org.syncany.chunk.Chunker;
+import org.syncany.chunk.Chunker.ChunkEnumeration;
+import org.syncany.chunk.FastCdcChunker;
+import org.syncany.chunk.FixedChunker;
+import org.syncany.chunk.TttdChunker;
+
+/**
+ * Measures the throughput of the {@link FixedChunker}, the {@link TttdChunker} and the {@link FastCdcChunker},
+ * i.e. the time to split a file into chunks and calculate the chunk checksums.
+ * 
+ * @author agent <agent@local>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ChunkerBenchmark {
+	@Param({ "1048576", "16777216" })
+	private int size;
+	
+	@Param({ "0.0", "0.5", "1.0" })
+	private double entropy;
+	
+	@Param({ "fixed", "tttd", "tttd-rabin", "tttd-buzhash", "fast-cdc" })
+	private String chunkerType;
+	
+	private File file;
+	private Chunker chunker;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		file = BenchmarkData.createFile(size, entropy);
+		
+		if ("fixed".equals(chunkerType)) {
+			chunker = new FixedChunker(16*1024, FixedChunker.DEFAULT_DIGEST_ALG);
+		}
+		else if ("tttd".equals(chunkerType)) {
+			chunker = new TttdChunker(16*1024);
+		}
+		else if ("tttd-rabin".equals(chunkerType)) {
+			chunker = new TttdChunker(16*1024, TttdChunker.DEFAULT_WINDOW_SIZE, TttdChunker.DEFAULT_DIGEST_ALG, "Rabin");
+		}
+		else if ("tttd-buzhash".equals(chunkerType)) {
+			chunker = new TttdChunker(16*1024, TttdChunker.DEFAULT_WINDOW_SIZE, TttdChunker.DEFAULT_DIGEST_ALG, "Buzhash");
+		}
+		else {
+			chunker = new FastCdcChunker(16*1024);
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		file.delete();
+	}
+	
+	@Benchmark
+	public void createChunks(Blackhole blackhole) throws IOException {
+		ChunkEnumeration chunks = chunker.createChunks(file);
+		
+		while (chunks.hasMoreElements()) {
+			Chunk chunk = chunks.nextElement();
+			blackhole.consume(chunk.getChecksum());
+		}
+		
+		chunks.close();
+	}
+}
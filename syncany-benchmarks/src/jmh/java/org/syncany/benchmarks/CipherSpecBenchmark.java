@@ -0,0 +1,126 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.syncany.crypto.CipherSpec;
+import org.syncany.crypto.specs.AesGcm128CipherSpec;
+import org.syncany.crypto.specs.JceAesGcm128CipherSpec;
+import org.syncany.crypto.specs.JceAesGcmCipherSpec;
+
+/**
+ * Compares the AES-128/GCM streams of the Bouncy Castle based {@link AesGcm128CipherSpec}
+ * with the JCE based {@link JceAesGcm128CipherSpec}, for both encryption and decryption.
+ * 
+ * @author agent <agent@local>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CipherSpecBenchmark {
+	private static final int BUFFER_SIZE = 8*1024;
+	
+	@Param({ "1048576", "4194304" })
+	private int size;
+	
+	@Param({ "bc", "jce" })
+	private String provider;
+	
+	private CipherSpec cipherSpec;
+	private byte[] key;
+	private byte[] iv;
+	private byte[] data;
+	private byte[] encryptedData;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		cipherSpec = createCipherSpec();
+		key = createRandomArray(cipherSpec.getKeySize() / 8);
+		iv = createRandomArray(cipherSpec.getIvSize() / 8);
+		data = BenchmarkData.createData(size, 1.0);
+		encryptedData = encrypt();
+	}
+	
+	@Benchmark
+	public byte[] encrypt() throws Exception {
+		ByteArrayOutputStream encryptedOutputStream = new ByteArrayOutputStream(size + BUFFER_SIZE);
+		OutputStream cipherOutputStream = cipherSpec.newCipherOutputStream(encryptedOutputStream, key, iv);
+		
+		for (int offset = 0; offset < data.length; offset += BUFFER_SIZE) {
+			cipherOutputStream.write(data, offset, Math.min(BUFFER_SIZE, data.length - offset));
+		}
+		
+		cipherOutputStream.close();
+		return encryptedOutputStream.toByteArray();
+	}
+	
+	@Benchmark
+	public void decrypt(Blackhole blackhole) throws Exception {
+		InputStream cipherInputStream = cipherSpec.newCipherInputStream(new ByteArrayInputStream(encryptedData), key, iv);
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int read = -1;
+		
+		while (-1 != (read = cipherInputStream.read(buffer))) {
+			blackhole.consume(read);
+		}
+		
+		cipherInputStream.close();
+	}
+	
+	private CipherSpec createCipherSpec() {
+		if ("jce".equals(provider)) {
+			if (!JceAesGcmCipherSpec.isAvailable()) {
+				throw new IllegalStateException("JCE AES/GCM is not available in this JVM.");
+			}
+			
+			return new JceAesGcm128CipherSpec(0x01);
+		}
+		else {
+			return new AesGcm128CipherSpec(0x01);
+		}
+	}
+	
+	private byte[] createRandomArray(int size) {
+		byte[] randomArray = new byte[size];
+		new Random(BenchmarkData.SEED).nextBytes(randomArray);
+		
+		return randomArray;
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.syncany.database.ChunkEntry;
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.DatabaseVersion;
+import org.syncany.database.DatabaseVersionHeader.DatabaseVersionType;
+import org.syncany.database.FileContent;
+import org.syncany.database.FileContent.FileChecksum;
+import org.syncany.database.FileVersion;
+import org.syncany.database.FileVersion.FileStatus;
+import org.syncany.database.FileVersion.FileType;
+import org.syncany.database.MemoryDatabase;
+import org.syncany.database.MultiChunkEntry;
+import org.syncany.database.MultiChunkEntry.MultiChunkId;
+import org.syncany.database.PartialFileHistory;
+import org.syncany.database.PartialFileHistory.FileHistoryId;
+import org.syncany.database.VectorClock;
+import org.syncany.database.dao.DatabaseXmlSerializer;
+
+/**
+ * Measures saving and loading a single {@link DatabaseVersion} with the 
+ * {@link DatabaseXmlSerializer}. The database version contains one file history, 
+ * one file content and a number of chunks per file.
+ * 
+ * <p>Since there is no raw data involved, the data size is expressed as the number
+ * of files and the number of chunks per file. Instead of the entropy of the data, the
+ * <tt>duplicateRatio</tt> parameter defines the ratio of files sharing their content 
+ * with another file (and hence not adding any new chunks to the database version).
+ * 
+ * @author agent <agent@local>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DatabaseXmlSerializerBenchmark {
+	@Param({ "1000", "10000" })
+	private int fileCount;
+	
+	@Param({ "1", "10" })
+	private int chunksPerFile;
+	
+	@Param({ "0.0", "0.5" })
+	private double duplicateRatio;
+	
+	private DatabaseXmlSerializer serializer;
+	private DatabaseVersion databaseVersion;
+	private File tempDir;
+	private File saveFile;
+	private File loadFile;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		serializer = new DatabaseXmlSerializer();
+		databaseVersion = createDatabaseVersion();
+		
+		tempDir = BenchmarkData.createTempDir();
+		saveFile = new File(tempDir, "db-save");
+		loadFile = new File(tempDir, "db-load");
+		
+		serializer.save(Arrays.asList(databaseVersion), loadFile);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		BenchmarkData.deleteRecursively(tempDir);
+	}
+	
+	@Benchmark
+	public void save() throws IOException {
+		serializer.save(Arrays.asList(databaseVersion), saveFile);
+	}
+	
+	@Benchmark
+	public void load(Blackhole blackhole) throws IOException {
+		MemoryDatabase memoryDatabase = new MemoryDatabase();
+		serializer.load(memoryDatabase, loadFile, DatabaseVersionType.DEFAULT);
+		
+		blackhole.consume(memoryDatabase);
+	}
+	
+	private DatabaseVersion createDatabaseVersion() {
+		Random random = new Random(BenchmarkData.SEED);
+		
+		VectorClock vectorClock = new VectorClock();
+		vectorClock.setClock("A", 1);
+		
+		DatabaseVersion databaseVersion = new DatabaseVersion();
+		databaseVersion.setClient("A");
+		databaseVersion.setTimestamp(new Date());
+		databaseVersion.setVectorClock(vectorClock);
+		
+		MultiChunkEntry multiChunk = new MultiChunkEntry(MultiChunkId.secureRandomMultiChunkId(), 0);		
+		FileChecksum lastFileChecksum = null;
+		
+		for (int i = 0; i < fileCount; i++) {
+			FileChecksum fileChecksum = lastFileChecksum;
+			
+			if (fileChecksum == null || random.nextDouble() >= duplicateRatio) {
+				fileChecksum = new FileChecksum(randomBytes(random, 20));
+				
+				FileContent fileContent = new FileContent();
+				fileContent.setChecksum(fileChecksum);
+				fileContent.setSize(chunksPerFile * 16*1024L);
+				
+				for (int j = 0; j < chunksPerFile; j++) {
+					ChunkChecksum chunkChecksum = new ChunkChecksum(randomBytes(random, 20));
+					
+					databaseVersion.addChunk(new ChunkEntry(chunkChecksum, 16*1024));
+					multiChunk.addChunk(chunkChecksum);
+					fileContent.addChunk(chunkChecksum);
+				}
+				
+				databaseVersion.addFileContent(fileContent);
+				lastFileChecksum = fileChecksum;
+			}
+			
+			FileVersion fileVersion = new FileVersion();
+			fileVersion.setVersion(1L);
+			fileVersion.setType(FileType.FILE);
+			fileVersion.setStatus(FileStatus.NEW);
+			fileVersion.setPath("folder" + (i % 100) + "/file" + i + ".dat");
+			fileVersion.setChecksum(fileChecksum);
+			fileVersion.setSize(chunksPerFile * 16*1024L);
+			fileVersion.setLastModified(new Date());
+			fileVersion.setUpdated(new Date());
+			
+			PartialFileHistory fileHistory = new PartialFileHistory(FileHistoryId.secureRandomFileId());
+			fileHistory.addFileVersion(fileVersion);
+			
+			databaseVersion.addFileHistory(fileHistory);
+		}
+		
+		databaseVersion.addMultiChunk(multiChunk);		
+		return databaseVersion;
+	}
+
+	private byte[] randomBytes(Random random, int length) {
+		byte[] randomBytes = new byte[length];
+		random.nextBytes(randomBytes);
+		
+		return randomBytes;
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.syncany.database.FastChecksumCache;
+import org.syncany.database.FileVersion;
+import org.syncany.database.FileVersion.FileStatus;
+import org.syncany.database.FileVersion.FileType;
+import org.syncany.database.FileVersionComparator;
+import org.syncany.database.FileVersionComparator.FileProperties;
+
+/**
+ * Measures the {@link FileVersionComparator} when comparing a set of expected 
+ * file versions with the actual files on disk, as done by the 'status' and 'down' 
+ * operations. 
+ * 
+ * <p>The <tt>changedRatio</tt> parameter defines the ratio of files whose content
+ * differs from the expected file version (without changing the size or the modified
+ * date). If <tt>forceChecksum</tt> is set, the checksums of all files are calculated 
+ * and compared. If <tt>fastChecksum</tt> is set, the comparator uses a warmed-up 
+ * {@link FastChecksumCache}, so that the full checksum is only calculated for 
+ * unchanged files.
+ * 
+ * @author agent <agent@local>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FileVersionComparatorBenchmark {
+	@Param({ "100", "1000" })
+	private int fileCount;
+	
+	@Param({ "4096", "65536" })
+	private int fileSize;
+	
+	@Param({ "0.0", "0.5" })
+	private double changedRatio;
+	
+	@Param({ "false", "true" })
+	private boolean forceChecksum;
+	
+	@Param({ "false", "true" })
+	private boolean fastChecksum;
+	
+	private File tempDir;
+	private FileVersionComparator fileVersionComparator;
+	private File[] files;
+	private FileVersion[] expectedFileVersions;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		tempDir = BenchmarkData.createTempDir();
+		
+		FastChecksumCache fastChecksumCache = (fastChecksum) ? new FastChecksumCache(new File(tempDir, "fastchecksums.list")) : null;
+		fileVersionComparator = new FileVersionComparator(tempDir, "SHA1", fastChecksumCache);
+		
+		files = new File[fileCount];
+		expectedFileVersions = new FileVersion[fileCount];
+		
+		byte[] fileData = BenchmarkData.createData(fileSize, 0.5);
+		Random random = new Random(BenchmarkData.SEED);
+		
+		for (int i = 0; i < fileCount; i++) {
+			files[i] = new File(tempDir, "file" + i + ".dat");
+			BenchmarkData.writeFile(files[i], fileData);
+			
+			FileProperties fileProperties = fileVersionComparator.captureFileProperties(files[i], null, true);
+			boolean changed = random.nextDouble() < changedRatio;
+			
+			FileVersion fileVersion = new FileVersion();
+			fileVersion.setVersion(1L);
+			fileVersion.setType(FileType.FILE);
+			fileVersion.setStatus(FileStatus.NEW);
+			fileVersion.setPath(fileProperties.getRelativePath());
+			fileVersion.setChecksum(fileProperties.getChecksum());
+			fileVersion.setSize(fileProperties.getSize());
+			fileVersion.setLastModified(new Date(fileProperties.getLastModified()));
+			fileVersion.setUpdated(new Date());
+			fileVersion.setPosixPermissions(fileProperties.getPosixPermissions());
+			fileVersion.setDosAttributes(fileProperties.getDosAttributes());
+			
+			expectedFileVersions[i] = fileVersion;
+			
+			if (changed) {
+				byte[] changedFileData = fileData.clone();
+				changedFileData[0] ^= 0xff;
+				
+				BenchmarkData.writeFile(files[i], changedFileData);
+				files[i].setLastModified(fileProperties.getLastModified());
+			}
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		BenchmarkData.deleteRecursively(tempDir);
+	}
+	
+	@Benchmark
+	public void compare(Blackhole blackhole) {
+		for (int i = 0; i < fileCount; i++) {
+			blackhole.consume(fileVersionComparator.compare(expectedFileVersions[i], files[i], forceChecksum));
+		}
+	}
+	
+	@Benchmark
+	public void captureFileProperties(Blackhole blackhole) {
+		for (int i = 0; i < fileCount; i++) {
+			blackhole.consume(fileVersionComparator.captureFileProperties(files[i], null, forceChecksum));
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.syncany.chunk.Adler32Fingerprinter;
+import org.syncany.chunk.BuzhashFingerprinter;
+import org.syncany.chunk.Fingerprinter;
+import org.syncany.chunk.RabinFingerprinter;
+import org.syncany.chunk.TttdChunker;
+
+/**
+ * Measures the rolling checksum performance of the {@link Adler32Fingerprinter}, the
+ * {@link RabinFingerprinter} and the {@link BuzhashFingerprinter}, as used by the 
+ * {@link TttdChunker}: The window is initialized once, and then rolled over the entire 
+ * input data, byte by byte.
+ * 
+ * @author agent <agent@local>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FingerprinterBenchmark {
+	@Param({ "65536", "1048576" })
+	private int size;
+	
+	@Param({ "0.0", "1.0" })
+	private double entropy;
+	
+	@Param({ "Adler32", "Rabin", "Buzhash" })
+	private String algorithm;
+	
+	private byte[] data;
+	private Fingerprinter fingerprinter;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		data = BenchmarkData.createData(size, entropy);
+		fingerprinter = Fingerprinter.getInstance(algorithm);
+	}
+	
+	@Benchmark
+	public int roll() {
+		fingerprinter.reset();
+		fingerprinter.check(data, 0, TttdChunker.DEFAULT_WINDOW_SIZE);
+		
+		int fingerprintSum = 0;
+		
+		for (int i = TttdChunker.DEFAULT_WINDOW_SIZE; i < data.length; i++) {
+			fingerprinter.roll(data[i]);
+			fingerprintSum += fingerprinter.getValue();
+		}
+		
+		return fingerprintSum;
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.syncany.chunk.Chunk;
+import org.syncany.chunk.Chunker.ChunkEnumeration;
+import org.syncany.chunk.FixedChunker;
+import org.syncany.chunk.MultiChunk;
+import org.syncany.chunk.MultiChunker;
+import org.syncany.chunk.ZipMultiChunker;
+import org.syncany.database.MultiChunkEntry.MultiChunkId;
+
+/**
+ * Measures writing chunks to and reading chunks from a {@link ZipMultiChunker} 
+ * multichunk. The chunks are created once per trial, so that only the multichunk
+ * itself (i.e. the ZIP container format) is measured.
+ * 
+ * @author agent <agent@local>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MultiChunkBenchmark {
+	@Param({ "1048576", "4194304" })
+	private int size;
+	
+	@Param({ "0.0", "0.5", "1.0" })
+	private double entropy;
+	
+	private MultiChunker multiChunker;
+	private List<Chunk> chunks;
+	private byte[] multiChunkBytes;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		multiChunker = new ZipMultiChunker(size/1024);
+		chunks = createChunks();
+		multiChunkBytes = writeMultiChunk();
+	}
+	
+	@Benchmark
+	public byte[] write() throws IOException {
+		return writeMultiChunk();
+	}
+	
+	@Benchmark
+	public void read(Blackhole blackhole) throws IOException {
+		MultiChunk multiChunk = multiChunker.createMultiChunk(new ByteArrayInputStream(multiChunkBytes));
+		Chunk chunk = null;
+		
+		while (null != (chunk = multiChunk.read())) {
+			blackhole.consume(chunk.getContent());
+		}
+		
+		multiChunk.close();
+	}
+	
+	private byte[] writeMultiChunk() throws IOException {
+		ByteArrayOutputStream multiChunkOutputStream = new ByteArrayOutputStream(size);
+		MultiChunk multiChunk = multiChunker.createMultiChunk(MultiChunkId.secureRandomMultiChunkId(), multiChunkOutputStream);
+		
+		for (Chunk chunk : chunks) {
+			multiChunk.write(chunk);
+		}
+		
+		multiChunk.close();		
+		return multiChunkOutputStream.toByteArray();
+	}
+	
+	private List<Chunk> createChunks() throws IOException {
+		File file = BenchmarkData.createFile(size, entropy);
+		
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		ChunkEnumeration chunkEnumeration = new FixedChunker(16*1024).createChunks(file);
+		
+		while (chunkEnumeration.hasMoreElements()) {
+			chunks.add(chunkEnumeration.nextElement());
+		}
+		
+		chunkEnumeration.close();
+		file.delete();
+		
+		return chunks;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.syncany.chunk.CipherTransformer;
+import org.syncany.chunk.GzipTransformer;
+import org.syncany.chunk.Transformer;
+import org.syncany.crypto.CipherSpecs;
+import org.syncany.crypto.CipherUtil;
+
+/**
+ * Measures the output (encode) and input (decode) streams of the {@link GzipTransformer},
+ * the {@link CipherTransformer}, and the combination of both (as used by default in a 
+ * repository with encryption enabled).
+ * 
+ * @author agent <agent@local>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TransformerBenchmark {
+	private static final int BUFFER_SIZE = 8*1024;
+	
+	@Param({ "1048576", "4194304" })
+	private int size;
+	
+	@Param({ "0.0", "0.5", "1.0" })
+	private double entropy;
+	
+	@Param({ "gzip", "cipher", "gzip-cipher" })
+	private String transformerType;
+	
+	private Transformer transformer;
+	private byte[] data;
+	private byte[] encodedData;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		transformer = createTransformer();
+		data = BenchmarkData.createData(size, entropy);
+		encodedData = encode();
+	}
+	
+	@Benchmark
+	public byte[] encode() throws Exception {
+		ByteArrayOutputStream encodedOutputStream = new ByteArrayOutputStream(size);
+		OutputStream transformerOutputStream = transformer.createOutputStream(encodedOutputStream);
+		
+		for (int offset = 0; offset < data.length; offset += BUFFER_SIZE) {
+			transformerOutputStream.write(data, offset, Math.min(BUFFER_SIZE, data.length - offset));
+		}
+		
+		transformerOutputStream.close();
+		return encodedOutputStream.toByteArray();
+	}
+	
+	@Benchmark
+	public void decode(Blackhole blackhole) throws Exception {
+		InputStream transformerInputStream = transformer.createInputStream(new ByteArrayInputStream(encodedData));
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int read = -1;
+		
+		while (-1 != (read = transformerInputStream.read(buffer))) {
+			blackhole.consume(read);
+		}
+		
+		transformerInputStream.close();
+	}
+	
+	private Transformer createTransformer() throws Exception {
+		if ("gzip".equals(transformerType)) {
+			return new GzipTransformer();
+		}
+		else if ("cipher".equals(transformerType)) {
+			return createCipherTransformer();
+		}
+		else {
+			return new GzipTransformer(createCipherTransformer());
+		}
+	}
+
+	private CipherTransformer createCipherTransformer() throws Exception {
+		return new CipherTransformer(CipherSpecs.getDefaultCipherSpecs(), CipherUtil.createMasterKey("benchmark"));
+	}
+}
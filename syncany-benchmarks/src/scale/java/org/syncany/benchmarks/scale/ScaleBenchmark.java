@@ -0,0 +1,471 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.benchmarks.scale;
+
+import static java.util.Arrays.asList;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+
+import org.apache.commons.io.FileUtils;
+import org.syncany.Client;
+import org.syncany.benchmarks.scale.ScaleBenchmarkResult.PhaseResult;
+import org.syncany.benchmarks.scale.SyntheticTreeGenerator.EditType;
+import org.syncany.benchmarks.scale.SyntheticTreeGenerator.SizeDistribution;
+import org.syncany.config.Logging;
+import org.syncany.connection.plugins.local.LocalConnection;
+import org.syncany.operations.watch.WatchOperation;
+import org.syncany.operations.watch.WatchOperation.WatchOperationOptions;
+import org.syncany.tests.util.TestClient;
+import org.syncany.tests.util.TestConfigUtil;
+import org.syncany.tests.util.TestFileUtil;
+import org.syncany.util.StringUtil;
+
+/**
+ * End-to-end scale benchmark for the 'up', 'down', 'status', 'cleanup' and 'watch'
+ * operations. The benchmark creates a local repository and a number of {@link TestClient}s
+ * (just like the scenario tests), generates a reproducible synthetic file tree using the 
+ * {@link SyntheticTreeGenerator}, and then runs a multi-client sync scenario:
+ * 
+ * <ol>
+ *  <li>Client A generates the tree, runs 'up' and 'status'; all other clients run 'down'.</li>
+ *  <li>In each round, the editing clients edit a part of the tree and run 'up'; then
+ *      all clients run 'down' and client A runs 'status'.</li>
+ *  <li>Client A runs 'cleanup'.</li>
+ *  <li>Client A edits the tree and runs 'watch' until the change is uploaded.</li>
+ * </ol>
+ * 
+ * <p>For each phase, the duration, the heap high-water mark, the local database size 
+ * and the remote repository size are recorded. The results are written as JSON 
+ * (see {@link ScaleBenchmarkResult}). 
+ * 
+ * @author agent <agent@local>
+ */
+public class ScaleBenchmark {
+	private static final String[] CLIENT_NAMES = new String[] { "A", "B", "C", "D", "E", "F", "G", "H", "I", "J", "K", "L", "M", 
+		"N", "O", "P", "Q", "R", "S", "T", "U", "V", "W", "X", "Y", "Z" };
+	
+	private static final long WATCH_TIMEOUT_MS = 60*60*1000;
+	private static final long WATCH_POLL_INTERVAL_MS = 100;
+
+	private ScaleBenchmarkOptions options;
+	private ScaleBenchmarkResult result;	
+	
+	private LocalConnection connection;
+	private List<TestClient> clients;
+	private SyntheticTreeGenerator generator;
+	
+	public ScaleBenchmark(ScaleBenchmarkOptions options) {
+		this.options = options;
+		this.result = new ScaleBenchmarkResult();
+	}
+	
+	public static void main(String[] args) throws Exception {
+		ScaleBenchmarkOptions options = parseOptions(args);
+		ScaleBenchmarkResult result = new ScaleBenchmark(options).run();
+		
+		result.save(options.outputFile);
+		System.out.println("Results written to " + options.outputFile);
+	}
+	
+	public ScaleBenchmarkResult run() throws Exception {
+		Logging.init();
+		Logging.disableLogging();
+		
+		TestConfigUtil.setCrypto(options.crypto);
+
+		recordEnvironmentAndParameters();
+		
+		try {
+			createClients();
+			
+			runInitialPhases();
+			runEditRounds();
+			
+			if (options.cleanup) {
+				runCleanupPhase();
+			}
+			
+			if (options.watch) {
+				runWatchPhase();
+			}
+		}
+		finally {
+			if (!options.keepData) {
+				deleteClientsAndRepository();
+			}
+		}
+		
+		return result;
+	}
+
+	private void createClients() throws Exception {
+		connection = (LocalConnection) TestConfigUtil.createTestLocalConnection();
+		clients = new ArrayList<TestClient>();
+		
+		for (int i = 0; i < options.clientCount; i++) {
+			clients.add(new TestClient(getClientName(i), connection));
+		}
+		
+		generator = new SyntheticTreeGenerator(options.seed, options.fileCount, options.filesPerFolder, options.meanFileSize,
+				options.maxFileSize, options.sizeDistribution, options.duplicateRatio);
+	}
+
+	private void runInitialPhases() throws Exception {
+		final TestClient clientA = clients.get(0);
+		
+		runPhase("generate", 0, asList(clientA), new ClientAction() {
+			@Override
+			public void run(TestClient client) throws Exception {
+				generator.generate(client.getConfig().getLocalDir());
+			}
+		});
+		
+		runPhase("up", 0, asList(clientA), UP_ACTION);
+		runPhase("status", 0, asList(clientA), STATUS_ACTION);
+		runPhase("down", 0, clients.subList(1, clients.size()), DOWN_ACTION);
+	}
+
+	private void runEditRounds() throws Exception {
+		List<TestClient> editingClients = clients.subList(0, Math.min(options.editingClientCount, clients.size()));
+		
+		for (int round = 1; round <= options.rounds; round++) {
+			final Set<String> editedPaths = new HashSet<String>();
+			
+			runPhase("edit", round, editingClients, new ClientAction() {
+				@Override
+				public void run(TestClient client) throws Exception {
+					generator.edit(client.getConfig().getLocalDir(), options.editRatio, options.editTypes, editedPaths);
+				}
+			});
+			
+			runPhase("up", round, editingClients, UP_ACTION);
+			runPhase("down", round, clients, DOWN_ACTION);
+			runPhase("status", round, asList(clients.get(0)), STATUS_ACTION);
+		}
+	}
+
+	private void runCleanupPhase() throws Exception {
+		runPhase("cleanup", options.rounds + 1, asList(clients.get(0)), new ClientAction() {
+			@Override
+			public void run(TestClient client) throws Exception {
+				client.cleanup();
+			}
+		});
+	}
+
+	private void runWatchPhase() throws Exception {
+		final TestClient clientA = clients.get(0);
+		generator.edit(clientA.getConfig().getLocalDir(), options.editRatio, options.editTypes, new HashSet<String>());
+		
+		runPhase("watch", options.rounds + 1, asList(clientA), new ClientAction() {
+			@Override
+			public void run(TestClient client) throws Exception {
+				runWatchUntilUploaded(client);
+			}
+		});
+	}
+
+	/**
+	 * Runs the 'watch' operation in a separate thread, and waits until it has uploaded 
+	 * a new database file (i.e. until the local changes have been detected and uploaded).
+	 * Since the watch operation starts with a sync, this measures the time it takes for 
+	 * a watching client to detect and upload changes.
+	 */
+	private void runWatchUntilUploaded(TestClient client) throws Exception {
+		File remoteDatabaseDir = new File(connection.getRepositoryPath(), "databases");
+		int databaseCountBefore = countFiles(remoteDatabaseDir);
+		
+		WatchOperationOptions watchOptions = new WatchOperationOptions();
+		watchOptions.setAnnouncements(false);
+		watchOptions.setWatcher(false);
+		watchOptions.setInterval(options.watchIntervalMs);
+		
+		final WatchOperation watchOperation = new WatchOperation(client.getConfig(), watchOptions, null);		
+		Thread watchThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					watchOperation.execute();
+				}
+				catch (Exception e) {
+					// Interrupted by stop, or failed; the latter is detected by the timeout
+				}
+			}			
+		}, "ScaleBenchmarkWatch");
+		
+		watchThread.start();
+		
+		try {
+			long watchStartTime = System.currentTimeMillis();
+			
+			while (countFiles(remoteDatabaseDir) <= databaseCountBefore) {
+				if (System.currentTimeMillis() - watchStartTime > WATCH_TIMEOUT_MS) {
+					throw new Exception("Watch operation did not upload changes within " + WATCH_TIMEOUT_MS + " ms");
+				}
+				
+				Thread.sleep(WATCH_POLL_INTERVAL_MS);
+			}
+		}
+		finally {
+			watchOperation.stop();
+			watchThread.interrupt();
+			watchThread.join();
+		}
+	}
+
+	private void runPhase(String phaseName, int round, List<TestClient> phaseClients, ClientAction action) throws Exception {
+		System.out.print("Round " + round + ", " + phaseName + " (" + phaseClients.size() + " client(s)) ... ");
+		
+		PhaseResult phaseResult = new PhaseResult(phaseName, round);
+		long totalDuration = 0;
+		long maxClientDuration = 0;
+		
+		System.gc();
+		resetHeapPeakUsage();
+		
+		for (TestClient client : phaseClients) {
+			long clientStartTime = System.currentTimeMillis();
+			action.run(client);
+			long clientDuration = System.currentTimeMillis() - clientStartTime;
+
+			totalDuration += clientDuration;
+			maxClientDuration = Math.max(maxClientDuration, clientDuration);
+		}
+		
+		phaseResult.setClientCount(phaseClients.size());
+		phaseResult.setFileCount(generator.getRelativeFilePaths().size());
+		phaseResult.setDurationMs(totalDuration);
+		phaseResult.setMaxClientDurationMs(maxClientDuration);
+		phaseResult.setHeapPeakBytes(getHeapPeakUsage());
+		
+		recordDatabaseSizes(phaseResult);		
+		result.addPhase(phaseResult);
+		
+		System.out.println(totalDuration + " ms");
+	}
+
+	private void recordDatabaseSizes(PhaseResult phaseResult) {
+		long maxLocalDatabaseSize = 0;
+		
+		for (TestClient client : clients) {
+			maxLocalDatabaseSize = Math.max(maxLocalDatabaseSize, sizeOfDirectory(client.getConfig().getDatabaseDir()));
+		}
+		
+		File remoteDatabaseDir = new File(connection.getRepositoryPath(), "databases");
+		File remoteMultiChunkDir = new File(connection.getRepositoryPath(), "multichunks");
+		
+		phaseResult.setLocalDatabaseBytes(maxLocalDatabaseSize);
+		phaseResult.setRemoteDatabaseBytes(sizeOfDirectory(remoteDatabaseDir));
+		phaseResult.setRemoteDatabaseCount(countFiles(remoteDatabaseDir));
+		phaseResult.setRemoteMultiChunkBytes(sizeOfDirectory(remoteMultiChunkDir));
+		phaseResult.setRemoteMultiChunkCount(countFiles(remoteMultiChunkDir));
+	}
+
+	private void resetHeapPeakUsage() {
+		for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (memoryPool.getType() == MemoryType.HEAP) {
+				memoryPool.resetPeakUsage();
+			}
+		}
+	}
+	
+	private long getHeapPeakUsage() {
+		long heapPeakUsage = 0;
+		
+		for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (memoryPool.getType() == MemoryType.HEAP) {
+				heapPeakUsage += memoryPool.getPeakUsage().getUsed();
+			}
+		}
+		
+		return heapPeakUsage;
+	}
+	
+	private long sizeOfDirectory(File directory) {
+		return (directory.exists()) ? FileUtils.sizeOfDirectory(directory) : 0;
+	}
+	
+	private int countFiles(File directory) {
+		String[] fileNames = directory.list();
+		return (fileNames != null) ? fileNames.length : 0;
+	}
+	
+	private String getClientName(int clientIndex) {
+		String clientName = CLIENT_NAMES[clientIndex % CLIENT_NAMES.length];
+		return (clientIndex < CLIENT_NAMES.length) ? clientName : clientName + (clientIndex / CLIENT_NAMES.length);
+	}
+
+	private void deleteClientsAndRepository() {
+		if (clients != null) {
+			for (TestClient client : clients) {
+				client.deleteTestData();
+			}
+		}
+		
+		if (connection != null) {
+			TestFileUtil.deleteDirectory(connection.getRepositoryPath());
+		}
+	}
+
+	private void recordEnvironmentAndParameters() {
+		result.getEnvironment().put("commit", options.commit);
+		result.getEnvironment().put("version", Client.getApplicationVersion());
+		result.getEnvironment().put("timestamp", new Date().getTime());
+		result.getEnvironment().put("javaVersion", System.getProperty("java.version"));
+		result.getEnvironment().put("os", System.getProperty("os.name") + " " + System.getProperty("os.version"));
+		result.getEnvironment().put("processors", Runtime.getRuntime().availableProcessors());
+		result.getEnvironment().put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+		
+		result.getParameters().put("seed", options.seed);
+		result.getParameters().put("files", options.fileCount);
+		result.getParameters().put("filesPerFolder", options.filesPerFolder);
+		result.getParameters().put("meanFileSize", options.meanFileSize);
+		result.getParameters().put("maxFileSize", options.maxFileSize);
+		result.getParameters().put("sizeDistribution", options.sizeDistribution.name().toLowerCase());
+		result.getParameters().put("duplicateRatio", options.duplicateRatio);
+		result.getParameters().put("clients", options.clientCount);
+		result.getParameters().put("editingClients", options.editingClientCount);
+		result.getParameters().put("rounds", options.rounds);
+		result.getParameters().put("editRatio", options.editRatio);
+		result.getParameters().put("edits", StringUtil.join(options.editTypes, ",").toLowerCase());
+		result.getParameters().put("crypto", options.crypto);
+	}
+	
+	private static ScaleBenchmarkOptions parseOptions(String[] args) throws Exception {
+		ScaleBenchmarkOptions options = new ScaleBenchmarkOptions();
+		OptionParser parser = new OptionParser();
+		
+		OptionSpec<Long> optionSeed = parser.acceptsAll(asList("seed")).withRequiredArg().ofType(Long.class).defaultsTo(options.seed);
+		OptionSpec<Integer> optionFiles = parser.acceptsAll(asList("f", "files")).withRequiredArg().ofType(Integer.class).defaultsTo(options.fileCount);
+		OptionSpec<Integer> optionFilesPerFolder = parser.acceptsAll(asList("files-per-folder")).withRequiredArg().ofType(Integer.class).defaultsTo(options.filesPerFolder);
+		OptionSpec<Long> optionMeanSize = parser.acceptsAll(asList("mean-size")).withRequiredArg().ofType(Long.class).defaultsTo(options.meanFileSize);
+		OptionSpec<Long> optionMaxSize = parser.acceptsAll(asList("max-size")).withRequiredArg().ofType(Long.class).defaultsTo(options.maxFileSize);
+		OptionSpec<String> optionSizeDistribution = parser.acceptsAll(asList("size-distribution")).withRequiredArg().defaultsTo(options.sizeDistribution.name().toLowerCase());
+		OptionSpec<Double> optionDuplicateRatio = parser.acceptsAll(asList("duplicate-ratio")).withRequiredArg().ofType(Double.class).defaultsTo(options.duplicateRatio);
+		OptionSpec<Integer> optionClients = parser.acceptsAll(asList("c", "clients")).withRequiredArg().ofType(Integer.class).defaultsTo(options.clientCount);
+		OptionSpec<Integer> optionEditingClients = parser.acceptsAll(asList("editing-clients")).withRequiredArg().ofType(Integer.class).defaultsTo(options.editingClientCount);
+		OptionSpec<Integer> optionRounds = parser.acceptsAll(asList("r", "rounds")).withRequiredArg().ofType(Integer.class).defaultsTo(options.rounds);
+		OptionSpec<Double> optionEditRatio = parser.acceptsAll(asList("edit-ratio")).withRequiredArg().ofType(Double.class).defaultsTo(options.editRatio);
+		OptionSpec<String> optionEdits = parser.acceptsAll(asList("edits")).withRequiredArg().withValuesSeparatedBy(',').defaultsTo("change", "add", "append", "move", "delete");
+		OptionSpec<Integer> optionWatchInterval = parser.acceptsAll(asList("watch-interval")).withRequiredArg().ofType(Integer.class).defaultsTo(options.watchIntervalMs);
+		OptionSpec<Void> optionCrypto = parser.acceptsAll(asList("crypto"));
+		OptionSpec<Void> optionNoCleanup = parser.acceptsAll(asList("no-cleanup"));
+		OptionSpec<Void> optionNoWatch = parser.acceptsAll(asList("no-watch"));
+		OptionSpec<Void> optionKeepData = parser.acceptsAll(asList("keep-data"));
+		OptionSpec<String> optionCommit = parser.acceptsAll(asList("commit")).withRequiredArg().defaultsTo(options.commit);
+		OptionSpec<File> optionOutput = parser.acceptsAll(asList("o", "output")).withRequiredArg().ofType(File.class);
+		
+		OptionSet optionSet = parser.parse(args);
+		
+		options.seed = optionSet.valueOf(optionSeed);
+		options.fileCount = optionSet.valueOf(optionFiles);
+		options.filesPerFolder = optionSet.valueOf(optionFilesPerFolder);
+		options.meanFileSize = optionSet.valueOf(optionMeanSize);
+		options.maxFileSize = optionSet.valueOf(optionMaxSize);
+		options.sizeDistribution = SizeDistribution.valueOf(optionSet.valueOf(optionSizeDistribution).toUpperCase());
+		options.duplicateRatio = optionSet.valueOf(optionDuplicateRatio);
+		options.clientCount = optionSet.valueOf(optionClients);
+		options.editingClientCount = optionSet.valueOf(optionEditingClients);
+		options.rounds = optionSet.valueOf(optionRounds);
+		options.editRatio = optionSet.valueOf(optionEditRatio);
+		options.watchIntervalMs = optionSet.valueOf(optionWatchInterval);
+		options.crypto = optionSet.has(optionCrypto);
+		options.cleanup = !optionSet.has(optionNoCleanup);
+		options.watch = !optionSet.has(optionNoWatch);
+		options.keepData = optionSet.has(optionKeepData);
+		options.commit = optionSet.valueOf(optionCommit);
+		
+		options.editTypes = new ArrayList<EditType>();
+		
+		for (String editType : optionSet.valuesOf(optionEdits)) {
+			options.editTypes.add(EditType.valueOf(editType.toUpperCase()));
+		}
+		
+		if (optionSet.has(optionOutput)) {
+			options.outputFile = optionSet.valueOf(optionOutput);
+		}
+		else {
+			options.outputFile = new File("scale-benchmark-" + System.currentTimeMillis() + ".json");
+		}
+		
+		if (options.clientCount < 1 || options.editingClientCount < 1 || options.fileCount < 1 || options.filesPerFolder < 2) {
+			throw new Exception("Invalid arguments: At least one client, one editing client, one file and two files per folder required.");
+		}
+		
+		return options;
+	}
+	
+	private static interface ClientAction {
+		public void run(TestClient client) throws Exception;
+	}
+	
+	private static final ClientAction UP_ACTION = new ClientAction() {
+		@Override
+		public void run(TestClient client) throws Exception {
+			client.up();
+		}
+	};
+	
+	private static final ClientAction DOWN_ACTION = new ClientAction() {
+		@Override
+		public void run(TestClient client) throws Exception {
+			client.down();
+		}
+	};
+	
+	private static final ClientAction STATUS_ACTION = new ClientAction() {
+		@Override
+		public void run(TestClient client) throws Exception {
+			client.status();
+		}
+	};
+	
+	private static class ScaleBenchmarkOptions {
+		private long seed = 0x5ca1ab1eL;
+		private int fileCount = 1000;
+		private int filesPerFolder = 100;
+		private long meanFileSize = 16*1024;
+		private long maxFileSize = 100*1024*1024;
+		private SizeDistribution sizeDistribution = SizeDistribution.LOGNORMAL;
+		private double duplicateRatio = 0.1;
+		private int clientCount = 2;
+		private int editingClientCount = 1;
+		private int rounds = 3;
+		private double editRatio = 0.01;
+		private List<EditType> editTypes;
+		private int watchIntervalMs = 1000;
+		private boolean crypto = false;
+		private boolean cleanup = true;
+		private boolean watch = true;
+		private boolean keepData = false;
+		private String commit = "unknown";
+		private File outputFile;
+	}
+}
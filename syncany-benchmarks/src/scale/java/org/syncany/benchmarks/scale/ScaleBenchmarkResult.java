@@ -0,0 +1,256 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.benchmarks.scale;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Result of a {@link ScaleBenchmark} run. It contains the benchmark parameters and
+ * environment, as well as one {@link PhaseResult} per benchmark phase.
+ * 
+ * <p>The result is written as JSON. Since the parameters, the commit and the phase 
+ * names are part of the output, results of different commits can be compared by
+ * matching the phases by name and round. 
+ * 
+ * @author agent <agent@local>
+ */
+public class ScaleBenchmarkResult {
+	private Map<String, Object> environment;
+	private Map<String, Object> parameters;
+	private List<PhaseResult> phases;
+	
+	public ScaleBenchmarkResult() {
+		this.environment = new LinkedHashMap<String, Object>();
+		this.parameters = new LinkedHashMap<String, Object>();
+		this.phases = new ArrayList<PhaseResult>();
+	}
+	
+	public Map<String, Object> getEnvironment() {
+		return environment;
+	}
+	
+	public Map<String, Object> getParameters() {
+		return parameters;
+	}
+	
+	public List<PhaseResult> getPhases() {
+		return phases;
+	}
+	
+	public void addPhase(PhaseResult phase) {
+		phases.add(phase);
+	}
+	
+	public void save(File jsonFile) throws IOException {
+		FileUtils.writeStringToFile(jsonFile, toJson(), "UTF-8");
+	}
+	
+	public String toJson() {
+		StringBuilder json = new StringBuilder();
+		
+		json.append("{\n");
+		json.append("  \"environment\": ");
+		appendJsonObject(json, environment);
+		json.append(",\n  \"parameters\": ");
+		appendJsonObject(json, parameters);
+		json.append(",\n  \"phases\": [\n");
+		
+		for (int i = 0; i < phases.size(); i++) {
+			json.append("    ");
+			appendJsonObject(json, phases.get(i).toMap());
+			json.append((i < phases.size()-1) ? ",\n" : "\n");
+		}
+		
+		json.append("  ]\n");
+		json.append("}\n");
+		
+		return json.toString();
+	}
+
+	private void appendJsonObject(StringBuilder json, Map<String, Object> map) {
+		json.append("{ ");
+		boolean first = true;
+		
+		for (Map.Entry<String, Object> entry : map.entrySet()) {
+			if (!first) {
+				json.append(", ");
+			}
+			
+			appendJsonValue(json, entry.getKey());
+			json.append(": ");
+			appendJsonValue(json, entry.getValue());
+			
+			first = false;
+		}
+		
+		json.append(" }");
+	}
+
+	private void appendJsonValue(StringBuilder json, Object value) {
+		if (value == null) {
+			json.append("null");
+		}
+		else if (value instanceof Number || value instanceof Boolean) {
+			json.append(value);
+		}
+		else {
+			String escapedValue = value.toString().replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+			json.append("\"").append(escapedValue).append("\"");
+		}
+	}
+	
+	/**
+	 * Measurements of a single benchmark phase, e.g. the initial 'up' or the 'down'
+	 * of all clients in the second round. If a phase is executed by multiple clients,
+	 * the duration is the total duration of all clients, and the maximum duration of 
+	 * a single client is stored separately.  
+	 */
+	public static class PhaseResult {
+		private String name;
+		private int round;
+		private int clientCount;
+		private int fileCount;
+		private long durationMs;
+		private long maxClientDurationMs;
+		private long heapPeakBytes;
+		private long localDatabaseBytes;
+		private long remoteDatabaseBytes;
+		private int remoteDatabaseCount;
+		private long remoteMultiChunkBytes;
+		private int remoteMultiChunkCount;
+		
+		public PhaseResult(String name, int round) {
+			this.name = name;
+			this.round = round;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public int getRound() {
+			return round;
+		}
+
+		public int getClientCount() {
+			return clientCount;
+		}
+
+		public void setClientCount(int clientCount) {
+			this.clientCount = clientCount;
+		}
+
+		public int getFileCount() {
+			return fileCount;
+		}
+
+		public void setFileCount(int fileCount) {
+			this.fileCount = fileCount;
+		}
+
+		public long getDurationMs() {
+			return durationMs;
+		}
+
+		public void setDurationMs(long durationMs) {
+			this.durationMs = durationMs;
+		}
+
+		public long getMaxClientDurationMs() {
+			return maxClientDurationMs;
+		}
+
+		public void setMaxClientDurationMs(long maxClientDurationMs) {
+			this.maxClientDurationMs = maxClientDurationMs;
+		}
+
+		public long getHeapPeakBytes() {
+			return heapPeakBytes;
+		}
+
+		public void setHeapPeakBytes(long heapPeakBytes) {
+			this.heapPeakBytes = heapPeakBytes;
+		}
+
+		public long getLocalDatabaseBytes() {
+			return localDatabaseBytes;
+		}
+
+		public void setLocalDatabaseBytes(long localDatabaseBytes) {
+			this.localDatabaseBytes = localDatabaseBytes;
+		}
+
+		public long getRemoteDatabaseBytes() {
+			return remoteDatabaseBytes;
+		}
+
+		public void setRemoteDatabaseBytes(long remoteDatabaseBytes) {
+			this.remoteDatabaseBytes = remoteDatabaseBytes;
+		}
+
+		public int getRemoteDatabaseCount() {
+			return remoteDatabaseCount;
+		}
+
+		public void setRemoteDatabaseCount(int remoteDatabaseCount) {
+			this.remoteDatabaseCount = remoteDatabaseCount;
+		}
+
+		public long getRemoteMultiChunkBytes() {
+			return remoteMultiChunkBytes;
+		}
+
+		public void setRemoteMultiChunkBytes(long remoteMultiChunkBytes) {
+			this.remoteMultiChunkBytes = remoteMultiChunkBytes;
+		}
+
+		public int getRemoteMultiChunkCount() {
+			return remoteMultiChunkCount;
+		}
+
+		public void setRemoteMultiChunkCount(int remoteMultiChunkCount) {
+			this.remoteMultiChunkCount = remoteMultiChunkCount;
+		}
+
+		private Map<String, Object> toMap() {
+			Map<String, Object> map = new LinkedHashMap<String, Object>();
+			
+			map.put("name", name);
+			map.put("round", round);
+			map.put("clientCount", clientCount);
+			map.put("fileCount", fileCount);
+			map.put("durationMs", durationMs);
+			map.put("maxClientDurationMs", maxClientDurationMs);
+			map.put("heapPeakBytes", heapPeakBytes);
+			map.put("localDatabaseBytes", localDatabaseBytes);
+			map.put("remoteDatabaseBytes", remoteDatabaseBytes);
+			map.put("remoteDatabaseCount", remoteDatabaseCount);
+			map.put("remoteMultiChunkBytes", remoteMultiChunkBytes);
+			map.put("remoteMultiChunkCount", remoteMultiChunkCount);
+			
+			return map;
+		}
+	}
+}
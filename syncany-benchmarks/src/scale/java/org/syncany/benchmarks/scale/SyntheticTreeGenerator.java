@@ -0,0 +1,286 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.benchmarks.scale;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Generates reproducible synthetic file trees and applies reproducible edits 
+ * to them. Given the same seed and parameters, the generator always creates the 
+ * same folder structure, file sizes and file contents.
+ * 
+ * <p>The generator keeps a model of the relative paths of all files in the tree. 
+ * Since the benchmark clients are fully synced after each round, this model is 
+ * valid for all clients, and edits can be applied to any client's local folder. 
+ * 
+ * @author agent <agent@local>
+ */
+public class SyntheticTreeGenerator {
+	public enum SizeDistribution {
+		/**
+		 * All files have exactly the mean file size.
+		 */
+		FIXED, 
+		
+		/**
+		 * File sizes are uniformly distributed between 0 and twice the mean size.
+		 */
+		UNIFORM, 
+		
+		/**
+		 * File sizes are log-normally distributed with the mean size as median, 
+		 * i.e. there are many small files and a few very large files. This is 
+		 * the most realistic distribution for typical user folders.
+		 */
+		LOGNORMAL
+	}
+	
+	public enum EditType {
+		ADD, CHANGE, APPEND, MOVE, DELETE
+	}
+	
+	private static final double LOGNORMAL_SIGMA = 1.5;
+	private static final int CHANGE_BLOCK_SIZE = 4*1024;
+	private static final int WRITE_BUFFER_SIZE = 64*1024;
+	
+	private long seed;
+	private int fileCount;
+	private int filesPerFolder;
+	private long meanFileSize;
+	private long maxFileSize;
+	private SizeDistribution sizeDistribution;
+	private double duplicateRatio;
+	
+	private Random random;
+	private List<String> relativeFilePaths;
+	private int nextFileIndex;
+	
+	public SyntheticTreeGenerator(long seed, int fileCount, int filesPerFolder, long meanFileSize, long maxFileSize, 
+			SizeDistribution sizeDistribution, double duplicateRatio) {
+		
+		this.seed = seed;
+		this.fileCount = fileCount;
+		this.filesPerFolder = filesPerFolder;
+		this.meanFileSize = meanFileSize;
+		this.maxFileSize = maxFileSize;
+		this.sizeDistribution = sizeDistribution;
+		this.duplicateRatio = duplicateRatio;
+		
+		this.random = new Random(seed);
+		this.relativeFilePaths = new ArrayList<String>(fileCount);
+		this.nextFileIndex = 0;
+	}
+	
+	/**
+	 * Creates the initial file tree in the given folder and returns the
+	 * total number of bytes written.
+	 */
+	public long generate(File localDir) throws IOException {
+		long totalSize = 0;
+		
+		for (int i = 0; i < fileCount; i++) {
+			totalSize += createNextFile(localDir);
+		}
+		
+		return totalSize;
+	}
+	
+	/**
+	 * Applies edits to the given ratio of files in the given folder. The edit types
+	 * are applied round-robin, i.e. each of the given edit types is applied to 
+	 * roughly the same number of files. 
+	 * 
+	 * <p>Files edited by one client within a round should not be edited by another 
+	 * client in the same round, because that would create conflicts. To avoid that,
+	 * the paths already edited in this round must be passed as <tt>excludePaths</tt>. 
+	 * The paths edited by this call are added to this set. 
+	 * 
+	 * @return Returns the number of edited files 
+	 */
+	public int edit(File localDir, double editRatio, List<EditType> editTypes, Set<String> excludePaths) throws IOException {
+		int editCount = Math.max(1, (int) Math.round(relativeFilePaths.size() * editRatio));
+		int editedCount = 0;
+		
+		for (int i = 0; i < editCount && excludePaths.size() < relativeFilePaths.size(); i++) {
+			EditType editType = editTypes.get(i % editTypes.size());
+			
+			if (editType == EditType.ADD) {
+				createNextFile(localDir);
+				excludePaths.add(relativeFilePaths.get(relativeFilePaths.size()-1));
+			}
+			else {
+				int fileIndex = pickFileIndex(excludePaths);
+				String relativeFilePath = relativeFilePaths.get(fileIndex);
+				
+				excludePaths.add(relativeFilePath);
+				editFile(localDir, fileIndex, relativeFilePath, editType);
+			}
+			
+			editedCount++;
+		}
+		
+		return editedCount;
+	}
+	
+	public List<String> getRelativeFilePaths() {
+		return relativeFilePaths;
+	}
+	
+	private long createNextFile(File localDir) throws IOException {
+		int fileIndex = nextFileIndex++;
+		String relativeFilePath = createRelativeFilePath(fileIndex);
+		File file = new File(localDir, relativeFilePath);
+		
+		file.getParentFile().mkdirs();
+		
+		if (relativeFilePaths.size() > 0 && random.nextDouble() < duplicateRatio) {
+			String duplicateRelativeFilePath = relativeFilePaths.get(random.nextInt(relativeFilePaths.size()));
+			FileUtils.copyFile(new File(localDir, duplicateRelativeFilePath), file);
+		}
+		else {
+			writeRandomFile(file, nextFileSize(), seed ^ fileIndex);
+		}
+		
+		relativeFilePaths.add(relativeFilePath);
+		return file.length();
+	}
+	
+	private void editFile(File localDir, int fileIndex, String relativeFilePath, EditType editType) throws IOException {
+		File file = new File(localDir, relativeFilePath);
+		
+		switch (editType) {
+		case CHANGE:
+			changeRandomBlock(file);
+			break;
+			
+		case APPEND:
+			appendRandomBlock(file);
+			break;
+			
+		case MOVE:
+			String movedRelativeFilePath = relativeFilePath + "-moved";
+			FileUtils.moveFile(file, new File(localDir, movedRelativeFilePath));
+			
+			relativeFilePaths.set(fileIndex, movedRelativeFilePath);
+			break;
+			
+		case DELETE:
+			FileUtils.forceDelete(file);
+			
+			relativeFilePaths.set(fileIndex, relativeFilePaths.get(relativeFilePaths.size()-1));
+			relativeFilePaths.remove(relativeFilePaths.size()-1);
+			break;
+			
+		default:
+			throw new RuntimeException("Unexpected edit type: " + editType);
+		}
+	}
+	
+	private int pickFileIndex(Set<String> excludePaths) {
+		int fileIndex = random.nextInt(relativeFilePaths.size());
+		
+		while (excludePaths.contains(relativeFilePaths.get(fileIndex))) {
+			fileIndex = (fileIndex + 1) % relativeFilePaths.size();
+		}
+		
+		return fileIndex;
+	}
+	
+	private String createRelativeFilePath(int fileIndex) {
+		// Creates paths like "folder-2/folder-34/file-23456.dat", with at most
+		// 'filesPerFolder' files or sub folders per folder
+		StringBuilder relativeFilePath = new StringBuilder();		
+		int folderIndex = fileIndex / filesPerFolder;
+		
+		List<Integer> folderIndexes = new ArrayList<Integer>();
+		
+		while (folderIndex > 0) {
+			folderIndexes.add(0, folderIndex % filesPerFolder);
+			folderIndex /= filesPerFolder;
+		}
+		
+		for (int pathFolderIndex : folderIndexes) {
+			relativeFilePath.append("folder-").append(pathFolderIndex).append("/");
+		}
+		
+		return relativeFilePath.append("file-").append(fileIndex).append(".dat").toString();
+	}
+	
+	private long nextFileSize() {
+		long fileSize;
+		
+		switch (sizeDistribution) {
+		case UNIFORM:
+			fileSize = (long) (random.nextDouble() * 2 * meanFileSize);
+			break;
+			
+		case LOGNORMAL:
+			fileSize = (long) (meanFileSize * Math.exp(LOGNORMAL_SIGMA * random.nextGaussian()));
+			break;
+			
+		default:
+			fileSize = meanFileSize;
+			break;
+		}
+		
+		return Math.min(fileSize, maxFileSize);
+	}
+
+	private void writeRandomFile(File file, long fileSize, long fileSeed) throws IOException {
+		Random fileRandom = new Random(fileSeed);
+		byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+		
+		try (FileOutputStream fileOutputStream = new FileOutputStream(file)) {
+			for (long written = 0; written < fileSize; written += buffer.length) {
+				fileRandom.nextBytes(buffer);
+				fileOutputStream.write(buffer, 0, (int) Math.min(buffer.length, fileSize - written));
+			}
+		}
+	}
+	
+	private void changeRandomBlock(File file) throws IOException {
+		byte[] block = new byte[CHANGE_BLOCK_SIZE];
+		random.nextBytes(block);
+		
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+			long fileSize = randomAccessFile.length();
+			long offset = (fileSize > block.length) ? (long) (random.nextDouble() * (fileSize - block.length)) : 0;
+			
+			randomAccessFile.seek(offset);
+			randomAccessFile.write(block);
+		}
+	}
+	
+	private void appendRandomBlock(File file) throws IOException {
+		byte[] block = new byte[CHANGE_BLOCK_SIZE];
+		random.nextBytes(block);
+		
+		try (FileOutputStream fileOutputStream = new FileOutputStream(file, true)) {
+			fileOutputStream.write(block);
+		}
+	}
+}
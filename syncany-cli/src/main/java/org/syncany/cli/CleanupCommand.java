@@ -52,6 +52,8 @@ public class CleanupCommand extends Command {
 		OptionSpec<Void> optionNoDatabaseMerge = parser.acceptsAll(asList("M", "no-database-merge"));
 		OptionSpec<Void> optionNoOldVersionRemoval = parser.acceptsAll(asList("V", "no-version-remove"));
 		OptionSpec<Integer> optionKeepVersions = parser.acceptsAll(asList("k", "keep-versions")).withRequiredArg().ofType(Integer.class);
+		OptionSpec<Void> optionNoRepackage = parser.acceptsAll(asList("R", "no-repackage"));
+		OptionSpec<Integer> optionRepackageMaxSize = parser.acceptsAll(asList("repackage-max-size")).withRequiredArg().ofType(Integer.class);
 
 		OptionSet options = parser.parse(operationArgs);
 		
@@ -72,6 +74,20 @@ public class CleanupCommand extends Command {
 			operationOptions.setKeepVersionsCount(options.valueOf(optionKeepVersions));			
 		}
 		
+		// -R, --no-repackage
+		operationOptions.setRepackageMultiChunks(!options.has(optionNoRepackage));
+		
+		// --repackage-max-size=<MB>
+		if (options.has(optionRepackageMaxSize)) {
+			int repackageMaxSizeMB = options.valueOf(optionRepackageMaxSize);
+			
+			if (repackageMaxSizeMB < 1) {
+				throw new Exception("Invalid value for --repackage-max-size="+repackageMaxSizeMB+"; must be >= 1");
+			}
+			
+			operationOptions.setRepackageMaxSize(repackageMaxSizeMB * 1024L * 1024L);
+		}
+		
 		// Parse 'status' options
 		operationOptions.setStatusOptions(parseStatusOptions(operationArgs));	
 		
@@ -120,6 +136,23 @@ public class CleanupCommand extends Command {
 					operationResult.getRemovedMultiChunks().size(), (double) totalRemovedMultiChunkSize / 1024 / 1024);
 			}
 
+			if (operationResult.getRepackagedMultiChunks().size() > 0) {
+				long totalRepackagedMultiChunkSize = 0;
+				long totalNewMultiChunkSize = 0;
+				
+				for (MultiChunkEntry repackagedMultiChunk : operationResult.getRepackagedMultiChunks()) {
+					totalRepackagedMultiChunkSize += repackagedMultiChunk.getSize();
+				}
+				
+				for (MultiChunkEntry newMultiChunk : operationResult.getNewRepackagedMultiChunks()) {
+					totalNewMultiChunkSize += newMultiChunk.getSize();
+				}
+				
+				out.printf("%d multichunk(s) repackaged into %d new multichunk(s) (freed %.2f MB)\n", 
+					operationResult.getRepackagedMultiChunks().size(), operationResult.getNewRepackagedMultiChunks().size(),
+					(double) (totalRepackagedMultiChunkSize - totalNewMultiChunkSize) / 1024 / 1024);
+			}
+
 			if (operationResult.getRemovedOldVersionsCount() > 0) {
 				out.println(operationResult.getRemovedOldVersionsCount() + " file histories shortened.");
 				// TODO [low] This counts only the file histories, not file versions; not very helpful!
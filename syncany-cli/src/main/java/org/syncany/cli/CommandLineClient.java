@@ -28,6 +28,8 @@ import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.FileHandler;
 import java.util.logging.Handler;
@@ -48,6 +50,10 @@ import org.syncany.config.LogFormatter;
 import org.syncany.config.Logging;
 import org.syncany.connection.plugins.Plugin;
 import org.syncany.connection.plugins.Plugins;
+import org.syncany.metrics.Counter;
+import org.syncany.metrics.Histogram;
+import org.syncany.metrics.MetricRegistry;
+import org.syncany.metrics.Timer;
 import org.syncany.util.StringUtil;
 import org.syncany.util.StringUtil.StringJoinListener;
 
@@ -105,6 +111,7 @@ public class CommandLineClient extends Client {
 			OptionSpec<Void> optionLogPrint = parser.acceptsAll(asList("print"));		
 			OptionSpec<String> optionLogLevel = parser.acceptsAll(asList("loglevel")).withOptionalArg();
 			OptionSpec<Void> optionDebug = parser.acceptsAll(asList("D", "debug"));
+			OptionSpec<Void> optionMetrics = parser.acceptsAll(asList("metrics"));
 			
 			// Parse global options and operation name
 			OptionSet options = parser.parse(args);
@@ -113,6 +120,7 @@ public class CommandLineClient extends Client {
 			// WARNING: Do not re-order unless you know what you are doing!
 			initConfigOption(options, optionLocalDir);
 			initLogOption(options, optionLog, optionLogLevel, optionLogPrint, optionDebug);
+			initMetricsOption(options, optionMetrics);
 	
 			// Run!
 			return runCommand(options, optionHelp, options.nonOptionArguments());
@@ -185,6 +193,13 @@ public class CommandLineClient extends Client {
 		}		
 	}
 
+	private void initMetricsOption(OptionSet options, OptionSpec<Void> optionMetrics) {
+		// --metrics
+		if (options.has(optionMetrics) && config != null) {
+			config.setMetrics(new MetricRegistry());
+		}
+	}
+
 	private void initConfigOption(OptionSet options, OptionSpec<File> optionLocalDir) throws ConfigException, Exception {
 		// Find config or use --config option
 		if (options.has(optionLocalDir)) {
@@ -250,6 +265,11 @@ public class CommandLineClient extends Client {
 		// Run!
 		try {
 			int exitCode = command.execute(commandArgs);
+			
+			if (config != null && config.getMetrics().isEnabled()) {
+				printMetrics(config.getMetrics());
+			}
+			
 			return exitCode;
 		}
 		catch (Exception e) {
@@ -258,6 +278,31 @@ public class CommandLineClient extends Client {
 		}	
 	}
 	
+	private void printMetrics(MetricRegistry metrics) {
+		out.println();
+		out.println("Metrics:");
+		
+		for (Map.Entry<String, Counter> counterEntry : metrics.getCounters().entrySet()) {
+			out.println(String.format("  %-28s %d", counterEntry.getKey(), counterEntry.getValue().getCount()));
+		}
+		
+		for (Map.Entry<String, Timer> timerEntry : metrics.getTimers().entrySet()) {
+			Timer timer = timerEntry.getValue();
+			
+			out.println(String.format("  %-28s count=%d, total=%dms, mean=%.1fms, p95=%.1fms, max=%.1fms", timerEntry.getKey(), timer.getCount(),
+					timer.getTotal(TimeUnit.MILLISECONDS), timer.getMean() / 1000000.0, timer.getPercentile(0.95) / 1000000.0, timer.getMax() / 1000000.0));
+		}
+		
+		for (Map.Entry<String, Histogram> histogramEntry : metrics.getHistograms().entrySet()) {
+			Histogram histogram = histogramEntry.getValue();
+			
+			out.println(String.format("  %-28s count=%d, mean=%.1f, p95=%d, max=%d", histogramEntry.getKey(), histogram.getCount(),
+					histogram.getMean(), histogram.getPercentile(0.95), histogram.getMax()));
+		}
+		
+		out.println();
+	}
+	
 	private void showUsageAndExit() throws IOException {
 		printHelpTextAndExit(HELP_TEXT_USAGE_SKEL_RESOURCE);
 	}
@@ -77,6 +77,7 @@ public class ConnectCommand extends AbstractInitCommand {
 		OptionSpec<String> optionPlugin = parser.acceptsAll(asList("P", "plugin")).withRequiredArg();
 		OptionSpec<String> optionPluginOpts = parser.acceptsAll(asList("o", "plugin-option")).withRequiredArg();
 		OptionSpec<Void> optionNonInteractive = parser.acceptsAll(asList("I", "no-interaction"));
+		OptionSpec<Void> optionCacheKey = parser.acceptsAll(asList("K", "cache-key"));
 
 		OptionSet options = parser.parse(operationArguments);
 		List<?> nonOptionArgs = options.nonOptionArguments();
@@ -109,6 +110,7 @@ public class ConnectCommand extends AbstractInitCommand {
 		
 		operationOptions.setLocalDir(localDir);
 		operationOptions.setConfigTO(configTO);
+		operationOptions.setMasterKeyCacheEnabled(options.has(optionCacheKey));
 
 		return operationOptions;
 	}
@@ -29,11 +29,13 @@ import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
 
+import org.syncany.chunk.AdaptiveTransformer;
 import org.syncany.chunk.Chunker;
 import org.syncany.chunk.CipherTransformer;
 import org.syncany.chunk.FixedChunker;
 import org.syncany.chunk.GzipTransformer;
 import org.syncany.chunk.MultiChunker;
+import org.syncany.chunk.ParallelGzipTransformer;
 import org.syncany.chunk.ZipMultiChunker;
 import org.syncany.config.to.ConfigTO;
 import org.syncany.config.to.ConfigTO.ConnectionTO;
@@ -91,10 +93,13 @@ public class InitCommand extends AbstractInitCommand {
 		OptionSpec<Void> optionCreateTargetPath = parser.acceptsAll(asList("t", "create-target"));
 		OptionSpec<Void> optionAdvanced = parser.acceptsAll(asList("a", "advanced"));
 		OptionSpec<Void> optionNoCompression = parser.acceptsAll(asList("G", "no-compression"));
+		OptionSpec<Void> optionAdaptiveCompression = parser.acceptsAll(asList("Z", "adaptive-compression"));
+		OptionSpec<Void> optionParallelCompression = parser.acceptsAll(asList("X", "parallel-compression"));
 		OptionSpec<Void> optionNoEncryption = parser.acceptsAll(asList("E", "no-encryption"));
 		OptionSpec<String> optionPlugin = parser.acceptsAll(asList("P", "plugin")).withRequiredArg();
 		OptionSpec<String> optionPluginOpts = parser.acceptsAll(asList("o", "plugin-option")).withRequiredArg();
 		OptionSpec<Void> optionNonInteractive = parser.acceptsAll(asList("I", "no-interaction"));
+		OptionSpec<Void> optionCacheKey = parser.acceptsAll(asList("K", "cache-key"));
 		
 		OptionSet options = parser.parse(operationArguments);	
 						
@@ -104,6 +109,8 @@ public class InitCommand extends AbstractInitCommand {
 		boolean advancedModeEnabled = options.has(optionAdvanced);
 		boolean encryptionEnabled = !options.has(optionNoEncryption);
 		boolean compressionEnabled = !options.has(optionNoCompression);
+		boolean adaptiveCompressionEnabled = options.has(optionAdaptiveCompression);
+		boolean parallelCompressionEnabled = options.has(optionParallelCompression);
 		
 		// --no-interaction
 		isInteractive = !options.has(optionNonInteractive);
@@ -115,8 +122,8 @@ public class InitCommand extends AbstractInitCommand {
 		ChunkerTO chunkerTO = getDefaultChunkerTO();
 		MultiChunkerTO multiChunkerTO = getDefaultMultiChunkerTO();
 
-		// Compression: --no-compression
-		List<TransformerTO> transformersTO = getTransformersTO(compressionEnabled, cipherSpecs);
+		// Compression: --no-compression, --adaptive-compression, --parallel-compression
+		List<TransformerTO> transformersTO = getTransformersTO(compressionEnabled, adaptiveCompressionEnabled, parallelCompressionEnabled, cipherSpecs);
 				
 		// Create configTO and repoTO
 		ConfigTO configTO = createConfigTO(connectionTO);		
@@ -130,6 +137,7 @@ public class InitCommand extends AbstractInitCommand {
 		operationOptions.setEncryptionEnabled(encryptionEnabled);
 		operationOptions.setCipherSpecs(cipherSpecs);
 		operationOptions.setPassword(null); // set by callback in operation 
+		operationOptions.setMasterKeyCacheEnabled(options.has(optionCacheKey));
 		
 		return operationOptions;
 	}		
@@ -185,11 +193,20 @@ public class InitCommand extends AbstractInitCommand {
 		}		
 	}
 
-	private List<TransformerTO> getTransformersTO(boolean gzipEnabled, List<CipherSpec> cipherSpecs) {
+	private List<TransformerTO> getTransformersTO(boolean compressionEnabled, boolean adaptiveCompressionEnabled, boolean parallelCompressionEnabled,
+			List<CipherSpec> cipherSpecs) {
 		List<TransformerTO> transformersTO = new ArrayList<TransformerTO>();
 		
-		if (gzipEnabled) { 
-			transformersTO.add(getGzipTransformerTO());
+		if (compressionEnabled) { 
+			if (adaptiveCompressionEnabled) {
+				transformersTO.add(getAdaptiveTransformerTO());
+			}
+			else if (parallelCompressionEnabled) {
+				transformersTO.add(getParallelGzipTransformerTO());
+			}
+			else {
+				transformersTO.add(getGzipTransformerTO());
+			}
 		}
 
 		if (cipherSpecs.size() > 0) {	
@@ -337,6 +354,20 @@ public class InitCommand extends AbstractInitCommand {
 		return gzipTransformerTO;				
 	}
 	
+	protected TransformerTO getParallelGzipTransformerTO() {		
+		TransformerTO parallelGzipTransformerTO = new TransformerTO();
+		parallelGzipTransformerTO.setType(ParallelGzipTransformer.TYPE);
+		
+		return parallelGzipTransformerTO;				
+	}
+	
+	protected TransformerTO getAdaptiveTransformerTO() {		
+		TransformerTO adaptiveTransformerTO = new TransformerTO();
+		adaptiveTransformerTO.setType(AdaptiveTransformer.TYPE);
+		
+		return adaptiveTransformerTO;				
+	}
+	
 	private TransformerTO getCipherTransformerTO(List<CipherSpec> cipherSpec) {
 		String cipherSuitesIdStr = StringUtil.join(cipherSpec, ",", new StringJoinListener<CipherSpec>() {
 			@Override
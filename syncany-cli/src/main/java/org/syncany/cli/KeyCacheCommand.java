@@ -0,0 +1,59 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.cli;
+
+import java.util.List;
+
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+
+import org.syncany.config.UserConfig;
+import org.syncany.crypto.MasterKeyCache;
+
+/**
+ * Manages the local master key cache, which is filled by the 'init' and
+ * 'connect' commands if the <tt>--cache-key</tt> option is given. The only
+ * action is currently 'invalidate', which deletes all cached master keys.
+ *
+ * @see MasterKeyCache
+ * @author agent <agent@local>
+ */
+public class KeyCacheCommand extends Command {
+	@Override
+	public CommandScope getRequiredCommandScope() {
+		return CommandScope.ANY;
+	}
+
+	@Override
+	public int execute(String[] operationArgs) throws Exception {
+		OptionParser parser = new OptionParser();
+		OptionSet options = parser.parse(operationArgs);
+
+		List<?> nonOptionArgs = options.nonOptionArguments();
+
+		if (nonOptionArgs.size() != 1 || !"invalidate".equals(nonOptionArgs.get(0).toString())) {
+			throw new Exception("Invalid syntax, please specify an action (invalidate).");
+		}
+
+		MasterKeyCache masterKeyCache = new MasterKeyCache(UserConfig.getUserMasterKeyCacheDir());
+		int deletedEntries = masterKeyCache.invalidate();
+
+		out.println(deletedEntries + " cached master key(s) removed.");
+		return 0;
+	}
+}
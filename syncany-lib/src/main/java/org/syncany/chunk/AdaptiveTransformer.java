@@ -0,0 +1,303 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.chunk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Implements a {@link Transformer} that selects a compression codec for each stream
+ * (i.e. for each multichunk) based on a sample of its content. Unlike the
+ * {@link GzipTransformer}, it does not waste CPU time on data that is already
+ * compressed (e.g. photos, videos or archives).
+ *
+ * <p>The first {@link #SAMPLE_SIZE} bytes of a stream are buffered and analyzed:
+ * <ul>
+ *   <li>If the byte entropy of the sample is very high, or if the sample cannot be
+ *       compressed significantly by the fast codec, the stream is stored as is
+ *       ({@link Codec#RAW RAW}).</li>
+ *   <li>If the entropy is low (e.g. text or log files), the stream is compressed
+ *       with deflate ({@link Codec#DEFLATE DEFLATE}), because deflate's additional
+ *       entropy coding pays off for this kind of data.</li>
+ *   <li>Otherwise, the stream is compressed with the {@link Lz4BlockCompressor LZ4}
+ *       block codec ({@link Codec#FAST FAST}).</li>
+ * </ul>
+ *
+ * <p>The selected codec is written as a one-byte tag at the beginning of the stream,
+ * so that the {@link #createInputStream(InputStream) input stream} can decode it
+ * without any additional information.
+ *
+ * @author agent <agent@local>
+ */
+public class AdaptiveTransformer extends Transformer {
+	private static final Logger logger = Logger.getLogger(AdaptiveTransformer.class.getSimpleName());
+
+	public static final String TYPE = "adaptive";
+	public static final int SAMPLE_SIZE = 64 * 1024;
+
+	private static final double RAW_ENTROPY_THRESHOLD = 7.5; // Bits per byte; 8.0 is random data
+	private static final double DEFLATE_ENTROPY_THRESHOLD = 6.0;
+	private static final double RAW_MIN_SAVINGS = 0.1; // Compression must save at least 10%
+
+	public enum Codec {
+		RAW((byte) 0x00), FAST((byte) 0x01), DEFLATE((byte) 0x02);
+
+		private byte tag;
+
+		private Codec(byte tag) {
+			this.tag = tag;
+		}
+
+		public byte getTag() {
+			return tag;
+		}
+
+		public static Codec fromTag(int tag) {
+			for (Codec codec : values()) {
+				if (codec.tag == tag) {
+					return codec;
+				}
+			}
+
+			return null;
+		}
+	}
+
+	public AdaptiveTransformer() {
+		this(null);
+	}
+
+	public AdaptiveTransformer(Transformer nextTransformer) {
+		super(nextTransformer);
+	}
+
+	@Override
+	public void init(Map<String, String> settings) throws Exception {
+		// Nothing here
+	}
+
+	@Override
+	public OutputStream createOutputStream(OutputStream out) throws IOException {
+		if (nextTransformer == null) {
+			return new AdaptiveOutputStream(out);
+		}
+		else {
+			return new AdaptiveOutputStream(nextTransformer.createOutputStream(out));
+		}
+	}
+
+	@Override
+	public InputStream createInputStream(InputStream in) throws IOException {
+		if (nextTransformer == null) {
+			return createCodecInputStream(in);
+		}
+		else {
+			return createCodecInputStream(nextTransformer.createInputStream(in));
+		}
+	}
+
+	private InputStream createCodecInputStream(InputStream in) throws IOException {
+		int tag = in.read();
+		Codec codec = Codec.fromTag(tag);
+
+		if (codec == null) {
+			throw new IOException("Invalid or missing codec tag in adaptive stream: " + tag);
+		}
+
+		switch (codec) {
+		case FAST:
+			return new Lz4BlockInputStream(in);
+
+		case DEFLATE:
+			return new InflaterInputStream(in);
+
+		default:
+			return in;
+		}
+	}
+
+	/**
+	 * Selects the codec for the given sample of a stream.
+	 */
+	public static Codec selectCodec(byte[] sample, int sampleLength) {
+		if (sampleLength == 0) {
+			return Codec.RAW;
+		}
+
+		double entropy = calculateEntropy(sample, sampleLength);
+
+		if (entropy >= RAW_ENTROPY_THRESHOLD) {
+			return Codec.RAW;
+		}
+
+		byte[] compressedSample = new byte[Lz4BlockCompressor.maxCompressedLength(sampleLength)];
+		int compressedLength = new Lz4BlockCompressor().compress(sample, 0, sampleLength, compressedSample, 0);
+
+		if (compressedLength > sampleLength * (1 - RAW_MIN_SAVINGS)) {
+			return Codec.RAW;
+		}
+		else if (entropy < DEFLATE_ENTROPY_THRESHOLD) {
+			return Codec.DEFLATE;
+		}
+		else {
+			return Codec.FAST;
+		}
+	}
+
+	/**
+	 * Calculates the Shannon entropy of the byte distribution of the
+	 * given data, in bits per byte (between 0 and 8).
+	 */
+	private static double calculateEntropy(byte[] data, int length) {
+		int[] byteCounts = new int[256];
+
+		for (int i = 0; i < length; i++) {
+			byteCounts[data[i] & 0xff]++;
+		}
+
+		double entropy = 0;
+
+		for (int byteCount : byteCounts) {
+			if (byteCount > 0) {
+				double probability = (double) byteCount / length;
+				entropy -= probability * Math.log(probability);
+			}
+		}
+
+		return entropy / Math.log(2);
+	}
+
+	@Override
+	public String toString() {
+		return (nextTransformer == null) ? "Adaptive" : "Adaptive-" + nextTransformer;
+	}
+
+	/**
+	 * Output stream that buffers the first {@link AdaptiveTransformer#SAMPLE_SIZE} bytes,
+	 * then selects the codec, writes the codec tag and passes all data to the codec stream.
+	 */
+	private static class AdaptiveOutputStream extends OutputStream {
+		private OutputStream out;
+		private OutputStream codecOut;
+		private byte[] sample;
+		private int sampleLength;
+
+		public AdaptiveOutputStream(OutputStream out) {
+			this.out = out;
+			this.codecOut = null;
+			this.sample = new byte[SAMPLE_SIZE];
+			this.sampleLength = 0;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (codecOut == null) {
+				int copyLength = Math.min(len, SAMPLE_SIZE - sampleLength);
+				System.arraycopy(b, off, sample, sampleLength, copyLength);
+
+				sampleLength += copyLength;
+				off += copyLength;
+				len -= copyLength;
+
+				if (sampleLength < SAMPLE_SIZE) {
+					return;
+				}
+
+				startCodec();
+			}
+
+			if (len > 0) {
+				codecOut.write(b, off, len);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (codecOut != null) {
+				codecOut.flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (codecOut == null) {
+				startCodec();
+			}
+
+			codecOut.close();
+		}
+
+		private void startCodec() throws IOException {
+			Codec codec = selectCodec(sample, sampleLength);
+
+			if (logger.isLoggable(Level.FINE)) {
+				logger.log(Level.FINE, "Adaptive compression: selected codec {0} based on {1} byte sample", new Object[] { codec, sampleLength });
+			}
+
+			out.write(codec.getTag());
+
+			switch (codec) {
+			case FAST:
+				codecOut = new Lz4BlockOutputStream(out);
+				break;
+
+			case DEFLATE:
+				codecOut = new EndingDeflaterOutputStream(out);
+				break;
+
+			default:
+				codecOut = out;
+			}
+
+			codecOut.write(sample, 0, sampleLength);
+			sample = null;
+		}
+	}
+
+	/**
+	 * Deflater output stream that releases the native resources of its
+	 * deflater when it is closed.
+	 */
+	private static class EndingDeflaterOutputStream extends DeflaterOutputStream {
+		public EndingDeflaterOutputStream(OutputStream out) {
+			super(out, new Deflater(Deflater.DEFAULT_COMPRESSION));
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			}
+			finally {
+				def.end();
+			}
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.chunk;
+
+/**
+ * Implementation of the Buzhash (cyclic polynomial) rolling hash. Each byte value is
+ * mapped to a random 32-bit value; the hash of a window is the XOR of these values, 
+ * each rotated by its distance to the end of the window. 
+ * 
+ * <p>Rolling the window only requires two table lookups, two rotations and two XORs.
+ * The fingerprint is well-distributed even for low-entropy data, and {@link #roll(byte)}
+ * does not allocate any objects.
+ * 
+ * @see <a href="http://en.wikipedia.org/wiki/Rolling_hash#Cyclic_polynomial">Rolling hash: Cyclic polynomial</a>
+ * @author agent <agent@local>
+ */
+public class BuzhashFingerprinter extends Fingerprinter {
+	/**
+	 * Random values for each byte value. The values must never change, 
+	 * because this would change the chunk boundaries.
+	 */
+	private static final int[] TABLE = createTable(0x42757a68617368L);
+	
+	private byte[] window;
+	private int windowPos;
+	private int hash;
+	
+	public BuzhashFingerprinter() {
+		this.window = new byte[0];
+		reset();
+	}
+
+	@Override
+	public int getValue() {
+		return hash & 0x7fffffff;
+	}
+
+	@Override
+	public void reset() {
+		hash = 0;
+		windowPos = 0;
+	}
+
+	@Override
+	public void roll(byte bt) {
+		int outByte = window[windowPos] & 0xff;
+		
+		window[windowPos] = bt;
+		windowPos = (windowPos + 1 == window.length) ? 0 : windowPos + 1;
+		
+		hash = Integer.rotateLeft(hash, 1) ^ Integer.rotateLeft(TABLE[outByte], window.length) ^ TABLE[bt & 0xff];
+	}
+
+	@Override
+	public void check(byte[] buf, int off, int len) {
+		if (window.length != len) {
+			window = new byte[len];
+		}
+		
+		System.arraycopy(buf, off, window, 0, len);
+		reset();
+		
+		for (int i = 0; i < len; i++) {
+			hash = Integer.rotateLeft(hash, 1) ^ TABLE[window[i] & 0xff];
+		}
+	}
+	
+	/**
+	 * Creates the table using the SplitMix64 generator, so that the 
+	 * table does not depend on the JDK implementation.
+	 */
+	private static int[] createTable(long seed) {
+		int[] table = new int[256];
+		long state = seed;
+		
+		for (int i = 0; i < table.length; i++) {
+			state += 0x9e3779b97f4a7c15L;
+			
+			long value = state;
+			value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+			value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+			
+			table[i] = (int) (value ^ (value >>> 31));
+		}
+		
+		return table;
+	}
+
+	@Override
+	public String toString() {
+		return "Buzhash";
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.chunk;
+
+import java.util.Arrays;
+
+/**
+ * The chunk layout describes how a file content was broken into {@link Chunk}s, i.e.
+ * the checksum, size and offset of each chunk, as well as a non-cryptographic
+ * {@link org.syncany.util.XxHash64 xxHash64} checksum of each chunk's data. 
+ * 
+ * <p>The layout of a file's previous content is used by the {@link DeltaChunkEnumeration}
+ * to quickly verify which chunks are still unchanged, without having to fingerprint 
+ * and hash them again. Chunks with a size of zero are not part of the layout.
+ * 
+ * @author agent <agent@local>
+ */
+public class ChunkLayout {
+	private static final int INITIAL_CAPACITY = 64;
+	
+	private byte[][] checksums;
+	private int[] sizes;
+	private long[] fastChecksums;
+	private long[] offsets;
+	private int chunkCount;
+	private long length;
+	
+	public ChunkLayout() {
+		this.checksums = new byte[INITIAL_CAPACITY][];
+		this.sizes = new int[INITIAL_CAPACITY];
+		this.fastChecksums = new long[INITIAL_CAPACITY];
+		this.offsets = new long[INITIAL_CAPACITY];
+		this.chunkCount = 0;
+		this.length = 0;
+	}
+	
+	/**
+	 * Appends a chunk to the layout. The offset of the chunk is the 
+	 * sum of the sizes of all previously added chunks.
+	 */
+	public void add(byte[] checksum, int size, long fastChecksum) {
+		if (size == 0) {
+			return;
+		}
+		
+		if (chunkCount == sizes.length) {
+			int newCapacity = sizes.length * 2;
+			
+			checksums = Arrays.copyOf(checksums, newCapacity);
+			sizes = Arrays.copyOf(sizes, newCapacity);
+			fastChecksums = Arrays.copyOf(fastChecksums, newCapacity);
+			offsets = Arrays.copyOf(offsets, newCapacity);
+		}
+		
+		checksums[chunkCount] = checksum;
+		sizes[chunkCount] = size;
+		fastChecksums[chunkCount] = fastChecksum;
+		offsets[chunkCount] = length;
+		
+		chunkCount++;
+		length += size;
+	}
+	
+	/**
+	 * Returns the index of the chunk starting at the given offset, 
+	 * or <tt>-1</tt> if no chunk starts at this offset.
+	 */
+	public int indexOf(long offset) {
+		int index = Arrays.binarySearch(offsets, 0, chunkCount, offset);
+		return (index >= 0) ? index : -1;
+	}
+	
+	public int getChunkCount() {
+		return chunkCount;
+	}
+	
+	public byte[] getChecksum(int index) {
+		return checksums[index];
+	}
+	
+	public int getSize(int index) {
+		return sizes[index];
+	}
+	
+	public long getFastChecksum(int index) {
+		return fastChecksums[index];
+	}
+	
+	public long getOffset(int index) {
+		return offsets[index];
+	}
+	
+	/**
+	 * Returns the total length of all chunks, i.e. the file size.
+	 */
+	public long getLength() {
+		return length;
+	}
+}
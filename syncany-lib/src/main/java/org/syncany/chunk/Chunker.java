@@ -19,7 +19,13 @@ package org.syncany.chunk;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Enumeration;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.util.StringUtil;
 
 /**
  * The chunker implements a core part of the deduplication process by breaking
@@ -32,12 +38,25 @@ import java.util.Enumeration;
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public abstract class Chunker {	
+	private static final Logger logger = Logger.getLogger(Chunker.class.getSimpleName());
+	
 	/**
 	 * Property used by the config to indicate the exact or 
 	 * approximate size of a chunk. In bytes. 
 	 */
 	public static final String PROPERTY_SIZE = "size";
 	
+	/**
+	 * Initializes the chunker using a settings map. If a chunker is instantiated via 
+	 * the default constructor (e.g. by {@link #getInstance(String) getInstance()}), it must
+	 * be initialized using this method. The settings passed to the method depend on the
+	 * implementation of the chunker.
+	 * 
+	 * @param settings Chunker-specific settings, e.g. {@link #PROPERTY_SIZE}
+	 * @throws IllegalArgumentException If a required setting is missing or invalid
+	 */
+	public abstract void init(Map<String, String> settings);
+	
     /**
      * Opens the given file and creates enumeration of {@link Chunk}s. This method 
      * should not read the file into memory at once, but instead read and emit new 
@@ -51,6 +70,18 @@ public abstract class Chunker {
      * @throws IOException If any file exceptions occur
      */	
 	public abstract ChunkEnumeration createChunks(File file) throws IOException;
+	
+	/**
+	 * Creates an enumeration of {@link Chunk}s from the given input stream. Unlike 
+	 * {@link #createChunks(File) createChunks(File)}, this method is not bound to a file, 
+	 * so it can be used to chunk a region of a file (see {@link DeltaChunkEnumeration}). The file 
+	 * checksum of the last chunk only covers the bytes read from the input stream.
+	 * 
+	 * @param inputStream The input stream that is supposed to be chunked; it is closed by the enumeration
+	 * @return An enumeration of individual chunks, must be closed at the end of processing
+	 * @throws IOException If any file exceptions occur
+	 */
+	public abstract ChunkEnumeration createChunks(InputStream inputStream) throws IOException;
 			
 	/**
 	 * Returns a string representation of the chunker implementation.
@@ -64,6 +95,32 @@ public abstract class Chunker {
      */
     public abstract String getChecksumAlgorithm();
     
+    /**
+     * Instantiates a chunker by its name using the default constructor. After creating
+     * a new chunker, it must be initialized using the {@link #init(Map) init()} method. 
+     * 
+     * <p>The given type attribute is mapped to fully qualified class name (FQCN) of the form 
+     * <tt>org.syncany.chunk.XChunker</tt>, where <tt>X</tt> is the camel-cased type attribute.  
+     * 
+     * @param type Type/name of the chunker (corresponds to its camel case class name)
+     * @return Returns a new chunker, or <tt>null</tt> if the chunker cannot be found
+     */
+	public static Chunker getInstance(String type) {
+		String thisPackage = Chunker.class.getPackage().getName();
+		String camelCaseName = StringUtil.toCamelCase(type);
+		String fqClassName = thisPackage + "." + camelCaseName + Chunker.class.getSimpleName();
+
+		// Try to load!
+		try {
+			Class<?> clazz = Class.forName(fqClassName);
+			return (Chunker) clazz.newInstance();
+		}
+		catch (Exception ex) {
+			logger.log(Level.INFO, "Could not find chunker FQCN " + fqClassName, ex);
+			return null;
+		}
+	}
+    
     /**
      * The chunk enumeration is implemented by the actual chunkers and emits a new
      * chunk when {@link ChunkEnumeration#nextElement() nextElement()} is called. When no more 
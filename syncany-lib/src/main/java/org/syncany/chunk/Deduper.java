@@ -24,6 +24,14 @@ import java.util.List;
 
 import org.syncany.chunk.Chunker.ChunkEnumeration;
 import org.syncany.database.MultiChunkEntry.MultiChunkId;
+import org.syncany.metrics.Counter;
+import org.syncany.metrics.Histogram;
+import org.syncany.metrics.MetricRegistry;
+import org.syncany.metrics.Timer;
+import org.syncany.metrics.TraceEvent;
+import org.syncany.metrics.TraceEventType;
+import org.syncany.metrics.TraceEvents;
+import org.syncany.util.StringUtil;
 
 /**
  * The Deduper implements the core deduplication algorithm used by Syncany. 
@@ -34,7 +42,14 @@ import org.syncany.database.MultiChunkEntry.MultiChunkId;
  * using one or many {@link Transformer}s (can be chained). 
  * 
  * <p>This class does not maintain a chunk index itself. Instead, it calls a listener to
- * lookup a chunk, and skips further chunk processing if the chunk already exists. 
+ * lookup a chunk, and skips further chunk processing if the chunk already exists. If the
+ * listener knows the {@link ChunkLayout} of a file's previous content, the file is chunked 
+ * using a {@link DeltaChunkEnumeration}, so that unchanged chunks do not have to be created again.
+ * 
+ * <p>If a {@link MetricRegistry} is given, the time spent chunking, looking up chunks 
+ * and writing (i.e. transforming) multichunks is recorded, as well as the number 
+ * and size of new and duplicate chunks. Emitted chunks and closed multichunks
+ * are also reported as {@link TraceEvents trace events}.
  * 
  * <p>For a detailed description of the algorithm, please refer to chapter 5.3 of the thesis:
  * <i>"Minimizing remote storage usage and synchronization time using deduplication and
@@ -47,11 +62,17 @@ public class Deduper {
 	private Chunker chunker;
 	private MultiChunker multiChunker;
 	private Transformer transformer;
+	private MetricRegistry metrics;
 
 	public Deduper(Chunker chunker, MultiChunker multiChunker, Transformer transformer) {		
+		this(chunker, multiChunker, transformer, MetricRegistry.disabled());
+	}
+	
+	public Deduper(Chunker chunker, MultiChunker multiChunker, Transformer transformer, MetricRegistry metrics) {		
 		this.chunker = chunker;
 		this.multiChunker = multiChunker;
 		this.transformer = transformer;
+		this.metrics = metrics;
 	}
 	
 	/**
@@ -67,6 +88,20 @@ public class Deduper {
 	public void deduplicate(List<File> files, DeduperListener listener) throws IOException {
 		Chunk chunk = null;
 		MultiChunk multiChunk = null;
+		File multiChunkFile = null;
+		
+		Timer chunkTimer = metrics.timer("deduper.chunk");
+		Timer lookupTimer = metrics.timer("deduper.lookup");
+		Timer writeTimer = metrics.timer("deduper.multichunk.write");
+		Timer closeTimer = metrics.timer("deduper.multichunk.close");
+		Histogram chunkSizeHistogram = metrics.histogram("deduper.chunk.size");
+		Counter filesCounter = metrics.counter("deduper.files");
+		Counter newChunksCounter = metrics.counter("deduper.chunks.new");
+		Counter newBytesCounter = metrics.counter("deduper.bytes.new");
+		Counter duplicateChunksCounter = metrics.counter("deduper.chunks.duplicate");
+		Counter duplicateBytesCounter = metrics.counter("deduper.bytes.duplicate");
+		Counter reusedChunksCounter = metrics.counter("deduper.chunks.reused");
+		Counter reusedBytesCounter = metrics.counter("deduper.bytes.reused");
 		
 		listener.onStart(files.size());
 		
@@ -85,14 +120,34 @@ public class Deduper {
 
 			if (dedupContents) {
 				// Create chunks from file
-				ChunkEnumeration chunksEnum = chunker.createChunks(file);
+				ChunkEnumeration chunksEnum = createChunks(file, listener);
+				filesCounter.inc();
+
+				Timer.Context chunkTimerContext = chunkTimer.time();
 
 				while (chunksEnum.hasMoreElements()) {
 					chunk = chunksEnum.nextElement();
+					chunkTimerContext.stop();
+					
+					chunkSizeHistogram.update(chunk.getSize());
+					
+					TraceEvent chunkEvent = TraceEvents.begin(TraceEventType.CHUNK_EMITTED);
+					Timer.Context lookupTimerContext = lookupTimer.time();
+					boolean isNewChunk = listener.onChunk(chunk);
+					lookupTimerContext.stop();
+					
+					if (chunkEvent.isEnabled()) {
+						chunkEvent.commit(StringUtil.toHex(chunk.getChecksum()), chunk.getSize(), !isNewChunk);
+					}
 
 					// old chunk
-					if (!listener.onChunk(chunk)) {
+					if (!isNewChunk) {
+						duplicateChunksCounter.inc();
+						duplicateBytesCounter.inc(chunk.getSize());
+						
 						listener.onFileAddChunk(file, chunk);
+						chunkTimerContext = chunkTimer.time();
+						
 						continue;
 					}
 
@@ -100,7 +155,8 @@ public class Deduper {
 					else {					
 						// - Check if multichunk full
 						if (multiChunk != null && multiChunk.isFull()) {
-							multiChunk.close();
+							closeMultiChunk(multiChunk, multiChunkFile, closeTimer);
+							
 							listener.onMultiChunkClose(multiChunk);
 
 							multiChunk = null;
@@ -109,7 +165,7 @@ public class Deduper {
 						// - Open new multichunk if non-existent
 						if (multiChunk == null) {
 							MultiChunkId newMultiChunkId = listener.createNewMultiChunkId(chunk);
-							File multiChunkFile = listener.getMultiChunkFile(newMultiChunkId);
+							multiChunkFile = listener.getMultiChunkFile(newMultiChunkId);
 							
 							multiChunk = multiChunker.createMultiChunk(newMultiChunkId, 
 								transformer.createOutputStream(new FileOutputStream(multiChunkFile)));
@@ -118,15 +174,27 @@ public class Deduper {
 						}
 
 						// - Add chunk data
-						multiChunk.write(chunk);						
+						Timer.Context writeTimerContext = writeTimer.time();
+						multiChunk.write(chunk);
+						writeTimerContext.stop();
+						
+						newChunksCounter.inc();
+						newBytesCounter.inc(chunk.getSize());
+						
 						listener.onMultiChunkWrite(multiChunk, chunk);						
 					}
 
-					listener.onFileAddChunk(file, chunk);										
+					listener.onFileAddChunk(file, chunk);
+					chunkTimerContext = chunkTimer.time();
 				}
 
 				// Closing file is necessary!
 				chunksEnum.close(); 
+				
+				if (chunksEnum instanceof DeltaChunkEnumeration) {
+					reusedChunksCounter.inc(((DeltaChunkEnumeration) chunksEnum).getReusedChunkCount());
+					reusedBytesCounter.inc(((DeltaChunkEnumeration) chunksEnum).getReusedBytes());
+				}
 			}
 
 			if (chunk != null) {			
@@ -143,12 +211,37 @@ public class Deduper {
 		// Close and add last multichunk
 		if (multiChunk != null) {
 			// Data
-			multiChunk.close();
+			closeMultiChunk(multiChunk, multiChunkFile, closeTimer);
+			
 			listener.onMultiChunkClose(multiChunk);
 
 			multiChunk = null;
 		}	
 		
 		listener.onFinish();
-	}	
+	}
+	
+	private ChunkEnumeration createChunks(File file, DeduperListener listener) throws IOException {
+		ChunkLayout previousChunkLayout = listener.getPreviousChunkLayout(file);
+		
+		if (previousChunkLayout != null && file.length() > 0) {
+			return new DeltaChunkEnumeration(chunker, file, previousChunkLayout);
+		}
+		else {
+			return chunker.createChunks(file);
+		}
+	}
+	
+	private void closeMultiChunk(MultiChunk multiChunk, File multiChunkFile, Timer closeTimer) throws IOException {
+		TraceEvent multiChunkEvent = TraceEvents.begin(TraceEventType.MULTICHUNK_CLOSED);
+		Timer.Context closeTimerContext = closeTimer.time();
+		
+		multiChunk.close();
+		
+		closeTimerContext.stop();
+		
+		if (multiChunkEvent.isEnabled()) {
+			multiChunkEvent.commit(multiChunk.getId().toString(), multiChunk.getSize(), multiChunkFile.length());
+		}
+	}
 }
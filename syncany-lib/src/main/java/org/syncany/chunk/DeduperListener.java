@@ -55,6 +55,18 @@ public interface DeduperListener {
 	 */
 	public boolean onFileStart(File file, int fileNumber);
 	
+	/**
+	 * Called by {@link Deduper} after {@link #onFileStart(File, int) onFileStart()} to retrieve the
+	 * {@link ChunkLayout} of the file's previous content. If a layout is returned, the file is chunked using
+	 * a {@link DeltaChunkEnumeration}, i.e. chunks of the previous content are reused if they are unchanged.
+	 * 
+	 * <p>The method is called for every file that is deduplicated.
+	 * 
+	 * @param file File for which the deduplication process is about to be started
+	 * @return Returns the chunk layout of the previous file content, or <tt>null</tt> to chunk the entire file
+	 */
+	public ChunkLayout getPreviousChunkLayout(File file);
+	
 	/**
 	 * Called by {@link Deduper} during the deduplication process for each chunk that was
 	 * found in the given file.
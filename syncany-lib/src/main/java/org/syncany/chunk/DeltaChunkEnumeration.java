@@ -0,0 +1,227 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.chunk;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.chunk.Chunker.ChunkEnumeration;
+import org.syncany.util.XxHash64;
+
+/**
+ * The delta chunk enumeration re-chunks a changed file based on the {@link ChunkLayout}
+ * of its previous content. It is meant for large files of which only small parts change, 
+ * e.g. virtual machine images or databases.
+ * 
+ * <p>Whenever the current position in the file corresponds to the start of a chunk in the
+ * previous layout, the chunk's data is read and its {@link XxHash64 xxHash64} checksum is compared
+ * to the one in the layout. If they match, the previous chunk is reused as is, i.e. without
+ * fingerprinting it or calculating its (cryptographic) chunk checksum. Only the regions in 
+ * between are chunked by the regular {@link Chunker}, starting at the end of the last reused chunk.
+ * As soon as one of the regular chunker's breakpoints coincides with the start of a previous chunk
+ * again, the enumeration tries to switch back to reusing chunks.
+ * 
+ * <p>A position corresponds to a previous chunk if the chunk starts at the same offset (e.g. for
+ * in-place modifications), or if the chunk starts at the offset shifted by the difference of the
+ * file sizes (e.g. for a single insertion or deletion). Since content-defined chunkers determine
+ * the same breakpoints no matter where they start, the result is typically identical to 
+ * chunking the entire file.
+ * 
+ * <p>Note that the entire file is still read once: The file checksum identifies the file content, 
+ * and is therefore always calculated over all bytes of the file. 
+ *  
+ * @see ChunkLayout
+ * @author agent <agent@local>
+ */
+public class DeltaChunkEnumeration implements ChunkEnumeration {
+	private static final Logger logger = Logger.getLogger(DeltaChunkEnumeration.class.getSimpleName());
+	
+	private Chunker chunker;
+	private File file;
+	private ChunkLayout previousChunkLayout;
+	
+	private RandomAccessFile randomAccessFile;
+	private long fileLength;
+	private long sizeDifference;
+	private long position;
+	private boolean closed;
+
+	private MessageDigest fileDigest;
+	private byte[] emptyChunkChecksum;
+	private ChunkEnumeration regularChunks;
+
+	private int reusedChunkCount;
+	private long reusedBytes;
+	
+	public DeltaChunkEnumeration(Chunker chunker, File file, ChunkLayout previousChunkLayout) throws IOException {
+		this.chunker = chunker;
+		this.file = file;
+		this.previousChunkLayout = previousChunkLayout;
+		
+		this.randomAccessFile = new RandomAccessFile(file, "r");
+		this.fileLength = randomAccessFile.length();
+		this.sizeDifference = fileLength - previousChunkLayout.getLength();
+		this.position = 0;
+		this.closed = false;
+		
+		this.regularChunks = null;
+		this.reusedChunkCount = 0;
+		this.reusedBytes = 0;
+		
+		try {
+			this.fileDigest = MessageDigest.getInstance(chunker.getChecksumAlgorithm());
+			this.emptyChunkChecksum = MessageDigest.getInstance(chunker.getChecksumAlgorithm()).digest();
+		}
+		catch (NoSuchAlgorithmException e) {
+			close();
+			throw new IOException("Cannot create file digest.", e);
+		}
+	}
+	
+	@Override
+	public boolean hasMoreElements() {
+		return !closed;
+	}
+
+	@Override
+	public Chunk nextElement() {
+		if (closed) {
+			return null;
+		}
+		
+		try {
+			// Try to reuse a chunk of the previous layout
+			Chunk previousChunk = readPreviousChunk();
+			
+			if (previousChunk != null) {
+				closeRegularChunks();
+				
+				reusedChunkCount++;
+				reusedBytes += previousChunk.getSize();
+				
+				return previousChunk;
+			}
+			
+			// If that fails, chunk the region using the regular chunker
+			if (regularChunks == null) {
+				logger.log(Level.FINEST, "- Chunking changed region of {0}, starting at offset {1}", new Object[] { file, position });
+				
+				FileInputStream fileInputStream = new FileInputStream(file);
+				fileInputStream.getChannel().position(position);
+				
+				regularChunks = chunker.createChunks(fileInputStream);
+			}
+			
+			Chunk regularChunk = (regularChunks.hasMoreElements()) ? regularChunks.nextElement() : null;
+			
+			if (regularChunk == null || regularChunk.getSize() == 0) {
+				return createChunk(emptyChunkChecksum, new byte[0], 0); // File has been truncated
+			}
+			
+			return createChunk(regularChunk.getChecksum(), regularChunk.getContent(), regularChunk.getSize());
+		}
+		catch (IOException e) {
+			logger.log(Level.SEVERE, "Error while retrieving next chunk.", e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Returns the chunk of the previous layout that starts at the current position (with or 
+	 * without shifting it by the size difference), if its data is unchanged. If no such chunk 
+	 * exists, <tt>null</tt> is returned.
+	 */
+	private Chunk readPreviousChunk() throws IOException {
+		long[] previousOffsets = (sizeDifference != 0) ? new long[] { position, position - sizeDifference } : new long[] { position };
+		
+		for (long previousOffset : previousOffsets) {
+			int previousChunkIndex = previousChunkLayout.indexOf(previousOffset);
+			
+			if (previousChunkIndex >= 0) {
+				int previousChunkSize = previousChunkLayout.getSize(previousChunkIndex);
+				
+				if (position + previousChunkSize <= fileLength) {
+					byte[] contents = new byte[previousChunkSize];
+					
+					randomAccessFile.seek(position);
+					randomAccessFile.readFully(contents);
+					
+					if (XxHash64.hash(contents, 0, previousChunkSize, 0) == previousChunkLayout.getFastChecksum(previousChunkIndex)) {
+						return createChunk(previousChunkLayout.getChecksum(previousChunkIndex), contents, previousChunkSize);
+					}
+				}
+			}
+		}
+		
+		return null;
+	}
+	
+	private Chunk createChunk(byte[] checksum, byte[] contents, int size) throws IOException {
+		fileDigest.update(contents, 0, size);
+		position += size;
+		
+		boolean isLastChunk = position >= fileLength || size == 0;
+		byte[] fileChecksum = null;
+		
+		if (isLastChunk) {
+			fileChecksum = fileDigest.digest();
+			
+			logger.log(Level.FINE, "- Delta chunking of {0}: {1} of {2} bytes reused ({3} chunks)", new Object[] { file, reusedBytes, position, reusedChunkCount });
+			close();
+		}
+		
+		return new Chunk(checksum, contents, size, fileChecksum);
+	}
+	
+	private void closeRegularChunks() {
+		if (regularChunks != null) {
+			regularChunks.close();
+			regularChunks = null;
+		}
+	}
+	
+	/**
+	 * Returns the number of chunks that were reused from the previous layout.
+	 */
+	public int getReusedChunkCount() {
+		return reusedChunkCount;
+	}
+	
+	/**
+	 * Returns the number of bytes that were reused from the previous layout, 
+	 * i.e. that did not have to be chunked again.
+	 */
+	public long getReusedBytes() {
+		return reusedBytes;
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		closeRegularChunks();
+		
+		try { randomAccessFile.close(); }
+		catch (Exception e) { /* Not necessary */ }
+	}
+}
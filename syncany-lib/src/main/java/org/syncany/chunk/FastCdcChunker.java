@@ -0,0 +1,372 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.chunk;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The FastCDC chunker is a content-based {@link Chunker} based on the FastCDC paper 
+ * of Wen Xia et al., 2016. Compared to the {@link TttdChunker}, it determines breakpoints
+ * considerably faster, while providing a similar deduplication ratio.
+ * 
+ * <p>The chunker uses three techniques to speed up chunking:
+ * 
+ * <ul>
+ *  <li><b>Gear hash:</b> Instead of a windowed rolling hash (such as Adler-32), the fingerprint
+ *      is a Gear hash, i.e. <tt>fp = (fp &lt;&lt; 1) + GEAR[b]</tt>, which only requires one shift,
+ *      one addition and one table lookup per byte. Because of the shift, the fingerprint only
+ *      depends on the last 64 bytes.</li>
+ *  <li><b>Cut-point skipping:</b> Since chunks must not be smaller than the minimum chunk size,
+ *      the first <tt>minSize</tt> bytes of a chunk are not hashed at all.</li>
+ *  <li><b>Normalized chunking:</b> Below the average (normal) chunk size, a stricter mask 
+ *      (with more bits) is used to test for breakpoints; above the average chunk size, a looser
+ *      mask (with fewer bits) is used. This narrows the chunk size distribution around the
+ *      average chunk size, and makes it less likely that chunks are cut at the maximum size.</li>
+ * </ul>
+ * 
+ * <p>The chunker can be selected in the repository config with the type {@link #TYPE}, using
+ * the average chunk size ({@link #PROPERTY_SIZE}, in bytes) and optionally the minimum and
+ * maximum chunk size and the normalization level as settings.
+ * 
+ * @see <a href="https://www.usenix.org/conference/atc16/technical-sessions/presentation/xia">FastCDC: a Fast and Efficient Content-Defined Chunking Approach for Data Deduplication</a>,
+ *      2016, Wen Xia, Yukun Zhou, Hong Jiang, Dan Feng, Yu Hua, Yuchong Hu, Yucheng Zhang, Qing Liu
+ * @author agent <agent@local>
+ */
+public class FastCdcChunker extends Chunker {
+	private static final Logger logger = Logger.getLogger(FastCdcChunker.class.getSimpleName());
+	
+	public static final String TYPE = "fast-cdc";
+	public static final String DEFAULT_DIGEST_ALG = "SHA1";
+	public static final int DEFAULT_NORMALIZATION_LEVEL = 2;
+	
+	public static final String PROPERTY_MIN_SIZE = "min";
+	public static final String PROPERTY_MAX_SIZE = "max";
+	public static final String PROPERTY_NORMALIZATION_LEVEL = "normalization";
+	
+	/**
+	 * Random values for the Gear hash, one for each byte value. The values must 
+	 * never change, because this would change the chunk boundaries (and hence 
+	 * break the deduplication with existing chunks).
+	 */
+	private static final long[] GEAR = createGearTable(0x53796e63616e7921L);
+
+	private int minSize;
+	private int normalSize;
+	private int maxSize;
+	private int normalizationLevel;
+	private long maskSmall;
+	private long maskLarge;
+	private String checksumAlgorithm;
+	
+	/**
+	 * Creates a new FastCDC chunker that must be initialized with {@link #init(Map) init()}.
+	 * This constructor is used when instantiating the chunker via {@link Chunker#getInstance(String)}.
+	 */
+	public FastCdcChunker() {
+		// Nothing.
+	}
+	
+	/**
+	 * Creates a new FastCDC chunker with the given average chunk size. The minimum
+	 * chunk size is a fourth of the average, the maximum chunk size is eight times 
+	 * the average chunk size (like in the paper). 
+	 * 
+	 * @param avgChunkSize Average (normal) chunk size in bytes
+	 */
+	public FastCdcChunker(int avgChunkSize) {
+		this(avgChunkSize / 4, avgChunkSize, avgChunkSize * 8, DEFAULT_NORMALIZATION_LEVEL, DEFAULT_DIGEST_ALG);
+	}
+	
+	/**
+	 * Creates a new FastCDC chunker. 
+	 * 
+	 * @param minSize Minimum chunk size in bytes; the first bytes of each chunk are not hashed 
+	 * @param avgChunkSize Average (normal) chunk size in bytes
+	 * @param maxSize Maximum chunk size in bytes; chunks are cut at this size if no breakpoint was found
+	 * @param normalizationLevel Number of bits added to/removed from the masks below/above the average chunk size
+	 * @param checksumAlgorithm Algorithm to calculate the chunk and file checksums (e.g. SHA1, MD5)
+	 */
+	public FastCdcChunker(int minSize, int avgChunkSize, int maxSize, int normalizationLevel, String checksumAlgorithm) {
+		initParameters(minSize, avgChunkSize, maxSize, normalizationLevel, checksumAlgorithm);
+	}
+	
+	/**
+	 * Initializes the chunker using a settings map. 
+	 * 
+	 * <p>Required setting is {@link #PROPERTY_SIZE} (average chunk size, in bytes). Optional settings are
+	 * {@link #PROPERTY_MIN_SIZE} and {@link #PROPERTY_MAX_SIZE} (in bytes), as well as the 
+	 * {@link #PROPERTY_NORMALIZATION_LEVEL}. 
+	 */
+	@Override
+	public void init(Map<String, String> settings) {
+		int avgChunkSize = parseIntSetting(settings, PROPERTY_SIZE, null);
+		int minSize = parseIntSetting(settings, PROPERTY_MIN_SIZE, avgChunkSize / 4);
+		int maxSize = parseIntSetting(settings, PROPERTY_MAX_SIZE, avgChunkSize * 8);
+		int normalizationLevel = parseIntSetting(settings, PROPERTY_NORMALIZATION_LEVEL, DEFAULT_NORMALIZATION_LEVEL);
+		
+		initParameters(minSize, avgChunkSize, maxSize, normalizationLevel, DEFAULT_DIGEST_ALG);
+	}
+	
+	private void initParameters(int minSize, int avgChunkSize, int maxSize, int normalizationLevel, String checksumAlgorithm) {
+		if (minSize <= 0 || minSize > avgChunkSize || avgChunkSize > maxSize) {
+			throw new IllegalArgumentException("Chunk sizes must satisfy 0 < min <= avg <= max; given: min = " + minSize + ", avg = " + avgChunkSize + ", max = " + maxSize);
+		}
+		
+		int avgChunkSizeBits = 31 - Integer.numberOfLeadingZeros(avgChunkSize); // = floor(log2(avg))
+		
+		if (normalizationLevel < 0 || normalizationLevel >= avgChunkSizeBits) {
+			throw new IllegalArgumentException("Invalid normalization level " + normalizationLevel + " for average chunk size " + avgChunkSize);
+		}
+		
+		this.minSize = minSize;
+		this.normalSize = avgChunkSize;
+		this.maxSize = maxSize;
+		this.normalizationLevel = normalizationLevel;
+		this.maskSmall = createMask(avgChunkSizeBits + normalizationLevel);
+		this.maskLarge = createMask(avgChunkSizeBits - normalizationLevel);
+		this.checksumAlgorithm = checksumAlgorithm;
+	}
+
+	@Override
+	public ChunkEnumeration createChunks(File file) throws IOException {
+		return createChunks(new FileInputStream(file));
+	}
+
+	@Override
+	public ChunkEnumeration createChunks(InputStream inputStream) throws IOException {
+		return new FastCdcEnumeration(inputStream);
+	}
+
+	@Override
+	public String getChecksumAlgorithm() {
+		return checksumAlgorithm;
+	}
+
+	@Override
+	public String toString() {
+		return "FastCDC-" + minSize + "-" + normalSize + "-" + maxSize + "-" + normalizationLevel + "-" + checksumAlgorithm;
+	}
+	
+	/**
+	 * Determines the next breakpoint in the given buffer, i.e. the size of the next chunk. 
+	 * The buffer must contain at least <tt>maxSize</tt> bytes, unless the end of the file 
+	 * has been reached. 
+	 */
+	int findBreakpoint(byte[] buffer, int length) {
+		if (length <= minSize) {
+			return length;
+		}
+		
+		int maxLength = Math.min(length, maxSize);
+		int normalLength = Math.min(maxLength, normalSize);
+		
+		long fingerprint = 0;
+		int i = minSize;
+		
+		for (; i < normalLength; i++) {
+			fingerprint = (fingerprint << 1) + GEAR[buffer[i] & 0xff];
+			
+			if ((fingerprint & maskSmall) == 0) {
+				return i + 1;
+			}
+		}
+		
+		for (; i < maxLength; i++) {
+			fingerprint = (fingerprint << 1) + GEAR[buffer[i] & 0xff];
+			
+			if ((fingerprint & maskLarge) == 0) {
+				return i + 1;
+			}
+		}
+		
+		return maxLength;
+	}
+	
+	/**
+	 * Creates a mask with the given number of bits, spread over the upper 48 bits 
+	 * of the fingerprint. The upper bits depend on more input bytes than the lower
+	 * bits, because the Gear hash shifts the fingerprint to the left for each byte.  
+	 */
+	private static long createMask(int bits) {
+		long mask = 0;
+		int spacing = Math.max(1, 48 / bits);
+		
+		for (int i = 0; i < bits; i++) {
+			mask |= 1L << (63 - i * spacing);
+		}
+		
+		return mask;
+	}
+	
+	/**
+	 * Creates the Gear table using the SplitMix64 generator. The generator is implemented 
+	 * here (rather than using {@link java.util.Random}) to make the table independent from
+	 * the JDK implementation.
+	 */
+	private static long[] createGearTable(long seed) {
+		long[] gearTable = new long[256];
+		long state = seed;
+		
+		for (int i = 0; i < gearTable.length; i++) {
+			state += 0x9e3779b97f4a7c15L;
+			
+			long value = state;
+			value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+			value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+			
+			gearTable[i] = value ^ (value >>> 31);
+		}
+		
+		return gearTable;
+	}
+	
+	private static int parseIntSetting(Map<String, String> settings, String property, Integer defaultValue) {
+		String value = settings.get(property);
+		
+		if (value == null) {
+			if (defaultValue == null) {
+				throw new IllegalArgumentException(String.format("Property %s must not be null.", property));
+			}
+			
+			return defaultValue;
+		}
+		
+		try {
+			return Integer.parseInt(value);
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format("Property %s could not be parsed as Integer.", property), e);
+		}
+	}
+	
+	public class FastCdcEnumeration implements ChunkEnumeration {
+		private InputStream in;
+		private boolean eof;
+		private boolean closed;
+		
+		private byte[] buffer;
+		private int bufferLength;
+		
+		private MessageDigest chunkDigest;
+		private MessageDigest fileDigest;
+		
+		public FastCdcEnumeration(InputStream in) {
+			this.in = in;
+			this.eof = false;
+			this.closed = false;
+			
+			this.buffer = new byte[maxSize];
+			this.bufferLength = 0;
+			
+			try {
+				this.chunkDigest = MessageDigest.getInstance(checksumAlgorithm);
+				this.fileDigest = MessageDigest.getInstance(checksumAlgorithm);
+			}
+			catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public boolean hasMoreElements() {
+			if (closed) {
+				return false;
+			}
+			
+			try {
+				fillBuffer();
+				return bufferLength > 0;
+			}
+			catch (IOException e) {
+				logger.log(Level.WARNING, "Error while reading from file input stream.", e);
+				return false;
+			}
+		}
+
+		@Override
+		public Chunk nextElement() {
+			if (closed) {
+				return null;
+			}
+			
+			try {
+				fillBuffer();
+				
+				if (bufferLength == 0) {
+					return null;
+				}
+				
+				int chunkSize = findBreakpoint(buffer, bufferLength);
+				
+				// Copy the chunk contents, and move the remaining bytes to the front of the (reused) buffer
+				byte[] chunkContents = new byte[chunkSize];
+				System.arraycopy(buffer, 0, chunkContents, 0, chunkSize);
+				
+				bufferLength = bufferLength - chunkSize;
+				System.arraycopy(buffer, chunkSize, buffer, 0, bufferLength);
+				
+				// Checksums
+				chunkDigest.reset();
+				chunkDigest.update(chunkContents, 0, chunkSize);
+				
+				byte[] chunkChecksum = chunkDigest.digest();
+				byte[] fileChecksum = null;
+				
+				if (eof && bufferLength == 0) {
+					fileChecksum = fileDigest.digest();
+					close();
+				}
+				
+				return new Chunk(chunkChecksum, chunkContents, chunkSize, fileChecksum);
+			}
+			catch (IOException e) {
+				logger.log(Level.SEVERE, "Error while retrieving next chunk.", e);
+				return null;
+			}
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+			
+			try { in.close(); }
+			catch (Exception e) { /* Not necessary */ }
+		}
+		
+		private void fillBuffer() throws IOException {
+			while (!eof && bufferLength < buffer.length) {
+				int read = in.read(buffer, bufferLength, buffer.length - bufferLength);
+				
+				if (read == -1) {
+					eof = true;
+				}
+				else {
+					fileDigest.update(buffer, bufferLength, read);
+					bufferLength += read;
+				}
+			}
+		}
+	}
+}
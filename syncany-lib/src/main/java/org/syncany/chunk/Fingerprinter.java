@@ -28,6 +28,10 @@ import java.security.NoSuchAlgorithmException;
  * should rely on a rolling checksum algorithm (also: rolling hash) to reach optimal
  * performance.
  * 
+ * <p>Fingerprinters are instantiated by their name using {@link #getInstance(String)}. 
+ * Available implementations are {@link Adler32Fingerprinter Adler32}, {@link RabinFingerprinter Rabin}
+ * and {@link BuzhashFingerprinter Buzhash}.
+ * 
  * @see <a href="http://en.wikipedia.org/wiki/Rolling_hash">http://en.wikipedia.org/wiki/Rolling_hash</a>
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
@@ -22,6 +22,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.MessageDigest;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -47,6 +48,14 @@ public class FixedChunker extends Chunker {
     private int chunkSize;   
     private String checksumAlgorithm;
     
+    /**
+     * Creates a new fixed offset chunker that must be initialized with {@link #init(Map) init()}.
+     * This constructor is used when instantiating the chunker via {@link Chunker#getInstance(String)}.
+     */
+    public FixedChunker() {
+    	this.checksumAlgorithm = DEFAULT_DIGEST_ALG;
+    }
+    
     /**
      * Creates a new fixed offset chunker with the default file/chunk 
      * checksum algorithm SHA1.
@@ -67,10 +76,35 @@ public class FixedChunker extends Chunker {
         this.chunkSize = chunkSize;        
         this.checksumAlgorithm = checksumAlgorithm;        
     }
+    
+    /**
+     * Initializes the chunker using a settings map. Required setting is 
+     * {@link #PROPERTY_SIZE} (chunk size, in bytes).
+     */
+    @Override
+    public void init(Map<String, String> settings) {
+    	String size = settings.get(PROPERTY_SIZE);
+    	
+    	if (size == null) {
+    		throw new IllegalArgumentException(String.format("Property %s must not be null.", PROPERTY_SIZE));
+    	}
+    	
+    	try {
+    		this.chunkSize = Integer.parseInt(size);
+    	}
+    	catch (NumberFormatException e) {
+    		throw new IllegalArgumentException(String.format("Property %s could not be parsed as Integer.", PROPERTY_SIZE), e);
+    	}
+    }
   
     @Override
     public ChunkEnumeration createChunks(File file) throws IOException {
-    	return new FixedChunkEnumeration(new FileInputStream(file));
+    	return createChunks(new FileInputStream(file));
+    }
+    
+    @Override
+    public ChunkEnumeration createChunks(InputStream inputStream) throws IOException {
+    	return new FixedChunkEnumeration(inputStream);
     }
     
 	@Override
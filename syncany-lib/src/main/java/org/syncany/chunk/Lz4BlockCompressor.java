@@ -0,0 +1,242 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.chunk;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Fast, pure-Java implementation of the LZ4 block compression format. It trades
+ * compression ratio for speed: compared to deflate, it typically compresses several
+ * times faster and decompresses even faster, but produces larger output.
+ *
+ * <p>A block is a sequence of literal runs and back-references (with a maximum
+ * offset of 64 KB), exactly as described in the LZ4 block format specification. There
+ * is no framing or checksum; the caller must store the compressed and uncompressed
+ * length of each block (see {@link Lz4BlockOutputStream}).
+ *
+ * <p>Instances of this class keep a hash table between calls to avoid re-allocating
+ * it for each block. They are hence not thread-safe.
+ *
+ * @author agent <agent@local>
+ */
+public class Lz4BlockCompressor {
+	private static final int MIN_MATCH = 4;
+	private static final int LAST_LITERALS = 5; // The last 5 bytes of a block are always literals
+	private static final int MF_LIMIT = 12; // The last match must start at least 12 bytes before the end
+	private static final int MAX_OFFSET = 65535;
+	private static final int HASH_LOG = 14;
+	private static final int SKIP_STRENGTH = 6; // Step size grows by one every 64 failed searches
+	private static final int RUN_MASK = 0x0f;
+
+	private int[] hashTable;
+
+	public Lz4BlockCompressor() {
+		this.hashTable = new int[1 << HASH_LOG];
+	}
+
+	/**
+	 * Returns the maximum length of a compressed block for
+	 * an input of the given length (i.e. for incompressible data).
+	 */
+	public static int maxCompressedLength(int length) {
+		return length + length / 255 + 16;
+	}
+
+	/**
+	 * Compresses the given input block into the destination array. The destination
+	 * array must have at least {@link #maxCompressedLength(int)} bytes left.
+	 *
+	 * @return Returns the length of the compressed block
+	 */
+	public int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff) {
+		int srcEnd = srcOff + srcLen;
+		int matchLimit = srcEnd - LAST_LITERALS;
+		int mfLimit = srcEnd - MF_LIMIT;
+
+		int anchor = srcOff;
+		int ip = srcOff;
+		int op = destOff;
+
+		if (srcLen > MF_LIMIT) {
+			Arrays.fill(hashTable, -1);
+
+			int searchCount = 1 << SKIP_STRENGTH;
+
+			while (ip < mfLimit) {
+				int sequence = readInt(src, ip);
+				int hash = hash(sequence);
+				int ref = hashTable[hash];
+
+				hashTable[hash] = ip;
+
+				if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+					ip += searchCount++ >>> SKIP_STRENGTH;
+					continue;
+				}
+
+				// Extend match backwards (into the pending literals) and forwards
+				while (ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1]) {
+					ip--;
+					ref--;
+				}
+
+				int matchLength = MIN_MATCH;
+
+				while (ip + matchLength < matchLimit && src[ref + matchLength] == src[ip + matchLength]) {
+					matchLength++;
+				}
+
+				op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength, dest, op);
+
+				ip += matchLength;
+				anchor = ip;
+				searchCount = 1 << SKIP_STRENGTH;
+			}
+		}
+
+		return writeLastLiterals(src, anchor, srcEnd - anchor, dest, op) - destOff;
+	}
+
+	/**
+	 * Decompresses the given compressed block into the destination array.
+	 *
+	 * @return Returns the length of the decompressed data
+	 * @throws IOException If the compressed block is corrupt or does not fit into the destination array
+	 */
+	public static int decompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int destLen) throws IOException {
+		int srcEnd = srcOff + srcLen;
+		int destEnd = destOff + destLen;
+
+		int ip = srcOff;
+		int op = destOff;
+
+		try {
+			while (ip < srcEnd) {
+				int token = src[ip++] & 0xff;
+
+				// Literals
+				int literalLength = token >>> 4;
+
+				if (literalLength == RUN_MASK) {
+					int lengthByte;
+
+					do {
+						lengthByte = src[ip++] & 0xff;
+						literalLength += lengthByte;
+					} while (lengthByte == 255);
+				}
+
+				if (literalLength > srcEnd - ip || literalLength > destEnd - op) {
+					throw new IOException("Corrupt LZ4 block: literals exceed block.");
+				}
+
+				System.arraycopy(src, ip, dest, op, literalLength);
+
+				ip += literalLength;
+				op += literalLength;
+
+				if (ip == srcEnd) {
+					break; // Last sequence has no match
+				}
+
+				// Match
+				int offset = (src[ip++] & 0xff) | ((src[ip++] & 0xff) << 8);
+				int matchLength = token & RUN_MASK;
+
+				if (matchLength == RUN_MASK) {
+					int lengthByte;
+
+					do {
+						lengthByte = src[ip++] & 0xff;
+						matchLength += lengthByte;
+					} while (lengthByte == 255);
+				}
+
+				matchLength += MIN_MATCH;
+
+				if (offset == 0 || offset > op - destOff || matchLength > destEnd - op) {
+					throw new IOException("Corrupt LZ4 block: invalid match offset " + offset + " or length " + matchLength);
+				}
+
+				// Byte-wise copy, because source and destination may overlap
+				int ref = op - offset;
+
+				for (int i = 0; i < matchLength; i++) {
+					dest[op++] = dest[ref++];
+				}
+			}
+		}
+		catch (ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Corrupt LZ4 block: unexpected end of block.", e);
+		}
+
+		return op - destOff;
+	}
+
+	private int writeSequence(byte[] src, int literalOff, int literalLength, int offset, int matchLength, byte[] dest, int op) {
+		int tokenOp = op++;
+		int matchLengthCode = matchLength - MIN_MATCH;
+		int token = (Math.min(literalLength, RUN_MASK) << 4) | Math.min(matchLengthCode, RUN_MASK);
+
+		dest[tokenOp] = (byte) token;
+
+		op = writeLength(literalLength, dest, op);
+		System.arraycopy(src, literalOff, dest, op, literalLength);
+		op += literalLength;
+
+		dest[op++] = (byte) offset;
+		dest[op++] = (byte) (offset >>> 8);
+
+		return writeLength(matchLengthCode, dest, op);
+	}
+
+	private int writeLastLiterals(byte[] src, int literalOff, int literalLength, byte[] dest, int op) {
+		dest[op++] = (byte) (Math.min(literalLength, RUN_MASK) << 4);
+		op = writeLength(literalLength, dest, op);
+
+		System.arraycopy(src, literalOff, dest, op, literalLength);
+		return op + literalLength;
+	}
+
+	/**
+	 * Writes the remainder of a length that did not fit into its token nibble.
+	 */
+	private int writeLength(int length, byte[] dest, int op) {
+		if (length >= RUN_MASK) {
+			int remainingLength = length - RUN_MASK;
+
+			while (remainingLength >= 255) {
+				dest[op++] = (byte) 255;
+				remainingLength -= 255;
+			}
+
+			dest[op++] = (byte) remainingLength;
+		}
+
+		return op;
+	}
+
+	private static int readInt(byte[] buffer, int offset) {
+		return (buffer[offset] & 0xff) | ((buffer[offset + 1] & 0xff) << 8) | ((buffer[offset + 2] & 0xff) << 16) | ((buffer[offset + 3] & 0xff) << 24);
+	}
+
+	private static int hash(int sequence) {
+		return (sequence * -1640531535) >>> (32 - HASH_LOG);
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.chunk;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream to read streams written by the {@link Lz4BlockOutputStream}.
+ *
+ * @author agent <agent@local>
+ */
+public class Lz4BlockInputStream extends InputStream {
+	private DataInputStream dataIn;
+	private byte[] block;
+	private byte[] compressedBlock;
+	private int blockOffset;
+	private int blockLength;
+	private boolean endOfStream;
+
+	public Lz4BlockInputStream(InputStream in) {
+		this.dataIn = new DataInputStream(in);
+		this.block = new byte[Lz4BlockOutputStream.BLOCK_SIZE];
+		this.compressedBlock = new byte[Lz4BlockOutputStream.BLOCK_SIZE];
+		this.blockOffset = 0;
+		this.blockLength = 0;
+		this.endOfStream = false;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (blockOffset == blockLength && !readBlock()) {
+			return -1;
+		}
+
+		return block[blockOffset++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+
+		if (blockOffset == blockLength && !readBlock()) {
+			return -1;
+		}
+
+		int readLength = Math.min(len, blockLength - blockOffset);
+		System.arraycopy(block, blockOffset, b, off, readLength);
+
+		blockOffset += readLength;
+		return readLength;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return blockLength - blockOffset;
+	}
+
+	@Override
+	public void close() throws IOException {
+		dataIn.close();
+	}
+
+	private boolean readBlock() throws IOException {
+		if (endOfStream) {
+			return false;
+		}
+
+		try {
+			int uncompressedLength = dataIn.readInt();
+
+			if (uncompressedLength == 0) {
+				endOfStream = true;
+				return false;
+			}
+
+			int compressedLength = dataIn.readInt();
+
+			if (uncompressedLength < 0 || uncompressedLength > block.length || compressedLength <= 0 || compressedLength > uncompressedLength) {
+				throw new IOException("Corrupt LZ4 stream: invalid block lengths " + uncompressedLength + "/" + compressedLength);
+			}
+
+			if (compressedLength == uncompressedLength) {
+				dataIn.readFully(block, 0, uncompressedLength); // Stored
+			}
+			else {
+				dataIn.readFully(compressedBlock, 0, compressedLength);
+
+				int decompressedLength = Lz4BlockCompressor.decompress(compressedBlock, 0, compressedLength, block, 0, uncompressedLength);
+
+				if (decompressedLength != uncompressedLength) {
+					throw new IOException("Corrupt LZ4 stream: expected " + uncompressedLength + " bytes, but block decompressed to " + decompressedLength);
+				}
+			}
+
+			blockOffset = 0;
+			blockLength = uncompressedLength;
+
+			return true;
+		}
+		catch (EOFException e) {
+			throw new IOException("Corrupt LZ4 stream: unexpected end of stream.", e);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.chunk;
+
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream that compresses its input with the {@link Lz4BlockCompressor} in
+ * independent blocks of up to {@link #BLOCK_SIZE} bytes. It can be read with the
+ * {@link Lz4BlockInputStream}.
+ *
+ * <p>Each block is written as its uncompressed length (4 bytes), its compressed length
+ * (4 bytes) and the compressed data. If a block cannot be compressed, it is stored as is;
+ * the compressed length is then equal to the uncompressed length. The stream is terminated
+ * by a block with an uncompressed length of zero.
+ *
+ * @author agent <agent@local>
+ */
+public class Lz4BlockOutputStream extends FilterOutputStream {
+	public static final int BLOCK_SIZE = 64 * 1024;
+
+	private DataOutputStream dataOut;
+	private Lz4BlockCompressor compressor;
+	private byte[] block;
+	private byte[] compressedBlock;
+	private int blockLength;
+	private boolean closed;
+
+	public Lz4BlockOutputStream(OutputStream out) {
+		super(out);
+
+		this.dataOut = new DataOutputStream(out);
+		this.compressor = new Lz4BlockCompressor();
+		this.block = new byte[BLOCK_SIZE];
+		this.compressedBlock = new byte[Lz4BlockCompressor.maxCompressedLength(BLOCK_SIZE)];
+		this.blockLength = 0;
+		this.closed = false;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (blockLength == BLOCK_SIZE) {
+			writeBlock();
+		}
+
+		block[blockLength++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (blockLength == BLOCK_SIZE) {
+				writeBlock();
+			}
+
+			int copyLength = Math.min(len, BLOCK_SIZE - blockLength);
+			System.arraycopy(b, off, block, blockLength, copyLength);
+
+			blockLength += copyLength;
+			off += copyLength;
+			len -= copyLength;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (blockLength > 0) {
+			writeBlock();
+		}
+
+		dataOut.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+
+			if (blockLength > 0) {
+				writeBlock();
+			}
+
+			dataOut.writeInt(0); // End of stream
+			dataOut.close();
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		int compressedLength = compressor.compress(block, 0, blockLength, compressedBlock, 0);
+
+		dataOut.writeInt(blockLength);
+
+		if (compressedLength < blockLength) {
+			dataOut.writeInt(compressedLength);
+			dataOut.write(compressedBlock, 0, compressedLength);
+		}
+		else {
+			dataOut.writeInt(blockLength); // Stored
+			dataOut.write(block, 0, blockLength);
+		}
+
+		blockLength = 0;
+	}
+}
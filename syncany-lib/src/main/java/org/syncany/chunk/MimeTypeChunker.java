@@ -19,13 +19,17 @@ package org.syncany.chunk;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * The mime type chunker uses the file mime type delegate the chunking to
@@ -43,6 +47,12 @@ import java.util.regex.Pattern;
 public class MimeTypeChunker extends Chunker {
     private static final Logger logger = Logger.getLogger(MimeTypeChunker.class.getSimpleName());   
 
+    /**
+     * Property to override the special chunker mime type patterns given in the 
+     * constructor. Multiple patterns are separated by commas.
+     */
+    public static final String PROPERTY_MIME_TYPES = "mimetypes";
+
 	private Chunker regularChunker;
 	private Chunker specialChunker;
 	private List<Pattern> specialChunkerMimeTypes;
@@ -71,6 +81,25 @@ public class MimeTypeChunker extends Chunker {
 		this.delegatedChunker = null;
 	}
 
+	/**
+	 * Initializes the chunker using a settings map. The regular and the special chunker
+	 * are given in the constructor, so the only supported setting is {@link #PROPERTY_MIME_TYPES}. 
+	 * If it is set, it replaces the mime type patterns given in the constructor.
+	 */
+	@Override
+	public void init(Map<String, String> settings) {
+		String mimeTypes = settings.get(PROPERTY_MIME_TYPES);
+		
+		if (mimeTypes != null) {
+			try {
+				specialChunkerMimeTypes = initMimeTypePatterns(Arrays.asList(mimeTypes.split(",")));
+			}
+			catch (PatternSyntaxException e) {
+				throw new IllegalArgumentException(String.format("Property %s contains an invalid pattern.", PROPERTY_MIME_TYPES), e);
+			}
+		}
+	}
+
 	@Override
 	public ChunkEnumeration createChunks(File file) throws IOException {
 		String mimeType = Files.probeContentType(Paths.get(file.getAbsolutePath()));
@@ -89,6 +118,16 @@ public class MimeTypeChunker extends Chunker {
 
 		return delegatedChunker.createChunks(file);
 	}
+	
+	/**
+	 * Creates chunks from the given input stream using the regular chunker,
+	 * because the mime type cannot be determined without a file.
+	 */
+	@Override
+	public ChunkEnumeration createChunks(InputStream inputStream) throws IOException {
+		delegatedChunker = regularChunker;
+		return delegatedChunker.createChunks(inputStream);
+	}
 
 	@Override
 	public String toString() {
@@ -104,7 +143,7 @@ public class MimeTypeChunker extends Chunker {
 		ArrayList<Pattern> patternList = new ArrayList<Pattern>();
 		
 		for (String mimeTypePatternStr : mimeTypePatternStrs) {
-			patternList.add(Pattern.compile(mimeTypePatternStr));
+			patternList.add(Pattern.compile(mimeTypePatternStr.trim()));
 		}
 		
 		return patternList;
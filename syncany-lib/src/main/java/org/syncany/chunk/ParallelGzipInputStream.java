@@ -0,0 +1,249 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.chunk;
+
+import static org.syncany.chunk.ParallelGzipOutputStream.EXTRA_SUBFIELD_ID1;
+import static org.syncany.chunk.ParallelGzipOutputStream.EXTRA_SUBFIELD_ID2;
+import static org.syncany.chunk.ParallelGzipOutputStream.HEADER_LENGTH;
+import static org.syncany.chunk.ParallelGzipOutputStream.TRAILER_LENGTH;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Input stream to read gzip streams written by the {@link ParallelGzipOutputStream}. The
+ * members of the stream are read sequentially from the underlying stream, but inflated on
+ * a thread pool. Up to <tt>maxPendingBlocks</tt> members are read ahead.
+ *
+ * <p>This stream can only read members with the member length extra field. Use
+ * {@link #isParallelGzipHeader(byte[])} to check whether a stream is supported.
+ *
+ * @author agent <agent@local>
+ */
+public class ParallelGzipInputStream extends InputStream {
+	private DataInputStream in;
+	private ExecutorService executor;
+	private int maxPendingBlocks;
+
+	private Queue<Future<byte[]>> pendingBlocks;
+	private byte[] block;
+	private int blockOffset;
+	private boolean endOfStream;
+
+	public ParallelGzipInputStream(InputStream in, ExecutorService executor, int maxPendingBlocks) {
+		this.in = new DataInputStream(in);
+		this.executor = executor;
+		this.maxPendingBlocks = Math.max(1, maxPendingBlocks);
+
+		this.pendingBlocks = new LinkedList<Future<byte[]>>();
+		this.block = new byte[0];
+		this.blockOffset = 0;
+		this.endOfStream = false;
+	}
+
+	/**
+	 * Returns whether the given bytes start with a gzip member header as written by the
+	 * {@link ParallelGzipOutputStream}. At least {@link ParallelGzipOutputStream#HEADER_LENGTH}
+	 * bytes must be given.
+	 */
+	public static boolean isParallelGzipHeader(byte[] header) {
+		return header.length >= HEADER_LENGTH
+				&& (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b
+				&& header[2] == 8 && header[3] == 0x04
+				&& readShortLE(header, 10) == 8
+				&& header[12] == EXTRA_SUBFIELD_ID1 && header[13] == EXTRA_SUBFIELD_ID2
+				&& readShortLE(header, 14) == 4;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (blockOffset == block.length && !nextBlock()) {
+			return -1;
+		}
+
+		return block[blockOffset++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+
+		if (blockOffset == block.length && !nextBlock()) {
+			return -1;
+		}
+
+		int readLength = Math.min(len, block.length - blockOffset);
+		System.arraycopy(block, blockOffset, b, off, readLength);
+
+		blockOffset += readLength;
+		return readLength;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return block.length - blockOffset;
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Future<byte[]> pendingBlock : pendingBlocks) {
+			pendingBlock.cancel(false);
+		}
+
+		pendingBlocks.clear();
+		in.close();
+	}
+
+	private boolean nextBlock() throws IOException {
+		// Skip empty members (e.g. the only member of an empty stream)
+		do {
+			while (!endOfStream && pendingBlocks.size() < maxPendingBlocks) {
+				submitNextMember();
+			}
+
+			if (pendingBlocks.isEmpty()) {
+				return false;
+			}
+
+			block = waitForBlock(pendingBlocks.poll());
+			blockOffset = 0;
+		} while (block.length == 0);
+
+		return true;
+	}
+
+	private byte[] waitForBlock(Future<byte[]> pendingBlock) throws IOException {
+		try {
+			return pendingBlock.get();
+		}
+		catch (InterruptedException e) {
+			throw new IOException("Interrupted while decompressing block.", e);
+		}
+		catch (ExecutionException e) {
+			throw (e.getCause() instanceof IOException) ? (IOException) e.getCause() : new IOException("Cannot decompress block.", e.getCause());
+		}
+	}
+
+	private void submitNextMember() throws IOException {
+		int firstByte = in.read();
+
+		if (firstByte == -1) {
+			endOfStream = true;
+			return;
+		}
+
+		try {
+			byte[] header = new byte[HEADER_LENGTH];
+			header[0] = (byte) firstByte;
+			in.readFully(header, 1, HEADER_LENGTH - 1);
+
+			if (!isParallelGzipHeader(header)) {
+				throw new IOException("Invalid gzip member header; member length extra field missing.");
+			}
+
+			int memberLength = readIntLE(header, 16);
+
+			if (memberLength < HEADER_LENGTH + TRAILER_LENGTH) {
+				throw new IOException("Invalid gzip member length " + memberLength);
+			}
+
+			final byte[] member = new byte[memberLength];
+			System.arraycopy(header, 0, member, 0, HEADER_LENGTH);
+			in.readFully(member, HEADER_LENGTH, memberLength - HEADER_LENGTH);
+
+			pendingBlocks.add(executor.submit(new Callable<byte[]>() {
+				@Override
+				public byte[] call() throws Exception {
+					return decompressMember(member);
+				}
+			}));
+		}
+		catch (EOFException e) {
+			throw new IOException("Unexpected end of gzip stream.", e);
+		}
+	}
+
+	private static byte[] decompressMember(byte[] member) throws IOException {
+		int deflateLength = member.length - HEADER_LENGTH - TRAILER_LENGTH;
+		int expectedCrc = readIntLE(member, member.length - TRAILER_LENGTH);
+		int uncompressedLength = readIntLE(member, member.length - 4);
+
+		if (uncompressedLength < 0 || uncompressedLength > ParallelGzipOutputStream.BLOCK_SIZE) {
+			throw new IOException("Invalid uncompressed gzip member length " + uncompressedLength);
+		}
+
+		byte[] block = new byte[uncompressedLength];
+		Inflater inflater = new Inflater(true);
+
+		try {
+			inflater.setInput(member, HEADER_LENGTH, deflateLength);
+
+			int inflatedLength = 0;
+
+			while (inflatedLength < uncompressedLength && !inflater.finished()) {
+				int inflated = inflater.inflate(block, inflatedLength, uncompressedLength - inflatedLength);
+
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+
+				inflatedLength += inflated;
+			}
+
+			if (inflatedLength != uncompressedLength) {
+				throw new IOException("Corrupt gzip member: expected " + uncompressedLength + " bytes, but got " + inflatedLength);
+			}
+		}
+		catch (DataFormatException e) {
+			throw new IOException("Corrupt gzip member.", e);
+		}
+		finally {
+			inflater.end();
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(block, 0, uncompressedLength);
+
+		if ((int) crc.getValue() != expectedCrc) {
+			throw new IOException("Corrupt gzip member: CRC mismatch.");
+		}
+
+		return block;
+	}
+
+	private static int readShortLE(byte[] buffer, int offset) {
+		return (buffer[offset] & 0xff) | ((buffer[offset + 1] & 0xff) << 8);
+	}
+
+	private static int readIntLE(byte[] buffer, int offset) {
+		return readShortLE(buffer, offset) | (readShortLE(buffer, offset + 2) << 16);
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.chunk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip output stream that compresses its input in independent blocks on a thread pool,
+ * similar to <tt>pigz</tt>. Each block of up to {@link #BLOCK_SIZE} bytes is written as a
+ * separate, complete gzip member. Concatenated gzip members are a valid gzip stream, but
+ * {@link java.util.zip.GZIPInputStream} may stop reading after a member if the underlying
+ * stream reports no available bytes. The output should hence only be read with the
+ * {@link ParallelGzipInputStream} (see {@link ParallelGzipTransformer}).
+ *
+ * <p>To allow reading the blocks in parallel as well, each member header carries an extra
+ * field (like in the BGZF format) that contains the total length of the member. The
+ * {@link ParallelGzipInputStream} uses this field to split the stream without inflating it.
+ *
+ * <p>At most <tt>maxPendingBlocks</tt> blocks are compressed concurrently; the writing
+ * thread blocks if this limit is reached. The blocks are written in their original order.
+ *
+ * @author agent <agent@local>
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+	public static final int BLOCK_SIZE = 256 * 1024;
+
+	static final int HEADER_LENGTH = 20;
+	static final int TRAILER_LENGTH = 8;
+	static final byte EXTRA_SUBFIELD_ID1 = 'S';
+	static final byte EXTRA_SUBFIELD_ID2 = 'Y';
+
+	private static final int GZIP_MAGIC = 0x8b1f;
+	private static final int GZIP_FLAG_EXTRA = 0x04;
+	private static final int GZIP_OS_UNKNOWN = 0xff;
+
+	private OutputStream out;
+	private ExecutorService executor;
+	private int level;
+	private int maxPendingBlocks;
+
+	private Queue<Future<byte[]>> pendingBlocks;
+	private byte[] block;
+	private int blockLength;
+	private boolean blocksWritten;
+	private boolean closed;
+
+	public ParallelGzipOutputStream(OutputStream out, ExecutorService executor, int level, int maxPendingBlocks) {
+		this.out = out;
+		this.executor = executor;
+		this.level = level;
+		this.maxPendingBlocks = Math.max(1, maxPendingBlocks);
+
+		this.pendingBlocks = new LinkedList<Future<byte[]>>();
+		this.block = new byte[BLOCK_SIZE];
+		this.blockLength = 0;
+		this.blocksWritten = false;
+		this.closed = false;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			int copyLength = Math.min(len, BLOCK_SIZE - blockLength);
+			System.arraycopy(b, off, block, blockLength, copyLength);
+
+			blockLength += copyLength;
+			off += copyLength;
+			len -= copyLength;
+
+			if (blockLength == BLOCK_SIZE) {
+				submitBlock();
+			}
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		// Only complete blocks are compressed; flushing the partial block would create small members
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+
+		try {
+			if (blockLength > 0 || !blocksWritten) {
+				submitBlock(); // Always write at least one member
+			}
+
+			while (!pendingBlocks.isEmpty()) {
+				writeNextBlock();
+			}
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private void submitBlock() throws IOException {
+		final byte[] uncompressedBlock = block;
+		final int uncompressedLength = blockLength;
+
+		pendingBlocks.add(executor.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws Exception {
+				return compressMember(uncompressedBlock, uncompressedLength, level);
+			}
+		}));
+
+		block = new byte[BLOCK_SIZE];
+		blockLength = 0;
+		blocksWritten = true;
+
+		while (pendingBlocks.size() >= maxPendingBlocks) {
+			writeNextBlock();
+		}
+	}
+
+	private void writeNextBlock() throws IOException {
+		try {
+			out.write(pendingBlocks.poll().get());
+		}
+		catch (InterruptedException e) {
+			throw new IOException("Interrupted while compressing block.", e);
+		}
+		catch (ExecutionException e) {
+			throw new IOException("Cannot compress block.", e.getCause());
+		}
+	}
+
+	/**
+	 * Compresses the given block to a complete gzip member, including
+	 * the header (with the member length extra field) and trailer.
+	 */
+	static byte[] compressMember(byte[] block, int blockLength, int level) {
+		Deflater deflater = new Deflater(level, true);
+
+		try {
+			deflater.setInput(block, 0, blockLength);
+			deflater.finish();
+
+			byte[] member = new byte[HEADER_LENGTH + blockLength + blockLength / 1000 + 64 + TRAILER_LENGTH];
+			int memberLength = HEADER_LENGTH;
+
+			while (!deflater.finished()) {
+				if (memberLength == member.length - TRAILER_LENGTH) {
+					byte[] largerMember = new byte[member.length * 2];
+					System.arraycopy(member, 0, largerMember, 0, memberLength);
+
+					member = largerMember;
+				}
+
+				memberLength += deflater.deflate(member, memberLength, member.length - TRAILER_LENGTH - memberLength);
+			}
+
+			CRC32 crc = new CRC32();
+			crc.update(block, 0, blockLength);
+
+			writeIntLE((int) crc.getValue(), member, memberLength);
+			writeIntLE(blockLength, member, memberLength + 4);
+			memberLength += TRAILER_LENGTH;
+
+			writeHeader(member, memberLength);
+
+			byte[] exactMember = new byte[memberLength];
+			System.arraycopy(member, 0, exactMember, 0, memberLength);
+
+			return exactMember;
+		}
+		finally {
+			deflater.end();
+		}
+	}
+
+	private static void writeHeader(byte[] member, int memberLength) {
+		writeShortLE(GZIP_MAGIC, member, 0);
+		member[2] = Deflater.DEFLATED;
+		member[3] = GZIP_FLAG_EXTRA;
+		writeIntLE(0, member, 4); // Modification time
+		member[8] = 0; // Extra flags
+		member[9] = (byte) GZIP_OS_UNKNOWN;
+
+		writeShortLE(8, member, 10); // Extra field length (XLEN)
+		member[12] = EXTRA_SUBFIELD_ID1;
+		member[13] = EXTRA_SUBFIELD_ID2;
+		writeShortLE(4, member, 14); // Subfield length
+		writeIntLE(memberLength, member, 16);
+	}
+
+	private static void writeShortLE(int value, byte[] buffer, int offset) {
+		buffer[offset] = (byte) value;
+		buffer[offset + 1] = (byte) (value >>> 8);
+	}
+
+	private static void writeIntLE(int value, byte[] buffer, int offset) {
+		writeShortLE(value, buffer, offset);
+		writeShortLE(value >>> 16, buffer, offset + 2);
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.chunk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Implements a {@link Transformer} that compresses the output stream in independent
+ * blocks on a shared thread pool (see {@link ParallelGzipOutputStream}), and inflates
+ * these blocks in parallel when reading (see {@link ParallelGzipInputStream}).
+ *
+ * <p>The output consists of many concatenated gzip members. Although this is valid gzip,
+ * {@link GZIPInputStream} may silently stop after a member if the underlying stream
+ * reports no available bytes (as the cipher streams do). This transformer is therefore
+ * registered as its own type instead of being a setting of the {@link GzipTransformer}:
+ * Clients that do not know it fail with an unknown transformer instead of reading
+ * truncated data.
+ *
+ * <p>Input streams without the member length extra field (e.g. written by the
+ * {@link GzipTransformer}) are detected by their header and read sequentially.
+ *
+ * @author agent <agent@local>
+ */
+public class ParallelGzipTransformer extends Transformer {
+	public static final String TYPE = "parallel-gzip";
+
+	private static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+	private static final int MAX_PENDING_BLOCKS = 2 * THREAD_COUNT;
+	private static ExecutorService sharedExecutor;
+
+	private int level;
+
+	public ParallelGzipTransformer() {
+		this(Deflater.DEFAULT_COMPRESSION, null);
+	}
+
+	public ParallelGzipTransformer(Transformer nextTransformer) {
+		this(Deflater.DEFAULT_COMPRESSION, nextTransformer);
+	}
+
+	public ParallelGzipTransformer(int level, Transformer nextTransformer) {
+		super(nextTransformer);
+		this.level = level;
+	}
+
+	@Override
+	public void init(Map<String, String> settings) throws Exception {
+		// Nothing here
+	}
+
+	@Override
+	public OutputStream createOutputStream(OutputStream out) throws IOException {
+		if (nextTransformer != null) {
+			out = nextTransformer.createOutputStream(out);
+		}
+
+		return new ParallelGzipOutputStream(out, getSharedExecutor(), level, MAX_PENDING_BLOCKS);
+	}
+
+	@Override
+	public InputStream createInputStream(InputStream in) throws IOException {
+		if (nextTransformer != null) {
+			in = nextTransformer.createInputStream(in);
+		}
+
+		// Peek at the first header to detect streams written in parallel mode
+		PushbackInputStream pushbackInputStream = new PushbackInputStream(in, ParallelGzipOutputStream.HEADER_LENGTH);
+		byte[] header = new byte[ParallelGzipOutputStream.HEADER_LENGTH];
+		int headerLength = 0;
+		int read = 0;
+
+		while (headerLength < header.length && (read = pushbackInputStream.read(header, headerLength, header.length - headerLength)) != -1) {
+			headerLength += read;
+		}
+
+		pushbackInputStream.unread(header, 0, headerLength);
+
+		if (ParallelGzipInputStream.isParallelGzipHeader(header)) {
+			return new ParallelGzipInputStream(pushbackInputStream, getSharedExecutor(), MAX_PENDING_BLOCKS);
+		}
+		else {
+			return new GZIPInputStream(pushbackInputStream);
+		}
+	}
+
+	private static synchronized ExecutorService getSharedExecutor() {
+		if (sharedExecutor == null) {
+			final AtomicInteger threadNumber = new AtomicInteger(0);
+
+			sharedExecutor = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "GzipWorker-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+
+					return thread;
+				}
+			});
+		}
+
+		return sharedExecutor;
+	}
+
+	@Override
+	public String toString() {
+		return (nextTransformer == null) ? "ParallelGzip" : "ParallelGzip-" + nextTransformer;
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.chunk;
+
+/**
+ * Table-driven implementation of a Rabin fingerprint, i.e. a rolling polynomial hash over GF(2),
+ * as used by LBFS. The fingerprint of a window is the remainder of the window's bytes (interpreted
+ * as a polynomial) divided by an irreducible polynomial of degree 53.
+ * 
+ * <p>Two lookup tables make appending and removing a byte cheap: One table reduces the
+ * fingerprint after shifting in a new byte, the other one removes the contribution of the 
+ * byte that leaves the window. The tables only depend on the window size and are recomputed
+ * if {@link #check(byte[], int, int) check()} is called with a different window size.
+ * 
+ * <p>Unlike the {@link Adler32Fingerprinter}, the fingerprint is well-distributed even for
+ * low-entropy data. {@link #roll(byte)} does not allocate any objects.
+ * 
+ * @see <a href="http://pdos.csail.mit.edu/papers/lbfs:sosp01/lbfs.pdf">A Low-bandwidth Network File System</a>, 
+ *      2001, Athicha Muthitacharoen, Benjie Chen and David Mazieres
+ * @author agent <agent@local>
+ */
+public class RabinFingerprinter extends Fingerprinter {
+	private static final long POLYNOMIAL = 0x3DA3358B4DC173L; // Irreducible, degree 53 (like LBFS)
+	private static final int POLYNOMIAL_DEGREE = 53;
+	private static final int SHIFT = POLYNOMIAL_DEGREE - 8;
+	
+	private static final long[] APPEND_TABLE = createAppendTable();
+	
+	private long[] removeTable;
+	private byte[] window;
+	private int windowPos;
+	private long fingerprint;
+	
+	public RabinFingerprinter() {
+		this.window = new byte[0];
+		reset();
+	}
+
+	@Override
+	public int getValue() {
+		return (int) (fingerprint & 0x7fffffff);
+	}
+
+	@Override
+	public void reset() {
+		fingerprint = 0;
+		windowPos = 0;
+	}
+
+	@Override
+	public void roll(byte bt) {
+		int outByte = window[windowPos] & 0xff;
+		
+		window[windowPos] = bt;
+		windowPos = (windowPos + 1 == window.length) ? 0 : windowPos + 1;
+		
+		fingerprint = append(fingerprint ^ removeTable[outByte], bt & 0xff);
+	}
+
+	@Override
+	public void check(byte[] buf, int off, int len) {
+		if (window.length != len) {
+			window = new byte[len];
+			removeTable = createRemoveTable(len);
+		}
+		
+		System.arraycopy(buf, off, window, 0, len);
+		reset();
+		
+		for (int i = 0; i < len; i++) {
+			fingerprint = append(fingerprint, window[i] & 0xff);
+		}
+	}
+	
+	private static long append(long fingerprint, int bt) {
+		return ((fingerprint << 8) | bt) ^ APPEND_TABLE[(int) (fingerprint >>> SHIFT)];
+	}
+	
+	/**
+	 * Creates the table to reduce the fingerprint after a byte has been appended. Entry <i>j</i> 
+	 * contains both <tt>j &lt;&lt; 53</tt> (to clear the overflowing bits) and its remainder. 
+	 */
+	private static long[] createAppendTable() {
+		long[] appendTable = new long[256];
+		
+		for (int j = 0; j < appendTable.length; j++) {
+			long overflow = (long) j << POLYNOMIAL_DEGREE;
+			appendTable[j] = mod(overflow) | overflow;
+		}
+		
+		return appendTable;
+	}
+	
+	/**
+	 * Creates the table to remove a byte from a window of the given size, i.e.
+	 * entry <i>j</i> contains <tt>j * x^(8*(windowSize-1)) mod P</tt>.
+	 */
+	private static long[] createRemoveTable(int windowSize) {
+		long[] removeTable = new long[256];
+		long sizeShift = 1;
+		
+		for (int i = 1; i < windowSize; i++) {
+			sizeShift = append(sizeShift, 0);
+		}
+		
+		for (int j = 0; j < removeTable.length; j++) {
+			removeTable[j] = mod(multiply(j, sizeShift));
+		}
+		
+		return removeTable;
+	}
+	
+	/**
+	 * Carry-less multiplication of two polynomials; the result must not exceed 64 bits, 
+	 * which is the case for a byte times a polynomial of degree less than 53.
+	 */
+	private static long multiply(long a, long b) {
+		long result = 0;
+		
+		for (int i = 0; i < 8; i++) {
+			if ((a & (1L << i)) != 0) {
+				result ^= b << i;
+			}
+		}
+		
+		return result;
+	}
+	
+	private static long mod(long x) {
+		for (int degree = 63 - Long.numberOfLeadingZeros(x); degree >= POLYNOMIAL_DEGREE; degree = 63 - Long.numberOfLeadingZeros(x)) {
+			x ^= POLYNOMIAL << (degree - POLYNOMIAL_DEGREE);
+		}
+		
+		return x;
+	}
+
+	@Override
+	public String toString() {
+		return "Rabin";
+	}
+}
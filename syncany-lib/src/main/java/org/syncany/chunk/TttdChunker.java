@@ -22,6 +22,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.MessageDigest;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -57,6 +58,7 @@ import java.util.logging.Logger;
 public class TttdChunker extends Chunker {   
     private static final Logger logger = Logger.getLogger(TttdChunker.class.getSimpleName());   
 
+    public static final String TYPE = "tttd";
     public static final int DEFAULT_WINDOW_SIZE = 48; // like LBFS
     public static final String DEFAULT_DIGEST_ALG = "SHA1";
     public static final String DEFAULT_FINGERPRINT_ALG = "Adler32";
@@ -70,6 +72,14 @@ public class TttdChunker extends Chunker {
     private String fingerprintAlgorithm;
     private String name;   
     
+    /**
+     * Creates a new TTTD chunker that must be initialized with {@link #init(Map) init()}.
+     * This constructor is used when instantiating the chunker via {@link Chunker#getInstance(String)}.
+     */
+    public TttdChunker() {
+    	// Nothing.
+    }
+    
     public TttdChunker(int Tmin, int Tmax, int D, int Ddash, int windowSize) {
         this(Tmin, Tmax, D, Ddash, windowSize, DEFAULT_DIGEST_ALG, DEFAULT_FINGERPRINT_ALG);
     }
@@ -87,12 +97,7 @@ public class TttdChunker extends Chunker {
      * LBFS: avg. chunk size = 1015 bytes --> Tmin = 460, Tmax = 2800, D = 540, Ddash = 270
      */
     public TttdChunker(int avgChunkSize, int windowSize, String digestAlg, String fingerprintAlg) {        
-        this(
-           /* Tmin */ (int) Math.round(460.0*avgChunkSize/1015.0), 
-           /* Tmax */ (int) Math.round(2800.0*avgChunkSize/1015.0),
-           /*   D  */ (int) Math.round(540.0*avgChunkSize/1015.0),
-           /*   D  */ (int) Math.round(270.0*avgChunkSize/1015.0), 
-           /* rest */ windowSize, digestAlg, fingerprintAlg, "TTTD-"+avgChunkSize+"-"+digestAlg+"-"+fingerprintAlg);              
+        initParameters(avgChunkSize, windowSize, digestAlg, fingerprintAlg);              
     }
     
     public TttdChunker(int Tmin, int Tmax, int D, int Ddash, int windowSize, String digestAlg, String fingerprintAlg) {
@@ -100,6 +105,40 @@ public class TttdChunker extends Chunker {
     }
     
     private TttdChunker(int Tmin, int Tmax, int D, int Ddash, int windowSize, String digestAlg, String fingerprintAlg, String name) {
+        initParameters(Tmin, Tmax, D, Ddash, windowSize, digestAlg, fingerprintAlg, name);
+    }
+    
+    /**
+     * Initializes the chunker using a settings map. Required setting is {@link #PROPERTY_SIZE}
+     * (average chunk size, in bytes). All other parameters are inferred from the average chunk size
+     * (see {@link #TttdChunker(int, int, String, String)}).
+     */
+    @Override
+    public void init(Map<String, String> settings) {
+    	String size = settings.get(PROPERTY_SIZE);
+    	
+    	if (size == null) {
+    		throw new IllegalArgumentException(String.format("Property %s must not be null.", PROPERTY_SIZE));
+    	}
+    	
+    	try {
+    		initParameters(Integer.parseInt(size), DEFAULT_WINDOW_SIZE, DEFAULT_DIGEST_ALG, DEFAULT_FINGERPRINT_ALG);
+    	}
+    	catch (NumberFormatException e) {
+    		throw new IllegalArgumentException(String.format("Property %s could not be parsed as Integer.", PROPERTY_SIZE), e);
+    	}
+    }
+    
+    private void initParameters(int avgChunkSize, int windowSize, String digestAlg, String fingerprintAlg) {
+        initParameters(
+           /* Tmin */ (int) Math.round(460.0*avgChunkSize/1015.0), 
+           /* Tmax */ (int) Math.round(2800.0*avgChunkSize/1015.0),
+           /*   D  */ (int) Math.round(540.0*avgChunkSize/1015.0),
+           /*   D  */ (int) Math.round(270.0*avgChunkSize/1015.0), 
+           /* rest */ windowSize, digestAlg, fingerprintAlg, "TTTD-"+avgChunkSize+"-"+digestAlg+"-"+fingerprintAlg);              
+    }
+    
+    private void initParameters(int Tmin, int Tmax, int D, int Ddash, int windowSize, String digestAlg, String fingerprintAlg, String name) {
         this.Tmin = Tmin;
         this.Tmax = Tmax;
         this.D = D;
@@ -116,7 +155,12 @@ public class TttdChunker extends Chunker {
    
     @Override
     public ChunkEnumeration createChunks(File file) throws IOException {
-        return new TTTDEnumeration(new FileInputStream(file));
+        return createChunks(new FileInputStream(file));
+    }    
+
+    @Override
+    public ChunkEnumeration createChunks(InputStream inputStream) throws IOException {
+        return new TTTDEnumeration(inputStream);
     }    
 
 	@Override
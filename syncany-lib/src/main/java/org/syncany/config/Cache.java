@@ -20,6 +20,7 @@ package org.syncany.config;
 import java.io.File;
 import java.io.IOException;
 
+import org.syncany.database.ChunkEntry.ChunkChecksum;
 import org.syncany.database.MultiChunkEntry.MultiChunkId;
 
 /**
@@ -34,6 +35,7 @@ public class Cache {
 	private static String FILE_FORMAT_MULTICHUNK_ENCRYPTED = "multichunk-%s";
 	private static String FILE_FORMAT_MULTICHUNK_DECRYPTED = "multichunk-%s-decrypted";
     private static String FILE_FORMAT_DATABASE_FILE_ENCRYPTED = "%s";
+    private static String FILE_FORMAT_CHUNK_LOCAL = "chunk-%s";
 
     private File cacheDir;
     
@@ -53,6 +55,14 @@ public class Cache {
 		return getFileInCache(FILE_FORMAT_DATABASE_FILE_ENCRYPTED, name);		
 	}    
 
+	/**
+	 * Returns the cache location of a single chunk that has been extracted from a
+	 * local file (instead of a downloaded multichunk). The file might not exist.
+	 */
+	public File getLocalChunkFile(ChunkChecksum chunkChecksum) {
+		return getFileInCache(FILE_FORMAT_CHUNK_LOCAL, chunkChecksum.toString());
+	}
+
 	/**
 	 * Deletes all files in the cache directory. This method should not be run 
 	 * while an operation is executed, but only while no operation is run. 
@@ -28,6 +28,7 @@ import org.syncany.chunk.NoTransformer;
 import org.syncany.chunk.Transformer;
 import org.syncany.config.to.ConfigTO;
 import org.syncany.config.to.RepoTO;
+import org.syncany.config.to.RepoTO.ChunkerTO;
 import org.syncany.config.to.RepoTO.MultiChunkerTO;
 import org.syncany.config.to.RepoTO.TransformerTO;
 import org.syncany.connection.plugins.Connection;
@@ -35,7 +36,10 @@ import org.syncany.connection.plugins.Plugin;
 import org.syncany.connection.plugins.Plugins;
 import org.syncany.connection.plugins.StorageException;
 import org.syncany.crypto.SaltedSecretKey;
+import org.syncany.database.ChunkLayoutCache;
 import org.syncany.database.DatabaseConnectionFactory;
+import org.syncany.database.FastChecksumCache;
+import org.syncany.metrics.MetricRegistry;
 import org.syncany.util.FileUtil;
 import org.syncany.util.StringUtil;
 
@@ -54,6 +58,7 @@ public class Config {
 	public static final String DIR_CACHE = "cache";
 	public static final String DIR_DATABASE = "db";
 	public static final String DIR_LOG = "logs";
+	public static final String DIR_JOURNAL = "journal";
 	public static final String FILE_CONFIG = "config.xml";
 	public static final String FILE_REPO = "syncany";
 	public static final String FILE_MASTER = "master";
@@ -67,16 +72,20 @@ public class Config {
 	private File cacheDir;
 	private File databaseDir;
 	private File logDir;
+	private File journalDir;
 	
 	private SaltedSecretKey masterKey;
 
 	private Cache cache;	
+	private FastChecksumCache fastChecksumCache;
+	private ChunkLayoutCache chunkLayoutCache;
 	private Plugin plugin;
 	private Connection connection;
     private Chunker chunker;
     private MultiChunker multiChunker;
     private Transformer transformer;
     private IgnoredFiles ignoredFiles;
+    private MetricRegistry metrics;
       
     static {    	    	
     	Logging.init();
@@ -91,6 +100,7 @@ public class Config {
 		initMasterKey(configTO);
 		initDirectories(aLocalDir);
 		initCache();
+		initMetrics();
 		initIgnoredFile();
 		initRepo(repoTO);
     	initConnection(configTO);  	
@@ -115,12 +125,19 @@ public class Config {
 		cacheDir = FileUtil.getCanonicalFile(new File(appDir+File.separator+DIR_CACHE));
 		databaseDir = FileUtil.getCanonicalFile(new File(appDir+File.separator+DIR_DATABASE));
 		logDir = FileUtil.getCanonicalFile(new File(appDir+File.separator+DIR_LOG));
+		journalDir = FileUtil.getCanonicalFile(new File(appDir+File.separator+DIR_JOURNAL));
 	}
 	
 	private void initCache() {
 		cache = new Cache(cacheDir);
+		fastChecksumCache = new FastChecksumCache(getFastChecksumCacheFile());
+		chunkLayoutCache = new ChunkLayoutCache(getChunkLayoutCacheDir());
 	}	
 	
+	private void initMetrics() {
+		metrics = MetricRegistry.disabled();
+	}
+	
 	private void initIgnoredFile() throws ConfigException {
 		File ignoreFile = new File(localDir, FILE_IGNORE);
 		ignoredFiles = new IgnoredFiles(ignoreFile);
@@ -143,11 +160,23 @@ public class Config {
 	}
 
 	private void initChunker(RepoTO repoTO) throws Exception {
-		// TODO [feature request] make chunking options configurable, something like this:
-		//  chunker = Chunker.getInstance(repoTO.getChunker().getType());
-		//  chunker.init(repoTO.getChunker().getSettings());
+		ChunkerTO chunkerTO = repoTO.getChunkerTO();
+		
+		// Note: The settings of the 'fixed' chunker have never been evaluated, so existing
+		//       repositories (with arbitrary 'size' settings) must keep using 512 KB chunks.
 		
-		chunker = new FixedChunker(512*1024, "SHA1");
+		if (chunkerTO == null || FixedChunker.TYPE.equals(chunkerTO.getType())) {
+			chunker = new FixedChunker(512*1024, "SHA1");
+		}
+		else {
+			chunker = Chunker.getInstance(chunkerTO.getType());
+			
+			if (chunker == null) {
+				throw new ConfigException("Invalid chunker type or settings: " + chunkerTO.getType());
+			}
+			
+			chunker.init(chunkerTO.getSettings());
+		}
 		
 		/*new MimeTypeChunker(
 			new FixedChunker(64*1024, "SHA1"),
@@ -303,6 +332,22 @@ public class Config {
 	public void setCache(Cache cache) {
 		this.cache = cache;
 	}
+	
+	public FastChecksumCache getFastChecksumCache() {
+		return fastChecksumCache;
+	}
+	
+	public ChunkLayoutCache getChunkLayoutCache() {
+		return chunkLayoutCache;
+	}
+	
+	public MetricRegistry getMetrics() {
+		return metrics;
+	}
+
+	public void setMetrics(MetricRegistry metrics) {
+		this.metrics = metrics;
+	}
 
 	public File getLocalDir() {
 		return localDir;
@@ -320,10 +365,26 @@ public class Config {
 		return new File(databaseDir+File.separator+"local.db");	
 	}	
 
+	public File getRemoteDatabaseListFile() {
+		return new File(databaseDir+File.separator+"remotedbs.list");	
+	}	
+
+	public File getFastChecksumCacheFile() {
+		return new File(databaseDir+File.separator+"fastchecksums.list");	
+	}	
+
+	public File getChunkLayoutCacheDir() {
+		return new File(databaseDir+File.separator+"chunklayouts");	
+	}	
+
 	public File getLogDir() {
 		return logDir;
 	}
 	
+	public File getJournalDir() {
+		return journalDir;
+	}
+	
 	public static class ConfigException extends Exception {
 		private static final long serialVersionUID = 4414807565457521855L;
 
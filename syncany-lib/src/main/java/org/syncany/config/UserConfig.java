@@ -48,6 +48,7 @@ public class UserConfig {
 	private static final String USER_PLUGINS_USERDATA_DIR_FORMAT = "plugins/userdata/%s";
 	private static final String USER_CONFIG_FILE = "userconfig.xml";
 	private static final String USER_TRUSTSTORE_FILE = "truststore.jks";
+	private static final String USER_MASTER_KEY_CACHE_DIR = "keycache";
 	
 	private static File userConfigDir;
 	private static File userPluginLibDir;
@@ -110,6 +111,10 @@ public class UserConfig {
 		return userTrustStoreFile;
 	}
 	
+	public static File getUserMasterKeyCacheDir() {
+		return new File(userConfigDir, USER_MASTER_KEY_CACHE_DIR);
+	}
+	
 	public static KeyStore getUserTrustStore() {
 		return userTrustStore;
 	}
@@ -0,0 +1,159 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.config.to;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.simpleframework.xml.Attribute;
+import org.simpleframework.xml.Element;
+import org.simpleframework.xml.ElementList;
+import org.simpleframework.xml.Namespace;
+import org.simpleframework.xml.Root;
+import org.simpleframework.xml.core.Persister;
+import org.syncany.config.Config.ConfigException;
+
+/**
+ * The transfer journal transfer object is used to store the list of files of
+ * an upload that has not been completed yet. It is stored locally in the
+ * application folder and written before the first file is uploaded.
+ * 
+ * <p>The journal references the local database version the upload is based on
+ * (<tt>previousVectorClock</tt>), and the database version the upload creates
+ * (<tt>newVectorClock</tt>). For each file, it stores the local file name (relative
+ * to the journal folder), the remote file name and type, and the size and checksum
+ * of the local file.
+ * 
+ * <p>It uses the Simple framework for XML serialization, and its corresponding
+ * annotation-based configuration.  
+ *  
+ * @see <a href="http://simple.sourceforge.net/">Simple framework</a> at simple.sourceforge.net
+ * @author agent <agent@local>
+ */
+@Root(name="journal")
+@Namespace(reference="http://syncany.org/journal/1")
+public class TransferJournalTO {
+	@Element(name="previousVectorClock", required=true)
+	private String previousVectorClock;
+	
+	@Element(name="newVectorClock", required=true)
+	private String newVectorClock;
+	
+	@ElementList(name="transfers", required=false, entry="transfer")
+	private ArrayList<TransferEntryTO> transfers;
+
+	public TransferJournalTO() {
+		this.transfers = new ArrayList<TransferEntryTO>();
+	}
+	
+	public String getPreviousVectorClock() {
+		return previousVectorClock;
+	}
+
+	public void setPreviousVectorClock(String previousVectorClock) {
+		this.previousVectorClock = previousVectorClock;
+	}
+
+	public String getNewVectorClock() {
+		return newVectorClock;
+	}
+
+	public void setNewVectorClock(String newVectorClock) {
+		this.newVectorClock = newVectorClock;
+	}
+
+	public List<TransferEntryTO> getTransfers() {
+		return transfers;
+	}
+
+	public static TransferJournalTO load(File file) throws ConfigException {
+		try {
+			return new Persister().read(TransferJournalTO.class, file);
+		}
+		catch (Exception e) {
+			throw new ConfigException("Transfer journal cannot be read or is invalid: " + file, e);
+		}
+	}
+	
+	public static void save(TransferJournalTO transferJournalTO, File file) throws ConfigException {
+		try {
+			new Persister().write(transferJournalTO, file);
+		}
+		catch (Exception e) {
+			throw new ConfigException("Cannot write transfer journal to file " + file, e);
+		}
+	}
+	
+	public static class TransferEntryTO {
+		@Attribute(name="localFile", required=true)
+		private String localFileName;
+		
+		@Attribute(name="remoteFile", required=true)
+		private String remoteFileName;
+		
+		@Attribute(name="type", required=true)
+		private String remoteFileType;
+		
+		@Attribute(name="size", required=true)
+		private long size;
+		
+		@Attribute(name="checksum", required=true)
+		private String checksum;
+
+		public String getLocalFileName() {
+			return localFileName;
+		}
+
+		public void setLocalFileName(String localFileName) {
+			this.localFileName = localFileName;
+		}
+
+		public String getRemoteFileName() {
+			return remoteFileName;
+		}
+
+		public void setRemoteFileName(String remoteFileName) {
+			this.remoteFileName = remoteFileName;
+		}
+
+		public String getRemoteFileType() {
+			return remoteFileType;
+		}
+
+		public void setRemoteFileType(String remoteFileType) {
+			this.remoteFileType = remoteFileType;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public void setSize(long size) {
+			this.size = size;
+		}
+
+		public String getChecksum() {
+			return checksum;
+		}
+
+		public void setChecksum(String checksum) {
+			this.checksum = checksum;
+		}
+	}
+}
@@ -19,6 +19,8 @@ package org.syncany.connection.plugins;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -26,6 +28,10 @@ import java.util.logging.Logger;
  * Implements basic functionality of a {@link TransferManager} which
  * can be implemented sub-classes.
  * 
+ * <p>The batch methods {@link #download(Map)}, {@link #upload(Map)} and 
+ * {@link #delete(Collection)} fall back to calling the respective single-file
+ * method for each file. Plugins that support bulk requests should override them.
+ * 
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public abstract class AbstractTransferManager implements TransferManager {
@@ -45,6 +51,40 @@ public abstract class AbstractTransferManager implements TransferManager {
 		return File.createTempFile(String.format("temp-%s-", name), ".tmp");
 	}
 
+	@Override
+	public void download(Map<? extends RemoteFile, File> remoteFiles) throws StorageException {
+		for (Map.Entry<? extends RemoteFile, File> remoteFileEntry : remoteFiles.entrySet()) {
+			download(remoteFileEntry.getKey(), remoteFileEntry.getValue());
+		}
+	}
+
+	@Override
+	public void upload(Map<File, ? extends RemoteFile> localFiles) throws StorageException {
+		for (Map.Entry<File, ? extends RemoteFile> localFileEntry : localFiles.entrySet()) {
+			upload(localFileEntry.getKey(), localFileEntry.getValue());
+		}
+	}
+
+	@Override
+	public boolean delete(Collection<? extends RemoteFile> remoteFiles) throws StorageException {
+		boolean allDeleted = true;
+		
+		for (RemoteFile remoteFile : remoteFiles) {
+			allDeleted &= delete(remoteFile);
+		}
+		
+		return allDeleted;
+	}
+
+	/**
+	 * Returns <tt>null</tt>, i.e. listings are never skipped. Plugins that
+	 * can cheaply detect changes to a listing should override this method.
+	 */
+	@Override
+	public String getChangeToken(Class<? extends RemoteFile> remoteFileClass) throws StorageException {
+		return null;
+	}
+
 	@Override
 	public StorageTestResult test(boolean testCreateTarget) {
 		logger.log(Level.INFO, "Performing storage test TM.test() ...");							
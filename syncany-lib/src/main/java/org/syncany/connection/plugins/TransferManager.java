@@ -18,6 +18,7 @@
 package org.syncany.connection.plugins;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.Map;
 
 /**
@@ -125,6 +126,51 @@ public interface TransferManager {
 	 */
 	public boolean delete(RemoteFile remoteFile) throws StorageException;
 
+	/**
+	 * Downloads multiple existing remote files to the local disk. The semantics for 
+	 * each file are the same as for {@link #download(RemoteFile, File)}. 
+	 * 
+	 * <p>Implementations may use this method to transfer the files in as few requests
+	 * as possible. If any of the files cannot be downloaded, a {@code StorageException}
+	 * is thrown; files that were downloaded before the failure may be kept.
+	 * 
+	 * @param remoteFiles Map of existing source files on the remote storage (keys) to 
+	 *        the not existing local files to which they are downloaded (values)
+	 * @throws StorageException If the connection fails due to no Internet connection,
+	 *         authentication errors, etc.
+	 */
+	public void download(Map<? extends RemoteFile, File> remoteFiles) throws StorageException;
+
+	/**
+	 * Uploads multiple existing local files to the online storage. The semantics for 
+	 * each file are the same as for {@link #upload(File, RemoteFile)}.
+	 * 
+	 * <p>Implementations may use this method to transfer the files in as few requests
+	 * as possible. If any of the files cannot be uploaded, a {@code StorageException}
+	 * is thrown; files that were uploaded before the failure may be kept.
+	 * 
+	 * @param localFiles Map of existing local files (keys) to the not existing 
+	 *        destination files on the remote storage (values)
+	 * @throws StorageException If the connection fails due to no Internet connection,
+	 *         authentication errors, etc.
+	 */
+	public void upload(Map<File, ? extends RemoteFile> localFiles) throws StorageException;
+
+	/**
+	 * Deletes multiple existing files from the remote storage permanently. The semantics 
+	 * for each file are the same as for {@link #delete(RemoteFile)}.
+	 * 
+	 * <p>Implementations may use this method to delete the files in as few requests
+	 * as possible. 
+	 * 
+	 * @param remoteFiles Existing remote files to be deleted.
+	 * @return Returns <tt>true</tt> if all files have been deleted (or did not exist), 
+	 *         <tt>false</tt> otherwise
+	 * @throws StorageException If the connection fails due to no Internet connection,
+	 *         authentication errors, etc
+	 */
+	public boolean delete(Collection<? extends RemoteFile> remoteFiles) throws StorageException;
+
 	/**
 	 * Retrieves a list of all files in the remote repository, filtered by
 	 * the type of the desired file, i.e. by a sub-class of {@link RemoteFile}.
@@ -137,6 +183,22 @@ public interface TransferManager {
 	 */
 	public <T extends RemoteFile> Map<String, T> list(Class<T> remoteFileClass) throws StorageException;
 
+	/**
+	 * Returns a token that identifies the current state of the listing of all files of the given 
+	 * type, i.e. the result of {@link #list(Class)}. If any file is added, removed or renamed, the
+	 * token must change. This allows callers to skip listing the remote files if the token
+	 * has not changed since the last call.
+	 * 
+	 * <p>Implementations that cannot reliably determine such a token (or cannot do so more
+	 * cheaply than listing the files) must return <tt>null</tt>.
+	 * 
+	 * @param remoteFileClass Filter class: <tt>RemoteFile</tt> or a sub-type thereof
+	 * @return Returns a change token for the listing, or <tt>null</tt> if no token can be determined
+	 * @throws StorageException If the connection fails due to no Internet connection,
+	 *         authentication errors, etc
+	 */
+	public String getChangeToken(Class<? extends RemoteFile> remoteFileClass) throws StorageException;
+
 	/**
 	 * Tests whether the repository parameters are valid. In particular, the method tests
 	 * whether a target (folder, bucket, etc.) exists or, if not, whether it can be created.
@@ -31,11 +31,22 @@ import org.syncany.connection.plugins.StorageException;
  * backend based on a local (or mounted network) folder. It can be used to
  * initialize/create a {@link LocalTransferManager} and is part of
  * the {@link LocalPlugin}.  
+ * 
+ * <p>Besides the mandatory <tt>path</tt> option, the connection understands two advanced
+ * settings that are not queried interactively, but can be given with <tt>--plugin-option</tt>:
+ * <tt>hardlinks=true</tt> makes downloads hard-link repository files instead of copying them
+ * (if both are on the same file system), and <tt>fsync=true</tt> makes uploads durable by
+ * syncing uploaded files to disk in batches.
  *  
  * @author Philipp C. Heckel
  */
 public class LocalConnection extends Connection {
+	public static final String OPTION_HARDLINKS = "hardlinks";
+	public static final String OPTION_FSYNC = "fsync";
+	
 	protected File repositoryPath;
+	protected boolean hardlinksEnabled;
+	protected boolean fsyncEnabled;
 
 	public File getRepositoryPath() {
 		return repositoryPath;
@@ -49,6 +60,24 @@ public class LocalConnection extends Connection {
 	public void init(Map<String, String> optionValues) throws StorageException {
 		getOptionSpecs().validate(optionValues);
 		this.repositoryPath = new File(optionValues.get("path"));
+		this.hardlinksEnabled = Boolean.parseBoolean(optionValues.get(OPTION_HARDLINKS));
+		this.fsyncEnabled = Boolean.parseBoolean(optionValues.get(OPTION_FSYNC));
+	}
+	
+	public boolean isHardlinksEnabled() {
+		return hardlinksEnabled;
+	}
+
+	public void setHardlinksEnabled(boolean hardlinksEnabled) {
+		this.hardlinksEnabled = hardlinksEnabled;
+	}
+
+	public boolean isFsyncEnabled() {
+		return fsyncEnabled;
+	}
+
+	public void setFsyncEnabled(boolean fsyncEnabled) {
+		this.fsyncEnabled = fsyncEnabled;
 	}
 
 	@Override
@@ -17,18 +17,33 @@
  */
 package org.syncany.connection.plugins.local;
 
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.apache.commons.io.FileUtils;
 import org.syncany.connection.plugins.AbstractTransferManager;
 import org.syncany.connection.plugins.DatabaseRemoteFile;
 import org.syncany.connection.plugins.MultiChunkRemoteFile;
@@ -55,14 +70,33 @@ import org.syncany.connection.plugins.TransferManager;
  * on a mounted remote device or network storage such as an NFS or a 
  * Samba/NetBIOS share.
  * 
+ * <p>Transfers avoid unnecessary copies: Files are copied with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel) 
+ * transferTo()} (which lets the kernel copy the data) to a temporary file next to the target file, 
+ * and then atomically renamed. If enabled in the {@link LocalConnection}, downloads are hard-linked 
+ * instead of copied, and uploaded files are synced to disk in batches of {@link #FSYNC_BATCH_SIZE}
+ * files (and on {@link #disconnect()}).
+ * 
+ * <p>The batch methods first copy all files to temporary files and then move them in place,
+ * so that a failing copy does not leave a partially transferred batch behind. Partially uploaded 
+ * temporary files are kept, so that uploading the same file again resumes where the last upload stopped.
+ * 
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class LocalTransferManager extends AbstractTransferManager {
 	private static final Logger logger = Logger.getLogger(LocalTransferManager.class.getSimpleName());
+	
+	public static final int FSYNC_BATCH_SIZE = 32;
+	public static final long CHANGE_TOKEN_MIN_AGE = 2000;
+	
+	private static final int RESUME_COMPARE_BUFFER_SIZE = 64*1024;
 
 	private File repoPath;
 	private File multichunksPath;
 	private File databasePath;
+	
+	private boolean hardlinksEnabled;
+	private boolean fsyncEnabled;
+	private List<File> unsyncedFiles;
 
 	public LocalTransferManager(LocalConnection connection) {
 		super(connection);
@@ -70,6 +104,10 @@ public class LocalTransferManager extends AbstractTransferManager {
 		this.repoPath = connection.getRepositoryPath().getAbsoluteFile(); // absolute file to get abs. path!
 		this.multichunksPath = new File(connection.getRepositoryPath().getAbsolutePath(), "multichunks");
 		this.databasePath = new File(connection.getRepositoryPath().getAbsolutePath(), "databases");
+		
+		this.hardlinksEnabled = connection.isHardlinksEnabled();
+		this.fsyncEnabled = connection.isFsyncEnabled();
+		this.unsyncedFiles = new ArrayList<File>();
 	}
 
 	@Override
@@ -81,7 +119,7 @@ public class LocalTransferManager extends AbstractTransferManager {
 
 	@Override
 	public void disconnect() throws StorageException {
-		// Nothing.
+		syncUploadedFiles();
 	}
 
 	@Override
@@ -107,24 +145,52 @@ public class LocalTransferManager extends AbstractTransferManager {
 	public void download(RemoteFile remoteFile, File localFile) throws StorageException {
 		connect();
 
-		File repoFile = getRemoteFile(remoteFile);
+		Map<RemoteFile, File> remoteFiles = new HashMap<RemoteFile, File>();
+		remoteFiles.put(remoteFile, localFile);
+		
+		downloadFiles(remoteFiles);
+	}
 
-		if (!repoFile.exists()) {
-			throw new StorageException("No such file in local repository: " + repoFile);
-		}
+	/**
+	 * Downloads all given files in one batch: All files are first copied (or linked) to 
+	 * temporary files, and only then moved to their target location. If any of the files 
+	 * cannot be copied, none of the target files are touched.
+	 */
+	@Override
+	public void download(Map<? extends RemoteFile, File> remoteFiles) throws StorageException {
+		connect();
+		downloadFiles(remoteFiles);
+	}
 
+	private void downloadFiles(Map<? extends RemoteFile, File> remoteFiles) throws StorageException {
+		Map<File, File> tempLocalFiles = new LinkedHashMap<File, File>();
+		
 		try {
-			File tempLocalFile = createTempFile("local-tm-download");
-			tempLocalFile.deleteOnExit();
-
-			copyLocalFile(repoFile, tempLocalFile);
-
-			localFile.delete();
-			FileUtils.moveFile(tempLocalFile, localFile);
-			tempLocalFile.delete();
+			for (Map.Entry<? extends RemoteFile, File> remoteFileEntry : remoteFiles.entrySet()) {
+				File repoFile = getRemoteFile(remoteFileEntry.getKey());
+				File localFile = remoteFileEntry.getValue();
+				File tempLocalFile = getTempFile(localFile);
+
+				if (!repoFile.exists()) {
+					throw new StorageException("No such file in local repository: " + repoFile);
+				}
+
+				try {
+					tempLocalFiles.put(tempLocalFile, localFile);
+					
+					if (!hardlinksEnabled || !linkLocalFile(repoFile, tempLocalFile)) {
+						copyLocalFile(repoFile, tempLocalFile);
+					}
+				}
+				catch (IOException ex) {
+					throw new StorageException("Unable to copy file " + repoFile + " from local repository to " + localFile, ex);
+				}
+			}
+			
+			moveTempFiles(tempLocalFiles);
 		}
-		catch (IOException ex) {
-			throw new StorageException("Unable to copy file " + repoFile + " from local repository to " + localFile, ex);
+		finally {
+			deleteTempFiles(tempLocalFiles);
 		}
 	}
 
@@ -132,39 +198,90 @@ public class LocalTransferManager extends AbstractTransferManager {
 	public void upload(File localFile, RemoteFile remoteFile) throws StorageException {
 		connect();
 
-		File repoFile = getRemoteFile(remoteFile);
-		File tempRepoFile = new File(getAbsoluteParentDirectory(repoFile) + File.separator + ".temp-" + repoFile.getName());
-
-		// Do not overwrite files with same size!
-		if (repoFile.exists() && repoFile.length() == localFile.length()) {
-			return;
+		Map<File, RemoteFile> localFiles = new HashMap<File, RemoteFile>();
+		localFiles.put(localFile, remoteFile);
+		
+		uploadFiles(localFiles);
+		
+		if (unsyncedFiles.size() >= FSYNC_BATCH_SIZE) {
+			syncUploadedFiles();
 		}
+	}
 
-		// No such local file
-		if (!localFile.exists()) {
-			throw new StorageException("No such file on local disk: " + localFile);
-		}
+	/**
+	 * Uploads all given files in one batch: All files are first copied to temporary files
+	 * in the repository, and only then moved to their target location. If any of the files 
+	 * cannot be copied, none of the target files are touched. If enabled, all files are
+	 * synced to disk at the end of the batch.
+	 */
+	@Override
+	public void upload(Map<File, ? extends RemoteFile> localFiles) throws StorageException {
+		connect();
 
-		try {
-			copyLocalFile(localFile, tempRepoFile);
-			FileUtils.moveFile(tempRepoFile, repoFile);
+		uploadFiles(localFiles);
+		syncUploadedFiles();
+	}
+
+	private void uploadFiles(Map<File, ? extends RemoteFile> localFiles) throws StorageException {
+		Map<File, File> tempRepoFiles = new LinkedHashMap<File, File>();
+
+		// Note: Temporary files are not deleted on failure, so that the upload can be resumed 
+		for (Map.Entry<File, ? extends RemoteFile> localFileEntry : localFiles.entrySet()) {
+			File localFile = localFileEntry.getKey();
+			File repoFile = getRemoteFile(localFileEntry.getValue());
+			File tempRepoFile = getTempFile(repoFile);
+
+			// Do not overwrite files with same size!
+			if (repoFile.exists() && repoFile.length() == localFile.length()) {
+				continue;
+			}
+
+			// No such local file
+			if (!localFile.exists()) {
+				throw new StorageException("No such file on local disk: " + localFile);
+			}
+
+			try {
+				tempRepoFiles.put(tempRepoFile, repoFile);
+				copyLocalFile(localFile, tempRepoFile, getResumePosition(localFile, tempRepoFile));
+			}
+			catch (IOException ex) {
+				throw new StorageException("Unable to copy file " + localFile + " to local repository " + repoFile, ex);
+			}
 		}
-		catch (IOException ex) {
-			throw new StorageException("Unable to copy file " + localFile + " to local repository " + repoFile, ex);
+		
+		List<File> uploadedRepoFiles = new ArrayList<File>(tempRepoFiles.values());
+		moveTempFiles(tempRepoFiles);
+		
+		if (fsyncEnabled) {
+			unsyncedFiles.addAll(uploadedRepoFiles);
 		}
 	}
 
 	@Override
 	public boolean delete(RemoteFile remoteFile) throws StorageException {
 		connect();
+		return deleteFiles(Arrays.asList(remoteFile));
+	}
 
-		File repoFile = getRemoteFile(remoteFile);
+	@Override
+	public boolean delete(Collection<? extends RemoteFile> remoteFiles) throws StorageException {
+		connect();
+		return deleteFiles(remoteFiles);
+	}
 
-		if (!repoFile.exists()) {
-			return true;
-		}
+	private boolean deleteFiles(Collection<? extends RemoteFile> remoteFiles) {
+		boolean allDeleted = true;
+		
+		for (RemoteFile remoteFile : remoteFiles) {
+			File repoFile = getRemoteFile(remoteFile);
 
-		return repoFile.delete();
+			if (repoFile.exists() && !repoFile.delete()) {
+				allDeleted = false;
+			}
+		}
+		
+		return allDeleted;
 	}
 
 	@Override
@@ -196,6 +313,37 @@ public class LocalTransferManager extends AbstractTransferManager {
 		return remoteFiles;
 	}
 
+	/**
+	 * Returns a change token based on the identity and the modification time of the folder 
+	 * that stores the given file type. Adding, removing or renaming a file changes the folder's
+	 * modification time.
+	 * 
+	 * <p>Because the modification time has a limited resolution on some file systems, a folder that 
+	 * has been modified less than {@link #CHANGE_TOKEN_MIN_AGE} milliseconds ago might still change 
+	 * without its modification time changing. In that case, no token is returned.
+	 */
+	@Override
+	public String getChangeToken(Class<? extends RemoteFile> remoteFileClass) throws StorageException {
+		connect();
+		
+		try {
+			Path remoteFilePath = getRemoteFilePath(remoteFileClass).toPath();
+			BasicFileAttributes attributes = Files.readAttributes(remoteFilePath, BasicFileAttributes.class);
+			
+			long lastModifiedNanos = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+			long lastModifiedAge = System.currentTimeMillis() - attributes.lastModifiedTime().toMillis();
+			
+			if (lastModifiedAge < CHANGE_TOKEN_MIN_AGE) {
+				return null;
+			}
+			
+			return remoteFilePath.toAbsolutePath() + ":" + attributes.fileKey() + ":" + lastModifiedNanos;
+		}
+		catch (IOException e) {
+			throw new StorageException("Unable to read modification time of local repository " + repoPath, e);
+		}
+	}
+
 	private File getRemoteFile(RemoteFile remoteFile) {
 		return new File(getRemoteFilePath(remoteFile.getClass()) + File.separator + remoteFile.getName());
 	}
@@ -213,18 +361,183 @@ public class LocalTransferManager extends AbstractTransferManager {
 	}
 
 	public void copyLocalFile(File src, File dst) throws IOException {
-		InputStream in = new FileInputStream(src);
-		OutputStream out = new FileOutputStream(dst);
-
-		byte[] buf = new byte[4096];
-
-		int len;
-		while ((len = in.read(buf)) > 0) {
-			out.write(buf, 0, len);
+		copyLocalFile(src, dst, 0);
+	}
+	
+	/**
+	 * Copies the source file to the destination file, starting at the given position. If 
+	 * the position is greater than zero, the destination file is appended to; it must 
+	 * contain exactly the first <tt>position</tt> bytes of the source file. 
+	 */
+	private void copyLocalFile(File src, File dst, long position) throws IOException {
+		FileInputStream in = new FileInputStream(src);
+		FileOutputStream out = new FileOutputStream(dst, position > 0);
+		
+		try {
+			FileChannel inChannel = in.getChannel();
+			FileChannel outChannel = out.getChannel();
+			
+			long size = inChannel.size();
+	
+			while (position < size) {
+				long transferred = inChannel.transferTo(position, size - position, outChannel);
+				
+				// Nothing transferred means end of file, i.e. the file shrunk while copying
+				if (transferred <= 0) {
+					throw new IOException("Unexpected end of file " + src + " at position " + position + ", expected size " + size);
+				}
+				
+				position += transferred;
+			}
+		}
+		finally {
+			in.close();
+			out.close();
+		}
+	}
+	
+	/**
+	 * Returns the position at which an interrupted upload of the given local file can be
+	 * resumed, i.e. the size of the existing temporary file, if it is a prefix of the local file. 
+	 * If there is no temporary file or it does not match the local file, <tt>0</tt> is returned. 
+	 */
+	private long getResumePosition(File localFile, File tempRepoFile) throws IOException {
+		long tempFileSize = tempRepoFile.exists() ? tempRepoFile.length() : 0;
+		
+		if (tempFileSize == 0 || tempFileSize > localFile.length()) {
+			return 0;
+		}
+		
+		try (DataInputStream localInputStream = new DataInputStream(new FileInputStream(localFile));
+				DataInputStream tempInputStream = new DataInputStream(new FileInputStream(tempRepoFile))) {
+			
+			byte[] localBuffer = new byte[RESUME_COMPARE_BUFFER_SIZE];
+			byte[] tempBuffer = new byte[RESUME_COMPARE_BUFFER_SIZE];
+			
+			for (long position = 0; position < tempFileSize; position += RESUME_COMPARE_BUFFER_SIZE) {
+				int length = (int) Math.min(RESUME_COMPARE_BUFFER_SIZE, tempFileSize - position);
+				
+				localInputStream.readFully(localBuffer, 0, length);
+				tempInputStream.readFully(tempBuffer, 0, length);
+				
+				if (!equals(localBuffer, tempBuffer, length)) {
+					return 0;
+				}
+			}
+		}
+		catch (EOFException e) {
+			logger.log(Level.INFO, "File " + localFile + " or " + tempRepoFile + " changed while comparing; cannot resume upload.");
+			return 0;
+		}
+		
+		logger.log(Level.INFO, "Resuming upload of " + localFile + " at byte " + tempFileSize + " ...");
+		return tempFileSize;
+	}
+	
+	private boolean equals(byte[] buffer1, byte[] buffer2, int length) {
+		for (int i = 0; i < length; i++) {
+			if (buffer1[i] != buffer2[i]) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Creates a hard link of the source file at the destination. If hard links are not supported, 
+	 * or source and destination are on different file systems, this method returns <tt>false</tt>.
+	 */
+	private boolean linkLocalFile(File src, File dst) {
+		try {
+			Files.deleteIfExists(dst.toPath());
+			Files.createLink(dst.toPath(), src.toPath());
+			
+			return true;
+		}
+		catch (UnsupportedOperationException | IOException e) {
+			logger.log(Level.FINE, "Cannot hard-link " + src + " to " + dst + "; falling back to copying.", e);
+			return false;
+		}		
+	}
+	
+	private void moveLocalFile(File src, File dst) throws IOException {
+		try {
+			Files.move(src.toPath(), dst.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(src.toPath(), dst.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	private File getTempFile(File file) {
+		return new File(getAbsoluteParentDirectory(file.getAbsoluteFile()) + File.separator + ".temp-" + file.getName());
+	}
+	
+	/**
+	 * Moves the given temporary files (keys) to their target files (values). Successfully 
+	 * moved files are removed from the map.
+	 */
+	private void moveTempFiles(Map<File, File> tempFiles) throws StorageException {
+		Iterator<Map.Entry<File, File>> tempFileIterator = tempFiles.entrySet().iterator();
+		
+		while (tempFileIterator.hasNext()) {
+			Map.Entry<File, File> tempFileEntry = tempFileIterator.next();
+			
+			try {
+				moveLocalFile(tempFileEntry.getKey(), tempFileEntry.getValue());
+				tempFileIterator.remove();
+			}
+			catch (IOException ex) {
+				throw new StorageException("Unable to move file " + tempFileEntry.getKey() + " to " + tempFileEntry.getValue(), ex);
+			}
+		}
+	}
+	
+	private void deleteTempFiles(Map<File, File> tempFiles) {
+		for (File tempFile : tempFiles.keySet()) {
+			tempFile.delete();
+		}
+	}
+	
+	/**
+	 * Syncs all files uploaded since the last call (and their folders) to disk. Syncing
+	 * folders is not supported on all platforms; failures to do so are ignored.
+	 */
+	private void syncUploadedFiles() throws StorageException {
+		if (unsyncedFiles.isEmpty()) {
+			return;
+		}
+		
+		logger.log(Level.FINE, "Syncing " + unsyncedFiles.size() + " uploaded file(s) to disk ...");
+		Set<Path> unsyncedFolders = new LinkedHashSet<Path>();
+		
+		try {
+			for (File unsyncedFile : unsyncedFiles) {
+				syncPath(unsyncedFile.toPath(), StandardOpenOption.WRITE);
+				unsyncedFolders.add(unsyncedFile.toPath().getParent());
+			}
+		}
+		catch (IOException e) {
+			throw new StorageException("Unable to sync uploaded files to disk.", e);
+		}
+		
+		for (Path unsyncedFolder : unsyncedFolders) {
+			try {
+				syncPath(unsyncedFolder, StandardOpenOption.READ);
+			}
+			catch (IOException e) {
+				logger.log(Level.FINE, "Cannot sync folder " + unsyncedFolder + "; ignoring.", e);
+			}
+		}
+		
+		unsyncedFiles.clear();
+	}
+	
+	private void syncPath(Path path, StandardOpenOption openOption) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, openOption)) {
+			channel.force(true);
 		}
-
-		in.close();
-		out.close();
 	}
 
 	public String getAbsoluteParentDirectory(File file) {
@@ -19,8 +19,6 @@ package org.syncany.crypto;
 
 import java.security.Provider;
 
-import org.bouncycastle.crypto.Digest;
-import org.bouncycastle.crypto.digests.SHA256Digest;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.syncany.util.StringUtil;
 
@@ -103,24 +101,13 @@ public abstract class CipherParams {
      */    
     public static final int MASTER_KEY_SALT_SIZE = 512;
     
-    /**
-     * Hash function used in the HKDF key derivation algorithm for deriving
-     * keys from a master key.
-     * 
-	 * <p><b>Warning:</b> Changing this constant may lead to unrecoverable ciphertext data
-	 * Do not change this constant unless you know what you are doing! 
-	 * 
-     * @see #KEY_DERIVATION_INFO
-     */
-    public static final Digest KEY_DERIVATION_DIGEST = new SHA256Digest(); 
-    
     /**
      * Additional info used in the HKDF key derivation algorithm.
      *  
 	 * <p><b>Warning:</b> Changing this constant may lead to unrecoverable ciphertext data
 	 * Do not change this constant unless you know what you are doing! 
 	 * 
-	 * @see #KEY_DERIVATION_DIGEST
+	 * @see CipherUtil#createDerivedKey(byte[], byte[], String, int)
      */
     public static final byte[] KEY_DERIVATION_INFO = StringUtil.toBytesUTF8("Syncany_SHA256_Derivated_Key");        
 }
@@ -21,9 +21,11 @@ import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.spec.InvalidKeySpecException;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,6 +33,9 @@ import javax.crypto.SecretKey;
 
 import org.syncany.util.StringUtil;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 /**
  * The cipher session is used by the {@link MultiCipherOutputStream} and the 
  * {@link MultiCipherInputStream} to reference the application's master key, 
@@ -52,6 +57,11 @@ import org.syncany.util.StringUtil;
  *       files are processed. 
  * </ul>
  * 
+ * <p>A cipher session is thread-safe, i.e. multiple {@link MultiCipherOutputStream}s and 
+ * {@link MultiCipherInputStream}s can use the same session concurrently. Write keys are
+ * counted atomically, and read keys are held in a concurrent LRU cache. Key derivation
+ * does not block other threads using already cached keys.
+ * 
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class CipherSession {
@@ -61,10 +71,9 @@ public class CipherSession {
 	
 	private SecretKey masterKey;	
 	
-	private Map<CipherSpecWithSalt, SecretKeyCacheEntry> secretKeyReadCache;
-	private int secretKeyReadCacheSize;
+	private Cache<CipherSpecWithSalt, SaltedSecretKey> secretKeyReadCache;
 	
-	private Map<CipherSpec, SecretKeyCacheEntry> secretKeyWriteCache;
+	private ConcurrentMap<CipherSpec, SecretKeyCacheEntry> secretKeyWriteCache;
 	private int secretKeyWriteReuseCount;
 	
 	/**
@@ -95,10 +104,9 @@ public class CipherSession {
 	public CipherSession(SaltedSecretKey masterKey, int secretKeyReadCacheSize, int secretKeyWriteReuseCount) {
 		this.masterKey = masterKey;
 
-		this.secretKeyReadCache = new LinkedHashMap<CipherSpecWithSalt, SecretKeyCacheEntry>();
-		this.secretKeyReadCacheSize = secretKeyReadCacheSize;
+		this.secretKeyReadCache = CacheBuilder.newBuilder().maximumSize(secretKeyReadCacheSize).build();
 		
-		this.secretKeyWriteCache = new HashMap<CipherSpec, SecretKeyCacheEntry>();
+		this.secretKeyWriteCache = new ConcurrentHashMap<CipherSpec, SecretKeyCacheEntry>();
 		this.secretKeyWriteReuseCount = secretKeyWriteReuseCount;
 	}	
 
@@ -126,39 +134,35 @@ public class CipherSession {
 	public SaltedSecretKey getWriteSecretKey(CipherSpec cipherSpec) throws Exception {
 		SecretKeyCacheEntry secretKeyCacheEntry = secretKeyWriteCache.get(cipherSpec);
 		
-		// Remove key if use more than X times 
-		if (secretKeyCacheEntry != null && secretKeyCacheEntry.getUseCount() >= secretKeyWriteReuseCount) {
-			logger.log(Level.FINE, "- Removed WRITE secret key from cache, because it was used "+secretKeyCacheEntry.getUseCount()+" times.");				
-
-			secretKeyWriteCache.remove(cipherSpec);
-			secretKeyCacheEntry = null;
+		// Return cached key, unless it has been used more than X times 
+		if (secretKeyCacheEntry != null) {
+			if (secretKeyCacheEntry.tryUse(secretKeyWriteReuseCount)) {
+				logger.log(Level.FINE, "- Using CACHED WRITE secret key "+secretKeyCacheEntry.getSaltedSecretKey().getAlgorithm()+", with salt "+StringUtil.toHex(secretKeyCacheEntry.getSaltedSecretKey().getSalt()));
+				return secretKeyCacheEntry.getSaltedSecretKey();
+			}
+			else {
+				logger.log(Level.FINE, "- Removed WRITE secret key from cache, because it was used "+secretKeyWriteReuseCount+" times.");
+				secretKeyWriteCache.remove(cipherSpec, secretKeyCacheEntry);
+			}
 		}
 				
-		// Return cached key, or create a new one
-		if (secretKeyCacheEntry != null) {					
-			secretKeyCacheEntry.increaseUseCount();
-			
-			logger.log(Level.FINE, "- Using CACHED WRITE secret key "+secretKeyCacheEntry.getSaltedSecretKey().getAlgorithm()+", with salt "+StringUtil.toHex(secretKeyCacheEntry.getSaltedSecretKey().getSalt()));
-			return secretKeyCacheEntry.getSaltedSecretKey();
-		}
-		else {			
-			SaltedSecretKey saltedSecretKey = createSaltedSecretKey(cipherSpec);
-						
-			secretKeyCacheEntry = new SecretKeyCacheEntry(saltedSecretKey);
-			secretKeyWriteCache.put(cipherSpec, secretKeyCacheEntry);
-			
-			logger.log(Level.FINE, "- Created NEW WRITE secret key "+secretKeyCacheEntry.getSaltedSecretKey().getAlgorithm()+", and added to cache, with salt "+StringUtil.toHex(saltedSecretKey.getSalt()));		
-			return saltedSecretKey;
-		}				
+		// Create a new one (if another thread did the same concurrently, only one of the keys
+		// is cached; the other one is used only once, which is perfectly fine)
+		SaltedSecretKey saltedSecretKey = createSaltedSecretKey(cipherSpec);
+		secretKeyWriteCache.putIfAbsent(cipherSpec, new SecretKeyCacheEntry(saltedSecretKey));
+		
+		logger.log(Level.FINE, "- Created NEW WRITE secret key "+saltedSecretKey.getAlgorithm()+", and added to cache, with salt "+StringUtil.toHex(saltedSecretKey.getSalt()));		
+		return saltedSecretKey;
 	}	
 	
 	/**
 	 * Creates a new secret key or retrieves it from the read cache. If the given cipher spec / salt combination
-	 * is found in the cache, the cached secret key is returned. If not, a new key is created. Keys are removed
-	 * from the cache when the cache reached the size defined by {@link #secretKeyReadCacheSize} (as set in
-	 * {@link #CipherSession(SaltedSecretKey, int, int) the constructor}.
+	 * is found in the cache, the cached secret key is returned. If not, a new key is created. The least recently
+	 * used keys are removed from the cache when the cache reached the size defined by the <tt>secretKeyReadCacheSize</tt>
+	 * parameter in {@link #CipherSession(SaltedSecretKey, int, int) the constructor}.
 	 * 
-	 * <p>If a new key needs to be created, {@link CipherUtil} is used to do so.
+	 * <p>If a new key needs to be created, {@link CipherUtil} is used to do so. If multiple threads request the same
+	 * key at the same time, the key is only created once.
 	 * 
 	 * <p>Contrary to the write cache, the read cache key is a combination of {@link CipherSpec} and a salt. For 
 	 * each cipher spec, multiple salted keys can reside in the cache at the same time. 
@@ -168,29 +172,22 @@ public class CipherSession {
 	 * @return Returns a newly created secret key or a cached key
 	 * @throws Exception If an error occurs with key creation
 	 */
-	public SaltedSecretKey getReadSecretKey(CipherSpec cipherSpec, byte[] salt) throws Exception {
+	public SaltedSecretKey getReadSecretKey(final CipherSpec cipherSpec, final byte[] salt) throws Exception {
 		CipherSpecWithSalt cipherSpecWithSalt = new CipherSpecWithSalt(cipherSpec, salt);
-		SecretKeyCacheEntry secretKeyCacheEntry = secretKeyReadCache.get(cipherSpecWithSalt);
 		
-		if (secretKeyCacheEntry != null) {
-			logger.log(Level.FINE, "- Using CACHED READ secret key "+secretKeyCacheEntry.getSaltedSecretKey().getAlgorithm()+", with salt "+StringUtil.toHex(salt));
-			return secretKeyCacheEntry.getSaltedSecretKey();
+		try {
+			return secretKeyReadCache.get(cipherSpecWithSalt, new Callable<SaltedSecretKey>() {
+				@Override
+				public SaltedSecretKey call() throws Exception {
+					SaltedSecretKey saltedSecretKey = createSaltedSecretKey(cipherSpec, salt);
+					
+					logger.log(Level.FINE, "- Created NEW READ secret key "+saltedSecretKey.getAlgorithm()+", and added to cache, with salt "+StringUtil.toHex(salt));
+					return saltedSecretKey;
+				}			
+			});
 		}
-		else {
-			if (secretKeyReadCache.size() >= secretKeyReadCacheSize) {
-				CipherSpecWithSalt firstKey = secretKeyReadCache.keySet().iterator().next();
-				secretKeyReadCache.remove(firstKey);
-				
-				logger.log(Level.FINE, "- Removed oldest READ secret key from cache.");				
-			}
-			
-			SaltedSecretKey saltedSecretKey = createSaltedSecretKey(cipherSpec, salt);
-			secretKeyCacheEntry = new SecretKeyCacheEntry(saltedSecretKey);
-			
-			secretKeyReadCache.put(cipherSpecWithSalt, secretKeyCacheEntry);
-									
-			logger.log(Level.FINE, "- Created NEW READ secret key "+secretKeyCacheEntry.getSaltedSecretKey().getAlgorithm()+", and added to cache, with salt "+StringUtil.toHex(salt));
-			return saltedSecretKey;
+		catch (ExecutionException e) {
+			throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
 		}
 	}		
 	
@@ -205,23 +202,32 @@ public class CipherSession {
 
 	private static class SecretKeyCacheEntry {
 		private SaltedSecretKey saltedSecretKey;
-		private int useCount;
+		private AtomicInteger useCount;
 
 		public SecretKeyCacheEntry(SaltedSecretKey saltedSecretKey) {
 			this.saltedSecretKey = saltedSecretKey;
-			this.useCount = 1;
+			this.useCount = new AtomicInteger(1);
 		}
 
 		public SaltedSecretKey getSaltedSecretKey() {
 			return saltedSecretKey;
 		}
 
-		public int getUseCount() {
-			return useCount;
-		}
-		
-		public void increaseUseCount() {
-			useCount++;
+		/**
+		 * Atomically increases the use count, unless the key has already
+		 * been used the given number of times. Returns whether the key may be used.
+		 */
+		public boolean tryUse(int maxUseCount) {
+			while (true) {
+				int currentUseCount = useCount.get();
+				
+				if (currentUseCount >= maxUseCount) {
+					return false;
+				}
+				else if (useCount.compareAndSet(currentUseCount, currentUseCount + 1)) {
+					return true;
+				}
+			}
 		}
 	}
 	
@@ -24,6 +24,9 @@ import java.util.TreeMap;
 
 import org.syncany.crypto.specs.AesGcm128CipherSpec;
 import org.syncany.crypto.specs.AesGcm256CipherSpec;
+import org.syncany.crypto.specs.JceAesGcm128CipherSpec;
+import org.syncany.crypto.specs.JceAesGcm256CipherSpec;
+import org.syncany.crypto.specs.JceAesGcmCipherSpec;
 import org.syncany.crypto.specs.TwofishGcm128CipherSpec;
 
 /**
@@ -63,13 +66,16 @@ public class CipherSpecs {
 	public static final int[] DEFAULT_CIPHER_SPECS = new int[] { CipherSpecs.AES_128_GCM, CipherSpecs.TWOFISH_128_GCM };
 
 	static {
+		// The JCE-based AES/GCM specs are faster (AES-NI), and produce the same format
+		boolean useJceAesGcm = JceAesGcmCipherSpec.isAvailable();
+		
 		CipherSpec[] tmpCipherSpecs = new CipherSpec[] {
 				// Standard
-				new AesGcm128CipherSpec(AES_128_GCM),
+				(useJceAesGcm) ? new JceAesGcm128CipherSpec(AES_128_GCM) : new AesGcm128CipherSpec(AES_128_GCM),
 				new TwofishGcm128CipherSpec(TWOFISH_128_GCM),
 
 				// Unlimited crypto
-				new AesGcm256CipherSpec(AES_256_GCM),
+				(useJceAesGcm) ? new JceAesGcm256CipherSpec(AES_256_GCM) : new AesGcm256CipherSpec(AES_256_GCM),
 				new TwofishGcm128CipherSpec(TWOFISH_256_GCM) 
 			};
 
@@ -19,7 +19,6 @@ package org.syncany.crypto;
 
 import static org.syncany.crypto.CipherParams.CRYPTO_PROVIDER;
 import static org.syncany.crypto.CipherParams.CRYPTO_PROVIDER_ID;
-import static org.syncany.crypto.CipherParams.KEY_DERIVATION_DIGEST;
 import static org.syncany.crypto.CipherParams.KEY_DERIVATION_INFO;
 import static org.syncany.crypto.CipherParams.MASTER_KEY_DERIVATION_FUNCTION;
 import static org.syncany.crypto.CipherParams.MASTER_KEY_DERIVATION_ROUNDS;
@@ -51,6 +50,8 @@ import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
 
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
 import org.bouncycastle.crypto.generators.HKDFBytesGenerator;
 import org.bouncycastle.crypto.params.HKDFParameters;
 
@@ -195,7 +196,7 @@ public class CipherUtil {
 	public static SaltedSecretKey createDerivedKey(byte[] inputKeyMaterial, byte[] inputSalt, String outputKeyAlgorithm, int outputKeySize)
 			throws InvalidKeySpecException, NoSuchAlgorithmException, NoSuchProviderException {
 		
-		HKDFBytesGenerator hkdf = new HKDFBytesGenerator(KEY_DERIVATION_DIGEST);
+		HKDFBytesGenerator hkdf = new HKDFBytesGenerator(createKeyDerivationDigest());
 		hkdf.init(new HKDFParameters(inputKeyMaterial, inputSalt, KEY_DERIVATION_INFO));
 
 		byte[] derivedKey = new byte[outputKeySize / 8];
@@ -204,6 +205,18 @@ public class CipherUtil {
 		return toSaltedSecretKey(derivedKey, inputSalt, outputKeyAlgorithm);
 	}
 
+	/**
+	 * Creates the hash function used in the HKDF key derivation algorithm for deriving
+	 * keys from a master key (SHA-256). Digests are stateful, so a new instance is created 
+	 * for every key derivation. 
+	 * 
+	 * <p><b>Warning:</b> Changing this digest may lead to unrecoverable ciphertext data
+	 * Do not change this digest unless you know what you are doing! 
+	 */
+	private static Digest createKeyDerivationDigest() {
+		return new SHA256Digest();
+	}
+
 	public static SecretKey toSecretKey(byte[] secretKeyBytes, String algorithm) {
 		String plainAlgorithm = (algorithm.indexOf('/') != -1) ? algorithm.substring(0, algorithm.indexOf('/')) : algorithm;
 		SecretKey secretKey = new SecretKeySpec(secretKeyBytes, plainAlgorithm);
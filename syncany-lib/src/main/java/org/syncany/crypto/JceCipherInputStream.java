@@ -0,0 +1,149 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.crypto;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+
+/**
+ * Input stream that decrypts the data read from the underlying input stream using 
+ * a fully initialized JCE {@link Cipher}. 
+ * 
+ * <p>The stream reads the underlying stream in large blocks to allow JCE providers to make
+ * full use of their intrinsics. Like the {@link BcFixedCipherInputStream}, and unlike
+ * {@link javax.crypto.CipherInputStream}, it does not swallow exceptions when the cipher is
+ * finalized, i.e. a failed authentication tag check results in an {@link IOException}.
+ * 
+ * <p><b>Note:</b> JCE providers typically buffer the entire ciphertext of authenticated modes
+ * (such as AES/GCM) when decrypting, and only return plaintext once the tag has been verified.
+ * 
+ * @see JceCipherOutputStream
+ * @author agent <agent@local>
+ */
+public class JceCipherInputStream extends FilterInputStream {
+	private static final int INPUT_BUFFER_SIZE = 64*1024;
+	
+	private Cipher cipher;
+	private byte[] inputBuffer;
+	private byte[] outputBuffer;
+	private int outputBufferOffset;
+	private int outputBufferLength;
+	private boolean finalized;
+	
+	public JceCipherInputStream(InputStream underlyingInputStream, Cipher cipher) {
+		super(underlyingInputStream);
+		
+		this.cipher = cipher;
+		this.inputBuffer = new byte[INPUT_BUFFER_SIZE];
+		this.outputBuffer = null;
+		this.outputBufferOffset = 0;
+		this.outputBufferLength = 0;
+		this.finalized = false;
+	}
+	
+	@Override
+	public int read() throws IOException {
+		if (outputBufferOffset >= outputBufferLength && nextChunk() < 0) {
+			return -1;
+		}
+		
+		return outputBuffer[outputBufferOffset++] & 0xff;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (outputBufferOffset >= outputBufferLength && nextChunk() < 0) {
+			return -1;
+		}
+		
+		int length = Math.min(len, outputBufferLength - outputBufferOffset);
+		System.arraycopy(outputBuffer, outputBufferOffset, b, off, length);
+		outputBufferOffset += length;
+		
+		return length;
+	}
+	
+	@Override
+	public long skip(long n) throws IOException {
+		if (n <= 0) {
+			return 0;
+		}
+		
+		if (outputBufferOffset >= outputBufferLength && nextChunk() < 0) {
+			return 0;
+		}
+		
+		int skip = (int) Math.min(n, outputBufferLength - outputBufferOffset);
+		outputBufferOffset += skip;
+		
+		return skip;
+	}
+	
+	@Override
+	public int available() throws IOException {
+		return outputBufferLength - outputBufferOffset;
+	}
+	
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+	
+	/**
+	 * Reads data from the underlying stream and processes it with the cipher until 
+	 * the cipher returns data, or the end of the stream is reached.
+	 * 
+	 * @return Returns the number of available bytes, or -1 if the end of the stream is reached
+	 */
+	private int nextChunk() throws IOException {
+		outputBufferOffset = 0;
+		outputBufferLength = 0;
+		
+		while (outputBufferLength == 0) {
+			if (finalized) {
+				return -1;
+			}
+			
+			int read = in.read(inputBuffer);
+			
+			// Note: The output size of authenticated modes includes all buffered input, 
+			//       so we let the cipher allocate the output array instead of reusing a buffer.
+			
+			try {
+				if (read == -1) {
+					finalized = true;
+					outputBuffer = cipher.doFinal();
+				}
+				else {
+					outputBuffer = cipher.update(inputBuffer, 0, read);
+				}
+				
+				outputBufferLength = (outputBuffer != null) ? outputBuffer.length : 0;
+			}
+			catch (GeneralSecurityException e) {
+				throw new IOException("Error processing data with cipher (invalid ciphertext?)", e);
+			}
+		}
+		
+		return outputBufferLength;
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.crypto;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+
+/**
+ * Output stream that encrypts all written data with a fully initialized JCE {@link Cipher}
+ * before writing it to the underlying output stream.
+ * 
+ * <p>Unlike {@link javax.crypto.CipherOutputStream}, this stream collects small writes
+ * in a buffer and passes data to the cipher in large blocks. This allows JCE providers to
+ * make full use of their intrinsics (e.g. AES-NI and CLMUL for AES/GCM). It also does not
+ * silently swallow exceptions when the cipher is finalized in {@link #close()}.
+ * 
+ * @see JceCipherInputStream
+ * @author agent <agent@local>
+ */
+public class JceCipherOutputStream extends FilterOutputStream {
+	private static final int INPUT_BUFFER_SIZE = 64*1024;
+	
+	private Cipher cipher;
+	private byte[] inputBuffer;
+	private int inputBufferLength;
+	private byte[] outputBuffer;
+	private boolean closed;
+	
+	public JceCipherOutputStream(OutputStream underlyingOutputStream, Cipher cipher) {
+		super(underlyingOutputStream);
+		
+		this.cipher = cipher;
+		this.inputBuffer = new byte[INPUT_BUFFER_SIZE];
+		this.inputBufferLength = 0;
+		this.outputBuffer = new byte[cipher.getOutputSize(INPUT_BUFFER_SIZE)];
+		this.closed = false;
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		if (inputBufferLength == inputBuffer.length) {
+			processInputBuffer();
+		}
+		
+		inputBuffer[inputBufferLength++] = (byte) b;
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (inputBufferLength + len <= inputBuffer.length) {
+			System.arraycopy(b, off, inputBuffer, inputBufferLength, len);
+			inputBufferLength += len;
+		}
+		else {
+			processInputBuffer();
+			
+			if (len <= inputBuffer.length) {
+				System.arraycopy(b, off, inputBuffer, 0, len);
+				inputBufferLength = len;
+			}
+			else {
+				process(b, off, len);
+			}
+		}
+	}
+	
+	@Override
+	public void flush() throws IOException {
+		processInputBuffer();
+		out.flush();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		
+		closed = true;
+		
+		try {
+			processInputBuffer();			
+			ensureOutputBufferSize(cipher.getOutputSize(0));
+			
+			int outputLength = cipher.doFinal(outputBuffer, 0);
+			out.write(outputBuffer, 0, outputLength);
+		}
+		catch (GeneralSecurityException e) {
+			throw new IOException("Error finalizing cipher", e);
+		}
+		finally {
+			out.close();
+		}
+	}
+	
+	private void processInputBuffer() throws IOException {
+		if (inputBufferLength > 0) {
+			process(inputBuffer, 0, inputBufferLength);
+			inputBufferLength = 0;
+		}
+	}
+	
+	private void process(byte[] b, int off, int len) throws IOException {
+		try {
+			ensureOutputBufferSize(cipher.getOutputSize(len));
+			
+			int outputLength = cipher.update(b, off, len, outputBuffer, 0);
+			out.write(outputBuffer, 0, outputLength);
+		}
+		catch (GeneralSecurityException e) {
+			throw new IOException("Error processing data with cipher", e);
+		}
+	}
+	
+	private void ensureOutputBufferSize(int size) {
+		if (outputBuffer.length < size) {
+			outputBuffer = new byte[size];
+		}
+	}
+}
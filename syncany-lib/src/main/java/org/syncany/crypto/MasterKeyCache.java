@@ -0,0 +1,247 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.crypto;
+
+import static org.syncany.crypto.CipherParams.MASTER_KEY_DERIVATION_FUNCTION;
+import static org.syncany.crypto.CipherParams.MASTER_KEY_SALT_SIZE;
+import static org.syncany.crypto.CipherParams.MASTER_KEY_SIZE;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.syncany.util.StringUtil;
+
+/**
+ * The master key cache stores master keys derived by {@link CipherUtil#createMasterKey(String, byte[])}
+ * on the local machine, so that repeated 'init', 'connect' and 'genlink' round-trips do not have to
+ * run the expensive password-based key derivation again.
+ *
+ * <p>The cache consists of a folder with a machine-local key file and one entry file per cached
+ * master key. The local key is generated randomly the first time a key is stored; both the key file
+ * and the entry files are only readable by the current user (where the file system supports it).
+ * Each entry is stored encrypted under the local key. The entry file names are an HMAC of the
+ * master key salt and the password, keyed with the local key, so that neither the password nor the
+ * salt can be derived from them without the local key.
+ *
+ * <p>Note that anyone who can read the cache folder can use the cached master keys (and can try
+ * passwords without the cost of the key derivation). The cache folder must hence be protected just
+ * like the <tt>config.xml</tt> file of a local folder, which contains the master key in plaintext.
+ * The cache can be emptied using {@link #invalidate()}.
+ *
+ * @author agent <agent@local>
+ */
+public class MasterKeyCache {
+	private static final Logger logger = Logger.getLogger(MasterKeyCache.class.getSimpleName());
+
+	private static final String LOCAL_KEY_FILE = "local.key";
+	private static final String ENTRY_FILE_FORMAT = "%s.entry";
+	private static final String ENTRY_ID_ALGORITHM = "HmacSHA256";
+
+	private File cacheDir;
+	private File localKeyFile;
+	private SaltedSecretKey localKey;
+
+	public MasterKeyCache(File cacheDir) {
+		this.cacheDir = cacheDir;
+		this.localKeyFile = new File(cacheDir, LOCAL_KEY_FILE);
+		this.localKey = null;
+	}
+
+	/**
+	 * Returns the cached master key for the given password and salt, or <tt>null</tt>
+	 * if no such key is cached. Unreadable or corrupt entries are treated like missing
+	 * entries and deleted.
+	 */
+	public synchronized SaltedSecretKey get(String password, byte[] salt) {
+		try {
+			if (!localKeyFile.exists()) {
+				return null;
+			}
+
+			File entryFile = getEntryFile(password, salt);
+
+			if (!entryFile.exists()) {
+				logger.log(Level.INFO, "Master key cache miss; no entry for this password/salt.");
+				return null;
+			}
+
+			try {
+				byte[] masterKeyBytes = CipherUtil.decrypt(new ByteArrayInputStream(Files.readAllBytes(entryFile.toPath())), getLocalKey());
+
+				if (masterKeyBytes.length != MASTER_KEY_SIZE / 8) {
+					throw new CipherException("Invalid master key length in cache entry: " + masterKeyBytes.length);
+				}
+
+				logger.log(Level.INFO, "Master key cache hit; skipping key derivation.");
+				return new SaltedSecretKey(new SecretKeySpec(masterKeyBytes, MASTER_KEY_DERIVATION_FUNCTION), salt);
+			}
+			catch (CipherException e) {
+				logger.log(Level.WARNING, "Master key cache entry " + entryFile + " is corrupt. Deleting entry.", e);
+				entryFile.delete();
+
+				return null;
+			}
+		}
+		catch (Exception e) {
+			logger.log(Level.WARNING, "Cannot read from master key cache " + cacheDir + ". Ignoring cache.", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the given master key (derived from the given password) in the cache. Failures
+	 * are logged and otherwise ignored, because the cache is purely an optimization.
+	 */
+	public synchronized void put(String password, SaltedSecretKey masterKey) {
+		try {
+			File entryFile = getEntryFile(password, masterKey.getSalt());
+			byte[] encryptedMasterKey = CipherUtil.encrypt(new ByteArrayInputStream(masterKey.getEncoded()),
+					CipherSpecs.getDefaultCipherSpecs(), getLocalKey());
+
+			writeRestrictedFile(entryFile, encryptedMasterKey);
+			logger.log(Level.INFO, "Master key stored in master key cache " + cacheDir);
+		}
+		catch (Exception e) {
+			logger.log(Level.WARNING, "Cannot write to master key cache " + cacheDir + ". Ignoring cache.", e);
+		}
+	}
+
+	/**
+	 * Deletes all cached master keys and the local key. A new local key is
+	 * generated when the next master key is stored.
+	 *
+	 * @return Returns the number of deleted cache entries
+	 */
+	public synchronized int invalidate() throws IOException {
+		int deletedEntries = 0;
+		File[] cacheFiles = cacheDir.listFiles();
+
+		if (cacheFiles != null) {
+			for (File cacheFile : cacheFiles) {
+				if (cacheFile.getName().endsWith(String.format(ENTRY_FILE_FORMAT, ""))) {
+					Files.delete(cacheFile.toPath());
+					deletedEntries++;
+				}
+			}
+		}
+
+		Files.deleteIfExists(localKeyFile.toPath());
+		localKey = null;
+
+		logger.log(Level.INFO, "Master key cache " + cacheDir + " invalidated; deleted " + deletedEntries + " entries.");
+		return deletedEntries;
+	}
+
+	private File getEntryFile(String password, byte[] salt) throws Exception {
+		Mac mac = Mac.getInstance(ENTRY_ID_ALGORITHM);
+		mac.init(new SecretKeySpec(getLocalKey().getEncoded(), ENTRY_ID_ALGORITHM));
+
+		mac.update(salt);
+		mac.update(StringUtil.toBytesUTF8(password));
+
+		return new File(cacheDir, String.format(ENTRY_FILE_FORMAT, StringUtil.toHex(mac.doFinal())));
+	}
+
+	private SaltedSecretKey getLocalKey() throws IOException {
+		if (localKey == null) {
+			if (localKeyFile.exists()) {
+				localKey = readLocalKey();
+			}
+			else {
+				localKey = createLocalKey();
+			}
+		}
+
+		return localKey;
+	}
+
+	private SaltedSecretKey readLocalKey() throws IOException {
+		byte[] localKeyFileBytes = Files.readAllBytes(localKeyFile.toPath());
+		int keyLength = MASTER_KEY_SIZE / 8;
+
+		if (localKeyFileBytes.length != keyLength + MASTER_KEY_SALT_SIZE / 8) {
+			throw new IOException("Invalid local key file " + localKeyFile + ", length " + localKeyFileBytes.length);
+		}
+
+		byte[] keyBytes = Arrays.copyOfRange(localKeyFileBytes, 0, keyLength);
+		byte[] saltBytes = Arrays.copyOfRange(localKeyFileBytes, keyLength, localKeyFileBytes.length);
+
+		return CipherUtil.toSaltedSecretKey(keyBytes, saltBytes, MASTER_KEY_DERIVATION_FUNCTION);
+	}
+
+	private SaltedSecretKey createLocalKey() throws IOException {
+		logger.log(Level.INFO, "Creating new local key for master key cache at " + localKeyFile);
+
+		byte[] keyBytes = CipherUtil.createRandomArray(MASTER_KEY_SIZE / 8);
+		byte[] saltBytes = CipherUtil.createRandomArray(MASTER_KEY_SALT_SIZE / 8);
+
+		byte[] localKeyFileBytes = Arrays.copyOf(keyBytes, keyBytes.length + saltBytes.length);
+		System.arraycopy(saltBytes, 0, localKeyFileBytes, keyBytes.length, saltBytes.length);
+
+		writeRestrictedFile(localKeyFile, localKeyFileBytes);
+
+		return CipherUtil.toSaltedSecretKey(keyBytes, saltBytes, MASTER_KEY_DERIVATION_FUNCTION);
+	}
+
+	/**
+	 * Writes the given bytes to a file that is only accessible by the current user. The
+	 * permissions are set on a temporary file before any data is written, and the temporary
+	 * file is then moved to its final location.
+	 */
+	private void writeRestrictedFile(File file, byte[] bytes) throws IOException {
+		Files.createDirectories(cacheDir.toPath());
+
+		Path tempFile = Files.createTempFile(cacheDir.toPath(), file.getName(), ".tmp");
+
+		try {
+			restrictPermissions(tempFile);
+
+			Files.write(tempFile, bytes);
+			Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	private void restrictPermissions(Path file) throws IOException {
+		if (Files.getFileStore(file).supportsFileAttributeView("posix")) {
+			Files.setPosixFilePermissions(file, EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+		}
+		else {
+			File plainFile = file.toFile();
+
+			plainFile.setReadable(false, false);
+			plainFile.setReadable(true, true);
+			plainFile.setWritable(false, false);
+			plainFile.setWritable(true, true);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.crypto.specs;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.security.Security;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.syncany.crypto.CipherException;
+import org.syncany.crypto.CipherParams;
+import org.syncany.crypto.JceCipherInputStream;
+import org.syncany.crypto.JceCipherOutputStream;
+
+/**
+ * AES/GCM cipher spec backed by the JDK's own JCE provider (e.g. <tt>SunJCE</tt>) instead of
+ * the pure-Java Bouncy Castle light-weight API used by {@link AesGcmCipherSpec}. On modern 
+ * JVMs, this provider uses the AES-NI and CLMUL instructions, which makes it much faster.
+ * 
+ * <p>The stream format (ciphertext followed by a 128-bit authentication tag) is identical 
+ * to the one produced by the Bouncy Castle implementation, so data encrypted by either 
+ * implementation can be decrypted by the other. This cipher spec therefore uses the same
+ * identifiers as the Bouncy Castle based specs.
+ * 
+ * <p>If no JCE provider (other than Bouncy Castle) supports AES/GCM, or if the cipher cannot 
+ * be initialized (e.g. because of a restrictive crypto policy for 256-bit keys), this class
+ * falls back to the Bouncy Castle implementation.
+ * 
+ * @author agent <agent@local>
+ */
+public abstract class JceAesGcmCipherSpec extends AesGcmCipherSpec {
+	private static final Logger logger = Logger.getLogger(JceAesGcmCipherSpec.class.getSimpleName());
+	private static final int MAC_SIZE = 128;
+	
+	private static Provider jceProvider = findJceProvider("AES/GCM/NoPadding");
+
+	public JceAesGcmCipherSpec(int id, String algorithm, int keySize, int ivSize, boolean needsUnlimitedStrength) {
+		super(id, algorithm, keySize, ivSize, needsUnlimitedStrength);
+	}
+	
+	/**
+	 * Returns whether a JCE provider other than Bouncy Castle supports AES/GCM
+	 * in the current JVM (e.g. Java 8 and later).
+	 */
+	public static boolean isAvailable() {
+		return jceProvider != null;
+	}
+	
+	@Override
+	public OutputStream newCipherOutputStream(OutputStream underlyingOutputStream, byte[] secretKey, byte[] iv) throws CipherException {
+		if (jceProvider != null) {
+			try {
+				return new JceCipherOutputStream(underlyingOutputStream, createCipher(Cipher.ENCRYPT_MODE, secretKey, iv));
+			}
+			catch (GeneralSecurityException e) {
+				logger.log(Level.FINE, "Cannot initialize JCE cipher, falling back to Bouncy Castle.", e);
+			}
+		}
+		
+		return super.newCipherOutputStream(underlyingOutputStream, secretKey, iv);
+	}
+
+	@Override
+	public InputStream newCipherInputStream(InputStream underlyingInputStream, byte[] secretKey, byte[] iv) throws CipherException {
+		if (jceProvider != null) {
+			try {
+				return new JceCipherInputStream(underlyingInputStream, createCipher(Cipher.DECRYPT_MODE, secretKey, iv));
+			}
+			catch (GeneralSecurityException e) {
+				logger.log(Level.FINE, "Cannot initialize JCE cipher, falling back to Bouncy Castle.", e);
+			}
+		}
+		
+		return super.newCipherInputStream(underlyingInputStream, secretKey, iv);
+	}
+	
+	private Cipher createCipher(int mode, byte[] secretKey, byte[] iv) throws GeneralSecurityException {
+		Cipher cipher = Cipher.getInstance(getAlgorithm(), jceProvider);
+		cipher.init(mode, new SecretKeySpec(secretKey, "AES"), new GCMParameterSpec(MAC_SIZE, iv));
+		
+		return cipher;
+	}
+	
+	private static Provider findJceProvider(String algorithm) {
+		for (Provider provider : Security.getProviders()) {
+			if (!CipherParams.CRYPTO_PROVIDER_ID.equals(provider.getName())) {
+				try {
+					Cipher.getInstance(algorithm, provider);
+					return provider;
+				}
+				catch (GeneralSecurityException e) {
+					// Not supported by this provider, try next
+				}
+			}
+		}
+		
+		return null;
+	}
+}
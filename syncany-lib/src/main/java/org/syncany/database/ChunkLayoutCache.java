@@ -0,0 +1,141 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.database;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.chunk.ChunkLayout;
+import org.syncany.chunk.DeltaChunkEnumeration;
+import org.syncany.database.FileContent.FileChecksum;
+
+/**
+ * The chunk layout cache stores the {@link ChunkLayout} of large file contents, one file per 
+ * file content (named after the {@link FileChecksum}). When such a file is changed, the
+ * {@link DeltaChunkEnumeration} uses the layout of the previous content to reuse unchanged
+ * chunks instead of chunking the entire file again. 
+ * 
+ * <p>Just like the {@link FastChecksumCache}, the layouts are a function of the file content,
+ * so entries never become invalid. Missing or corrupt layouts only mean that a file has to 
+ * be chunked entirely.
+ * 
+ * @author agent <agent@local>
+ */
+public class ChunkLayoutCache {
+	private static final Logger logger = Logger.getLogger(ChunkLayoutCache.class.getSimpleName());
+	private static final int LAYOUT_FILE_VERSION = 1;
+	
+	private File cacheDir;
+	
+	public ChunkLayoutCache(File cacheDir) {
+		this.cacheDir = cacheDir;
+	}
+	
+	/**
+	 * Returns the chunk layout of the file content with the given checksum, 
+	 * or <tt>null</tt> if it is not known or cannot be read.
+	 */
+	public ChunkLayout get(FileChecksum checksum) {
+		File layoutFile = getLayoutFile(checksum);
+		
+		if (!layoutFile.exists()) {
+			return null;
+		}
+		
+		try (DataInputStream layoutInputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(layoutFile)))) {
+			if (layoutInputStream.readInt() != LAYOUT_FILE_VERSION) {
+				throw new IOException("Unsupported chunk layout version.");
+			}
+			
+			ChunkLayout chunkLayout = new ChunkLayout();
+			int chunkCount = layoutInputStream.readInt();
+			
+			for (int i = 0; i < chunkCount; i++) {
+				byte[] chunkChecksum = new byte[layoutInputStream.readUnsignedByte()];
+				layoutInputStream.readFully(chunkChecksum);
+				
+				int chunkSize = layoutInputStream.readInt();
+				long chunkFastChecksum = layoutInputStream.readLong();
+				
+				chunkLayout.add(chunkChecksum, chunkSize, chunkFastChecksum);
+			}
+			
+			return chunkLayout;
+		}
+		catch (IOException e) {
+			logger.log(Level.WARNING, "Cannot read chunk layout " + layoutFile + ". Ignoring.", e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Stores the chunk layout of the file content with the given checksum. The layout
+	 * is written to a temporary file first, so that incomplete layouts are never read.
+	 */
+	public void put(FileChecksum checksum, ChunkLayout chunkLayout) {
+		File layoutFile = getLayoutFile(checksum);
+		File tempLayoutFile = new File(layoutFile.getAbsolutePath() + ".tmp");
+		
+		cacheDir.mkdirs();
+		
+		try {
+			try (DataOutputStream layoutOutputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempLayoutFile)))) {
+				layoutOutputStream.writeInt(LAYOUT_FILE_VERSION);
+				layoutOutputStream.writeInt(chunkLayout.getChunkCount());
+				
+				for (int i = 0; i < chunkLayout.getChunkCount(); i++) {
+					layoutOutputStream.writeByte(chunkLayout.getChecksum(i).length);
+					layoutOutputStream.write(chunkLayout.getChecksum(i));
+					layoutOutputStream.writeInt(chunkLayout.getSize(i));
+					layoutOutputStream.writeLong(chunkLayout.getFastChecksum(i));
+				}
+			}
+			
+			if (layoutFile.exists()) {
+				layoutFile.delete();
+			}
+			
+			if (!tempLayoutFile.renameTo(layoutFile)) {
+				throw new IOException("Cannot rename " + tempLayoutFile + " to " + layoutFile);
+			}
+		}
+		catch (IOException e) {
+			logger.log(Level.WARNING, "Cannot write chunk layout " + layoutFile + ". Ignoring.", e);
+			tempLayoutFile.delete();
+		}
+	}
+	
+	/**
+	 * Removes the chunk layout of the file content with the given checksum (if it exists).
+	 */
+	public void remove(FileChecksum checksum) {
+		getLayoutFile(checksum).delete();
+	}
+	
+	private File getLayoutFile(FileChecksum checksum) {
+		return new File(cacheDir, checksum.toString());
+	}
+}
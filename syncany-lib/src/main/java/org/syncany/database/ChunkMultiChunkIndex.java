@@ -0,0 +1,199 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.database;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.MultiChunkEntry.MultiChunkId;
+
+/**
+ * Compact, append-only reverse index from a {@link ChunkChecksum} to the {@link MultiChunkId}
+ * of the multichunk it is contained in. It is used by the {@link MemoryDatabase} to avoid
+ * keeping one map entry (and one boxed key) per chunk.
+ *
+ * <p>The checksums are stored back-to-back in a single byte array and are looked up
+ * using open addressing with linear probing. Instead of the multichunk ID itself,
+ * only its ordinal (its position in a list of all known multichunk IDs) is stored in
+ * a parallel int array.
+ *
+ * <p>All checksums are expected to have the same length (e.g. 20 bytes for SHA-1),
+ * which is determined by the first added checksum. Checksums with a different length
+ * are stored in a regular fallback map.
+ *
+ * @author agent <agent@local>
+ */
+class ChunkMultiChunkIndex {
+	private static final int INITIAL_CAPACITY = 1024; // Must be a power of two
+	private static final float MAX_LOAD_FACTOR = 0.6f;
+
+	private int checksumLength;
+	private byte[] checksums;
+	private int[] multiChunkOrdinals; // Ordinal+1, 0 means empty slot
+	private int size;
+
+	private List<MultiChunkId> multiChunkIds;
+	private Map<MultiChunkId, Integer> multiChunkIdOrdinals;
+	private Map<ChunkChecksum, MultiChunkId> otherLengthChecksums;
+
+	public ChunkMultiChunkIndex() {
+		clear();
+	}
+
+	public void clear() {
+		checksumLength = -1;
+		checksums = null;
+		multiChunkOrdinals = new int[INITIAL_CAPACITY];
+		size = 0;
+
+		multiChunkIds = new ArrayList<MultiChunkId>();
+		multiChunkIdOrdinals = new HashMap<MultiChunkId, Integer>();
+		otherLengthChecksums = new HashMap<ChunkChecksum, MultiChunkId>();
+	}
+
+	/**
+	 * Adds all chunks of the given multichunk to the index. If a chunk is
+	 * already indexed, it is re-assigned to the given multichunk.
+	 */
+	public void add(MultiChunkEntry multiChunk) {
+		int multiChunkOrdinal = getOrAddOrdinal(multiChunk.getId());
+
+		for (ChunkChecksum chunkChecksum : multiChunk.getChunks()) {
+			put(chunkChecksum, multiChunkOrdinal);
+		}
+	}
+
+	public MultiChunkId get(ChunkChecksum chunkChecksum) {
+		byte[] checksum = chunkChecksum.identifier;
+
+		if (checksum.length != checksumLength) {
+			return otherLengthChecksums.get(chunkChecksum);
+		}
+
+		int slot = findSlot(checksums, multiChunkOrdinals, checksum);
+		int multiChunkOrdinal = multiChunkOrdinals[slot];
+
+		return (multiChunkOrdinal != 0) ? multiChunkIds.get(multiChunkOrdinal-1) : null;
+	}
+
+	public int size() {
+		return size + otherLengthChecksums.size();
+	}
+
+	private int getOrAddOrdinal(MultiChunkId multiChunkId) {
+		Integer multiChunkOrdinal = multiChunkIdOrdinals.get(multiChunkId);
+
+		if (multiChunkOrdinal == null) {
+			multiChunkIds.add(multiChunkId);
+			multiChunkOrdinal = multiChunkIds.size();
+
+			multiChunkIdOrdinals.put(multiChunkId, multiChunkOrdinal);
+		}
+
+		return multiChunkOrdinal;
+	}
+
+	private void put(ChunkChecksum chunkChecksum, int multiChunkOrdinal) {
+		byte[] checksum = chunkChecksum.identifier;
+
+		if (checksumLength == -1) {
+			checksumLength = checksum.length;
+			checksums = new byte[INITIAL_CAPACITY * checksumLength];
+		}
+
+		if (checksum.length != checksumLength) {
+			otherLengthChecksums.put(chunkChecksum, multiChunkIds.get(multiChunkOrdinal-1));
+			return;
+		}
+
+		int slot = findSlot(checksums, multiChunkOrdinals, checksum);
+
+		if (multiChunkOrdinals[slot] == 0) {
+			System.arraycopy(checksum, 0, checksums, slot * checksumLength, checksumLength);
+			size++;
+		}
+
+		multiChunkOrdinals[slot] = multiChunkOrdinal;
+
+		if (size > multiChunkOrdinals.length * MAX_LOAD_FACTOR) {
+			grow();
+		}
+	}
+
+	private void grow() {
+		int newCapacity = multiChunkOrdinals.length * 2;
+
+		byte[] newChecksums = new byte[newCapacity * checksumLength];
+		int[] newMultiChunkOrdinals = new int[newCapacity];
+		byte[] checksum = new byte[checksumLength];
+
+		for (int oldSlot = 0; oldSlot < multiChunkOrdinals.length; oldSlot++) {
+			if (multiChunkOrdinals[oldSlot] != 0) {
+				System.arraycopy(checksums, oldSlot * checksumLength, checksum, 0, checksumLength);
+
+				int newSlot = findSlot(newChecksums, newMultiChunkOrdinals, checksum);
+
+				System.arraycopy(checksum, 0, newChecksums, newSlot * checksumLength, checksumLength);
+				newMultiChunkOrdinals[newSlot] = multiChunkOrdinals[oldSlot];
+			}
+		}
+
+		checksums = newChecksums;
+		multiChunkOrdinals = newMultiChunkOrdinals;
+	}
+
+	/**
+	 * Returns the slot of the given checksum, or the empty slot at which
+	 * it would have to be inserted if it is not contained in the table.
+	 */
+	private int findSlot(byte[] tableChecksums, int[] tableMultiChunkOrdinals, byte[] checksum) {
+		int mask = tableMultiChunkOrdinals.length - 1;
+		int slot = hash(checksum) & mask;
+
+		while (tableMultiChunkOrdinals[slot] != 0 && !checksumEquals(tableChecksums, slot, checksum)) {
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	private boolean checksumEquals(byte[] tableChecksums, int slot, byte[] checksum) {
+		int offset = slot * checksumLength;
+
+		for (int i = 0; i < checksumLength; i++) {
+			if (tableChecksums[offset + i] != checksum[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private int hash(byte[] checksum) {
+		int hash = 0x811c9dc5; // FNV-1a
+
+		for (byte b : checksum) {
+			hash = (hash ^ (b & 0xff)) * 0x01000193;
+		}
+
+		return hash ^ (hash >>> 16);
+	}
+}
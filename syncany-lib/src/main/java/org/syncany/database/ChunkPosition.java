@@ -0,0 +1,67 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.database;
+
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+
+/**
+ * A chunk position describes where a chunk can be found inside a local file,
+ * i.e. the relative path of the file, the offset at which the chunk starts
+ * and its size. 
+ * 
+ * <p>Chunk positions are not stored in the database, but derived from the order
+ * of chunks in a {@link FileContent} and the individual {@link ChunkEntry} sizes.
+ * Since the local file might have changed since it was last indexed, a chunk 
+ * position is only a hint and the chunk data must be verified before using it. 
+ * 
+ * @author agent <agent@local>
+ */
+public class ChunkPosition {
+	private ChunkChecksum checksum;
+	private String path;
+	private long offset;
+	private int size;
+
+	public ChunkPosition(ChunkChecksum checksum, String path, long offset, int size) {
+		this.checksum = checksum;
+		this.path = path;
+		this.offset = offset;
+		this.size = size;
+	}
+
+	public ChunkChecksum getChecksum() {
+		return checksum;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public long getOffset() {
+		return offset;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return "ChunkPosition [checksum=" + checksum + ", path=" + path + ", offset=" + offset + ", size=" + size + "]";
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.database;
+
+import java.util.Arrays;
+
+import org.syncany.database.VectorClock.VectorClockComparison;
+
+/**
+ * Immutable, compact representation of a {@link VectorClock}. Instead of a map of client
+ * names to counters, it stores the counters in a <tt>long</tt> array, indexed by the dense
+ * client indexes of the {@link VectorClockInterner} it was created by.
+ *
+ * <p>Compact vector clocks are meant for algorithms that compare the same vector clocks
+ * many times, e.g. the {@link org.syncany.operations.down.DatabaseReconciliator DatabaseReconciliator}.
+ * Comparing two compact vector clocks does not allocate any objects, and both the hash code and
+ * the serialized form are computed only once.
+ *
+ * <p>Like in {@link VectorClock#compare(VectorClock, VectorClock) VectorClock.compare()}, a client
+ * with a counter of zero is treated as if it was absent. Two compact vector clocks are hence
+ * equal if and only if they compare as {@link VectorClockComparison#EQUAL EQUAL}.
+ *
+ * @see VectorClockInterner
+ * @author agent <agent@local>
+ */
+public class CompactVectorClock {
+	private final VectorClockInterner interner;
+	private final long[] clocks; // Trailing zeros are trimmed
+	private final int hashCode;
+	private String serialized;
+
+	CompactVectorClock(VectorClockInterner interner, long[] clocks) {
+		this.interner = interner;
+		this.clocks = trimTrailingZeros(clocks);
+		this.hashCode = Arrays.hashCode(this.clocks);
+	}
+
+	/**
+	 * Returns the counter of the client with the given dense index, or
+	 * <tt>0</tt> if the client has no entry in this vector clock.
+	 */
+	public long getClock(int clientIndex) {
+		return (clientIndex < clocks.length) ? clocks[clientIndex] : 0;
+	}
+
+	/**
+	 * Converts this compact vector clock back to a regular {@link VectorClock}.
+	 */
+	public VectorClock toVectorClock() {
+		VectorClock vectorClock = new VectorClock();
+
+		for (int clientIndex = 0; clientIndex < clocks.length; clientIndex++) {
+			if (clocks[clientIndex] != 0) {
+				vectorClock.setClock(interner.getClientName(clientIndex), clocks[clientIndex]);
+			}
+		}
+
+		return vectorClock;
+	}
+
+	/**
+	 * Compares two compact vector clocks, exactly like {@link VectorClock#compare(VectorClock, VectorClock)}.
+	 * Both vector clocks must have been created by the same {@link VectorClockInterner}.
+	 *
+	 * @param clock1 First clock being compared
+	 * @param clock2 Second clock being compared
+	 * @return Returns how the first clock relates to the second clock
+	 */
+	public static VectorClockComparison compare(CompactVectorClock clock1, CompactVectorClock clock2) {
+		if (clock1.interner != clock2.interner) {
+			throw new IllegalArgumentException("Cannot compare vector clocks of different interners.");
+		}
+
+		boolean isGreater = false;
+		boolean isSmaller = false;
+
+		int maxLength = Math.max(clock1.clocks.length, clock2.clocks.length);
+
+		for (int clientIndex = 0; clientIndex < maxLength; clientIndex++) {
+			long clock1Value = clock1.getClock(clientIndex);
+			long clock2Value = clock2.getClock(clientIndex);
+
+			if (clock1Value > clock2Value) {
+				isGreater = true;
+			}
+			else if (clock1Value < clock2Value) {
+				isSmaller = true;
+			}
+		}
+
+		if (!isGreater && !isSmaller) {
+			return VectorClockComparison.EQUAL;
+		}
+		else if (isGreater && !isSmaller) {
+			return VectorClockComparison.GREATER;
+		}
+		else if (isSmaller && !isGreater) {
+			return VectorClockComparison.SMALLER;
+		}
+		else {
+			return VectorClockComparison.SIMULTANEOUS;
+		}
+	}
+
+	private static long[] trimTrailingZeros(long[] clocks) {
+		int length = clocks.length;
+
+		while (length > 0 && clocks[length-1] == 0) {
+			length--;
+		}
+
+		return (length == clocks.length) ? clocks : Arrays.copyOf(clocks, length);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof CompactVectorClock)) {
+			return false;
+		}
+		CompactVectorClock other = (CompactVectorClock) obj;
+		if (interner != other.interner || hashCode != other.hashCode) {
+			return false;
+		}
+		return Arrays.equals(clocks, other.clocks);
+	}
+
+	/**
+	 * Returns the same serialized form as {@link VectorClock#toString()}, e.g. <tt>(A3,B1)</tt>.
+	 * The string is only created once.
+	 */
+	@Override
+	public String toString() {
+		if (serialized == null) {
+			serialized = toVectorClock().toString();
+		}
+
+		return serialized;
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.database;
+
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.syncany.database.FileVersion.FileStatus;
+import org.syncany.database.FileVersion.FileType;
+import org.syncany.util.XxHash64;
+
+/**
+ * Per-directory digests of a file tree, e.g. the current file tree of the local database.
+ * The digests are calculated once from the given file versions; deleted file versions are 
+ * ignored. The root directory has the path {@link #ROOT_DIRECTORY}.
+ * 
+ * <p>The <b>file stat digest</b> of a directory only covers name, size, modified date and 
+ * attributes of the regular files directly within the directory, i.e. the metadata that can 
+ * be read from the disk without reading any file. It is calculated using a {@link FileStatDigestBuilder}, 
+ * so that it can be compared to the digest of the files actually on disk.
+ * 
+ * <p>Digests are non-cryptographic {@link XxHash64 xxHash64} values. They are meant to quickly
+ * detect changes, not to protect against malicious modifications.
+ * 
+ * @author agent <agent@local>
+ */
+public class DirectoryDigests {
+	public static final String ROOT_DIRECTORY = "";
+	
+	private static final Charset DIGEST_CHARSET = Charset.forName("UTF-8");
+	private static final byte[] DIGEST_SEPARATOR = new byte[] { 0 }; // File names cannot contain \0
+	
+	private Map<String, Long> fileStatDigests;
+	
+	public DirectoryDigests(Collection<FileVersion> fileVersions) {
+		this.fileStatDigests = new HashMap<String, Long>();		
+		calculateDigests(fileVersions);
+	}
+	
+	/**
+	 * Returns the file stat digest of the given directory, or <tt>null</tt>
+	 * if the directory is not part of the file tree.
+	 */
+	public Long getFileStatDigest(String directoryPath) {
+		return fileStatDigests.get(directoryPath);
+	}
+	
+	private void calculateDigests(Collection<FileVersion> fileVersions) {
+		Map<String, FileStatDigestBuilder> directoryFileStatDigests = new HashMap<String, FileStatDigestBuilder>();
+		directoryFileStatDigests.put(ROOT_DIRECTORY, new FileStatDigestBuilder());
+		
+		for (FileVersion fileVersion : fileVersions) {
+			if (fileVersion.getStatus() == FileStatus.DELETED) {
+				continue;
+			}
+			
+			if (fileVersion.getType() == FileType.FOLDER) {
+				getFileStatDigestBuilder(directoryFileStatDigests, fileVersion.getPath());
+			}
+			else if (fileVersion.getType() == FileType.FILE) {
+				String path = fileVersion.getPath();
+				String name = path.substring(path.lastIndexOf('/') + 1);
+				
+				getFileStatDigestBuilder(directoryFileStatDigests, getParentPath(path)).addFile(name, fileVersion.getSize(),
+						fileVersion.getLastModified().getTime(), fileVersion.getPosixPermissions(), fileVersion.getDosAttributes());
+			}
+		}
+		
+		for (Map.Entry<String, FileStatDigestBuilder> directoryFileStatDigest : directoryFileStatDigests.entrySet()) {
+			fileStatDigests.put(directoryFileStatDigest.getKey(), directoryFileStatDigest.getValue().getValue());
+		}
+	}
+	
+	private FileStatDigestBuilder getFileStatDigestBuilder(Map<String, FileStatDigestBuilder> directoryFileStatDigests, String directoryPath) {
+		FileStatDigestBuilder fileStatDigest = directoryFileStatDigests.get(directoryPath);
+		
+		if (fileStatDigest == null) {
+			fileStatDigest = new FileStatDigestBuilder();
+			directoryFileStatDigests.put(directoryPath, fileStatDigest);
+		}
+		
+		return fileStatDigest;
+	}
+	
+	/**
+	 * Returns the parent directory path of the given database path,
+	 * e.g. <tt>some/folder</tt> for <tt>some/folder/file.txt</tt>.
+	 */
+	private static String getParentPath(String path) {
+		int lastSlashIndex = path.lastIndexOf('/');
+		return (lastSlashIndex >= 0) ? path.substring(0, lastSlashIndex) : ROOT_DIRECTORY;
+	}
+	
+	private static void updateDigest(XxHash64 digest, Object... values) {
+		for (Object value : values) {
+			byte[] valueBytes = String.valueOf(value).getBytes(DIGEST_CHARSET);
+			
+			digest.update(valueBytes, 0, valueBytes.length);
+			digest.update(DIGEST_SEPARATOR, 0, DIGEST_SEPARATOR.length);
+		}
+	}
+	
+	/**
+	 * Calculates the file stat digest of the regular files within a directory. Files 
+	 * can be added in any order. The digest is equal if and only if the same files
+	 * with the same metadata have been added. 
+	 */
+	public static class FileStatDigestBuilder {
+		private SortedMap<String, Object[]> files;
+		
+		public FileStatDigestBuilder() {
+			this.files = new TreeMap<String, Object[]>();
+		}
+		
+		public void addFile(String name, long size, long lastModified, String posixPermissions, String dosAttributes) {
+			files.put(name, new Object[] { name, size, lastModified, posixPermissions, dosAttributes });
+		}
+		
+		public long getValue() {
+			XxHash64 digest = new XxHash64();
+			
+			for (Object[] fileValues : files.values()) {
+				updateDigest(digest, fileValues);
+			}
+			
+			return digest.getValue();
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.database;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.database.FileContent.FileChecksum;
+import org.syncany.util.XxHash64;
+
+/**
+ * The fast checksum cache stores the non-cryptographic {@link XxHash64 xxHash64} checksum
+ * of a file content alongside its regular {@link FileChecksum}. It is used by the 
+ * {@link FileVersionComparator} to determine if a local file has changed without calculating
+ * its full (much slower) checksum.
+ * 
+ * <p>Since the fast checksum is a function of the file content, just like the regular 
+ * checksum, entries never become invalid. The cache is loaded lazily, and new entries 
+ * are immediately appended to the cache file. Losing the cache file only means that 
+ * checksums have to be fully calculated again. Entries of file contents that are no longer
+ * in the local database are removed by {@link #retainAll(Set)} during the cleanup.
+ * 
+ * <p>Instances of this class are thread-safe.
+ * 
+ * @author agent <agent@local>
+ */
+public class FastChecksumCache {
+	private static final Logger logger = Logger.getLogger(FastChecksumCache.class.getSimpleName());
+	private static final Charset CACHE_FILE_CHARSET = Charset.forName("UTF-8");
+	
+	private File cacheFile;
+	private Map<FileChecksum, Long> fastChecksums;
+	private int cacheFileLineCount;
+	
+	public FastChecksumCache(File cacheFile) {
+		this.cacheFile = cacheFile;
+		this.fastChecksums = null; // Loaded lazily
+	}
+	
+	/**
+	 * Returns the fast checksum of the file content with the given checksum,
+	 * or <tt>null</tt> if it is not known.
+	 */
+	public synchronized Long get(FileChecksum checksum) {
+		loadIfNecessary();
+		return fastChecksums.get(checksum);
+	}
+	
+	/**
+	 * Stores the fast checksum of the file content with the given checksum, and
+	 * appends it to the cache file (unless it is already known). 
+	 */
+	public synchronized void put(FileChecksum checksum, long fastChecksum) {
+		loadIfNecessary();		
+		Long previousFastChecksum = fastChecksums.put(checksum, fastChecksum);
+		
+		if (previousFastChecksum == null || previousFastChecksum != fastChecksum) {
+			append(checksum, fastChecksum);
+		}
+	}
+	
+	/**
+	 * Removes all entries whose checksum is not in the given set, and rewrites the 
+	 * cache file if it contains removed or duplicate entries. 
+	 */
+	public synchronized void retainAll(Set<FileChecksum> checksums) {
+		loadIfNecessary();
+		fastChecksums.keySet().retainAll(checksums);
+		
+		if (cacheFileLineCount > fastChecksums.size()) {
+			logger.log(Level.FINE, "Compacting fast checksum cache {0} from {1} to {2} entries ...", new Object[] { cacheFile, cacheFileLineCount, fastChecksums.size() });
+			rewrite();
+		}
+	}
+	
+	public synchronized int size() {
+		loadIfNecessary();
+		return fastChecksums.size();
+	}
+	
+	private void loadIfNecessary() {
+		if (fastChecksums != null) {
+			return;
+		}
+		
+		fastChecksums = new HashMap<FileChecksum, Long>();
+		cacheFileLineCount = 0;
+		
+		if (!cacheFile.exists()) {
+			return;
+		}
+		
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), CACHE_FILE_CHARSET))) {
+			String line;
+			
+			while ((line = reader.readLine()) != null) {
+				cacheFileLineCount++;
+				String[] lineParts = line.split(" ");
+				
+				try {
+					if (lineParts.length == 2) {
+						fastChecksums.put(FileChecksum.parseFileChecksum(lineParts[0]), new BigInteger(lineParts[1], 16).longValue());
+					}
+				}
+				catch (Exception e) {
+					logger.log(Level.WARNING, "Ignoring invalid line in fast checksum cache: " + line);
+				}
+			}
+			
+			logger.log(Level.FINE, "Loaded {0} fast checksum(s) from {1}", new Object[] { fastChecksums.size(), cacheFile });
+		}
+		catch (IOException e) {
+			logger.log(Level.WARNING, "Cannot read fast checksum cache " + cacheFile + ". Ignoring.", e);
+		}
+	}
+	
+	private void append(FileChecksum checksum, long fastChecksum) {
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(cacheFile, true), CACHE_FILE_CHARSET)) {
+			writeLine(writer, checksum, fastChecksum);
+			cacheFileLineCount++;
+		}
+		catch (IOException e) {
+			logger.log(Level.WARNING, "Cannot write to fast checksum cache " + cacheFile + ". Ignoring.", e);
+		}
+	}
+	
+	private void rewrite() {
+		File tempCacheFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+		
+		try {
+			try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempCacheFile), CACHE_FILE_CHARSET))) {
+				for (Map.Entry<FileChecksum, Long> fastChecksumEntry : fastChecksums.entrySet()) {
+					writeLine(writer, fastChecksumEntry.getKey(), fastChecksumEntry.getValue());
+				}
+			}
+			
+			Files.move(tempCacheFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			cacheFileLineCount = fastChecksums.size();
+		}
+		catch (IOException e) {
+			logger.log(Level.WARNING, "Cannot rewrite fast checksum cache " + cacheFile + ". Ignoring.", e);
+		}
+		finally {
+			tempCacheFile.delete();
+		}
+	}
+	
+	private void writeLine(Writer writer, FileChecksum checksum, long fastChecksum) throws IOException {
+		writer.write(checksum.toString() + " " + Long.toHexString(fastChecksum) + "\n");
+	}
+}
@@ -39,6 +39,7 @@ import org.syncany.database.FileVersion.FileStatus;
 import org.syncany.database.FileVersion.FileType;
 import org.syncany.util.EnvironmentUtil;
 import org.syncany.util.FileUtil;
+import org.syncany.util.XxHash64;
 
 /**
  * The file version comparator is a helper class to compare {@link FileVersion}s with each 
@@ -61,6 +62,7 @@ public class FileVersionComparator {
 	private static final Logger logger = Logger.getLogger(FileVersionComparator.class.getSimpleName());
 	private File rootFolder;
 	private String checksumAlgorithm;
+	private FastChecksumCache fastChecksumCache;
 
 	/**
 	 * Creates a new file version comparator helper class. 
@@ -73,8 +75,26 @@ public class FileVersionComparator {
 	 * @param checksumAlgorithm Digest algorithm for checksum calculation, e.g. "SHA1" or "MD5"
 	 */
 	public FileVersionComparator(File rootFolder, String checksumAlgorithm) {
+		this(rootFolder, checksumAlgorithm, null);
+	}
+
+	/**
+	 * Creates a new file version comparator helper class that uses a {@link FastChecksumCache}
+	 * to avoid calculating the full checksum of a local file if possible. 
+	 * 
+	 * <p>If a local {@link File} is compared to a {@link FileVersion} and the fast checksum of
+	 * the expected file content is known, the fast checksum of the local file is calculated first.
+	 * The full checksum is only calculated if the fast checksums match. Whenever the full checksum
+	 * is calculated, the fast checksum is calculated in the same pass and added to the cache. 
+	 * 
+	 * @param rootFolder Base folder to determine a relative path to 
+	 * @param checksumAlgorithm Digest algorithm for checksum calculation, e.g. "SHA1" or "MD5"
+	 * @param fastChecksumCache Cache of known fast checksums, or <tt>null</tt> to always calculate the full checksum  
+	 */
+	public FileVersionComparator(File rootFolder, String checksumAlgorithm, FastChecksumCache fastChecksumCache) {
 		this.rootFolder = rootFolder;
 		this.checksumAlgorithm = checksumAlgorithm;
+		this.fastChecksumCache = fastChecksumCache;
 	}
 
 	/**
@@ -128,7 +148,8 @@ public class FileVersionComparator {
 			boolean actualFileForceChecksum) {
 
 		FileProperties expectedLocalFileVersionProperties = captureFileProperties(expectedLocalFileVersion);
-		FileProperties actualFileProperties = captureFileProperties(actualLocalFile, actualFileKnownChecksum, actualFileForceChecksum);
+		FileProperties actualFileProperties = captureFileProperties(actualLocalFile, actualFileKnownChecksum, actualFileForceChecksum,
+				expectedLocalFileVersionProperties);
 
 		return compare(expectedLocalFileVersionProperties, actualFileProperties, actualFileForceChecksum);
 	}
@@ -381,6 +402,15 @@ public class FileVersionComparator {
 	}
 
 	public FileProperties captureFileProperties(File file, FileChecksum knownChecksum, boolean forceChecksum) {
+		return captureFileProperties(file, knownChecksum, forceChecksum, null);
+	}
+
+	/**
+	 * Captures the properties of the given local file. If <tt>forceChecksum</tt> is set and the
+	 * properties of the expected file are given, the checksum is only calculated if the file might
+	 * be equal to the expected file (see {@link #createChecksum(File, FileProperties, FileProperties) createChecksum()}).
+	 */
+	private FileProperties captureFileProperties(File file, FileChecksum knownChecksum, boolean forceChecksum, FileProperties expectedFileProperties) {
 		FileProperties fileProperties = new FileProperties();
 		fileProperties.relativePath = FileUtil.getRelativeDatabasePath(rootFolder, file);
 
@@ -449,7 +479,7 @@ public class FileVersionComparator {
 				if (fileProperties.type == FileType.FILE && forceChecksum) {
 					try {
 						if (fileProperties.size > 0) {
-							fileProperties.checksum = new FileChecksum(FileUtil.createChecksum(file, checksumAlgorithm));
+							fileProperties.checksum = createChecksum(file, fileProperties, expectedFileProperties);
 						}
 						else {
 							fileProperties.checksum = null;
@@ -481,6 +511,49 @@ public class FileVersionComparator {
 		}
 	}
 
+	/**
+	 * Calculates the checksum of a local file in tiers, and skips the expensive checksum
+	 * calculation if the file has certainly changed compared to the expected file:
+	 * 
+	 * <ul>
+	 *  <li>If the size of the file differs from the expected size, no checksum is calculated.</li>
+	 *  <li>If the fast checksum of the expected file content is known, the fast checksum of the
+	 *      file is calculated. If it differs, no checksum is calculated.</li>
+	 *  <li>Otherwise, the full checksum is calculated (and the fast checksum is cached).</li>
+	 * </ul>
+	 * 
+	 * @return Returns the checksum of the file, or <tt>null</tt> if the file has changed 
+	 */
+	private FileChecksum createChecksum(File file, FileProperties actualFileProperties, FileProperties expectedFileProperties) throws Exception {
+		boolean compareToExpectedFile = expectedFileProperties != null && expectedFileProperties.exists
+				&& expectedFileProperties.type == FileType.FILE && expectedFileProperties.checksum != null;
+		
+		if (compareToExpectedFile) {
+			if (expectedFileProperties.size != actualFileProperties.size) {
+				logger.log(Level.FINE, "- Size of file {0} differs from expected size, skipping checksum.", file);
+				return null;
+			}
+			
+			Long expectedFastChecksum = (fastChecksumCache != null) ? fastChecksumCache.get(expectedFileProperties.checksum) : null;
+			
+			if (expectedFastChecksum != null && expectedFastChecksum != FileUtil.createFastChecksum(file)) {
+				logger.log(Level.FINE, "- Fast checksum of file {0} differs from expected fast checksum, skipping checksum.", file);
+				return null;
+			}
+		}
+		
+		if (fastChecksumCache != null) {
+			XxHash64 fastChecksum = new XxHash64();
+			FileChecksum checksum = new FileChecksum(FileUtil.createChecksum(file, checksumAlgorithm, fastChecksum));
+			
+			fastChecksumCache.put(checksum, fastChecksum.getValue());
+			return checksum;
+		}
+		else {
+			return new FileChecksum(FileUtil.createChecksum(file, checksumAlgorithm));
+		}
+	}
+
 	public FileProperties captureFileProperties(FileVersion fileVersion) {
 		if (fileVersion == null) {
 			return null;
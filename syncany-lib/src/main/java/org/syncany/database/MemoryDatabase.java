@@ -42,8 +42,8 @@ import org.syncany.database.PartialFileHistory.FileHistoryId;
  * from the current accumulated database. Examples include {@link #getChunk(byte[]) getChunk()},
  * {@link #getContent(byte[]) getContent()} and {@link #getMultiChunk(byte[]) getMultiChunk()}.
  * 
- * <p>To allow this convenience, a few caches are kept in memory, and updated whenever a
- * database version is added or removed.
+ * <p>To allow this convenience, a few caches are kept in memory. They are updated incrementally
+ * whenever a database version is added, and rebuilt whenever a database version is removed.
  * 
  * @see DatabaseVersion
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
@@ -51,20 +51,33 @@ import org.syncany.database.PartialFileHistory.FileHistoryId;
 public class MemoryDatabase {
     private List<DatabaseVersion> databaseVersions;    
 	
-    // Caches
-    private DatabaseVersion fullDatabaseVersionCache;
-    private Map<String, PartialFileHistory> filenameHistoryCache;
+    // Caches (only ever grow, rebuilt if a database version is removed)
+    private Map<ChunkChecksum, ChunkEntry> chunkCache;
+    private Map<MultiChunkId, MultiChunkEntry> multiChunkCache;
+    private ChunkMultiChunkIndex chunkMultiChunkCache;
+    private Map<FileChecksum, FileContent> fileContentCache;
+    private Map<FileHistoryId, PartialFileHistory> fileHistoryCache;
+    private Map<String, List<PartialFileHistory>> filenameHistoryCache;
     private Map<VectorClock, DatabaseVersion> databaseVersionIdCache;
     private Map<FileChecksum, List<PartialFileHistory>> contentChecksumFileHistoriesCache;
+    
+    // Not part of the database versions (see addRepackagedMultiChunks())
+    private ChunkMultiChunkIndex repackagedChunkMultiChunkIndex;
 
     public MemoryDatabase() {
     	databaseVersions = new ArrayList<DatabaseVersion>();    	
         
     	// Caches
-    	fullDatabaseVersionCache = new DatabaseVersion();    	
-    	filenameHistoryCache = new HashMap<String, PartialFileHistory>();
+    	chunkCache = new HashMap<ChunkChecksum, ChunkEntry>();
+    	multiChunkCache = new HashMap<MultiChunkId, MultiChunkEntry>();
+    	chunkMultiChunkCache = new ChunkMultiChunkIndex();
+    	fileContentCache = new HashMap<FileChecksum, FileContent>();
+    	fileHistoryCache = new HashMap<FileHistoryId, PartialFileHistory>();
+    	filenameHistoryCache = new HashMap<String, List<PartialFileHistory>>();
     	databaseVersionIdCache = new HashMap<VectorClock, DatabaseVersion>();
     	contentChecksumFileHistoriesCache = new HashMap<FileChecksum, List<PartialFileHistory>>();
+    	
+    	repackagedChunkMultiChunkIndex = new ChunkMultiChunkIndex();
     }   	
 	
 	public DatabaseVersion getLastDatabaseVersion() {
@@ -84,26 +97,58 @@ public class MemoryDatabase {
 	}	
 
 	public FileContent getContent(FileChecksum checksum) {
-		return (checksum != null) ? fullDatabaseVersionCache.getFileContent(checksum) : null;
+		return (checksum != null) ? fileContentCache.get(checksum) : null;
 	}	
 	
 	public Object getChunk(ChunkChecksum checksum) {
-		return (checksum != null) ? fullDatabaseVersionCache.getChunk(checksum) : null;
+		return (checksum != null) ? chunkCache.get(checksum) : null;
 	}
 	
 	public MultiChunkEntry getMultiChunk(MultiChunkId id) {
-		return fullDatabaseVersionCache.getMultiChunk(id);
+		return multiChunkCache.get(id);
 	}	
 	
 	/**
      * Get a multichunk that this chunk is contained in.
      */
 	public MultiChunkId getMultiChunkIdForChunk(ChunkChecksum chunk) {
-		return fullDatabaseVersionCache.getMultiChunkId(chunk);
+		return chunkMultiChunkCache.get(chunk);
 	}	
 	
+	/**
+	 * Get the repackaged multichunk that this chunk is contained in, or <tt>null</tt> if
+	 * the chunk has not been repackaged. 
+	 * 
+	 * @see #addRepackagedMultiChunks(Collection)
+	 */
+	public MultiChunkId getRepackagedMultiChunkIdForChunk(ChunkChecksum chunk) {
+		return repackagedChunkMultiChunkIndex.get(chunk);
+	}
+	
+	/**
+	 * Adds multichunks that replace the existing multichunks of their chunks, i.e. multichunks
+	 * that were repackaged by another client's cleanup. Because the old multichunks might have 
+	 * already been deleted from the remote storage, these multichunks take precedence when looking
+	 * up the multichunk of a chunk (see {@link #getRepackagedMultiChunkIdForChunk(ChunkChecksum)}).
+	 * 
+	 * <p>Unlike multichunks of the database versions, the repackaged multichunks are 
+	 * not removed when a database version is removed.
+	 */
+	public void addRepackagedMultiChunks(Collection<MultiChunkEntry> repackagedMultiChunks) {
+		for (MultiChunkEntry repackagedMultiChunk : repackagedMultiChunks) {
+			repackagedChunkMultiChunkIndex.add(repackagedMultiChunk);
+		}
+	}
+	
 	public PartialFileHistory getFileHistory(String relativeFilePath) {
-		return filenameHistoryCache.get(relativeFilePath); 
+		List<PartialFileHistory> fileHistoriesWithPath = filenameHistoryCache.get(relativeFilePath);
+		
+		if (fileHistoriesWithPath == null) {
+			return null;
+		}
+		
+		// Multiple histories may share a path (e.g. after a conflict); the last updated one wins
+		return fileHistoriesWithPath.get(fileHistoriesWithPath.size()-1); 
 	}
 	
 	public List<PartialFileHistory> getFileHistories(FileChecksum fileContentChecksum) {
@@ -111,22 +156,19 @@ public class MemoryDatabase {
 	}	
 	
 	public PartialFileHistory getFileHistory(FileHistoryId fileId) {
-		return fullDatabaseVersionCache.getFileHistory(fileId); 
+		return fileHistoryCache.get(fileId); 
 	}	
 
 	public Collection<PartialFileHistory> getFileHistories() {
-		return fullDatabaseVersionCache.getFileHistories();		
+		return fileHistoryCache.values();		
 	}
 	
 	public void addDatabaseVersion(DatabaseVersion databaseVersion) {		
 		databaseVersions.add(databaseVersion);
 		
 		// Populate caches
-		// WARNING: Do NOT reorder, order important!!
 		updateDatabaseVersionIdCache(databaseVersion);
-		updateFullDatabaseVersionCache(databaseVersion);
-		updateFilenameHistoryCache();
-		updateContentChecksumCache();
+		updateCaches(databaseVersion);
 	} 	
 	
 	public void addDatabaseVersions(List<DatabaseVersion> databaseVersions) {		
@@ -138,108 +180,143 @@ public class MemoryDatabase {
 	public void removeDatabaseVersion(DatabaseVersion databaseVersion) {
 		databaseVersions.remove(databaseVersion);
 		
-		// Populate caches
-		// WARNING: Do NOT reorder, order important!!
-		updateFullDatabaseVersionCache();
-		updateDatabaseVersionIdCache();
-		updateFilenameHistoryCache();
-		updateContentChecksumCache();
-	}
-
-	// TODO [medium] Very inefficient. Always updates whole cache
-	private void updateContentChecksumCache() {
-		contentChecksumFileHistoriesCache.clear();
+		// Rebuild caches (the caches are append-only)
+		clearCaches();
 		
-		for (PartialFileHistory fullFileHistory : fullDatabaseVersionCache.getFileHistories()) {
-			FileChecksum lastVersionChecksum = fullFileHistory.getLastVersion().getChecksum();
-			
-			if (lastVersionChecksum != null) {
-				List<PartialFileHistory> historiesWithVersionsWithSameChecksum = contentChecksumFileHistoriesCache.get(lastVersionChecksum);
-				
-				// Create if it does not exist
-				if (historiesWithVersionsWithSameChecksum == null) {
-					historiesWithVersionsWithSameChecksum = new ArrayList<PartialFileHistory>();
-				}
-				
-				// Add to cache
-				historiesWithVersionsWithSameChecksum.add(fullFileHistory);
-				contentChecksumFileHistoriesCache.put(lastVersionChecksum, historiesWithVersionsWithSameChecksum);
-			}
+		for (DatabaseVersion remainingDatabaseVersion : databaseVersions) {
+			updateDatabaseVersionIdCache(remainingDatabaseVersion);
+			updateCaches(remainingDatabaseVersion);
 		}
-				
 	}
-	
-	private void updateFilenameHistoryCache() {
-		// TODO [medium] Performance: This throws away the unchanged entries. It should only update new database version
-		filenameHistoryCache.clear(); 
-		 
-		for (PartialFileHistory cacheFileHistory : fullDatabaseVersionCache.getFileHistories()) {
-			FileVersion lastVersion = cacheFileHistory.getLastVersion();
-			String fileName = lastVersion.getPath();
-			
-			if (lastVersion.getStatus() != FileStatus.DELETED) {
-				filenameHistoryCache.put(fileName, cacheFileHistory);				
-			}
-		}		
+
+	private void clearCaches() {
+		chunkCache.clear();
+		multiChunkCache.clear();
+		chunkMultiChunkCache.clear();
+		fileContentCache.clear();
+		fileHistoryCache.clear();
+		filenameHistoryCache.clear();
+		databaseVersionIdCache.clear();
+		contentChecksumFileHistoriesCache.clear();
 	}
 	
 	private void updateDatabaseVersionIdCache(DatabaseVersion newDatabaseVersion) {
 		databaseVersionIdCache.put(newDatabaseVersion.getVectorClock(), newDatabaseVersion);
 	}
 	
-	private void updateDatabaseVersionIdCache() {
-		databaseVersionIdCache.clear();
-		
-		for (DatabaseVersion databaseVersion : databaseVersions) {
-			updateDatabaseVersionIdCache(databaseVersion);
-		}
-	}
-	
-	private void updateFullDatabaseVersionCache() {
-		fullDatabaseVersionCache = new DatabaseVersion();
-		
-		for (DatabaseVersion databaseVersion : databaseVersions) {
-			updateFullDatabaseVersionCache(databaseVersion);
-		}
-	}
-	
-	private void updateFullDatabaseVersionCache(DatabaseVersion newDatabaseVersion) {
+	private void updateCaches(DatabaseVersion newDatabaseVersion) {
 		// Chunks
 		for (ChunkEntry sourceChunk : newDatabaseVersion.getChunks()) {
-			if (fullDatabaseVersionCache.getChunk(sourceChunk.getChecksum()) == null) {
-				fullDatabaseVersionCache.addChunk(sourceChunk);
+			if (!chunkCache.containsKey(sourceChunk.getChecksum())) {
+				chunkCache.put(sourceChunk.getChecksum(), sourceChunk);
 			}
 		}
 		
 		// Multichunks
 		for (MultiChunkEntry sourceMultiChunk : newDatabaseVersion.getMultiChunks()) {
-			if (fullDatabaseVersionCache.getMultiChunk(sourceMultiChunk.getId()) == null) {
-				fullDatabaseVersionCache.addMultiChunk(sourceMultiChunk);
+			if (!multiChunkCache.containsKey(sourceMultiChunk.getId())) {
+				multiChunkCache.put(sourceMultiChunk.getId(), sourceMultiChunk);
+				chunkMultiChunkCache.add(sourceMultiChunk);
 			}
 		}
 		
 		// Contents
 		for (FileContent sourceFileContent : newDatabaseVersion.getFileContents()) {
-			if (fullDatabaseVersionCache.getFileContent(sourceFileContent.getChecksum()) == null) {
-				fullDatabaseVersionCache.addFileContent(sourceFileContent);
+			if (!fileContentCache.containsKey(sourceFileContent.getChecksum())) {
+				fileContentCache.put(sourceFileContent.getChecksum(), sourceFileContent);
 			}
 		}		
 		
 		// Histories
 		for (PartialFileHistory sourceFileHistory : newDatabaseVersion.getFileHistories()) {
-			PartialFileHistory targetFileHistory = fullDatabaseVersionCache.getFileHistory(sourceFileHistory.getFileHistoryId());
+			PartialFileHistory targetFileHistory = fileHistoryCache.get(sourceFileHistory.getFileHistoryId());
+			FileVersion previousLastVersion = null;
 			
 			if (targetFileHistory == null) {
-				fullDatabaseVersionCache.addFileHistory((PartialFileHistory) sourceFileHistory.clone());
+				targetFileHistory = sourceFileHistory.clone();
+				fileHistoryCache.put(targetFileHistory.getFileHistoryId(), targetFileHistory);
 			}
 			else {
+				previousLastVersion = targetFileHistory.getLastVersion();
+				
 				for (FileVersion sourceFileVersion : sourceFileHistory.getFileVersions().values()) {
 					if (targetFileHistory.getFileVersion(sourceFileVersion.getVersion()) == null) {
 						targetFileHistory.addFileVersion(sourceFileVersion);
 					}
 				}
 			}
+			
+			updateFilenameHistoryCache(targetFileHistory, previousLastVersion);
+			updateContentChecksumCache(targetFileHistory, previousLastVersion);
 		}		
 	}
 	
+	private void updateFilenameHistoryCache(PartialFileHistory fileHistory, FileVersion previousLastVersion) {
+		FileVersion lastVersion = fileHistory.getLastVersion();
+		
+		// Remove from previous path list (by identity, other histories with the same path remain)
+		if (previousLastVersion != null) {
+			List<PartialFileHistory> historiesWithPreviousPath = filenameHistoryCache.get(previousLastVersion.getPath());
+			
+			if (historiesWithPreviousPath != null) {
+				for (int i = 0; i < historiesWithPreviousPath.size(); i++) {
+					if (historiesWithPreviousPath.get(i) == fileHistory) {
+						historiesWithPreviousPath.remove(i);
+						break;
+					}
+				}
+				
+				if (historiesWithPreviousPath.size() == 0) {
+					filenameHistoryCache.remove(previousLastVersion.getPath());
+				}
+			}
+		}
+		
+		// Add to new path list
+		if (lastVersion.getStatus() != FileStatus.DELETED) {
+			List<PartialFileHistory> historiesWithPath = filenameHistoryCache.get(lastVersion.getPath());
+			
+			if (historiesWithPath == null) {
+				historiesWithPath = new ArrayList<PartialFileHistory>(1);
+				filenameHistoryCache.put(lastVersion.getPath(), historiesWithPath);
+			}
+			
+			historiesWithPath.add(fileHistory);
+		}
+	}
+	
+	private void updateContentChecksumCache(PartialFileHistory fileHistory, FileVersion previousLastVersion) {
+		FileChecksum lastVersionChecksum = fileHistory.getLastVersion().getChecksum();
+		FileChecksum previousLastVersionChecksum = (previousLastVersion != null) ? previousLastVersion.getChecksum() : null;
+		
+		// Remove from previous checksum list (by identity, the history's hash code changes when versions are added)
+		if (previousLastVersionChecksum != null) {
+			List<PartialFileHistory> historiesWithPreviousChecksum = contentChecksumFileHistoriesCache.get(previousLastVersionChecksum);
+			
+			if (historiesWithPreviousChecksum != null) {
+				for (int i = 0; i < historiesWithPreviousChecksum.size(); i++) {
+					if (historiesWithPreviousChecksum.get(i) == fileHistory) {
+						historiesWithPreviousChecksum.remove(i);
+						break;
+					}
+				}
+				
+				if (historiesWithPreviousChecksum.size() == 0) {
+					contentChecksumFileHistoriesCache.remove(previousLastVersionChecksum);
+				}
+			}
+		}
+		
+		// Add to new checksum list
+		if (lastVersionChecksum != null) {
+			List<PartialFileHistory> historiesWithVersionsWithSameChecksum = contentChecksumFileHistoriesCache.get(lastVersionChecksum);
+			
+			if (historiesWithVersionsWithSameChecksum == null) {
+				historiesWithVersionsWithSameChecksum = new ArrayList<PartialFileHistory>();
+				contentChecksumFileHistoriesCache.put(lastVersionChecksum, historiesWithVersionsWithSameChecksum);
+			}
+			
+			historiesWithVersionsWithSameChecksum.add(fileHistory);
+		}
+	}
 }
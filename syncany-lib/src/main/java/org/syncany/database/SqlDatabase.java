@@ -19,10 +19,12 @@ package org.syncany.database;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import org.syncany.config.Config;
@@ -102,7 +104,7 @@ public class SqlDatabase {
 		applicationDao.writeKnownRemoteDatabases(remoteDatabases);
 	}
 
-	public List<DatabaseRemoteFile> getKnownDatabases() {
+	public Set<DatabaseRemoteFile> getKnownDatabases() {
 		return applicationDao.getKnownDatabases();
 	}
 
@@ -132,8 +134,8 @@ public class SqlDatabase {
 		return databaseVersionDao.persistDatabaseVersion(databaseVersion);
 	}
 	
-	public void writeDatabaseVersionHeader(DatabaseVersionHeader databaseVersionHeader) throws SQLException {
-		databaseVersionDao.writeDatabaseVersionHeader(databaseVersionHeader);
+	public long writeDatabaseVersionHeader(DatabaseVersionHeader databaseVersionHeader) throws SQLException {
+		return databaseVersionDao.writeDatabaseVersionHeader(databaseVersionHeader);
 	}
 
 	public void markDatabaseVersionDirty(VectorClock vectorClock) {
@@ -222,6 +224,14 @@ public class SqlDatabase {
 		return multiChunkDao.getUnusedMultiChunks();
 	}
 	
+	public List<MultiChunkEntry> getMultiChunksForRepackaging(double minUnusedRatio) {
+		return multiChunkDao.getMultiChunksForRepackaging(minUnusedRatio);
+	}
+	
+	public void writeRepackagedMultiChunks(long databaseVersionId, Collection<MultiChunkEntry> repackagedMultiChunks) throws SQLException {
+		multiChunkDao.writeRepackagedMultiChunks(connection, databaseVersionId, repackagedMultiChunks);
+	}
+	
 	private void removeUnreferencedMultiChunks() throws SQLException {
 		multiChunkDao.removeUnreferencedMultiChunks();
 	}
@@ -246,6 +256,14 @@ public class SqlDatabase {
 		return fileContentDao.getFileContent(fileChecksum, includeChunkChecksums);
 	}
 
+	public Map<ChunkChecksum, List<ChunkPosition>> getChunkPositions(Collection<ChunkChecksum> chunkChecksums) {
+		return fileContentDao.getChunkPositions(chunkChecksums);
+	}
+
+	public Set<FileChecksum> getFileContentChecksums() {
+		return fileContentDao.getFileContentChecksums();
+	}
+
 	private void removeUnreferencedFileContents() throws SQLException {
 		fileContentDao.removeUnreferencedFileContents();
 	}
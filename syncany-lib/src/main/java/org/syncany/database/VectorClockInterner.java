@@ -0,0 +1,120 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.database;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The vector clock interner creates {@link CompactVectorClock}s from regular
+ * {@link VectorClock}s. It assigns each client name a dense index (in the order in
+ * which the client names are first seen), so that the compact vector clocks can
+ * store their counters in an array.
+ *
+ * <p>Converted vector clocks are cached by identity, i.e. converting the same
+ * {@link VectorClock} instance twice returns the same compact vector clock. Because
+ * regular vector clocks are mutable, this cache must be {@link #clearCache() cleared}
+ * whenever a vector clock might have been changed.
+ *
+ * <p>Instances of this class are not thread-safe.
+ *
+ * @author agent <agent@local>
+ */
+public class VectorClockInterner {
+	private Map<String, Integer> clientIndexes;
+	private List<String> clientNames;
+	private Map<VectorClock, CompactVectorClock> compactVectorClockCache;
+
+	public VectorClockInterner() {
+		this.clientIndexes = new HashMap<String, Integer>();
+		this.clientNames = new ArrayList<String>();
+		this.compactVectorClockCache = new IdentityHashMap<VectorClock, CompactVectorClock>();
+	}
+
+	/**
+	 * Returns the compact representation of the given vector clock. If the
+	 * same instance has been converted before, the cached result is returned.
+	 */
+	public CompactVectorClock intern(VectorClock vectorClock) {
+		CompactVectorClock compactVectorClock = compactVectorClockCache.get(vectorClock);
+
+		if (compactVectorClock == null) {
+			compactVectorClock = toCompactVectorClock(vectorClock);
+			compactVectorClockCache.put(vectorClock, compactVectorClock);
+		}
+
+		return compactVectorClock;
+	}
+
+	/**
+	 * Returns the dense index of the given client name, and
+	 * assigns a new index if the client has not been seen before.
+	 */
+	public int getClientIndex(String clientName) {
+		Integer clientIndex = clientIndexes.get(clientName);
+
+		if (clientIndex == null) {
+			clientIndex = clientNames.size();
+
+			clientNames.add(clientName);
+			clientIndexes.put(clientName, clientIndex);
+		}
+
+		return clientIndex;
+	}
+
+	public String getClientName(int clientIndex) {
+		return clientNames.get(clientIndex);
+	}
+
+	/**
+	 * Clears the identity cache of converted vector clocks. The
+	 * client indexes are kept.
+	 */
+	public void clearCache() {
+		compactVectorClockCache.clear();
+	}
+
+	private CompactVectorClock toCompactVectorClock(VectorClock vectorClock) {
+		int[] entryClientIndexes = new int[vectorClock.size()];
+		long[] entryClocks = new long[vectorClock.size()];
+		int maxClientIndex = -1;
+		int entryIndex = 0;
+
+		for (Map.Entry<String, Long> vectorClockEntry : vectorClock.entrySet()) {
+			int clientIndex = getClientIndex(vectorClockEntry.getKey());
+
+			entryClientIndexes[entryIndex] = clientIndex;
+			entryClocks[entryIndex] = vectorClockEntry.getValue();
+			maxClientIndex = Math.max(maxClientIndex, clientIndex);
+
+			entryIndex++;
+		}
+
+		long[] clocks = new long[maxClientIndex + 1];
+
+		for (int i = 0; i < entryIndex; i++) {
+			clocks[entryClientIndexes[i]] = entryClocks[i];
+		}
+
+		return new CompactVectorClock(this, clocks);
+	}
+}
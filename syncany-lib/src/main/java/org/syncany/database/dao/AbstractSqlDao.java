@@ -27,6 +27,9 @@ import org.syncany.database.DatabaseConnectionFactory;
  * Small helper class to implement common tasks for the inheriting 
  * SQL data access objects.
  * 
+ * <p>Statements created via {@link #getStatement(String)} are reported as trace
+ * events (see {@link SqlStatementTracer}) if a flight recording is running.
+ * 
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public abstract class AbstractSqlDao {
@@ -45,6 +48,7 @@ public abstract class AbstractSqlDao {
 	}
 	
 	protected PreparedStatement getStatement(Connection overrideConnection, String resourceId) throws SQLException {
-		return overrideConnection.prepareStatement(DatabaseConnectionFactory.getStatement(resourceId));
+		PreparedStatement preparedStatement = overrideConnection.prepareStatement(DatabaseConnectionFactory.getStatement(resourceId));
+		return SqlStatementTracer.wrap(preparedStatement, resourceId);
 	}
 }
@@ -21,8 +21,9 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import org.syncany.connection.plugins.DatabaseRemoteFile;
@@ -62,12 +63,12 @@ public class ApplicationSqlDao extends AbstractSqlDao {
 	
 	/**
 	 * Queries the database for already known {@link DatabaseRemoteFile}s and returns a
-	 * list of all of them. 
+	 * set of all of them. 
 	 * 
-	 * @return Returns a list of all known/processed remote databases
+	 * @return Returns a set of all known/processed remote databases
 	 */
-	public List<DatabaseRemoteFile> getKnownDatabases() {
-		List<DatabaseRemoteFile> knownDatabases = new ArrayList<DatabaseRemoteFile>();
+	public Set<DatabaseRemoteFile> getKnownDatabases() {
+		Set<DatabaseRemoteFile> knownDatabases = new HashSet<DatabaseRemoteFile>();
 				
 		try (PreparedStatement preparedStatement = getStatement("/sql/application.select.all.getKnownDatabases.sql")) {
 			try (ResultSet resultSet = preparedStatement.executeQuery()) {		
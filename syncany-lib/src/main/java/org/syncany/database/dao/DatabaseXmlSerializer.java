@@ -38,6 +38,9 @@ import org.syncany.database.DatabaseVersion;
 import org.syncany.database.DatabaseVersionHeader.DatabaseVersionType;
 import org.syncany.database.MemoryDatabase;
 import org.syncany.database.VectorClock;
+import org.syncany.metrics.TraceEvent;
+import org.syncany.metrics.TraceEventType;
+import org.syncany.metrics.TraceEvents;
 
 /**
  * Serializes a {@link MemoryDatabase} or a list of {@link DatabaseVersion}s to an 
@@ -105,6 +108,7 @@ public class DatabaseXmlSerializer {
 	}
 	
 	public void load(MemoryDatabase db, File databaseFile, VectorClock fromVersion, VectorClock toVersion, boolean headersOnly, DatabaseVersionType filterType) throws IOException {
+		TraceEvent parseEvent = TraceEvents.begin(TraceEventType.DATABASE_FILE_PARSED);
         InputStream is;
         
 		if (transformer == null) {
@@ -124,6 +128,10 @@ public class DatabaseXmlSerializer {
 			SAXParser saxParser = factory.newSAXParser();
 			
 			saxParser.parse(is, new DatabaseXmlParseHandler(db, fromVersion, toVersion, headersOnly, filterType));
+			
+			if (parseEvent.isEnabled()) {
+				parseEvent.commit(databaseFile.getName(), databaseFile.length(), headersOnly);
+			}
         }
         catch (Exception e) {
         	throw new IOException(e);
@@ -21,12 +21,17 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.ChunkPosition;
 import org.syncany.database.FileContent;
 import org.syncany.database.FileContent.FileChecksum;
 import org.syncany.database.VectorClock;
@@ -143,6 +148,29 @@ public class FileContentSqlDao extends AbstractSqlDao {
 		}
 	}
 
+	/**
+	 * Queries the database for the checksums of all {@link FileContent}s, i.e. of all file
+	 * contents that are referenced by any file version.
+	 * 
+	 * @return Returns the checksums of all file contents in the database
+	 */
+	public Set<FileChecksum> getFileContentChecksums() {
+		try (PreparedStatement preparedStatement = getStatement("/sql/filecontent.select.all.getFileContentChecksums.sql")) {
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				Set<FileChecksum> fileChecksums = new HashSet<FileChecksum>();
+				
+				while (resultSet.next()) {
+					fileChecksums.add(FileChecksum.parseFileChecksum(resultSet.getString("checksum")));
+				}
+				
+				return fileChecksums;
+			}
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	/**
 	 * Queries the SQL database for all {@link FileContent}s that <b>originally appeared</b> in the
 	 * database version identified by the given vector clock.
@@ -169,6 +197,62 @@ public class FileContentSqlDao extends AbstractSqlDao {
 		}
 	}
 
+	/**
+	 * Queries the SQL database for the positions of the given chunks in the <b>current</b> local
+	 * file tree, i.e. in the last versions of all non-deleted files. For each chunk, the result map contains
+	 * a list of candidate {@link ChunkPosition}s (path, offset and size), or no entry if the chunk 
+	 * is not part of any local file. 
+	 * 
+	 * <p>The offsets are calculated from the chunk order in the <i>filecontent_chunk</i> table and the 
+	 * chunk sizes in the <i>chunk</i> table. They reflect the file as it was last indexed, so the chunk
+	 * data found at these positions must be verified before it is used.
+	 * 
+	 * @param chunkChecksums Chunk checksums to look up in the local file tree
+	 * @return Returns a map of chunk checksums to the chunk's positions in local files
+	 */
+	public Map<ChunkChecksum, List<ChunkPosition>> getChunkPositions(Collection<ChunkChecksum> chunkChecksums) {
+		Map<ChunkChecksum, List<ChunkPosition>> chunkPositions = new HashMap<ChunkChecksum, List<ChunkPosition>>();
+
+		if (chunkChecksums.size() == 0) {
+			return chunkPositions;
+		}
+		
+		// Gather a unique array of checksum strings (required for query!)
+		Set<ChunkChecksum> chunkChecksumSet = new HashSet<ChunkChecksum>(chunkChecksums);
+		String[] checksums = new String[chunkChecksumSet.size()];
+		int i = 0;
+		
+		for (ChunkChecksum checksum : chunkChecksumSet) {
+			checksums[i++] = checksum.toString();
+		}
+		
+		try (PreparedStatement preparedStatement = getStatement("/sql/filecontent.select.master.getChunkPositionsForChunks.sql")) {
+			preparedStatement.setArray(1, connection.createArrayOf("varchar", checksums));
+
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				while (resultSet.next()) {
+					ChunkChecksum chunkChecksum = ChunkChecksum.parseChunkChecksum(resultSet.getString("chunk_checksum"));
+					ChunkPosition chunkPosition = new ChunkPosition(chunkChecksum, resultSet.getString("path"), 
+							resultSet.getLong("chunk_offset"), resultSet.getInt("size"));
+					
+					List<ChunkPosition> positionsForChunk = chunkPositions.get(chunkChecksum);
+					
+					if (positionsForChunk == null) {
+						positionsForChunk = new ArrayList<ChunkPosition>();
+						chunkPositions.put(chunkChecksum, positionsForChunk);
+					}
+					
+					positionsForChunk.add(chunkPosition);
+				}
+			}
+			
+			return chunkPositions;
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	private FileContent getFileContentWithoutChunkChecksums(FileChecksum fileChecksum) {
 		try (PreparedStatement preparedStatement = getStatement("/sql/filecontent.select.all.getFileContentByChecksumWithoutChunkChecksums.sql")) {
 			preparedStatement.setString(1, fileChecksum.toString());
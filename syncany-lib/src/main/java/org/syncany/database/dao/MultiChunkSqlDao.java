@@ -23,6 +23,8 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -81,6 +83,29 @@ public class MultiChunkSqlDao extends AbstractSqlDao {
 		preparedStatement.close();
 	}	
 
+	/**
+	 * Writes repackaged multichunks, i.e. multichunks that replace the existing multichunks
+	 * of the chunks they contain. All existing multichunk references of these chunks are 
+	 * removed before the new multichunks are written. Old multichunks without any remaining
+	 * chunk references can then be removed with {@link #removeUnreferencedMultiChunks()}.
+	 * 
+	 * <p>no commit
+	 */
+	public void writeRepackagedMultiChunks(Connection connection, long databaseVersionId, Collection<MultiChunkEntry> multiChunks) throws SQLException {
+		try (PreparedStatement preparedStatement = getStatement(connection, "/sql/multichunk.delete.all.removeMultiChunkChunkRefsForChunk.sql")) {
+			for (MultiChunkEntry multiChunk : multiChunks) {
+				for (ChunkChecksum chunkChecksum : multiChunk.getChunks()) {
+					preparedStatement.setString(1, chunkChecksum.toString());
+					preparedStatement.addBatch();
+				}
+			}
+			
+			preparedStatement.executeBatch();
+		}
+		
+		writeMultiChunks(connection, databaseVersionId, multiChunks);
+	}
+
 	public void removeUnreferencedMultiChunks() throws SQLException {
 		// Note: Chunk references (multichunk_chunk) must be removed first, because
 		//       of the foreign key constraints. 
@@ -246,6 +271,65 @@ public class MultiChunkSqlDao extends AbstractSqlDao {
 		}
 	}
 
+	/**
+	 * Returns all multichunks whose ratio of unused bytes (bytes of chunks that are not referenced
+	 * by any file version) is at least the given ratio. The returned multichunk entries only contain
+	 * the used chunks, and they are sorted by their ratio of used bytes (ascending), i.e. the multichunks 
+	 * with the least used bytes are returned first.
+	 * 
+	 * <p>Multichunks that do not contain any used chunks at all are not returned. 
+	 * These are returned by {@link #getUnusedMultiChunks()}. 
+	 */
+	public List<MultiChunkEntry> getMultiChunksForRepackaging(double minUnusedRatio) {
+		try (PreparedStatement preparedStatement = getStatement("/sql/multichunk.select.all.getMultiChunksWithUsedChunks.sql")) {
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				final Map<MultiChunkId, Long> usedSizes = new HashMap<MultiChunkId, Long>();
+				Map<MultiChunkId, MultiChunkEntry> multiChunkEntries = new HashMap<MultiChunkId, MultiChunkEntry>();
+				
+				while (resultSet.next()) {
+					MultiChunkId multiChunkId = MultiChunkId.parseMultiChunkId(resultSet.getString("multichunk_id"));
+					MultiChunkEntry multiChunkEntry = multiChunkEntries.get(multiChunkId);
+					
+					if (multiChunkEntry == null) {
+						multiChunkEntry = new MultiChunkEntry(multiChunkId, resultSet.getLong("size"));
+						
+						multiChunkEntries.put(multiChunkId, multiChunkEntry);
+						usedSizes.put(multiChunkId, 0L);
+					}
+					
+					multiChunkEntry.addChunk(ChunkChecksum.parseChunkChecksum(resultSet.getString("chunk_checksum")));
+					usedSizes.put(multiChunkId, usedSizes.get(multiChunkId) + resultSet.getLong("chunk_size"));
+				}
+				
+				List<MultiChunkEntry> repackageMultiChunks = new ArrayList<MultiChunkEntry>();
+				
+				for (MultiChunkEntry multiChunkEntry : multiChunkEntries.values()) {
+					double unusedRatio = 1 - getUsedRatio(multiChunkEntry, usedSizes);
+					
+					if (multiChunkEntry.getSize() > 0 && unusedRatio >= minUnusedRatio) {
+						repackageMultiChunks.add(multiChunkEntry);
+					}
+				}
+				
+				Collections.sort(repackageMultiChunks, new Comparator<MultiChunkEntry>() {
+					@Override
+					public int compare(MultiChunkEntry multiChunk1, MultiChunkEntry multiChunk2) {
+						return Double.compare(getUsedRatio(multiChunk1, usedSizes), getUsedRatio(multiChunk2, usedSizes));
+					}					
+				});
+				
+				return repackageMultiChunks;
+			}
+		}
+		catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private double getUsedRatio(MultiChunkEntry multiChunkEntry, Map<MultiChunkId, Long> usedSizes) {
+		return (multiChunkEntry.getSize() > 0) ? (double) usedSizes.get(multiChunkEntry.getId()) / multiChunkEntry.getSize() : 1;
+	}
+
 	protected Map<MultiChunkId, MultiChunkEntry> createMultiChunkEntries(ResultSet resultSet) throws SQLException {
 		Map<MultiChunkId, MultiChunkEntry> multiChunkEntries = new HashMap<MultiChunkId, MultiChunkEntry>();		
 		MultiChunkId currentMultiChunkId = null;
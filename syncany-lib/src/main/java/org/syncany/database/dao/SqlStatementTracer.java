@@ -0,0 +1,120 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.database.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.syncany.metrics.TraceEvent;
+import org.syncany.metrics.TraceEventType;
+import org.syncany.metrics.TraceEvents;
+
+/**
+ * Wraps a {@link PreparedStatement} of a data access object and records a
+ * {@link TraceEventType#SQL_STATEMENT SQL statement} trace event when the
+ * statement is closed. The event covers the entire lifetime of the statement
+ * (including reading the result set), and counts the affected or returned rows.
+ * 
+ * <p>Statements are only wrapped if the trace event is currently being recorded
+ * (see {@link #wrap(PreparedStatement, String)}), so there is no overhead otherwise.
+ * 
+ * @author agent <agent@local>
+ */
+class SqlStatementTracer implements InvocationHandler {
+	private PreparedStatement preparedStatement;
+	private String statementId;
+	private TraceEvent statementEvent;
+	private long rows;
+	
+	private SqlStatementTracer(PreparedStatement preparedStatement, String statementId, TraceEvent statementEvent) {
+		this.preparedStatement = preparedStatement;
+		this.statementId = statementId;
+		this.statementEvent = statementEvent;
+		this.rows = 0;
+	}
+	
+	public static PreparedStatement wrap(PreparedStatement preparedStatement, String resourceId) {
+		TraceEvent statementEvent = TraceEvents.begin(TraceEventType.SQL_STATEMENT);
+
+		if (!statementEvent.isEnabled()) {
+			return preparedStatement;
+		}
+		
+		String statementId = resourceId.replaceFirst("^/sql/", "").replaceFirst("\\.sql$", "");
+		SqlStatementTracer statementTracer = new SqlStatementTracer(preparedStatement, statementId, statementEvent);
+		
+		return (PreparedStatement) Proxy.newProxyInstance(SqlStatementTracer.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, statementTracer);
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		Object result = invokeTarget(preparedStatement, method, args);
+		
+		switch (method.getName()) {
+		case "executeUpdate":
+			rows += (Integer) result;
+			break;
+			
+		case "executeBatch":
+			for (int updateCount : (int[]) result) {
+				rows += Math.max(0, updateCount);
+			}
+			break;
+			
+		case "executeQuery":
+			return wrapResultSet((ResultSet) result);
+			
+		case "close":
+			if (statementEvent != null) {
+				statementEvent.commit(statementId, rows);
+				statementEvent = null;
+			}
+			break;
+		}
+		
+		return result;
+	}
+
+	private ResultSet wrapResultSet(final ResultSet resultSet) {
+		return (ResultSet) Proxy.newProxyInstance(SqlStatementTracer.class.getClassLoader(), new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				Object result = invokeTarget(resultSet, method, args);
+
+				if ("next".equals(method.getName()) && (Boolean) result) {
+					rows++;
+				}
+				
+				return result;
+			}			
+		});
+	}
+	
+	private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A counter is a thread-safe, monotonically increasing number, e.g. the number of
+ * uploaded bytes or the number of new chunks. Counters are created and registered
+ * by the {@link MetricRegistry}.
+ * 
+ * <p>Counters of a disabled registry ignore all updates.
+ * 
+ * @author agent <agent@local>
+ */
+public class Counter {
+	private final boolean enabled;
+	private final AtomicLong count;
+	
+	Counter(boolean enabled) {
+		this.enabled = enabled;
+		this.count = new AtomicLong(0);
+	}
+	
+	public void inc() {
+		inc(1);
+	}
+	
+	public void inc(long n) {
+		if (enabled) {
+			count.addAndGet(n);
+		}
+	}
+	
+	public long getCount() {
+		return count.get();
+	}
+}
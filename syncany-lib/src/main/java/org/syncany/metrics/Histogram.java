@@ -0,0 +1,132 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram records the distribution of a series of non-negative values, e.g. the 
+ * sizes of chunks or the durations of a {@link Timer}. Besides count, sum, minimum 
+ * and maximum, it keeps the number of values per power-of-two bucket, so that 
+ * percentiles can be estimated without storing individual values.
+ * 
+ * <p>Estimated percentiles are the upper bound of the bucket the percentile falls 
+ * into (but never larger than the maximum), i.e. they are accurate within a factor 
+ * of two. All methods are thread-safe and lock-free. Histograms of a disabled 
+ * registry ignore all updates.
+ * 
+ * @author agent <agent@local>
+ */
+public class Histogram {
+	private static final int BUCKET_COUNT = 64;
+	
+	protected final boolean enabled;
+	private final AtomicLong count;
+	private final AtomicLong sum;
+	private final AtomicLong min;
+	private final AtomicLong max;
+	private final AtomicLongArray buckets; // Bucket i holds values in [2^(i-1), 2^i)
+	
+	Histogram(boolean enabled) {
+		this.enabled = enabled;
+		this.count = new AtomicLong(0);
+		this.sum = new AtomicLong(0);
+		this.min = new AtomicLong(Long.MAX_VALUE);
+		this.max = new AtomicLong(0);
+		this.buckets = new AtomicLongArray(BUCKET_COUNT);
+	}
+	
+	public void update(long value) {
+		if (!enabled) {
+			return;
+		}
+		
+		value = Math.max(0, value);
+		
+		count.incrementAndGet();
+		sum.addAndGet(value);		
+		buckets.incrementAndGet(Math.min(BUCKET_COUNT-1, 64 - Long.numberOfLeadingZeros(value)));
+
+		updateMin(value);
+		updateMax(value);
+	}
+	
+	public long getCount() {
+		return count.get();
+	}
+	
+	public long getSum() {
+		return sum.get();
+	}
+	
+	public long getMin() {
+		return (count.get() > 0) ? min.get() : 0;
+	}
+	
+	public long getMax() {
+		return max.get();
+	}
+	
+	public double getMean() {
+		long currentCount = count.get();
+		return (currentCount > 0) ? (double) sum.get() / currentCount : 0;
+	}
+	
+	/**
+	 * Returns an estimate of the given percentile, e.g. <tt>0.95</tt> 
+	 * for the 95th percentile. 
+	 */
+	public long getPercentile(double percentile) {
+		long currentCount = count.get();
+		
+		if (currentCount == 0) {
+			return 0;
+		}
+		
+		long rank = (long) Math.ceil(percentile * currentCount);
+		long seen = 0;
+		
+		for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+			seen += buckets.get(bucket);
+			
+			if (seen >= rank) {
+				long bucketUpperBound = (bucket == 0) ? 0 : (bucket >= 63) ? Long.MAX_VALUE : (1L << bucket) - 1;
+				return Math.min(bucketUpperBound, getMax());
+			}
+		}
+		
+		return getMax();
+	}
+
+	private void updateMin(long value) {
+		long currentMin = min.get();
+		
+		while (value < currentMin && !min.compareAndSet(currentMin, value)) {
+			currentMin = min.get();
+		}
+	}
+
+	private void updateMax(long value) {
+		long currentMax = max.get();
+		
+		while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+			currentMax = max.get();
+		}
+	}
+}
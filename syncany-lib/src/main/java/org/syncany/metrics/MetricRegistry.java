@@ -0,0 +1,148 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.metrics;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The metric registry holds named {@link Counter}s, {@link Timer}s and {@link Histogram}s
+ * that are used to measure how long the individual phases of an operation take, and how 
+ * many bytes and objects are processed in each phase.
+ * 
+ * <p>Metrics are created on first use, and named using dot-separated names, prefixed
+ * with the component that records them, e.g. <tt>up.index</tt> or <tt>transfer.upload.bytes</tt>.
+ * The registry is attached to the {@link org.syncany.config.Config Config}, so that
+ * nested operations (e.g. the 'status' operation run by 'up') record into the same registry. 
+ * 
+ * <p>Metrics are disabled by default: The {@link #disabled() disabled registry} returns 
+ * shared metric instances that ignore all updates, so that instrumented code has 
+ * (almost) no overhead if metrics are not needed. 
+ * 
+ * @author agent <agent@local>
+ */
+public class MetricRegistry {
+	private static final MetricRegistry DISABLED_REGISTRY = new MetricRegistry(false);
+	private static final Counter DISABLED_COUNTER = new Counter(false);
+	private static final Timer DISABLED_TIMER = new Timer(false);
+	private static final Histogram DISABLED_HISTOGRAM = new Histogram(false);
+	
+	private final boolean enabled;
+	private final ConcurrentMap<String, Counter> counters;
+	private final ConcurrentMap<String, Timer> timers;
+	private final ConcurrentMap<String, Histogram> histograms;
+	
+	public MetricRegistry() {
+		this(true);
+	}
+	
+	private MetricRegistry(boolean enabled) {
+		this.enabled = enabled;
+		this.counters = new ConcurrentHashMap<String, Counter>();
+		this.timers = new ConcurrentHashMap<String, Timer>();
+		this.histograms = new ConcurrentHashMap<String, Histogram>();
+	}
+	
+	/**
+	 * Returns the shared registry that ignores all updates. 
+	 */
+	public static MetricRegistry disabled() {
+		return DISABLED_REGISTRY;
+	}
+	
+	public boolean isEnabled() {
+		return enabled;
+	}
+	
+	public Counter counter(String name) {
+		if (!enabled) {
+			return DISABLED_COUNTER;
+		}
+		
+		Counter counter = counters.get(name);
+		
+		if (counter == null) {
+			Counter newCounter = new Counter(true);
+			counter = counters.putIfAbsent(name, newCounter);
+			
+			if (counter == null) {
+				counter = newCounter;
+			}
+		}
+		
+		return counter;
+	}
+	
+	public Timer timer(String name) {
+		if (!enabled) {
+			return DISABLED_TIMER;
+		}
+		
+		Timer timer = timers.get(name);
+		
+		if (timer == null) {
+			Timer newTimer = new Timer(true);
+			timer = timers.putIfAbsent(name, newTimer);
+			
+			if (timer == null) {
+				timer = newTimer;
+			}
+		}
+		
+		return timer;
+	}
+	
+	public Histogram histogram(String name) {
+		if (!enabled) {
+			return DISABLED_HISTOGRAM;
+		}
+		
+		Histogram histogram = histograms.get(name);
+		
+		if (histogram == null) {
+			Histogram newHistogram = new Histogram(true);
+			histogram = histograms.putIfAbsent(name, newHistogram);
+			
+			if (histogram == null) {
+				histogram = newHistogram;
+			}
+		}
+		
+		return histogram;
+	}
+	
+	public SortedMap<String, Counter> getCounters() {
+		return new TreeMap<String, Counter>(counters);
+	}
+	
+	public SortedMap<String, Timer> getTimers() {
+		return new TreeMap<String, Timer>(timers);
+	}
+	
+	public SortedMap<String, Histogram> getHistograms() {
+		return new TreeMap<String, Histogram>(histograms);
+	}
+	
+	public void clear() {
+		counters.clear();
+		timers.clear();
+		histograms.clear();
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.metrics;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Map;
+
+import org.syncany.connection.plugins.RemoteFile;
+import org.syncany.connection.plugins.StorageException;
+import org.syncany.connection.plugins.StorageTestResult;
+import org.syncany.connection.plugins.TransferManager;
+
+/**
+ * Wraps a {@link TransferManager} and records the number of transferred files and bytes,
+ * as well as the time spent uploading, downloading, deleting and listing files. Each call
+ * is also reported as a {@link TraceEventType#TRANSFER transfer} trace event.
+ * 
+ * <p>All calls are delegated to the wrapped transfer manager as is (including the batch
+ * methods), so that plugin-specific optimizations are retained. Use {@link #wrap(TransferManager, MetricRegistry)}
+ * to only wrap the transfer manager if metrics are enabled or trace events can be recorded.
+ * 
+ * @author agent <agent@local>
+ */
+public class MetricTransferManager implements TransferManager {
+	private TransferManager transferManager;
+	private MetricRegistry metrics;
+	
+	public MetricTransferManager(TransferManager transferManager, MetricRegistry metrics) {
+		this.transferManager = transferManager;
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Returns a transfer manager recording metrics to the given registry, or the given
+	 * transfer manager itself if the registry is disabled and no trace events can be recorded.
+	 */
+	public static TransferManager wrap(TransferManager transferManager, MetricRegistry metrics) {
+		boolean wrapTransferManager = metrics.isEnabled() || TraceEvents.isAvailable();
+		return (wrapTransferManager) ? new MetricTransferManager(transferManager, metrics) : transferManager;
+	}
+
+	@Override
+	public void connect() throws StorageException {
+		transferManager.connect();
+	}
+
+	@Override
+	public void disconnect() throws StorageException {
+		transferManager.disconnect();
+	}
+
+	@Override
+	public void init(boolean createIfRequired) throws StorageException {
+		transferManager.init(createIfRequired);
+	}
+
+	@Override
+	public void download(RemoteFile remoteFile, File localFile) throws StorageException {
+		TraceEvent transferEvent = TraceEvents.begin(TraceEventType.TRANSFER);
+		Timer.Context downloadTimer = metrics.timer("transfer.download").time();
+		
+		transferManager.download(remoteFile, localFile);
+		
+		downloadTimer.stop();		
+		long size = countTransfer("transfer.download", localFile);
+		
+		transferEvent.commit("download", remoteFile.getName(), 1, size);
+	}
+
+	@Override
+	public void upload(File localFile, RemoteFile remoteFile) throws StorageException {
+		long size = countTransfer("transfer.upload", localFile); // Before upload, in case the file is moved
+		
+		TraceEvent transferEvent = TraceEvents.begin(TraceEventType.TRANSFER);
+		Timer.Context uploadTimer = metrics.timer("transfer.upload").time();
+		
+		transferManager.upload(localFile, remoteFile);
+		
+		uploadTimer.stop();
+		transferEvent.commit("upload", remoteFile.getName(), 1, size);
+	}
+
+	@Override
+	public boolean delete(RemoteFile remoteFile) throws StorageException {
+		TraceEvent transferEvent = TraceEvents.begin(TraceEventType.TRANSFER);
+		Timer.Context deleteTimer = metrics.timer("transfer.delete").time();
+		
+		boolean deleted = transferManager.delete(remoteFile);
+		
+		deleteTimer.stop();
+		transferEvent.commit("delete", remoteFile.getName(), 1, 0L);
+		
+		metrics.counter("transfer.delete.files").inc();
+		return deleted;
+	}
+
+	@Override
+	public void download(Map<? extends RemoteFile, File> remoteFiles) throws StorageException {
+		TraceEvent transferEvent = TraceEvents.begin(TraceEventType.TRANSFER);
+		Timer.Context downloadTimer = metrics.timer("transfer.download").time();
+		
+		transferManager.download(remoteFiles);
+		
+		downloadTimer.stop();
+		long size = 0;
+		
+		for (File localFile : remoteFiles.values()) {
+			size += countTransfer("transfer.download", localFile);
+		}
+		
+		transferEvent.commit("download", null, remoteFiles.size(), size);
+	}
+
+	@Override
+	public void upload(Map<File, ? extends RemoteFile> localFiles) throws StorageException {
+		long size = 0;
+		
+		for (File localFile : localFiles.keySet()) {
+			size += countTransfer("transfer.upload", localFile); // Before upload, in case the files are moved
+		}
+		
+		TraceEvent transferEvent = TraceEvents.begin(TraceEventType.TRANSFER);
+		Timer.Context uploadTimer = metrics.timer("transfer.upload").time();
+		
+		transferManager.upload(localFiles);
+		
+		uploadTimer.stop();
+		transferEvent.commit("upload", null, localFiles.size(), size);
+	}
+
+	@Override
+	public boolean delete(Collection<? extends RemoteFile> remoteFiles) throws StorageException {
+		TraceEvent transferEvent = TraceEvents.begin(TraceEventType.TRANSFER);
+		Timer.Context deleteTimer = metrics.timer("transfer.delete").time();
+		
+		boolean allDeleted = transferManager.delete(remoteFiles);
+		
+		deleteTimer.stop();
+		transferEvent.commit("delete", null, remoteFiles.size(), 0L);
+		
+		metrics.counter("transfer.delete.files").inc(remoteFiles.size());
+		return allDeleted;
+	}
+
+	@Override
+	public <T extends RemoteFile> Map<String, T> list(Class<T> remoteFileClass) throws StorageException {
+		TraceEvent transferEvent = TraceEvents.begin(TraceEventType.TRANSFER);
+		Timer.Context listTimer = metrics.timer("transfer.list").time();
+		
+		Map<String, T> remoteFiles = transferManager.list(remoteFileClass);
+		
+		listTimer.stop();
+		transferEvent.commit("list", remoteFileClass.getSimpleName(), remoteFiles.size(), 0L);
+		
+		return remoteFiles;
+	}
+
+	@Override
+	public String getChangeToken(Class<? extends RemoteFile> remoteFileClass) throws StorageException {
+		return transferManager.getChangeToken(remoteFileClass);
+	}
+
+	@Override
+	public StorageTestResult test(boolean testCreateTarget) {
+		return transferManager.test(testCreateTarget);
+	}
+
+	@Override
+	public boolean testTargetExists() throws StorageException {
+		return transferManager.testTargetExists();
+	}
+
+	@Override
+	public boolean testTargetCanWrite() throws StorageException {
+		return transferManager.testTargetCanWrite();
+	}
+
+	@Override
+	public boolean testTargetCanCreate() throws StorageException {
+		return transferManager.testTargetCanCreate();
+	}
+
+	@Override
+	public boolean testRepoFileExists() throws StorageException {
+		return transferManager.testRepoFileExists();
+	}
+	
+	private long countTransfer(String metricPrefix, File localFile) {
+		long size = localFile.length();
+		
+		metrics.counter(metricPrefix + ".files").inc();
+		metrics.counter(metricPrefix + ".bytes").inc(size);
+		
+		return size;
+	}
+}
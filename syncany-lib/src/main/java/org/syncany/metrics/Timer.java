@@ -0,0 +1,82 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A timer measures how long a certain code section takes, e.g. the indexing of files
+ * or the upload of multichunks. It is a {@link Histogram} of durations in nanoseconds.
+ * 
+ * <p>A code section is typically timed like this:
+ * 
+ * <pre>
+ *   Timer.Context indexTimer = metrics.timer("up.index").time();
+ *   index(files);
+ *   indexTimer.stop();
+ * </pre>
+ * 
+ * <p>Timers of a disabled registry return a shared context that does not even
+ * query the system clock.
+ * 
+ * @author agent <agent@local>
+ */
+public class Timer extends Histogram {
+	private static final Context DISABLED_CONTEXT = new Context(null);
+	
+	Timer(boolean enabled) {
+		super(enabled);
+	}
+	
+	/**
+	 * Starts timing a code section. The duration is recorded
+	 * when {@link Context#stop()} is called.
+	 */
+	public Context time() {
+		return (enabled) ? new Context(this) : DISABLED_CONTEXT;
+	}
+	
+	public long getTotal(TimeUnit unit) {
+		return unit.convert(getSum(), TimeUnit.NANOSECONDS);
+	}
+	
+	public static class Context {
+		private final Timer timer;
+		private final long startTime;
+		
+		private Context(Timer timer) {
+			this.timer = timer;
+			this.startTime = (timer != null) ? System.nanoTime() : 0;
+		}
+		
+		/**
+		 * Records the time since the context was created 
+		 * and returns it (in nanoseconds).
+		 */
+		public long stop() {
+			if (timer == null) {
+				return 0;
+			}
+			
+			long duration = System.nanoTime() - startTime;			
+			timer.update(duration);
+			
+			return duration;
+		}
+	}
+}
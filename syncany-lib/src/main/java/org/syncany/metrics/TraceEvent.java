@@ -0,0 +1,54 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.metrics;
+
+/**
+ * A trace event that has been started by {@link TraceEvents#begin(TraceEventType)}, and
+ * that is recorded (with its duration) once {@link #commit(Object...)} is called. 
+ * 
+ * <p>If the event type is not enabled, a shared no-op instance is returned by
+ * {@link TraceEvents#begin(TraceEventType)}. Calling {@link #commit(Object...)} on
+ * this instance does nothing.
+ * 
+ * @author agent <agent@local>
+ */
+public class TraceEvent {
+	static final TraceEvent DISABLED = new TraceEvent(null, null);
+	
+	private final TraceEventType type;
+	private final Object event;
+	
+	TraceEvent(TraceEventType type, Object event) {
+		this.type = type;
+		this.event = event;
+	}
+	
+	public boolean isEnabled() {
+		return event != null;
+	}
+	
+	/**
+	 * Sets the field values of this event (in the order defined by the
+	 * {@link TraceEventType}) and records the event.
+	 */
+	public void commit(Object... values) {
+		if (event != null) {
+			TraceEvents.commit(type, event, values);
+		}
+	}
+}
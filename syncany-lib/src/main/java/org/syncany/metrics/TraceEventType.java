@@ -0,0 +1,89 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.metrics;
+
+/**
+ * Defines the trace events emitted on the hot paths of a sync operation. Each event
+ * type has a fixed list of fields; the values passed to {@link TraceEvent#commit(Object...)}
+ * must be given in the same order.
+ * 
+ * <p>All events also carry a duration (from {@link TraceEvents#begin(TraceEventType) begin}
+ * to {@link TraceEvent#commit(Object...) commit}), so a recording shows where the time goes.
+ * 
+ * @see TraceEvents
+ * @author agent <agent@local>
+ */
+public enum TraceEventType {
+	CHUNK_EMITTED ("org.syncany.ChunkEmitted", "Chunk Emitted", "Chunk created by the chunker and looked up in the chunk index",
+		new String[] { "checksum", "size", "known" },
+		new Class<?>[] { String.class, int.class, boolean.class }),
+		
+	MULTICHUNK_CLOSED ("org.syncany.MultiChunkClosed", "MultiChunk Closed", "MultiChunk closed, i.e. its remaining data compressed/encrypted and flushed to disk",
+		new String[] { "multiChunkId", "size", "fileSize" },
+		new Class<?>[] { String.class, long.class, long.class }),
+	
+	TRANSFER ("org.syncany.Transfer", "Transfer", "Upload, download, deletion or listing of remote files",
+		new String[] { "operation", "remoteFile", "files", "size" },
+		new Class<?>[] { String.class, String.class, int.class, long.class }),
+		
+	DATABASE_FILE_PARSED ("org.syncany.DatabaseFileParsed", "Database File Parsed", "Database file read (and decrypted) from the local cache",
+		new String[] { "file", "size", "headersOnly" },
+		new Class<?>[] { String.class, long.class, boolean.class }),
+		
+	SQL_STATEMENT ("org.syncany.SqlStatement", "SQL Statement", "SQL statement of a data access object, from preparing to closing the statement",
+		new String[] { "statement", "rows" },
+		new Class<?>[] { String.class, long.class }),
+		
+	FILE_ACTION ("org.syncany.FileSystemAction", "File System Action", "File system action applied to the local folder",
+		new String[] { "action", "path", "version", "checksum" },
+		new Class<?>[] { String.class, String.class, long.class, String.class });
+	
+	private String name;
+	private String label;
+	private String description;
+	private String[] fieldNames;
+	private Class<?>[] fieldTypes;
+	
+	private TraceEventType(String name, String label, String description, String[] fieldNames, Class<?>[] fieldTypes) {
+		this.name = name;
+		this.label = label;
+		this.description = description;
+		this.fieldNames = fieldNames;
+		this.fieldTypes = fieldTypes;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getLabel() {
+		return label;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public String[] getFieldNames() {
+		return fieldNames;
+	}
+
+	public Class<?>[] getFieldTypes() {
+		return fieldTypes;
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.metrics;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Emits {@link TraceEvent}s to the Java Flight Recorder (JFR), so that a flight recording
+ * of a slow sync shows exactly how much time is spent chunking, transferring, parsing
+ * database files, querying the local database and applying file system actions.
+ * 
+ * <p>Since Syncany still runs on Java 7, the JFR API cannot be used directly. Instead,
+ * the event types are defined at runtime via <tt>jdk.jfr.EventFactory</tt> (using
+ * reflection), if available. On older Java versions, or if no recording is running, 
+ * {@link #begin(TraceEventType)} returns a shared no-op event. Call sites that need
+ * to do extra work to collect the field values should check {@link #isEnabled(TraceEventType)}
+ * first.
+ * 
+ * <p>Events can be recorded with the usual JFR tools, e.g. by starting Syncany with
+ * <tt>-XX:StartFlightRecording=filename=sync.jfr</tt>, or by using <tt>jcmd</tt>.
+ * 
+ * @see TraceEventType
+ * @author agent <agent@local>
+ */
+public final class TraceEvents {
+	private static final Logger logger = Logger.getLogger(TraceEvents.class.getSimpleName());
+	private static final String CATEGORY = "Syncany";
+	
+	private static Object[] eventFactories;
+	private static Object[] eventTypes;
+	
+	private static Method newEventMethod;
+	private static Method isEventTypeEnabledMethod;
+	private static Method beginMethod;
+	private static Method setMethod;
+	private static Method commitMethod;
+	
+	private static volatile boolean available;
+	
+	static {
+		init();
+	}
+	
+	private TraceEvents() {
+		// Nothing.
+	}
+	
+	/**
+	 * Returns whether the Java Flight Recorder is available in this VM, i.e.
+	 * whether trace events can be recorded at all.
+	 */
+	public static boolean isAvailable() {
+		return available;
+	}
+	
+	/**
+	 * Returns whether events of the given type are currently being recorded,
+	 * i.e. if JFR is available, and a recording with this event type is running.
+	 */
+	public static boolean isEnabled(TraceEventType type) {
+		if (!available) {
+			return false;
+		}
+		
+		try {
+			return (Boolean) isEventTypeEnabledMethod.invoke(eventTypes[type.ordinal()]);
+		}
+		catch (Exception e) {
+			disable(e);
+			return false;
+		}
+	}
+	
+	/**
+	 * Starts a new trace event of the given type. The event is only recorded 
+	 * if {@link TraceEvent#commit(Object...)} is called. 
+	 */
+	public static TraceEvent begin(TraceEventType type) {
+		if (!isEnabled(type)) {
+			return TraceEvent.DISABLED;
+		}
+		
+		try {
+			Object event = newEventMethod.invoke(eventFactories[type.ordinal()]);
+			beginMethod.invoke(event);
+			
+			return new TraceEvent(type, event);
+		}
+		catch (Exception e) {
+			disable(e);
+			return TraceEvent.DISABLED;
+		}
+	}
+
+	static void commit(TraceEventType type, Object event, Object[] values) {
+		if (values.length != type.getFieldNames().length) {
+			throw new IllegalArgumentException("Event " + type + " expects fields " + Arrays.toString(type.getFieldNames()) + ", but got " + values.length + " value(s).");
+		}
+		
+		try {
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] != null) {
+					setMethod.invoke(event, i, values[i]);
+				}
+			}
+			
+			commitMethod.invoke(event);
+		}
+		catch (Exception e) {
+			disable(e);
+		}
+	}
+	
+	private static void init() {
+		try {
+			Class<?> eventClass = Class.forName("jdk.jfr.Event");
+			Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+			Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType");
+			Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+			Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+			
+			Constructor<?> annotationElementConstructor = annotationElementClass.getConstructor(Class.class, Object.class);
+			Constructor<?> valueDescriptorConstructor = valueDescriptorClass.getConstructor(Class.class, String.class, List.class);
+			Method createMethod = eventFactoryClass.getMethod("create", List.class, List.class);
+			Method getEventTypeMethod = eventFactoryClass.getMethod("getEventType");
+			
+			TraceEventType[] types = TraceEventType.values();
+			
+			eventFactories = new Object[types.length];
+			eventTypes = new Object[types.length];
+			
+			for (TraceEventType type : types) {
+				List<Object> eventAnnotations = new ArrayList<Object>();
+				
+				eventAnnotations.add(annotationElementConstructor.newInstance(annotationClass("jdk.jfr.Name"), type.getName()));
+				eventAnnotations.add(annotationElementConstructor.newInstance(annotationClass("jdk.jfr.Label"), type.getLabel()));
+				eventAnnotations.add(annotationElementConstructor.newInstance(annotationClass("jdk.jfr.Description"), type.getDescription()));
+				eventAnnotations.add(annotationElementConstructor.newInstance(annotationClass("jdk.jfr.Category"), new String[] { CATEGORY }));
+				eventAnnotations.add(annotationElementConstructor.newInstance(annotationClass("jdk.jfr.StackTrace"), false));
+				
+				List<Object> fields = new ArrayList<Object>();
+				
+				for (int i = 0; i < type.getFieldNames().length; i++) {
+					List<Object> fieldAnnotations = new ArrayList<Object>();
+					fieldAnnotations.add(annotationElementConstructor.newInstance(annotationClass("jdk.jfr.Label"), type.getFieldNames()[i]));
+					
+					fields.add(valueDescriptorConstructor.newInstance(type.getFieldTypes()[i], type.getFieldNames()[i], fieldAnnotations));
+				}
+				
+				eventFactories[type.ordinal()] = createMethod.invoke(null, eventAnnotations, fields);
+				eventTypes[type.ordinal()] = getEventTypeMethod.invoke(eventFactories[type.ordinal()]);
+			}
+			
+			newEventMethod = eventFactoryClass.getMethod("newEvent");
+			isEventTypeEnabledMethod = eventTypeClass.getMethod("isEnabled");
+			beginMethod = eventClass.getMethod("begin");
+			setMethod = eventClass.getMethod("set", int.class, Object.class);
+			commitMethod = eventClass.getMethod("commit");
+			
+			available = true;
+		}
+		catch (ClassNotFoundException e) {
+			logger.log(Level.FINE, "Java Flight Recorder not available in this VM; trace events disabled.");
+			available = false;
+		}
+		catch (Exception e) {
+			logger.log(Level.WARNING, "Cannot register trace events with the Java Flight Recorder; trace events disabled.", e);
+			available = false;
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Class<? extends Annotation> annotationClass(String className) throws ClassNotFoundException {
+		return (Class<? extends Annotation>) Class.forName(className);
+	}
+	
+	private static void disable(Exception e) {
+		if (available) {
+			logger.log(Level.WARNING, "Cannot emit trace event to the Java Flight Recorder; disabling trace events.", e);
+			available = false;
+		}
+	}
+}
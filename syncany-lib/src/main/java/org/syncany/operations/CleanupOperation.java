@@ -18,13 +18,20 @@
 package org.syncany.operations;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -34,20 +41,24 @@ import org.syncany.chunk.MultiChunk;
 import org.syncany.config.Config;
 import org.syncany.connection.plugins.DatabaseRemoteFile;
 import org.syncany.connection.plugins.MultiChunkRemoteFile;
-import org.syncany.connection.plugins.RemoteFile;
 import org.syncany.connection.plugins.StorageException;
 import org.syncany.connection.plugins.TransferManager;
+import org.syncany.database.ChunkEntry.ChunkChecksum;
 import org.syncany.database.DatabaseVersion;
 import org.syncany.database.DatabaseVersionHeader;
 import org.syncany.database.DatabaseVersionHeader.DatabaseVersionType;
 import org.syncany.database.FileContent;
 import org.syncany.database.FileVersion;
 import org.syncany.database.MultiChunkEntry;
+import org.syncany.database.MultiChunkEntry.MultiChunkId;
 import org.syncany.database.PartialFileHistory;
 import org.syncany.database.PartialFileHistory.FileHistoryId;
 import org.syncany.database.SqlDatabase;
 import org.syncany.database.VectorClock;
 import org.syncany.database.dao.DatabaseXmlSerializer;
+import org.syncany.metrics.MetricRegistry;
+import org.syncany.metrics.MetricTransferManager;
+import org.syncany.metrics.Timer;
 import org.syncany.operations.LsRemoteOperation.LsRemoteOperationResult;
 import org.syncany.operations.StatusOperation.StatusOperationOptions;
 import org.syncany.operations.StatusOperation.StatusOperationResult;
@@ -66,6 +77,8 @@ import com.google.common.collect.Lists;
  *       {@link Chunk}s and {@link MultiChunk}s.</li>
  *   <li>Merge metadata of a single client and remove old database version files
  *       from the remote storage.</li>   
+ *   <li>Repackage multichunks that mostly consist of unused chunks, i.e. copy their
+ *       remaining chunks to new multichunks and delete the old ones.</li>
  * </ul>
  * 
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
@@ -94,8 +107,9 @@ public class CleanupOperation extends Operation {
 
 		this.options = options;
 		this.result = new CleanupOperationResult();
+		this.result.setMetrics(config.getMetrics());
 
-		this.transferManager = config.getPlugin().createTransferManager(config.getConnection());
+		this.transferManager = MetricTransferManager.wrap(config.getPlugin().createTransferManager(config.getConnection()), config.getMetrics());
 		this.localDatabase = new SqlDatabase(config);
 		
 		this.lockFile = null;
@@ -107,30 +121,40 @@ public class CleanupOperation extends Operation {
 		logger.log(Level.INFO, "Running 'Cleanup' at client " + config.getMachineName() + " ...");
 		logger.log(Level.INFO, "--------------------------------------------");
 		
-		 CleanupResultCode preconditionResult = checkPreconditions();
+		Timer.Context preconditionsTimer = config.getMetrics().timer("cleanup.preconditions").time();
+		CleanupResultCode preconditionResult = checkPreconditions();
+		preconditionsTimer.stop();
 		
 		if (preconditionResult != CleanupResultCode.OK) {
-			return new CleanupOperationResult(preconditionResult);
+			result.setResultCode(preconditionResult);
+			return result;
 		}
 		
 		if (options.isMergeRemoteFiles()) {
+			Timer.Context mergeTimer = config.getMetrics().timer("cleanup.merge").time();
 			mergeRemoteFiles();
+			mergeTimer.stop();
 		}
 
 		if (options.isRemoveOldVersions()) {
+			Timer.Context versionsTimer = config.getMetrics().timer("cleanup.versions").time();
 			removeOldVersions();
+			compactFastChecksumCache();
+			versionsTimer.stop();
 		}
 
 		if (options.isRepackageMultiChunks()) {
-			// To be done at a later time
-			// repackageMultiChunks();
+			Timer.Context repackageTimer = config.getMetrics().timer("cleanup.repackage").time();
+			repackageMultiChunks();
+			repackageTimer.stop();
 		}
 
 		return updateResultCode(result);
 	}
 
 	private CleanupOperationResult updateResultCode(CleanupOperationResult result) {
-		if (result.getMergedDatabaseFilesCount() > 0 || result.getRemovedMultiChunks().size() > 0 || result.getRemovedOldVersionsCount() > 0) {
+		if (result.getMergedDatabaseFilesCount() > 0 || result.getRemovedMultiChunks().size() > 0 || result.getRemovedOldVersionsCount() > 0
+				|| result.getRepackagedMultiChunks().size() > 0) {
 			result.setResultCode(CleanupResultCode.OK);
 		}
 		else {
@@ -225,6 +249,21 @@ public class CleanupOperation extends Operation {
 	}
 
 	private DatabaseVersion createPurgeDatabaseVersion(Map<FileHistoryId, FileVersion> mostRecentPurgeFileVersions) {
+		DatabaseVersion purgeDatabaseVersion = createPurgeDatabaseVersion();
+
+		for (Entry<FileHistoryId, FileVersion> fileHistoryEntry : mostRecentPurgeFileVersions.entrySet()) {
+			PartialFileHistory purgeFileHistory = new PartialFileHistory(fileHistoryEntry.getKey());
+			
+			purgeFileHistory.addFileVersion(fileHistoryEntry.getValue());			
+			purgeDatabaseVersion.addFileHistory(purgeFileHistory);
+						
+			logger.log(Level.FINE, "- Pruning file history " + fileHistoryEntry.getKey() + " versions <= " + fileHistoryEntry.getValue() + " ...");
+		}
+		
+		return purgeDatabaseVersion;		
+	}
+	
+	private DatabaseVersion createPurgeDatabaseVersion() {
 		DatabaseVersionHeader lastDatabaseVersionHeader = localDatabase.getLastDatabaseVersionHeader();
 		VectorClock lastVectorClock = lastDatabaseVersionHeader.getVectorClock();
 		
@@ -239,17 +278,8 @@ public class CleanupOperation extends Operation {
 		
 		DatabaseVersion purgeDatabaseVersion = new DatabaseVersion();
 		purgeDatabaseVersion.setHeader(purgeDatabaseVersionHeader);	
-
-		for (Entry<FileHistoryId, FileVersion> fileHistoryEntry : mostRecentPurgeFileVersions.entrySet()) {
-			PartialFileHistory purgeFileHistory = new PartialFileHistory(fileHistoryEntry.getKey());
-			
-			purgeFileHistory.addFileVersion(fileHistoryEntry.getValue());			
-			purgeDatabaseVersion.addFileHistory(purgeFileHistory);
-						
-			logger.log(Level.FINE, "- Pruning file history " + fileHistoryEntry.getKey() + " versions <= " + fileHistoryEntry.getValue() + " ...");
-		}
 		
-		return purgeDatabaseVersion;		
+		return purgeDatabaseVersion;
 	}
 	
 	private File writePurgeFile(DatabaseVersion purgeDatabaseVersion, DatabaseRemoteFile newPurgeDatabaseFile) throws IOException {		
@@ -266,13 +296,228 @@ public class CleanupOperation extends Operation {
 		return new DatabaseRemoteFile(config.getMachineName(), localMachineVersion);
 	}
 
+	/**
+	 * Removes the fast checksums of file contents that are no longer in the local database
+	 * (e.g. because their file versions were removed), so that the cache file does not grow forever.
+	 */
+	private void compactFastChecksumCache() {
+		logger.log(Level.INFO, "- Compacting fast checksum cache ...");
+		config.getFastChecksumCache().retainAll(localDatabase.getFileContentChecksums());
+	}
+
+	/**
+	 * Repackages multichunks that mostly consist of unused chunks. Chunks become unused if the
+	 * file versions referencing them are removed (see {@link #removeOldVersions()}), but their 
+	 * multichunks can only be deleted if none of their chunks are used anymore.
+	 * 
+	 * <p>High level strategy:
+	 * 1. Find multichunks with an unused ratio above the threshold (within the I/O budget)
+	 * 2. Download them and write their used chunks to new multichunks 
+	 * 3. Upload new multichunks, and a PURGE database version containing them
+	 * 4. Remotely delete the old multichunks
+	 * 
+	 * <p>Other clients replace the old multichunks with the new ones when they apply the 
+	 * PURGE database version (see {@link SqlDatabase#writeRepackagedMultiChunks(long, Collection) writeRepackagedMultiChunks()}).
+	 */
+	private void repackageMultiChunks() throws Exception {
+		List<MultiChunkEntry> repackageMultiChunks = selectRepackageMultiChunks();
+		
+		if (repackageMultiChunks.size() == 0) {
+			logger.log(Level.INFO, "- Repackage multichunks: Not necessary (no multichunks with >= {0}% unused data found within budget).", 
+					(int) (options.getRepackageUnusedThreshold() * 100));
+			return;
+		}
+		
+		logger.log(Level.INFO, "- Repackage multichunks: Repackaging {0} multichunk(s) ...", repackageMultiChunks.size());
+		
+		lockRemoteRepository();
+		
+		try {
+			// Local: Write used chunks of old multichunks to new multichunks  
+			List<MultiChunkEntry> newMultiChunks = writeRepackagedMultiChunks(repackageMultiChunks);
+			
+			// Remote: Upload new multichunks first, so the database version never references missing multichunks
+			uploadRepackagedMultiChunks(newMultiChunks);
+			
+			// Local: Replace old multichunks with new multichunks
+			DatabaseVersion purgeDatabaseVersion = createPurgeDatabaseVersion();
+			
+			for (MultiChunkEntry newMultiChunk : newMultiChunks) {
+				purgeDatabaseVersion.addMultiChunk(newMultiChunk);
+			}
+			
+			long purgeDatabaseVersionId = localDatabase.writeDatabaseVersionHeader(purgeDatabaseVersion.getHeader());
+			
+			localDatabase.writeRepackagedMultiChunks(purgeDatabaseVersionId, newMultiChunks);
+			localDatabase.removeUnreferencedDatabaseEntities();
+			localDatabase.commit();
+			
+			// Remote: Upload purge database version and delete old multichunks
+			DatabaseRemoteFile newPurgeRemoteFile = findNewPurgeRemoteFile(purgeDatabaseVersion.getHeader());
+			File tempLocalPurgeDatabaseFile = writePurgeFile(purgeDatabaseVersion, newPurgeRemoteFile);
+	
+			uploadPurgeFile(tempLocalPurgeDatabaseFile, newPurgeRemoteFile);
+			remoteDeleteUnusedMultiChunks(repackageMultiChunks);
+			
+			// Update stats
+			result.setRepackagedMultiChunks(repackageMultiChunks);
+			result.setNewRepackagedMultiChunks(newMultiChunks);
+		}
+		finally {
+			unlockRemoteRepository();
+		}
+	}
+
+	private List<MultiChunkEntry> selectRepackageMultiChunks() {
+		List<MultiChunkEntry> repackageCandidates = localDatabase.getMultiChunksForRepackaging(options.getRepackageUnusedThreshold());
+		List<MultiChunkEntry> repackageMultiChunks = new ArrayList<MultiChunkEntry>();
+		long repackageSize = 0;
+		
+		for (MultiChunkEntry repackageCandidate : repackageCandidates) {
+			if (repackageSize + repackageCandidate.getSize() > options.getRepackageMaxSize()) {
+				logger.log(Level.FINE, "  + Repackage budget of {0} bytes reached; skipping remaining multichunks.", options.getRepackageMaxSize());
+				break;
+			}
+			
+			repackageMultiChunks.add(repackageCandidate);
+			repackageSize += repackageCandidate.getSize();
+		}
+		
+		return repackageMultiChunks;
+	}
+	
+	private List<MultiChunkEntry> writeRepackagedMultiChunks(List<MultiChunkEntry> repackageMultiChunks) throws Exception {
+		List<MultiChunkEntry> newMultiChunks = new ArrayList<MultiChunkEntry>();
+		SecureRandom secureRandom = new SecureRandom();
+		
+		MultiChunk newMultiChunk = null;
+		MultiChunkEntry newMultiChunkEntry = null;
+		boolean repackageSuccessful = false;
+		
+		try {
+			for (MultiChunkEntry repackageMultiChunk : repackageMultiChunks) {
+				Set<ChunkChecksum> usedChunks = new HashSet<ChunkChecksum>(repackageMultiChunk.getChunks());
+				File localEncryptedMultiChunkFile = config.getCache().getEncryptedMultiChunkFile(repackageMultiChunk.getId());
+	
+				logger.log(Level.FINE, "  + Downloading multichunk " + repackageMultiChunk.getId() + " ({0} used chunks) ...", usedChunks.size());
+				transferManager.download(new MultiChunkRemoteFile(repackageMultiChunk.getId()), localEncryptedMultiChunkFile);
+				
+				MultiChunk oldMultiChunk = config.getMultiChunker().createMultiChunk(
+					config.getTransformer().createInputStream(new FileInputStream(localEncryptedMultiChunkFile)));
+				
+				try {
+					Chunk chunk = null;
+					
+					while ((chunk = oldMultiChunk.read()) != null) {
+						ChunkChecksum chunkChecksum = new ChunkChecksum(chunk.getChecksum());
+						
+						if (!usedChunks.remove(chunkChecksum)) {
+							continue; // Unused chunk, drop it!
+						}
+						
+						if (newMultiChunk != null && newMultiChunk.isFull()) {
+							closeRepackagedMultiChunk(newMultiChunk, newMultiChunkEntry, newMultiChunks);
+							newMultiChunk = null;
+						}
+						
+						if (newMultiChunk == null) {
+							byte[] newMultiChunkIdBytes = new byte[chunk.getChecksum().length];
+							secureRandom.nextBytes(newMultiChunkIdBytes);
+							
+							MultiChunkId newMultiChunkId = new MultiChunkId(newMultiChunkIdBytes);
+							File newMultiChunkFile = config.getCache().getEncryptedMultiChunkFile(newMultiChunkId);
+							
+							newMultiChunkEntry = new MultiChunkEntry(newMultiChunkId, 0);
+							newMultiChunk = config.getMultiChunker().createMultiChunk(newMultiChunkId, 
+								config.getTransformer().createOutputStream(new FileOutputStream(newMultiChunkFile)));
+						}
+						
+						newMultiChunk.write(chunk);
+						newMultiChunkEntry.addChunk(chunkChecksum);
+					}
+				}
+				finally {
+					oldMultiChunk.close();
+					localEncryptedMultiChunkFile.delete();
+				}
+				
+				if (usedChunks.size() > 0) {
+					throw new IOException("Cannot repackage multichunk " + repackageMultiChunk.getId() + ": " + usedChunks.size() + " used chunk(s) not found in multichunk.");
+				}
+			}
+			
+			if (newMultiChunk != null) {
+				closeRepackagedMultiChunk(newMultiChunk, newMultiChunkEntry, newMultiChunks);
+				newMultiChunk = null;
+			}
+			
+			repackageSuccessful = true;
+			return newMultiChunks;
+		}
+		finally {
+			if (!repackageSuccessful) {
+				deleteRepackagedMultiChunks(newMultiChunk, newMultiChunkEntry, newMultiChunks);
+			}
+		}
+	}
+
+	private void deleteRepackagedMultiChunks(MultiChunk openNewMultiChunk, MultiChunkEntry lastNewMultiChunkEntry, List<MultiChunkEntry> newMultiChunks) {
+		logger.log(Level.INFO, "  + Repackaging failed. Deleting new multichunks ...");
+		
+		if (openNewMultiChunk != null) {
+			try {
+				openNewMultiChunk.close();
+			}
+			catch (IOException e) {
+				logger.log(Level.FINE, "  + Cannot close repackaged multichunk " + openNewMultiChunk.getId() + ". Ignoring.", e);
+			}
+		}
+		
+		if (lastNewMultiChunkEntry != null) {
+			config.getCache().getEncryptedMultiChunkFile(lastNewMultiChunkEntry.getId()).delete();
+		}
+		
+		for (MultiChunkEntry newMultiChunk : newMultiChunks) {
+			config.getCache().getEncryptedMultiChunkFile(newMultiChunk.getId()).delete();
+		}
+	}
+
+	private void closeRepackagedMultiChunk(MultiChunk newMultiChunk, MultiChunkEntry newMultiChunkEntry, List<MultiChunkEntry> newMultiChunks) throws IOException {
+		logger.log(Level.FINE, "  + Closing repackaged multichunk {0} ({1} chunks) ...", new Object[] { newMultiChunk.getId(), newMultiChunkEntry.getChunks().size() });
+		newMultiChunk.close();
+		
+		newMultiChunkEntry.setSize(newMultiChunk.getSize());
+		newMultiChunks.add(newMultiChunkEntry);
+	}
+	
+	private void uploadRepackagedMultiChunks(List<MultiChunkEntry> newMultiChunks) throws StorageException {
+		Map<File, MultiChunkRemoteFile> newMultiChunkFiles = new HashMap<File, MultiChunkRemoteFile>();
+		
+		for (MultiChunkEntry newMultiChunk : newMultiChunks) {
+			logger.log(Level.INFO, "  + Uploading repackaged multichunk " + newMultiChunk.getId() + " ...");
+			newMultiChunkFiles.put(config.getCache().getEncryptedMultiChunkFile(newMultiChunk.getId()), new MultiChunkRemoteFile(newMultiChunk.getId()));
+		}
+		
+		try {
+			transferManager.upload(newMultiChunkFiles);
+		}
+		finally {
+			for (File newMultiChunkFile : newMultiChunkFiles.keySet()) {
+				newMultiChunkFile.delete();
+			}
+		}
+	}
+
 	private void remoteDeleteUnusedMultiChunks(List<MultiChunkEntry> unusedMultiChunks) throws StorageException {
 		logger.log(Level.INFO, "- Deleting remote multichunks ...");
+		List<MultiChunkRemoteFile> unusedMultiChunkRemoteFiles = new ArrayList<MultiChunkRemoteFile>();
 		
 		for (MultiChunkEntry multiChunkEntry : unusedMultiChunks) {
 			logger.log(Level.FINE, "  + Deleting remote multichunk " + multiChunkEntry + " ...");
-			transferManager.delete(new MultiChunkRemoteFile(multiChunkEntry.getId()));
+			unusedMultiChunkRemoteFiles.add(new MultiChunkRemoteFile(multiChunkEntry.getId()));
 		}
+		
+		transferManager.delete(unusedMultiChunkRemoteFiles);
 	}
 
 	private boolean hasDirtyDatabaseVersions() {
@@ -343,10 +588,8 @@ public class CleanupOperation extends Operation {
 		// 3. Uploading merge file
 
 		// And delete others
-		for (RemoteFile toDeleteRemoteFile : toDeleteDatabaseFiles) {
-			logger.log(Level.INFO, "   + Deleting remote file " + toDeleteRemoteFile + " ...");
-			transferManager.delete(toDeleteRemoteFile);
-		}
+		logger.log(Level.INFO, "   + Deleting remote files " + toDeleteDatabaseFiles + " ...");
+		transferManager.delete(toDeleteDatabaseFiles);
 
 		// TODO [high] Issue #64: TM cannot overwrite, might lead to chaos if operation does not finish, uploading the new merge file, this might happen often if
 		// new file is bigger!
@@ -388,6 +631,7 @@ public class CleanupOperation extends Operation {
 		private int keepVersionsCount = 5;
 		private boolean repackageMultiChunks = true;
 		private double repackageUnusedThreshold = 0.7;
+		private long repackageMaxSize = 100 * 1024 * 1024;
 		
 		public StatusOperationOptions getStatusOptions() {
 			return statusOptions;
@@ -436,6 +680,18 @@ public class CleanupOperation extends Operation {
 		public void setRepackageUnusedThreshold(double repackageUnusedThreshold) {
 			this.repackageUnusedThreshold = repackageUnusedThreshold;
 		}
+
+		public long getRepackageMaxSize() {
+			return repackageMaxSize;
+		}
+
+		/**
+		 * Sets the I/O budget of a single cleanup run for multichunk repackaging, i.e. the
+		 * maximum total size (in bytes) of multichunks to download and repackage. 
+		 */
+		public void setRepackageMaxSize(long repackageMaxSize) {
+			this.repackageMaxSize = repackageMaxSize;
+		}
 	}
 
 	public enum CleanupResultCode {
@@ -447,6 +703,9 @@ public class CleanupOperation extends Operation {
 		private int mergedDatabaseFilesCount = 0;
 		private int removedOldVersionsCount = 0;
 		private List<MultiChunkEntry> removedMultiChunks = new ArrayList<MultiChunkEntry>();
+		private List<MultiChunkEntry> repackagedMultiChunks = new ArrayList<MultiChunkEntry>();
+		private List<MultiChunkEntry> newRepackagedMultiChunks = new ArrayList<MultiChunkEntry>();
+		private MetricRegistry metrics = MetricRegistry.disabled();
 
 		public CleanupOperationResult() {
 			// Nothing.
@@ -486,6 +745,30 @@ public class CleanupOperation extends Operation {
 
 		public void setRemovedMultiChunks(List<MultiChunkEntry> removedMultiChunks) {
 			this.removedMultiChunks = removedMultiChunks;
-		}			
+		}
+
+		public List<MultiChunkEntry> getRepackagedMultiChunks() {
+			return repackagedMultiChunks;
+		}
+
+		public void setRepackagedMultiChunks(List<MultiChunkEntry> repackagedMultiChunks) {
+			this.repackagedMultiChunks = repackagedMultiChunks;
+		}
+
+		public List<MultiChunkEntry> getNewRepackagedMultiChunks() {
+			return newRepackagedMultiChunks;
+		}
+
+		public void setNewRepackagedMultiChunks(List<MultiChunkEntry> newRepackagedMultiChunks) {
+			this.newRepackagedMultiChunks = newRepackagedMultiChunks;
+		}
+
+		public MetricRegistry getMetrics() {
+			return metrics;
+		}
+
+		public void setMetrics(MetricRegistry metrics) {
+			this.metrics = metrics;
+		}
 	}
 }
@@ -20,6 +20,7 @@ package org.syncany.operations;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,6 +31,7 @@ import org.syncany.connection.plugins.TransferManager;
 import org.syncany.database.DatabaseVersionHeader;
 import org.syncany.database.SqlDatabase;
 import org.syncany.database.VectorClock;
+import org.syncany.metrics.MetricTransferManager;
 
 /**
  * The list remote operation queries the transfer manager for any unknown 
@@ -39,12 +41,16 @@ import org.syncany.database.VectorClock;
  * uses the local list of known databases to filter already processed files. The local
  * list of known databases is loaded.
  * 
+ * <p>The remote listing is skipped if the transfer manager reports that it has not
+ * changed since the last run (see {@link RemoteListingCache}).
+ * 
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class LsRemoteOperation extends Operation {
 	private static final Logger logger = Logger.getLogger(LsRemoteOperation.class.getSimpleName());	
 	private TransferManager loadedTransferManager;
 	private SqlDatabase localDatabase;
+	private RemoteListingCache<DatabaseRemoteFile> remoteDatabaseListingCache;
 	
 	public LsRemoteOperation(Config config) {
 		this(config, null);
@@ -55,6 +61,7 @@ public class LsRemoteOperation extends Operation {
 		
 		this.loadedTransferManager = transferManager;
 		this.localDatabase = new SqlDatabase(config);
+		this.remoteDatabaseListingCache = new RemoteListingCache<DatabaseRemoteFile>(config.getRemoteDatabaseListFile(), DatabaseRemoteFile.class);
 	}	
 	
 	@Override
@@ -65,9 +72,9 @@ public class LsRemoteOperation extends Operation {
 		
 		TransferManager transferManager = (loadedTransferManager != null)
 				? loadedTransferManager
-				: config.getPlugin().createTransferManager(config.getConnection());
+				: MetricTransferManager.wrap(config.getPlugin().createTransferManager(config.getConnection()), config.getMetrics());
 		
-		List<DatabaseRemoteFile> knownDatabases = localDatabase.getKnownDatabases();
+		Set<DatabaseRemoteFile> knownDatabases = localDatabase.getKnownDatabases();
 		List<DatabaseRemoteFile> unknownRemoteDatabases = listUnknownRemoteDatabases(transferManager, knownDatabases);		
 		
 		transferManager.disconnect();
@@ -75,13 +82,13 @@ public class LsRemoteOperation extends Operation {
 		return new LsRemoteOperationResult(unknownRemoteDatabases);
 	}		
 
-	private List<DatabaseRemoteFile> listUnknownRemoteDatabases(TransferManager transferManager, List<DatabaseRemoteFile> knownDatabases) throws StorageException {
+	private List<DatabaseRemoteFile> listUnknownRemoteDatabases(TransferManager transferManager, Set<DatabaseRemoteFile> knownDatabases) throws StorageException {
 		logger.log(Level.INFO, "Retrieving remote database list.");
 		
 		List<DatabaseRemoteFile> unknownRemoteDatabases = new ArrayList<DatabaseRemoteFile>();
 
 		// List all remote database files
-		Map<String, DatabaseRemoteFile> remoteDatabaseFiles = transferManager.list(DatabaseRemoteFile.class);
+		Map<String, DatabaseRemoteFile> remoteDatabaseFiles = remoteDatabaseListingCache.list(transferManager);
 		
 		DatabaseVersionHeader lastLocalDatabaseVersionHeader = localDatabase.getLastDatabaseVersionHeader();
 		
@@ -0,0 +1,166 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.connection.plugins.RemoteFile;
+import org.syncany.connection.plugins.StorageException;
+import org.syncany.connection.plugins.TransferManager;
+
+/**
+ * The remote listing cache persists the result of {@link TransferManager#list(Class)} for
+ * one type of {@link RemoteFile}s, together with the {@link TransferManager#getChangeToken(Class) change token}
+ * of the listing. If the transfer manager returns the same change token on the next call, the cached 
+ * listing is returned instead of listing the remote files again.
+ * 
+ * <p>If the transfer manager does not support change tokens (i.e. it returns <tt>null</tt>), 
+ * the remote files are always listed and nothing is cached.
+ * 
+ * <p>The cache file is a simple text file: The first line contains the change token, 
+ * all following lines contain the names of the remote files.
+ *   
+ * @author agent <agent@local>
+ */
+public class RemoteListingCache<T extends RemoteFile> {
+	private static final Logger logger = Logger.getLogger(RemoteListingCache.class.getSimpleName());
+	private static final Charset CACHE_FILE_CHARSET = Charset.forName("UTF-8");
+	
+	private File cacheFile;
+	private Class<T> remoteFileClass;
+	
+	public RemoteListingCache(File cacheFile, Class<T> remoteFileClass) {
+		this.cacheFile = cacheFile;
+		this.remoteFileClass = remoteFileClass;
+	}
+	
+	/**
+	 * Returns the remote files of this cache's type, either from the cache (if the 
+	 * change token has not changed), or by listing them using the transfer manager. 
+	 */
+	public Map<String, T> list(TransferManager transferManager) throws StorageException {
+		String changeToken = transferManager.getChangeToken(remoteFileClass);
+		
+		if (changeToken != null) {
+			List<String> cachedFileNames = loadCachedFileNames(changeToken);
+			
+			if (cachedFileNames != null) {
+				logger.log(Level.INFO, "Remote listing unchanged (change token " + changeToken + "); using " + cachedFileNames.size() + " cached entries.");
+				return createRemoteFiles(cachedFileNames);
+			}
+		}
+		
+		Map<String, T> remoteFiles = transferManager.list(remoteFileClass);
+
+		if (changeToken != null) {
+			storeCachedFileNames(changeToken, remoteFiles.keySet());
+		}
+		else {
+			cacheFile.delete();
+		}
+		
+		return remoteFiles;
+	}
+	
+	/**
+	 * Deletes the cache file, i.e. the next call to {@link #list(TransferManager)} will
+	 * list the remote files. 
+	 */
+	public void invalidate() {
+		cacheFile.delete();
+	}
+	
+	private Map<String, T> createRemoteFiles(List<String> fileNames) throws StorageException {
+		Map<String, T> remoteFiles = new HashMap<String, T>();
+		
+		for (String fileName : fileNames) {
+			remoteFiles.put(fileName, RemoteFile.createRemoteFile(fileName, remoteFileClass));
+		}
+		
+		return remoteFiles;
+	}
+
+	/**
+	 * Returns the cached file names if the cache file exists and matches the 
+	 * given change token, or <tt>null</tt> otherwise.
+	 */
+	private List<String> loadCachedFileNames(String changeToken) {
+		if (!cacheFile.exists()) {
+			return null;
+		}
+		
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), CACHE_FILE_CHARSET))) {
+			if (!changeToken.equals(reader.readLine())) {
+				return null;
+			}
+			
+			List<String> fileNames = new ArrayList<String>();
+			String fileName;
+			
+			while ((fileName = reader.readLine()) != null) {
+				fileNames.add(fileName);
+			}
+			
+			return fileNames;
+		}
+		catch (IOException e) {
+			logger.log(Level.WARNING, "Cannot read remote listing cache " + cacheFile + "; ignoring.", e);
+			return null;
+		}
+	}
+
+	private void storeCachedFileNames(String changeToken, Iterable<String> fileNames) {
+		File tempCacheFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+		
+		try {
+			try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempCacheFile), CACHE_FILE_CHARSET))) {
+				writer.write(changeToken);
+				writer.newLine();
+				
+				for (String fileName : fileNames) {
+					writer.write(fileName);
+					writer.newLine();
+				}
+			}
+			
+			Files.move(tempCacheFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (IOException e) {
+			logger.log(Level.WARNING, "Cannot write remote listing cache " + cacheFile + "; ignoring.", e);
+			
+			tempCacheFile.delete();
+			cacheFile.delete();
+		}
+	}
+}
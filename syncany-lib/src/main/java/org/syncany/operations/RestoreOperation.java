@@ -41,6 +41,10 @@ import org.syncany.database.FileVersion;
 import org.syncany.database.MemoryDatabase;
 import org.syncany.database.MultiChunkEntry.MultiChunkId;
 import org.syncany.database.SqlDatabase;
+import org.syncany.metrics.MetricTransferManager;
+import org.syncany.metrics.TraceEvent;
+import org.syncany.metrics.TraceEventType;
+import org.syncany.metrics.TraceEvents;
 import org.syncany.operations.down.actions.FileSystemAction;
 import org.syncany.operations.down.actions.NewFileSystemAction;
 import org.syncany.util.FileUtil;
@@ -99,7 +103,13 @@ public class RestoreOperation extends Operation {
 			FileSystemAction newFileSystemAction = new NewFileSystemAction(config, restoreFileVersion, new MemoryDatabase());
 			logger.log(Level.INFO, "  --> " + newFileSystemAction);
 
+			TraceEvent actionEvent = TraceEvents.begin(TraceEventType.FILE_ACTION);
 			newFileSystemAction.execute();
+			
+			if (actionEvent.isEnabled()) {
+				String checksum = (restoreFileVersion.getChecksum() != null) ? restoreFileVersion.getChecksum().toString() : null;
+				actionEvent.commit(newFileSystemAction.getClass().getSimpleName(), restoreFileVersion.getPath(), restoreFileVersion.getVersion(), checksum);
+			}
 		}
 
 		return new RestoreOperationResult();
@@ -127,7 +137,7 @@ public class RestoreOperation extends Operation {
 		// TODO [medium] Duplicate code in DownOperation
 
 		logger.log(Level.INFO, "- Downloading and extracting multichunks ...");
-		TransferManager transferManager = config.getPlugin().createTransferManager(config.getConnection());
+		TransferManager transferManager = MetricTransferManager.wrap(config.getPlugin().createTransferManager(config.getConnection()), config.getMetrics());
 
 		for (MultiChunkId multiChunkId : unknownMultiChunkIds) {
 			File localEncryptedMultiChunkFile = config.getCache().getEncryptedMultiChunkFile(multiChunkId);
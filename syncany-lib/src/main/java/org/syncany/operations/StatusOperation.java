@@ -23,25 +23,41 @@ import java.io.IOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.syncany.config.Config;
+import org.syncany.database.DirectoryDigests;
+import org.syncany.database.DirectoryDigests.FileStatDigestBuilder;
 import org.syncany.database.FileVersion;
 import org.syncany.database.FileVersion.FileStatus;
 import org.syncany.database.FileVersionComparator;
 import org.syncany.database.FileVersionComparator.FileVersionComparison;
 import org.syncany.database.SqlDatabase;
+import org.syncany.metrics.MetricRegistry;
+import org.syncany.metrics.Timer;
+import org.syncany.util.EnvironmentUtil;
 import org.syncany.util.FileUtil;
 
 /**
  * The status operation analyzes the local file tree and compares it to the current local
  * database. It uses the {@link FileVersionComparator} to determine differences and returns
  * new/changed/deleted files in form of a {@link ChangeSet}.
+ * 
+ * <p>To avoid comparing each file individually, the {@link DirectoryDigests} of the expected
+ * file tree are used to detect directories whose files are all unchanged.
  *   
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
@@ -59,7 +75,7 @@ public class StatusOperation extends Operation {
 	public StatusOperation(Config config, StatusOperationOptions options) {
 		super(config);		
 		
-		this.fileVersionComparator = new FileVersionComparator(config.getLocalDir(), config.getChunker().getChecksumAlgorithm());
+		this.fileVersionComparator = new FileVersionComparator(config.getLocalDir(), config.getChunker().getChecksumAlgorithm(), config.getFastChecksumCache());
 		this.localDatabase = new SqlDatabase(config);
 		this.options = options;		
 	}	
@@ -78,11 +94,21 @@ public class StatusOperation extends Operation {
 		logger.log(Level.INFO, "Querying current file tree from database ...");				
 
 		// Path to actual file version
+		Timer.Context databaseTimer = config.getMetrics().timer("status.database").time();
 		final Map<String, FileVersion> filesInDatabase = localDatabase.getCurrentFileTree();
+		databaseTimer.stop();
 
 		// Find local changes
 		logger.log(Level.INFO, "Analyzing local folder "+config.getLocalDir()+" ...");								
+		
+		Timer.Context walkTimer = config.getMetrics().timer("status.walk").time();
 		ChangeSet localChanges = findLocalChanges(filesInDatabase);
+		walkTimer.stop();
+		
+		config.getMetrics().counter("status.files.new").inc(localChanges.getNewFiles().size());
+		config.getMetrics().counter("status.files.changed").inc(localChanges.getChangedFiles().size());
+		config.getMetrics().counter("status.files.deleted").inc(localChanges.getDeletedFiles().size());
+		config.getMetrics().counter("status.files.unchanged").inc(localChanges.getUnchangedFiles().size());
 		
 		if (!localChanges.hasChanges()) {
 			logger.log(Level.INFO, "- No changes to local database");
@@ -91,6 +117,7 @@ public class StatusOperation extends Operation {
 		// Return result
 		StatusOperationResult statusResult = new StatusOperationResult();
 		statusResult.setChangeSet(localChanges);
+		statusResult.setMetrics(config.getMetrics());
 		
 		return statusResult;
 	}
@@ -105,9 +132,15 @@ public class StatusOperation extends Operation {
 	private ChangeSet findLocalChangedAndNewFiles(final File root, Map<String, FileVersion> filesInDatabase) throws FileNotFoundException, IOException {
 		Path rootPath = Paths.get(root.getAbsolutePath());
 		
-		StatusFileVisitor fileVisitor = new StatusFileVisitor(rootPath, filesInDatabase);		
+		// Digests can only be used if checksums are not compared
+		boolean forceChecksum = options != null && options.isForceChecksum();
+		DirectoryDigests directoryDigests = (!forceChecksum) ? new DirectoryDigests(filesInDatabase.values()) : null;
+		
+		StatusFileVisitor fileVisitor = new StatusFileVisitor(rootPath, filesInDatabase, directoryDigests);		
 		Files.walkFileTree(rootPath, fileVisitor);
 		
+		config.getMetrics().counter("status.files.skipped").inc(fileVisitor.getSkippedFileCount());
+		
 		return fileVisitor.getChangeSet();		
 	}
 	
@@ -128,20 +161,43 @@ public class StatusOperation extends Operation {
 		}		
 	}
 	
+	/**
+	 * Walks the local file tree and compares each file with the expected file version from the
+	 * local database. 
+	 * 
+	 * <p>Unless a checksum comparison is forced, the regular files of each directory are not compared
+	 * one by one right away. Instead, they are collected while the directory is visited. Once all files
+	 * of a directory are known, their {@link DirectoryDigests#getFileStatDigest(String) file stat digest}
+	 * is compared to the digest of the expected file versions. If the digests match, all files in 
+	 * the directory are unchanged, and the (more expensive) comparison of each file is skipped.
+	 * 
+	 * <p>Note that subdirectories are always visited: The modified date of a directory does not 
+	 * change if a file within it is changed, so it cannot be used to skip an entire subtree.
+	 */
 	private class StatusFileVisitor implements FileVisitor<Path> {
 		private Path root;
 		private ChangeSet changeSet;		
 		private Map<String, FileVersion> currentFileTree;
+		private DirectoryDigests directoryDigests;
+		private Deque<PendingDirectory> pendingDirectories;
+		private int skippedFileCount;
 		
-		public StatusFileVisitor(Path root, Map<String, FileVersion> currentFileTree) {
+		public StatusFileVisitor(Path root, Map<String, FileVersion> currentFileTree, DirectoryDigests directoryDigests) {
 			this.root = root;
 			this.changeSet = new ChangeSet();
 			this.currentFileTree = currentFileTree;
+			this.directoryDigests = directoryDigests;
+			this.pendingDirectories = new ArrayDeque<PendingDirectory>();
+			this.skippedFileCount = 0;
 		}
 
 		public ChangeSet getChangeSet() {
 			return changeSet;
 		}
+		
+		public int getSkippedFileCount() {
+			return skippedFileCount;
+		}
 		 
 		@Override
 		public FileVisitResult visitFile(Path actualLocalFile, BasicFileAttributes attrs) throws IOException {
@@ -163,7 +219,17 @@ public class StatusOperation extends Operation {
 				logger.log(Level.FINEST, "- Ignoring file (syncany app-related): {0}", relativeFilePath);
 				return FileVisitResult.SKIP_SUBTREE;
 			}
-				
+			
+			// Defer regular files until all files of the directory are known (see postVisitDirectory)
+			if (directoryDigests != null && attrs.isRegularFile() && !pendingDirectories.isEmpty()) {
+				pendingDirectories.peek().files.add(new PendingFile(actualLocalFile, relativeFilePath, attrs));
+				return FileVisitResult.CONTINUE;
+			}
+			
+			return compareFile(actualLocalFile, relativeFilePath, attrs);
+		}
+		
+		private FileVisitResult compareFile(Path actualLocalFile, String relativeFilePath, BasicFileAttributes attrs) {
 			// Check if file is locked
 			boolean fileLocked = FileUtil.isFileLocked(actualLocalFile.toFile());
 			
@@ -211,7 +277,13 @@ public class StatusOperation extends Operation {
 		}
 		
 		@Override public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException { 
-			return visitFile(dir, attrs);
+			FileVisitResult visitResult = visitFile(dir, attrs);
+			
+			if (directoryDigests != null && visitResult == FileVisitResult.CONTINUE) {
+				pendingDirectories.push(new PendingDirectory(FileUtil.getRelativeDatabasePath(root.toFile(), dir.toFile())));
+			}
+			
+			return visitResult;
 		}
 
 		@Override
@@ -221,8 +293,113 @@ public class StatusOperation extends Operation {
 
 		@Override
 		public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+			if (directoryDigests != null) {
+				comparePendingFiles(pendingDirectories.pop());
+			}
+			
 			return FileVisitResult.CONTINUE;
 		}
+		
+		private void comparePendingFiles(PendingDirectory pendingDirectory) {
+			Long expectedFileStatDigest = directoryDigests.getFileStatDigest(pendingDirectory.relativePath);
+			Long actualFileStatDigest = createFileStatDigest(pendingDirectory.files);
+			
+			if (expectedFileStatDigest != null && expectedFileStatDigest.equals(actualFileStatDigest)) {
+				logger.log(Level.FINEST, "- Directory files unchanged (digest matches): {0}", pendingDirectory.relativePath);
+				
+				for (PendingFile pendingFile : pendingDirectory.files) {
+					// Locked files are ignored, exactly like in compareFile()
+					if (FileUtil.isFileLocked(pendingFile.path.toFile())) {
+						logger.log(Level.FINEST, "- Ignoring file (locked): {0}", pendingFile.relativePath);
+					}
+					else if (currentFileTree.containsKey(pendingFile.relativePath)) {
+						changeSet.getUnchangedFiles().add(pendingFile.relativePath);
+						skippedFileCount++;
+					}
+				}
+			}
+			else {
+				for (PendingFile pendingFile : pendingDirectory.files) {
+					compareFile(pendingFile.path, pendingFile.relativePath, pendingFile.attrs);
+				}
+			}
+		}
+		
+		/**
+		 * Creates the file stat digest of the given files, exactly like the file stat digest
+		 * of the expected file versions is created. Ignored files that are not in the database
+		 * are not included. Returns <tt>null</tt> if the file attributes cannot be read. 
+		 * 
+		 * <p>The attributes from the file tree walk are used if they already contain the DOS
+		 * or POSIX attributes; otherwise, these attributes are read again.
+		 */
+		private Long createFileStatDigest(List<PendingFile> pendingFiles) {
+			FileStatDigestBuilder fileStatDigest = new FileStatDigestBuilder();
+			
+			try {
+				for (PendingFile pendingFile : pendingFiles) {
+					boolean isIgnoredNewFile = !currentFileTree.containsKey(pendingFile.relativePath) 
+							&& config.getIgnoredFiles().isFileIgnored(pendingFile.relativePath);
+					
+					if (isIgnoredNewFile) {
+						continue;
+					}
+					
+					BasicFileAttributes fileAttributes = pendingFile.attrs;
+					String posixPermissions = null;
+					String dosAttributes = null;
+					
+					if (EnvironmentUtil.isWindows()) {
+						DosFileAttributes dosFileAttributes = (fileAttributes instanceof DosFileAttributes) ? (DosFileAttributes) fileAttributes 
+								: Files.readAttributes(pendingFile.path, DosFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+						
+						dosAttributes = FileUtil.dosAttrsToString(dosFileAttributes);
+						fileAttributes = dosFileAttributes;
+					}
+					else if (EnvironmentUtil.isUnixLikeOperatingSystem()) {
+						PosixFileAttributes posixFileAttributes = (fileAttributes instanceof PosixFileAttributes) ? (PosixFileAttributes) fileAttributes 
+								: Files.readAttributes(pendingFile.path, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+						
+						posixPermissions = PosixFilePermissions.toString(posixFileAttributes.permissions());
+						fileAttributes = posixFileAttributes;
+					}
+					
+					if (!fileAttributes.isRegularFile()) {
+						return null;
+					}
+					
+					fileStatDigest.addFile(pendingFile.path.getFileName().toString(), fileAttributes.size(), 
+							fileAttributes.lastModifiedTime().toMillis(), posixPermissions, dosAttributes);
+				}
+				
+				return fileStatDigest.getValue();
+			}
+			catch (IOException e) {
+				return null;
+			}
+		}
+	}
+	
+	private static class PendingDirectory {
+		private String relativePath;
+		private List<PendingFile> files;
+		
+		public PendingDirectory(String relativePath) {
+			this.relativePath = relativePath;
+			this.files = new ArrayList<PendingFile>();
+		}
+	}
+	
+	private static class PendingFile {
+		private Path path;
+		private String relativePath;
+		private BasicFileAttributes attrs;
+		
+		public PendingFile(Path path, String relativePath, BasicFileAttributes attrs) {
+			this.path = path;
+			this.relativePath = relativePath;
+			this.attrs = attrs;
+		}
 	}
 	
 	public static class StatusOperationOptions implements OperationOptions {
@@ -239,9 +416,11 @@ public class StatusOperation extends Operation {
 	
 	public static class StatusOperationResult implements OperationResult {
 		private ChangeSet changeSet;
+		private MetricRegistry metrics;
 
 		public StatusOperationResult() {
 			changeSet = new ChangeSet();
+			metrics = MetricRegistry.disabled();
 		}
 		
 		public void setChangeSet(ChangeSet changeSet) {
@@ -251,5 +430,13 @@ public class StatusOperation extends Operation {
 		public ChangeSet getChangeSet() {
 			return changeSet;
 		}
+
+		public MetricRegistry getMetrics() {
+			return metrics;
+		}
+
+		public void setMetrics(MetricRegistry metrics) {
+			this.metrics = metrics;
+		}
 	}
 }
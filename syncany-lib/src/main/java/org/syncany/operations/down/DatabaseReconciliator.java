@@ -35,7 +35,9 @@ import java.util.logging.Logger;
 import org.syncany.database.DatabaseVersion;
 import org.syncany.database.DatabaseVersionHeader;
 import org.syncany.database.MemoryDatabase;
+import org.syncany.database.CompactVectorClock;
 import org.syncany.database.VectorClock;
+import org.syncany.database.VectorClockInterner;
 import org.syncany.database.VectorClock.VectorClockComparison;
 
 /**
@@ -115,6 +117,12 @@ import org.syncany.database.VectorClock.VectorClockComparison;
 public class DatabaseReconciliator {
 	private static final Logger logger = Logger.getLogger(DatabaseReconciliator.class.getSimpleName());
 
+	private VectorClockInterner vectorClockInterner;
+	
+	public DatabaseReconciliator() {
+		this.vectorClockInterner = new VectorClockInterner();
+	}
+
 	/**
 	 * Implements the core synchronization algorithm as described {@link DatabaseReconciliator in the class description}.
 	 * 
@@ -126,6 +134,8 @@ public class DatabaseReconciliator {
 	public DatabaseBranch findWinnerBranch(String localMachineName, DatabaseBranch localBranch, DatabaseBranches unknownRemoteBranches)
 			throws Exception {
 		
+		vectorClockInterner.clearCache();
+		
 		DatabaseBranches allStitchedBranches = stitchBranches(unknownRemoteBranches, localMachineName, localBranch);
 		DatabaseVersionHeader lastCommonHeader = findLastCommonDatabaseVersionHeader(localBranch, allStitchedBranches);
 		TreeMap<String, DatabaseVersionHeader> firstConflictHeaders = findFirstConflictingDatabaseVersionHeader(lastCommonHeader, allStitchedBranches);
@@ -176,6 +186,7 @@ public class DatabaseReconciliator {
 	// TODO [medium] This is very inefficient; Runtime O(n^3)!
 	public DatabaseVersionHeader findLastCommonDatabaseVersionHeader(DatabaseBranch localBranch, DatabaseBranches remoteBranches) {
 		DatabaseVersionHeader lastCommonDatabaseVersionHeader = null;
+		vectorClockInterner.clearCache();
 
 		for (DatabaseBranchIterator localBranchIterator = localBranch.iteratorLast(); localBranchIterator.hasPrevious();) {
 			DatabaseVersionHeader currentLocalDatabaseVersionHeader = localBranchIterator.previous();
@@ -213,7 +224,7 @@ public class DatabaseReconciliator {
 	private boolean isGreaterOrEqualDatabaseVersionHeaderInAllDatabaseBranches(DatabaseVersionHeader localDatabaseVersionHeader,
 			DatabaseBranches remoteDatabaseVersionHeaders) {
 		
-		VectorClock localVectorClock = localDatabaseVersionHeader.getVectorClock();
+		CompactVectorClock localVectorClock = vectorClockInterner.intern(localDatabaseVersionHeader.getVectorClock());
 		Set<String> remoteClients = remoteDatabaseVersionHeaders.getClients();
 
 		for (String currentRemoteClient : remoteClients) {
@@ -221,8 +232,8 @@ public class DatabaseReconciliator {
 			boolean foundInCurrentClient = false;
 
 			for (DatabaseVersionHeader remoteDatabaseVersionHeader : remoteBranch.getAll()) {
-				VectorClock remoteVectorClock = remoteDatabaseVersionHeader.getVectorClock();
-				VectorClockComparison remoteVsLocalVectorClockComparison = VectorClock.compare(remoteVectorClock, localVectorClock);
+				CompactVectorClock remoteVectorClock = vectorClockInterner.intern(remoteDatabaseVersionHeader.getVectorClock());
+				VectorClockComparison remoteVsLocalVectorClockComparison = CompactVectorClock.compare(remoteVectorClock, localVectorClock);
 
 				if (remoteVsLocalVectorClockComparison == VectorClockComparison.GREATER
 						|| remoteVsLocalVectorClockComparison == VectorClockComparison.EQUAL) {
@@ -413,6 +424,7 @@ public class DatabaseReconciliator {
 				winningFirstConflictingDatabaseVersionHeaders, allBranches);
 
 		// 3. Compare all, go forward if all are identical
+		vectorClockInterner.clearCache();
 		int machineInRaceCount = winningFirstConflictingDatabaseVersionHeaders.size();		
 		
 		while (machineInRaceCount > 1) {
@@ -455,8 +467,7 @@ public class DatabaseReconciliator {
 					// Compare the two machines 'firstMachine*' and 'secondMachine*'
 					// Keep the winner, eliminate the loser
 					
-					VectorClockComparison comparison = VectorClock.compare(firstMachineDatabaseVersionHeader.getVectorClock(),
-							secondMachineDatabaseVersionHeader.getVectorClock());
+					VectorClockComparison comparison = compareVectorClocks(firstMachineDatabaseVersionHeader, secondMachineDatabaseVersionHeader);
 
 					if (comparison != VectorClockComparison.EQUAL) {
 						Boolean eliminateFirstMachine = determineEliminateMachine(firstMachineName, firstMachineDatabaseVersionHeader,
@@ -590,6 +601,7 @@ public class DatabaseReconciliator {
 
 	public DatabaseBranches stitchBranches(DatabaseBranches unstitchedUnknownBranches, String localClientName, DatabaseBranch localBranch) {
 		DatabaseBranches allBranches = unstitchedUnknownBranches.clone();
+		vectorClockInterner.clearCache();
 
 		mergeLocalBranchInRemoteBranches(localClientName, allBranches, localBranch);
 
@@ -603,9 +615,10 @@ public class DatabaseReconciliator {
 	private void mergeLocalBranchInRemoteBranches(String localClientName, DatabaseBranches allBranches, DatabaseBranch localBranch) {
 		if (allBranches.getClients().contains(localClientName)) {
 			DatabaseBranch unknownLocalClientBranch = allBranches.getBranch(localClientName);
+			Set<CompactVectorClock> unknownLocalClientVectorClocks = getVectorClocks(unknownLocalClientBranch);
 
 			for (DatabaseVersionHeader header : localBranch.getAll()) {
-				if (unknownLocalClientBranch.get(header.getVectorClock()) == null) {
+				if (unknownLocalClientVectorClocks.add(vectorClockInterner.intern(header.getVectorClock()))) {
 					unknownLocalClientBranch.add(header);
 				}
 			}
@@ -636,16 +649,18 @@ public class DatabaseReconciliator {
 		for (String client : allBranches.getClients()) {
 			DatabaseBranch clientBranch = allBranches.getBranch(client);
 			if (clientBranch.size() > 0) {
-				VectorClock lastVectorClock = clientBranch.getLast().getVectorClock();
+				CompactVectorClock lastVectorClock = vectorClockInterner.intern(clientBranch.getLast().getVectorClock());
+				Set<CompactVectorClock> clientBranchVectorClocks = getVectorClocks(clientBranch);
 
 				for (DatabaseVersionHeader databaseVersionHeader : allHeaders) {
-					VectorClock currentVectorClock = databaseVersionHeader.getVectorClock();
-					boolean isCurrentVectorClockSmaller = VectorClock.compare(currentVectorClock, lastVectorClock) == VectorClockComparison.SMALLER;
-					boolean currentVectorClockExistsInBranch = clientBranch.get(currentVectorClock) != null;
-					boolean isInConflict = VectorClock.compare(lastVectorClock, currentVectorClock) == VectorClockComparison.SIMULTANEOUS;
+					CompactVectorClock currentVectorClock = vectorClockInterner.intern(databaseVersionHeader.getVectorClock());
+					boolean isCurrentVectorClockSmaller = CompactVectorClock.compare(currentVectorClock, lastVectorClock) == VectorClockComparison.SMALLER;
+					boolean currentVectorClockExistsInBranch = clientBranchVectorClocks.contains(currentVectorClock);
 
-					if (!currentVectorClockExistsInBranch && isCurrentVectorClockSmaller && !isInConflict) {
+					// Note: 'isInConflict' (last vs. current is SIMULTANEOUS) is implied by '!isCurrentVectorClockSmaller'
+					if (!currentVectorClockExistsInBranch && isCurrentVectorClockSmaller) {
 						clientBranch.add(databaseVersionHeader);
+						clientBranchVectorClocks.add(currentVectorClock);
 					}
 				}
 
@@ -655,6 +670,20 @@ public class DatabaseReconciliator {
 		}
 	}
 
+	private Set<CompactVectorClock> getVectorClocks(DatabaseBranch branch) {
+		Set<CompactVectorClock> vectorClocks = new HashSet<CompactVectorClock>();
+
+		for (DatabaseVersionHeader databaseVersionHeader : branch.getAll()) {
+			vectorClocks.add(vectorClockInterner.intern(databaseVersionHeader.getVectorClock()));
+		}
+
+		return vectorClocks;
+	}
+
+	private VectorClockComparison compareVectorClocks(DatabaseVersionHeader header1, DatabaseVersionHeader header2) {
+		return CompactVectorClock.compare(vectorClockInterner.intern(header1.getVectorClock()), vectorClockInterner.intern(header2.getVectorClock()));
+	}
+
 	private DatabaseBranch sortBranch(DatabaseBranch clientBranch) {
 		List<DatabaseVersionHeader> branchCopy = new ArrayList<DatabaseVersionHeader>(clientBranch.getAll());
 		Collections.sort(branchCopy, new DatabaseVersionHeaderComparator());
@@ -666,7 +695,7 @@ public class DatabaseReconciliator {
 	private class DatabaseVersionHeaderComparator implements Comparator<DatabaseVersionHeader> {
 		@Override
 		public int compare(DatabaseVersionHeader o1, DatabaseVersionHeader o2) {
-			VectorClockComparison vectorClockComparison = VectorClock.compare(o1.getVectorClock(), o2.getVectorClock());
+			VectorClockComparison vectorClockComparison = compareVectorClocks(o1, o2);
 
 			if (vectorClockComparison == VectorClockComparison.SIMULTANEOUS) {
 				throw new RuntimeException("There must not be a conflict within a branch. VC1: " + o1.getVectorClock() + " - VC2: "
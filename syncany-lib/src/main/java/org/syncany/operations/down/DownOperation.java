@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -52,6 +53,8 @@ import org.syncany.database.PartialFileHistory.FileHistoryId;
 import org.syncany.database.SqlDatabase;
 import org.syncany.database.VectorClock;
 import org.syncany.database.dao.DatabaseXmlSerializer;
+import org.syncany.metrics.MetricTransferManager;
+import org.syncany.metrics.Timer;
 import org.syncany.operations.LsRemoteOperation;
 import org.syncany.operations.Operation;
 import org.syncany.operations.down.DownOperationOptions.DownConflictStrategy;
@@ -81,8 +84,11 @@ import org.syncany.util.FileUtil;
  *      findLosersPruneBranch()})</li>
  *  <li>Determine whether the local branch needs to be updated (new database versions); if so, determine
  *      local {@link FileSystemAction}s</li>
- *  <li>Determine, download and decrypt required multi chunks from remote storage from file actions
- *      (implemented in {@link #determineMultiChunksToDownload(FileVersion, MemoryDatabase, MemoryDatabase) determineMultiChunksToDownload()},
+ *  <li>Copy files whose content is available in other local files using the {@link LocalFileContentSource}
+ *      (implemented in {@link #copyLocalFileContents(List) copyLocalFileContents()})</li>
+ *  <li>Determine required chunks from the remaining file actions, extract chunks available in local files using the 
+ *      {@link LocalChunkSource}, and download and decrypt the multi chunks for the remaining chunks from remote storage
+ *      (implemented in {@link #determineRequiredMultiChunks(List, MemoryDatabase) determineRequiredMultiChunks()},
  *      and {@link #downloadAndDecryptMultiChunks(Set) downloadAndDecryptMultiChunks()})</li>
  *  <li>Apply file system actions locally, creating conflict files where necessary if local file does
  *      not match the expected file (implemented in {@link #applyFileSystemActions(List) applyFileSystemActions()} </li>
@@ -103,6 +109,8 @@ public class DownOperation extends Operation {
 	private DatabaseBranch localBranch;
 	private TransferManager transferManager;
 	private DatabaseReconciliator databaseReconciliator;
+	private LocalChunkSource localChunkSource;
+	private LocalFileContentSource localFileContentSource;
 	private DownOperationListener listener;
 	
 	public DownOperation(Config config) {
@@ -118,11 +126,14 @@ public class DownOperation extends Operation {
 
 		this.options = options;
 		this.result = new DownOperationResult();
+		this.result.setMetrics(config.getMetrics());
 		this.listener = listener;
 
 		this.localDatabase = new SqlDatabase(config);
-		this.transferManager = config.getPlugin().createTransferManager(config.getConnection());
+		this.transferManager = MetricTransferManager.wrap(config.getPlugin().createTransferManager(config.getConnection()), config.getMetrics());
 		this.databaseReconciliator = new DatabaseReconciliator();
+		this.localChunkSource = new LocalChunkSource(config, localDatabase);
+		this.localFileContentSource = new LocalFileContentSource(config, localDatabase);
 	}
 
 	@Override
@@ -143,7 +154,9 @@ public class DownOperation extends Operation {
 		localBranch = localDatabase.getLocalDatabaseBranch();
 
 		// 1. Check which remote databases to download based on the last local vector clock
+		Timer.Context listTimer = config.getMetrics().timer("down.list").time();
 		List<DatabaseRemoteFile> unknownRemoteDatabases = listUnknownRemoteDatabases(transferManager);
+		listTimer.stop();
 
 		if (unknownRemoteDatabases.isEmpty()) {
 			logger.log(Level.INFO, "* Nothing new. Skipping down operation.");
@@ -156,13 +169,18 @@ public class DownOperation extends Operation {
 		}
 
 		// 2. Download the remote databases to the local cache folder
+		Timer.Context databaseDownloadTimer = config.getMetrics().timer("down.databases.download").time();
 		TreeMap<File, DatabaseRemoteFile> unknownRemoteDatabasesInCache = downloadUnknownRemoteDatabases(transferManager, unknownRemoteDatabases);
+		databaseDownloadTimer.stop();
 
 		// 3. Read version headers (vector clocks)
+		Timer.Context reconcileTimer = config.getMetrics().timer("down.reconcile").time();
 		DatabaseBranches unknownRemoteBranches = readUnknownDatabaseVersionHeaders(unknownRemoteDatabasesInCache);
 
 		// 4. Determine winner branch
 		DatabaseBranch winnersBranch = determineWinnerBranch(unknownRemoteBranches);
+		reconcileTimer.stop();
+		
 		logger.log(Level.INFO, "We have a winner! Now determine what to do locally ...");
 
 		// 5. Prune local stuff (if local conflicts exist)
@@ -190,21 +208,47 @@ public class DownOperation extends Operation {
 			result.setResultCode(DownResultCode.OK_NO_REMOTE_CHANGES);
 		}
 		else {
+			Timer.Context databaseLoadTimer = config.getMetrics().timer("down.databases.load").time();
+			
 			logger.log(Level.INFO, "Loading winners database (DEFAULT) ...");			
 			MemoryDatabase winnersDatabase = readWinnersDatabase(winnersApplyBranch, unknownRemoteDatabases, DatabaseVersionType.DEFAULT);
 
 			logger.log(Level.INFO, "Loading winners database (PURGE) ...");			
 			MemoryDatabase winnersPurgeDatabase = readWinnersDatabase(winnersApplyBranch, unknownRemoteDatabases, DatabaseVersionType.PURGE);
+			
+			for (DatabaseVersion purgeDatabaseVersion : winnersPurgeDatabase.getDatabaseVersions()) {
+				winnersDatabase.addRepackagedMultiChunks(purgeDatabaseVersion.getMultiChunks());
+			}
+			
+			databaseLoadTimer.stop();
 
 			logger.log(Level.INFO, "Determine file system actions ...");			
-			FileSystemActionReconciliator actionReconciliator = new FileSystemActionReconciliator(config, result);
+			Timer.Context actionsTimer = config.getMetrics().timer("down.actions.determine").time();
+			FileSystemActionReconciliator actionReconciliator = new FileSystemActionReconciliator(config, result, options.getChecksumThreads());
 			List<FileSystemAction> actions = actionReconciliator.determineFileSystemActions(winnersDatabase);
+			actionsTimer.stop();
+			
+			config.getMetrics().counter("down.actions").inc(actions.size());
 
+			Timer.Context copyTimer = config.getMetrics().timer("down.contents.copy").time();
+			copyLocalFileContents(actions);
+			copyTimer.stop();
+			
 			Set<MultiChunkId> unknownMultiChunks = determineRequiredMultiChunks(actions, winnersDatabase);
+			
+			Timer.Context multiChunkDownloadTimer = config.getMetrics().timer("down.multichunks.download").time();
 			downloadAndDecryptMultiChunks(unknownMultiChunks);
+			multiChunkDownloadTimer.stop();
+			
+			config.getMetrics().counter("down.multichunks").inc(unknownMultiChunks.size());
 
+			Timer.Context applyTimer = config.getMetrics().timer("down.actions.apply").time();
 			applyFileSystemActions(actions);
+			applyTimer.stop();
+			
+			Timer.Context persistTimer = config.getMetrics().timer("down.persist").time();
 			applyDatabaseVersions(winnersApplyBranch, winnersDatabase, winnersPurgeDatabase);
+			persistTimer.stop();
 			//applyPurgeDatabaseVersions(winnersPurgeDatabase);			
 
 			result.setResultCode(DownResultCode.OK_WITH_REMOTE_CHANGES);
@@ -244,8 +288,15 @@ public class DownOperation extends Operation {
 		
 		localDatabase.removeSmallerOrEqualFileVersions(purgeFileVersions);
 		localDatabase.removeDeletedFileVersions();  
+		
+		long purgeDatabaseVersionId = localDatabase.writeDatabaseVersionHeader(purgeDatabaseVersion.getHeader());		
+
+		if (purgeDatabaseVersion.getMultiChunks().size() > 0) {
+			logger.log(Level.INFO, "     - Replacing multichunks with {0} repackaged multichunk(s)", purgeDatabaseVersion.getMultiChunks().size());
+			localDatabase.writeRepackagedMultiChunks(purgeDatabaseVersionId, purgeDatabaseVersion.getMultiChunks());
+		}
+		
 		localDatabase.removeUnreferencedDatabaseEntities();
-		localDatabase.writeDatabaseVersionHeader(purgeDatabaseVersion.getHeader());		
 		
 		localDatabase.commit(); // TODO [medium] Harmonize commit behavior		
 	}
@@ -267,6 +318,7 @@ public class DownOperation extends Operation {
 		else {
 			// Load dirty database (if existent)
 			logger.log(Level.INFO, "  + Marking databases as DIRTY locally ...");
+			List<DatabaseRemoteFile> remoteFilesToPrune = new ArrayList<DatabaseRemoteFile>();
 
 			for (DatabaseVersionHeader databaseVersionHeader : localPurgeBranch.getAll()) {
 				logger.log(Level.INFO, "    * MASTER->DIRTY: "+databaseVersionHeader);
@@ -277,10 +329,12 @@ public class DownOperation extends Operation {
 				DatabaseRemoteFile remoteFileToPrune = new DatabaseRemoteFile(remoteFileToPruneClientName, remoteFileToPruneVersion);
 
 				logger.log(Level.INFO, "    * Deleting remote database file " + remoteFileToPrune + " ...");
-				transferManager.delete(remoteFileToPrune);		
+				remoteFilesToPrune.add(remoteFileToPrune);
 				
 				result.getDirtyDatabasesCreated().add(databaseVersionHeader);
-			}						
+			}
+			
+			transferManager.delete(remoteFilesToPrune);
 		}
 	}
 
@@ -310,94 +364,110 @@ public class DownOperation extends Operation {
 		return winnersBranch;
 	}
 
-	private Set<MultiChunkId> determineRequiredMultiChunks(List<FileSystemAction> actions, MemoryDatabase winnersDatabase) {
-		Set<MultiChunkId> multiChunksToDownload = new HashSet<MultiChunkId>();
-
+	private void copyLocalFileContents(List<FileSystemAction> actions) throws Exception {
+		logger.log(Level.INFO, "Copying files with locally available content ...");
+		
 		for (FileSystemAction action : actions) {
-			if (action instanceof FileCreatingFileSystemAction) { // TODO [low] This adds ALL multichunks even though some might be available locally
-				multiChunksToDownload.addAll(determineMultiChunksToDownload(action.getFile2(), winnersDatabase));
+			if (action instanceof FileCreatingFileSystemAction) {
+				File localFileCopy = localFileContentSource.copyToCache(action.getFile2());
+				
+				if (localFileCopy != null) {
+					((FileCreatingFileSystemAction) action).setLocalFileCopy(localFileCopy);
+				}
 			}
 		}
-
-		return multiChunksToDownload;
 	}
 
-	private Collection<MultiChunkId> determineMultiChunksToDownload(FileVersion fileVersion, MemoryDatabase winnersDatabase) {
-		Set<MultiChunkId> multiChunksToDownload = new HashSet<MultiChunkId>();
+	private Set<MultiChunkId> determineRequiredMultiChunks(List<FileSystemAction> actions, MemoryDatabase winnersDatabase) throws IOException {
+		logger.log(Level.INFO, "Determine required chunks and multichunks ...");
+		
+		// First: Determine all chunks required to reassemble the new files
+		Set<ChunkChecksum> requiredChunks = new HashSet<ChunkChecksum>();
 
-		// First: Check if we know this file locally!
-		List<MultiChunkId> multiChunkIds = localDatabase.getMultiChunkIds(fileVersion.getChecksum());
+		for (FileSystemAction action : actions) {
+			if (action instanceof FileCreatingFileSystemAction && !((FileCreatingFileSystemAction) action).hasLocalFileCopy()) {
+				requiredChunks.addAll(determineRequiredChunks(action.getFile2(), winnersDatabase));
+			}
+		}
+		
+		// Second: Extract all chunks that are available in local files
+		Set<ChunkChecksum> localChunks = localChunkSource.extractChunksToCache(requiredChunks);
+		requiredChunks.removeAll(localChunks);
+		
+		// Third: Find multichunks for the remaining chunks
+		return determineMultiChunksToDownload(requiredChunks, winnersDatabase);
+	}
+
+	private Collection<ChunkChecksum> determineRequiredChunks(FileVersion fileVersion, MemoryDatabase winnersDatabase) {
+		// Check if we know this file content locally, or if it is from the winners database
+		FileContent fileContent = localDatabase.getFileContent(fileVersion.getChecksum(), true);
+		
+		if (fileContent == null) {
+			fileContent = winnersDatabase.getContent(fileVersion.getChecksum());
+		}
 		
-		if (multiChunkIds.size() > 0) {
-			multiChunksToDownload.addAll(multiChunkIds);
+		if (fileContent != null) { // File can be empty!
+			return fileContent.getChunks();
 		}
 		else {
-			// Second: We don't know it locally; must be from the winners database
-			FileContent winningFileContent = winnersDatabase.getContent(fileVersion.getChecksum());			
-			boolean winningFileHasContent = winningFileContent != null;
+			return new HashSet<ChunkChecksum>();
+		}
+	}
 
-			if (winningFileHasContent) { // File can be empty!
-				List<ChunkChecksum> fileChunks = winningFileContent.getChunks(); 
-				
-				// TODO [medium] Instead of just looking for multichunks to download here, we should look for chunks in local files as well
-				// and return the chunk positions in the local files ChunkPosition (chunk123 at file12, offset 200, size 250)
-				
-				Map<ChunkChecksum, MultiChunkId> checksumsWithMultiChunkIds = localDatabase.getMultiChunkIdsByChecksums(fileChunks);
+	/**
+	 * Determines the multichunks that contain the given chunks. Repackaged multichunks
+	 * (from the winners' PURGE database versions) take precedence over the multichunks known
+	 * in the local or winners database, because the latter might have already been 
+	 * deleted from the remote storage.
+	 */
+	private Set<MultiChunkId> determineMultiChunksToDownload(Set<ChunkChecksum> requiredChunks, MemoryDatabase winnersDatabase) {
+		Set<MultiChunkId> multiChunksToDownload = new HashSet<MultiChunkId>();
+
+		if (requiredChunks.size() == 0) {
+			return multiChunksToDownload;
+		}
+		
+		Map<ChunkChecksum, MultiChunkId> checksumsWithMultiChunkIds = localDatabase.getMultiChunkIdsByChecksums(new ArrayList<ChunkChecksum>(requiredChunks));
+		
+		for (ChunkChecksum chunkChecksum : requiredChunks) {
+			MultiChunkId multiChunkIdForChunk = winnersDatabase.getRepackagedMultiChunkIdForChunk(chunkChecksum);
+			
+			if (multiChunkIdForChunk == null) {
+				multiChunkIdForChunk = checksumsWithMultiChunkIds.get(chunkChecksum);
+			}
+			
+			if (multiChunkIdForChunk == null) {
+				multiChunkIdForChunk = winnersDatabase.getMultiChunkIdForChunk(chunkChecksum);
 				
-				for (ChunkChecksum chunkChecksum : fileChunks) {
-					MultiChunkId multiChunkIdForChunk = checksumsWithMultiChunkIds.get(chunkChecksum);
-					if (multiChunkIdForChunk == null) {
-						multiChunkIdForChunk = winnersDatabase.getMultiChunkIdForChunk(chunkChecksum);
-						
-						if (multiChunkIdForChunk == null) {
-							throw new RuntimeException("Cannot find multichunk for chunk "+chunkChecksum);	
-						}
-					}
-					
-					if (!multiChunksToDownload.contains(multiChunkIdForChunk)) {
-						logger.log(Level.INFO, "  + Adding multichunk " + multiChunkIdForChunk + " to download list ...");
-						multiChunksToDownload.add(multiChunkIdForChunk);
-					}
+				if (multiChunkIdForChunk == null) {
+					throw new RuntimeException("Cannot find multichunk for chunk "+chunkChecksum);	
 				}
 			}
+			
+			if (!multiChunksToDownload.contains(multiChunkIdForChunk)) {
+				logger.log(Level.INFO, "  + Adding multichunk " + multiChunkIdForChunk + " to download list ...");
+				multiChunksToDownload.add(multiChunkIdForChunk);
+			}
 		}
 		
 		return multiChunksToDownload;
 	}
 
-	private List<FileSystemAction> sortFileSystemActions(List<FileSystemAction> actions) {
-		FileSystemActionComparator actionComparator = new FileSystemActionComparator();
-		actionComparator.sort(actions);
-
-		return actions;
-	}
-
 	private void applyFileSystemActions(List<FileSystemAction> actions) throws Exception {
 		// Sort
-		actions = sortFileSystemActions(actions);
+		FileSystemActionComparator actionComparator = new FileSystemActionComparator();
+		actionComparator.sort(actions);
 
 		logger.log(Level.FINER, "- Applying file system actions (sorted!) ...");
 
-		// Apply
-		for (FileSystemAction action : actions) {
-			if (logger.isLoggable(Level.FINER)) {
-				logger.log(Level.FINER, "   +  {0}", action);
-			}
-
-			try {
-				action.execute();
-			}
-			catch (InconsistentFileSystemException e) {
-				logger.log(Level.FINER, "     --> Inconsistent file system exception thrown. Ignoring for this file.", e);
-			}
-		}
+		// Apply (independent actions in parallel, phases in order)
+		FileSystemActionExecutor actionExecutor = new FileSystemActionExecutor(actionComparator, options.getFileSystemActionThreads());
+		actionExecutor.execute(actions);
 	}
 
 	private void downloadAndDecryptMultiChunks(Set<MultiChunkId> unknownMultiChunkIds) throws StorageException, IOException {
 		logger.log(Level.INFO, "Downloading and extracting multichunks ...");
 
-		// TODO [medium] Check existing files by checksum and do NOT download them if they exist locally, or copy them
-
 		for (MultiChunkId multiChunkId : unknownMultiChunkIds) {
 			File localEncryptedMultiChunkFile = config.getCache().getEncryptedMultiChunkFile(multiChunkId);
 			File localDecryptedMultiChunkFile = config.getCache().getDecryptedMultiChunkFile(multiChunkId);
@@ -25,6 +25,8 @@ public class DownOperationOptions implements OperationOptions {
 	}
 	
 	private DownConflictStrategy conflictStrategy = DownConflictStrategy.RENAME;
+	private int fileSystemActionThreads = Runtime.getRuntime().availableProcessors();
+	private int checksumThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
 
 	public DownConflictStrategy getConflictStrategy() {
 		return conflictStrategy;
@@ -32,5 +34,21 @@ public class DownOperationOptions implements OperationOptions {
 
 	public void setConflictStrategy(DownConflictStrategy conflictStrategy) {
 		this.conflictStrategy = conflictStrategy;
-	}				
+	}
+	
+	public int getFileSystemActionThreads() {
+		return fileSystemActionThreads;
+	}
+
+	public void setFileSystemActionThreads(int fileSystemActionThreads) {
+		this.fileSystemActionThreads = fileSystemActionThreads;
+	}
+
+	public int getChecksumThreads() {
+		return checksumThreads;
+	}
+
+	public void setChecksumThreads(int checksumThreads) {
+		this.checksumThreads = checksumThreads;
+	}
 }
@@ -24,6 +24,7 @@ import java.util.Set;
 
 import org.syncany.database.DatabaseVersionHeader;
 import org.syncany.database.MultiChunkEntry.MultiChunkId;
+import org.syncany.metrics.MetricRegistry;
 import org.syncany.operations.ChangeSet;
 import org.syncany.operations.OperationResult;
 
@@ -37,6 +38,7 @@ public class DownOperationResult implements OperationResult {
 	private List<DatabaseVersionHeader> dirtyDatabasesCreated = new ArrayList<DatabaseVersionHeader>();
 	private Set<String> downloadedUnknownDatabases = new HashSet<String>();
 	private Set<MultiChunkId> downloadedMultiChunks = new HashSet<MultiChunkId>();
+	private MetricRegistry metrics = MetricRegistry.disabled();
 
 	public DownResultCode getResultCode() {
 		return resultCode;
@@ -77,4 +79,12 @@ public class DownOperationResult implements OperationResult {
 	public void setDownloadedMultiChunks(Set<MultiChunkId> downloadedMultiChunks) {
 		this.downloadedMultiChunks = downloadedMultiChunks;
 	}
+
+	public MetricRegistry getMetrics() {
+		return metrics;
+	}
+
+	public void setMetrics(MetricRegistry metrics) {
+		this.metrics = metrics;
+	}
 }
\ No newline at end of file
@@ -83,6 +83,17 @@ public class FileSystemActionComparator  {
 		}
 	}
 	
+	/**
+	 * Returns the phase of the given action, i.e. its position in the target order. Actions 
+	 * that can happen anytime (e.g. change and set attributes actions) return <tt>-1</tt>.
+	 * 
+	 * <p>Note that the phases of a sorted action list are not necessarily increasing, because
+	 * {@link #postCompareSort(List) postCompareSort()} might move actions to a later position. 
+	 */
+	public int getPhase(FileSystemAction action) {
+		return internalComparator.determinePosition(action);
+	}
+	
 	/**
 	 * Fixes the case in which a folder has been swapped with a file (case 5a, see above)
 	 * 
@@ -0,0 +1,280 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.down;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.database.FileVersion;
+import org.syncany.database.FileVersion.FileType;
+import org.syncany.metrics.TraceEvent;
+import org.syncany.metrics.TraceEventType;
+import org.syncany.metrics.TraceEvents;
+import org.syncany.operations.down.actions.DeleteFileSystemAction;
+import org.syncany.operations.down.actions.FileSystemAction;
+import org.syncany.operations.down.actions.FileSystemAction.InconsistentFileSystemException;
+import org.syncany.operations.down.actions.NewFileSystemAction;
+
+/**
+ * The file system action executor applies a list of {@link FileSystemAction}s, sorted
+ * by the {@link FileSystemActionComparator}, to the local file system.
+ *
+ * <p>The sorted list is split into phases, i.e. runs of consecutive actions with the
+ * same {@link FileSystemActionComparator#getPhase(FileSystemAction) phase}. Phases are
+ * always executed one after the other, so that the ordering guarantees of the comparator
+ * (e.g. deleting files before deleting their folders) still hold.
+ *
+ * <p>Within a phase, actions are distributed to a bounded thread pool. Actions that touch the
+ * same path (case-insensitively, to be safe on Windows and Mac OS) or a path and its parent
+ * folder are grouped and executed sequentially in their original order; independent groups are
+ * executed in parallel. Phases that create or delete folders are always executed sequentially,
+ * because they depend on the order of the actions within the phase.
+ *
+ * @author agent <agent@local>
+ */
+public class FileSystemActionExecutor {
+	private static final Logger logger = Logger.getLogger(FileSystemActionExecutor.class.getSimpleName());
+
+	private FileSystemActionComparator actionComparator;
+	private int threadCount;
+
+	public FileSystemActionExecutor(FileSystemActionComparator actionComparator, int threadCount) {
+		this.actionComparator = actionComparator;
+		this.threadCount = threadCount;
+	}
+
+	public void execute(List<FileSystemAction> sortedActions) throws Exception {
+		// Conflict file locks are only needed for this run
+		ConcurrentMap<String, Object> conflictLocks = new ConcurrentHashMap<String, Object>();
+		
+		for (FileSystemAction action : sortedActions) {
+			action.setConflictLocks(conflictLocks);
+		}
+		
+		if (threadCount <= 1) {
+			executeSequentially(sortedActions);
+		}
+		else {
+			ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+
+			try {
+				for (List<FileSystemAction> phaseActions : splitIntoPhases(sortedActions)) {
+					if (phaseActions.size() > 1 && isParallelizable(phaseActions)) {
+						executeInParallel(phaseActions, executorService);
+					}
+					else {
+						executeSequentially(phaseActions);
+					}
+				}
+			}
+			finally {
+				executorService.shutdown();
+			}
+		}
+	}
+
+	private List<List<FileSystemAction>> splitIntoPhases(List<FileSystemAction> sortedActions) {
+		List<List<FileSystemAction>> phases = new ArrayList<List<FileSystemAction>>();
+		List<FileSystemAction> currentPhaseActions = null;
+		int currentPhase = 0;
+
+		for (FileSystemAction action : sortedActions) {
+			int actionPhase = actionComparator.getPhase(action);
+
+			if (currentPhaseActions == null || actionPhase != currentPhase) {
+				currentPhaseActions = new ArrayList<FileSystemAction>();
+				currentPhase = actionPhase;
+
+				phases.add(currentPhaseActions);
+			}
+
+			currentPhaseActions.add(action);
+		}
+
+		return phases;
+	}
+
+	private boolean isParallelizable(List<FileSystemAction> phaseActions) {
+		for (FileSystemAction action : phaseActions) {
+			boolean isFolderAction = action.getType() == FileType.FOLDER;
+			boolean isNewOrDeleteAction = action instanceof NewFileSystemAction || action instanceof DeleteFileSystemAction;
+
+			if (isFolderAction && isNewOrDeleteAction) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private void executeSequentially(List<FileSystemAction> actions) throws Exception {
+		for (FileSystemAction action : actions) {
+			executeAction(action);
+		}
+	}
+
+	private void executeInParallel(List<FileSystemAction> phaseActions, ExecutorService executorService) throws Exception {
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+		for (final List<FileSystemAction> actionGroup : groupDependentActions(phaseActions)) {
+			futures.add(executorService.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					executeSequentially(actionGroup);
+					return null;
+				}
+			}));
+		}
+
+		// Wait for all groups to finish before entering the next phase
+		Exception firstException = null;
+
+		for (Future<Void> future : futures) {
+			try {
+				future.get();
+			}
+			catch (ExecutionException e) {
+				if (firstException == null) {
+					firstException = (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+				}
+			}
+		}
+
+		if (firstException != null) {
+			throw firstException;
+		}
+	}
+
+	/**
+	 * Groups the actions of a phase by the paths they touch. Two actions end up in the same
+	 * group if they share a path, or if one action's path is the parent folder of the other
+	 * action's path (directly or transitively via other actions). The original order of the
+	 * actions is preserved within each group.
+	 */
+	private List<List<FileSystemAction>> groupDependentActions(List<FileSystemAction> phaseActions) {
+		Map<String, Integer> pathActionIndexes = new HashMap<String, Integer>();
+		int[] groupParents = new int[phaseActions.size()];
+
+		// Group actions with the same path
+		for (int actionIndex = 0; actionIndex < phaseActions.size(); actionIndex++) {
+			groupParents[actionIndex] = actionIndex;
+
+			for (String path : getPaths(phaseActions.get(actionIndex))) {
+				Integer otherActionIndex = pathActionIndexes.get(path);
+
+				if (otherActionIndex == null) {
+					pathActionIndexes.put(path, actionIndex);
+				}
+				else {
+					mergeGroups(groupParents, actionIndex, otherActionIndex);
+				}
+			}
+		}
+
+		// Group actions with the actions on their parent folders
+		for (int actionIndex = 0; actionIndex < phaseActions.size(); actionIndex++) {
+			for (String path : getPaths(phaseActions.get(actionIndex))) {
+				int lastSlashIndex = path.lastIndexOf('/');
+				Integer parentActionIndex = (lastSlashIndex > 0) ? pathActionIndexes.get(path.substring(0, lastSlashIndex)) : null;
+
+				if (parentActionIndex != null) {
+					mergeGroups(groupParents, actionIndex, parentActionIndex);
+				}
+			}
+		}
+
+		// Collect groups (in order of their first action)
+		Map<Integer, List<FileSystemAction>> actionGroups = new LinkedHashMap<Integer, List<FileSystemAction>>();
+
+		for (int actionIndex = 0; actionIndex < phaseActions.size(); actionIndex++) {
+			int group = findGroup(groupParents, actionIndex);
+			List<FileSystemAction> groupActions = actionGroups.get(group);
+
+			if (groupActions == null) {
+				groupActions = new ArrayList<FileSystemAction>();
+				actionGroups.put(group, groupActions);
+			}
+
+			groupActions.add(phaseActions.get(actionIndex));
+		}
+
+		return new ArrayList<List<FileSystemAction>>(actionGroups.values());
+	}
+
+	private void mergeGroups(int[] groupParents, int actionIndex, int otherActionIndex) {
+		groupParents[findGroup(groupParents, actionIndex)] = findGroup(groupParents, otherActionIndex);
+	}
+
+	private int findGroup(int[] groupParents, int actionIndex) {
+		while (groupParents[actionIndex] != actionIndex) {
+			groupParents[actionIndex] = groupParents[groupParents[actionIndex]];
+			actionIndex = groupParents[actionIndex];
+		}
+
+		return actionIndex;
+	}
+
+	private List<String> getPaths(FileSystemAction action) {
+		List<String> paths = new ArrayList<String>();
+
+		addPath(paths, action.getFile1());
+		addPath(paths, action.getFile2());
+
+		return paths;
+	}
+
+	private void addPath(List<String> paths, FileVersion fileVersion) {
+		if (fileVersion != null && fileVersion.getPath() != null) {
+			paths.add(fileVersion.getPath().toLowerCase());
+		}
+	}
+
+	private void executeAction(FileSystemAction action) throws Exception {
+		if (logger.isLoggable(Level.FINER)) {
+			logger.log(Level.FINER, "   +  {0}", action);
+		}
+
+		TraceEvent actionEvent = TraceEvents.begin(TraceEventType.FILE_ACTION);
+		
+		try {
+			action.execute();
+			
+			if (actionEvent.isEnabled()) {
+				FileVersion fileVersion = (action.getFile2() != null) ? action.getFile2() : action.getFile1();
+				String checksum = (fileVersion.getChecksum() != null) ? fileVersion.getChecksum().toString() : null;
+				
+				actionEvent.commit(action.getClass().getSimpleName(), fileVersion.getPath(), fileVersion.getVersion(), checksum);
+			}
+		}
+		catch (InconsistentFileSystemException e) {
+			logger.log(Level.FINER, "     --> Inconsistent file system exception thrown. Ignoring for this file.", e);
+		}
+	}
+}
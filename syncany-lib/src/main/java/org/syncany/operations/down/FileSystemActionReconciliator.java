@@ -18,17 +18,33 @@
 package org.syncany.operations.down;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.syncany.config.Config;
 import org.syncany.database.FileVersion;
+import org.syncany.database.FileVersion.FileStatus;
+import org.syncany.database.FileVersion.FileType;
 import org.syncany.database.FileVersionComparator;
 import org.syncany.database.FileVersionComparator.FileChange;
+import org.syncany.database.FileVersionComparator.FileProperties;
 import org.syncany.database.FileVersionComparator.FileVersionComparison;
 import org.syncany.database.MemoryDatabase;
 import org.syncany.database.PartialFileHistory;
@@ -122,6 +138,9 @@ import org.syncany.operations.down.actions.SetAttributesFileSystemAction;
  *     add multichunks to download list for winning version
  * }
  * 
+ * Because comparing a local file to a file version (incl. checksum) means reading
+ * the entire file, these comparisons are prefetched in parallel before the algorithm
+ * runs (see prefetchFileComparisons()).
  */
 public class FileSystemActionReconciliator {
 	private static final Logger logger = Logger.getLogger(FileSystemActionReconciliator.class.getSimpleName());
@@ -130,12 +149,20 @@ public class FileSystemActionReconciliator {
 	private ChangeSet changeSet;
 	private SqlDatabase localDatabase;
 	private FileVersionComparator fileVersionComparator;
+	private int checksumThreads;
+	private Map<FileVersion, FileVersionComparison> prefetchedFileComparisons;
 	
 	public FileSystemActionReconciliator(Config config, DownOperationResult result) {
+		this(config, result, 1);
+	}
+	
+	public FileSystemActionReconciliator(Config config, DownOperationResult result, int checksumThreads) {
 		this.config = config; 
 		this.changeSet = result.getChangeSet();
 		this.localDatabase = new SqlDatabase(config);
-		this.fileVersionComparator = new FileVersionComparator(config.getLocalDir(), config.getChunker().getChecksumAlgorithm());
+		this.fileVersionComparator = new FileVersionComparator(config.getLocalDir(), config.getChunker().getChecksumAlgorithm(), config.getFastChecksumCache());
+		this.checksumThreads = checksumThreads;
+		this.prefetchedFileComparisons = new IdentityHashMap<FileVersion, FileVersionComparison>();
 	}
 	
 	public List<FileSystemAction> determineFileSystemActions(MemoryDatabase winnersDatabase) throws Exception {
@@ -146,6 +173,9 @@ public class FileSystemActionReconciliator {
 		
 		List<PartialFileHistory> fileHistoriesWithLastVersion = localDatabase.getFileHistoriesWithLastVersion();		
 		Map<FileHistoryId, FileVersion> fileHistoryIdCache = fillFileHistoryIdCache(fileHistoriesWithLastVersion);
+		
+		// Compare local files in parallel (calculates checksums)
+		prefetchFileComparisons(winnersDatabase, fileHistoryIdCache);
 				
 		logger.log(Level.INFO, "- Determine filesystem actions ...");
 		
@@ -170,7 +200,7 @@ public class FileSystemActionReconciliator {
 			
 			// Local version found in local database
 			else {
-				FileVersionComparison localFileToVersionComparison = fileVersionComparator.compare(localLastVersion, localLastFile, true);
+				FileVersionComparison localFileToVersionComparison = compareLocalFile(localLastVersion, localLastFile, true);
 				
 				// Local file on disk as expected
 				if (localFileToVersionComparison.equals()) { 
@@ -185,14 +215,176 @@ public class FileSystemActionReconciliator {
 				}
 			}		
 		}
+		
+		prefetchedFileComparisons.clear();
 			
 		return fileSystemActions;
 	}
+	
+	/**
+	 * Compares the local files that the sync algorithm will compare (incl. checksum) with their expected
+	 * file versions in parallel, using a bounded thread pool. This is the expensive part of the algorithm, 
+	 * since the checksum calculation reads the entire file. 
+	 * 
+	 * <p>Only files that exist and whose size matches the expected version are prefetched; all other 
+	 * comparisons are cheap. Files whose size and modified date match their version in the local
+	 * database are not prefetched either, because their checksum is not calculated at all. The files are processed in the order of their inode (or path, if the 
+	 * inode is not available) for better disk locality. The results are used by 
+	 * {@link #compareLocalFile(FileVersion, File, boolean) compareLocalFile()}. 
+	 */
+	private void prefetchFileComparisons(MemoryDatabase winnersDatabase, Map<FileHistoryId, FileVersion> fileHistoryIdCache) throws Exception {
+		if (checksumThreads <= 1) {
+			return;
+		}
+		
+		List<PrefetchEntry> prefetchEntries = new ArrayList<PrefetchEntry>();
+		Set<String> prefetchPaths = new HashSet<String>();
+		
+		for (PartialFileHistory winningFileHistory : winnersDatabase.getFileHistories()) {
+			FileVersion localLastVersion = fileHistoryIdCache.get(winningFileHistory.getFileHistoryId());
+			FileVersion expectedVersion = (localLastVersion != null) ? localLastVersion : winningFileHistory.getLastVersion();
+			
+			PrefetchEntry prefetchEntry = createPrefetchEntry(expectedVersion, localLastVersion != null);
+			
+			if (prefetchEntry != null && prefetchPaths.add(expectedVersion.getPath())) {
+				prefetchEntries.add(prefetchEntry);
+			}
+		}
+		
+		if (prefetchEntries.size() <= 1) {
+			return;
+		}
+		
+		logger.log(Level.INFO, "- Prefetching {0} file comparison(s) with {1} thread(s) ...", new Object[] { prefetchEntries.size(), checksumThreads });
+		
+		Collections.sort(prefetchEntries);		
+		ExecutorService executorService = Executors.newFixedThreadPool(checksumThreads);
+		
+		try {
+			List<Future<FileVersionComparison>> futures = new ArrayList<Future<FileVersionComparison>>();
+			
+			for (final PrefetchEntry prefetchEntry : prefetchEntries) {
+				futures.add(executorService.submit(new Callable<FileVersionComparison>() {
+					@Override
+					public FileVersionComparison call() throws Exception {
+						return fileVersionComparator.compare(prefetchEntry.expectedVersion, prefetchEntry.file, true);
+					}
+				}));
+			}
+			
+			for (int i = 0; i < prefetchEntries.size(); i++) {
+				try {
+					prefetchedFileComparisons.put(prefetchEntries.get(i).expectedVersion, futures.get(i).get());
+				}
+				catch (ExecutionException e) {
+					logger.log(Level.WARNING, "  + Cannot prefetch comparison for " + prefetchEntries.get(i).file + "; comparing later.", e.getCause());
+				}
+			}
+		}
+		finally {
+			executorService.shutdown();
+		}
+	}
+	
+	private PrefetchEntry createPrefetchEntry(FileVersion expectedVersion, boolean isLocalVersion) {
+		boolean needsChecksum = expectedVersion.getType() == FileType.FILE && expectedVersion.getStatus() != FileStatus.DELETED
+				&& expectedVersion.getChecksum() != null;
+		
+		if (!needsChecksum) {
+			return null;
+		}
+		
+		File file = new File(config.getLocalDir(), expectedVersion.getPath());
+		Path filePath = file.toPath();
+		
+		try {
+			BasicFileAttributes fileAttributes = Files.readAttributes(filePath, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			
+			if (!fileAttributes.isRegularFile() || fileAttributes.size() != expectedVersion.getSize()) {
+				return null;
+			}
+			
+			if (isLocalVersion && isStatEqual(expectedVersion, fileAttributes)) {
+				return null;
+			}
+			
+			return new PrefetchEntry(expectedVersion, file, getInode(filePath));
+		}
+		catch (Exception e) {
+			return null; // File does not exist or cannot be read; comparison is cheap 
+		}
+	}
+	
+	private long getInode(Path filePath) {
+		try {
+			Object inode = Files.getAttribute(filePath, "unix:ino", LinkOption.NOFOLLOW_LINKS);
+			return (inode instanceof Long) ? (Long) inode : -1;
+		}
+		catch (Exception e) {
+			return -1; // Not supported on this platform
+		}
+	}
+	
+	/**
+	 * Compares a local file with its expected version (incl. checksum). If the comparison has 
+	 * been prefetched, and the file has not been touched since then (same size, modified date
+	 * and attributes), the prefetched result is used. 
+	 * 
+	 * <p>If the expected version is the file's version in the local database, and the file's size
+	 * and modified date match this version, the file is not read; like in the status operation, 
+	 * the checksum of the version is used. Otherwise, the file is compared again.
+	 */
+	private FileVersionComparison compareLocalFile(FileVersion expectedVersion, File file, boolean isLocalVersion) {
+		FileVersionComparison prefetchedComparison = prefetchedFileComparisons.remove(expectedVersion);
+		
+		if (prefetchedComparison != null) {
+			FileProperties prefetchedFileProperties = prefetchedComparison.getActualFileProperties();
+			FileProperties currentFileProperties = fileVersionComparator.captureFileProperties(file, null, false);
+			
+			boolean fileUnchanged = currentFileProperties.exists() == prefetchedFileProperties.exists()
+					&& currentFileProperties.getType() == prefetchedFileProperties.getType()
+					&& currentFileProperties.getSize() == prefetchedFileProperties.getSize()
+					&& currentFileProperties.getLastModified() == prefetchedFileProperties.getLastModified()
+					&& equalsOrNull(currentFileProperties.getPosixPermissions(), prefetchedFileProperties.getPosixPermissions())
+					&& equalsOrNull(currentFileProperties.getDosAttributes(), prefetchedFileProperties.getDosAttributes());
+			
+			if (fileUnchanged) {
+				return prefetchedComparison;
+			}
+			
+			logger.log(Level.INFO, "  + File {0} changed since comparison was prefetched. Comparing again.", file);
+		}
+		
+		if (isLocalVersion && expectedVersion.getType() == FileType.FILE && isStatEqual(expectedVersion, file)) {
+			return fileVersionComparator.compare(expectedVersion, file, expectedVersion.getChecksum(), true);
+		}
+		
+		return fileVersionComparator.compare(expectedVersion, file, true);
+	}
+	
+	private boolean isStatEqual(FileVersion localVersion, File file) {
+		try {
+			return isStatEqual(localVersion, Files.readAttributes(file.toPath(), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS));
+		}
+		catch (Exception e) {
+			return false; // File does not exist or cannot be read
+		}
+	}
+	
+	private boolean isStatEqual(FileVersion localVersion, BasicFileAttributes fileAttributes) {
+		return fileAttributes.isRegularFile() 
+				&& localVersion.getSize() != null && fileAttributes.size() == localVersion.getSize()
+				&& localVersion.getLastModified() != null && fileAttributes.lastModifiedTime().toMillis() == localVersion.getLastModified().getTime();
+	}
+	
+	private boolean equalsOrNull(String string1, String string2) {
+		return (string1 == null) ? string2 == null : string1.equals(string2);
+	}
 
 	private void determineActionNoLocalLastVersion(FileVersion winningLastVersion, File winningLastFile, MemoryDatabase winnersDatabase,
 			List<FileSystemAction> outFileSystemActions) throws Exception {
 		
-		FileVersionComparison winningFileToVersionComparison = fileVersionComparator.compare(winningLastVersion, winningLastFile, true);
+		FileVersionComparison winningFileToVersionComparison = compareLocalFile(winningLastVersion, winningLastFile, false);
 		
 		boolean contentChanged = winningFileToVersionComparison.getFileChanges().contains(FileChange.CHANGED_CHECKSUM)
 				|| winningFileToVersionComparison.getFileChanges().contains(FileChange.CHANGED_SIZE);
@@ -336,4 +528,25 @@ public class FileSystemActionReconciliator {
 		
 		return fileHistoryIdCache;
 	}	
+	
+	private static class PrefetchEntry implements Comparable<PrefetchEntry> {
+		private FileVersion expectedVersion;
+		private File file;
+		private long inode;
+		
+		public PrefetchEntry(FileVersion expectedVersion, File file, long inode) {
+			this.expectedVersion = expectedVersion;
+			this.file = file;
+			this.inode = inode;
+		}
+
+		@Override
+		public int compareTo(PrefetchEntry other) {
+			if (inode != other.inode) {
+				return (inode < other.inode) ? -1 : 1;
+			}
+			
+			return expectedVersion.getPath().compareTo(other.expectedVersion.getPath());
+		}
+	}
 }
@@ -0,0 +1,196 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.down;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.config.Config;
+import org.syncany.database.ChunkEntry.ChunkChecksum;
+import org.syncany.database.ChunkPosition;
+import org.syncany.database.SqlDatabase;
+
+/**
+ * The local chunk source finds chunks required by the {@link DownOperation} in the
+ * files of the local file tree, so that they do not have to be downloaded as part of
+ * a multichunk. This is particularly useful if a remote client copied files that 
+ * are already present locally.
+ * 
+ * <p>Chunk positions are determined from the local database (see 
+ * {@link SqlDatabase#getChunkPositions(Collection) getChunkPositions()}). Because local
+ * files might have changed since they were last indexed, the data at each position
+ * is verified using the chunk checksum. Verified chunks are copied to the local cache 
+ * (see {@link org.syncany.config.Cache#getLocalChunkFile(ChunkChecksum) getLocalChunkFile()}),
+ * so that they remain available even if the original file is changed or deleted by
+ * a file system action before the target file is reassembled.
+ * 
+ * @author agent <agent@local>
+ */
+public class LocalChunkSource {
+	private static final Logger logger = Logger.getLogger(LocalChunkSource.class.getSimpleName());
+
+	private Config config;
+	private SqlDatabase localDatabase;
+	
+	public LocalChunkSource(Config config, SqlDatabase localDatabase) {
+		this.config = config;
+		this.localDatabase = localDatabase;
+	}
+	
+	/**
+	 * Looks up the given chunks in the local file tree, verifies their checksums, and
+	 * writes all matching chunks to the local cache.
+	 * 
+	 * @param chunkChecksums Chunks required to reassemble files
+	 * @return Returns the subset of chunks that were found locally and extracted to the cache
+	 */
+	public Set<ChunkChecksum> extractChunksToCache(Collection<ChunkChecksum> chunkChecksums) throws IOException {
+		Set<ChunkChecksum> extractedChunks = new HashSet<ChunkChecksum>();		
+		Map<ChunkChecksum, List<ChunkPosition>> chunkPositions = localDatabase.getChunkPositions(chunkChecksums);
+		
+		if (chunkPositions.size() == 0) {
+			logger.log(Level.INFO, "- No required chunks found in local files.");
+			return extractedChunks;
+		}
+		
+		logger.log(Level.INFO, "- Found " + chunkPositions.size() + " of " + chunkChecksums.size() + " required chunk(s) in local files. Verifying ...");
+
+		MessageDigest chunkDigest = createChunkDigest();
+		Map<String, List<ChunkPosition>> chunkPositionsByPath = groupByPath(chunkPositions);
+		
+		for (Map.Entry<String, List<ChunkPosition>> pathEntry : chunkPositionsByPath.entrySet()) {
+			File localFile = new File(config.getLocalDir(), pathEntry.getKey());
+			extractChunksFromFile(localFile, pathEntry.getValue(), chunkDigest, extractedChunks);
+		}
+
+		logger.log(Level.INFO, "- Extracted " + extractedChunks.size() + " chunk(s) from local files.");
+		return extractedChunks;
+	}
+	
+	private void extractChunksFromFile(File localFile, List<ChunkPosition> chunkPositions, MessageDigest chunkDigest, Set<ChunkChecksum> extractedChunks) {
+		try (RandomAccessFile localFileReader = new RandomAccessFile(localFile, "r")) {
+			for (ChunkPosition chunkPosition : chunkPositions) {
+				if (extractedChunks.contains(chunkPosition.getChecksum())) {
+					continue; // Chunk found in another file (or earlier in this file)
+				}
+				
+				if (chunkPosition.getOffset() + chunkPosition.getSize() > localFileReader.length()) {
+					logger.log(Level.FINE, "  + Skipping {0}; file is shorter than expected.", chunkPosition);
+					continue;
+				}
+				
+				byte[] chunkData = new byte[chunkPosition.getSize()];
+				
+				localFileReader.seek(chunkPosition.getOffset());
+				localFileReader.readFully(chunkData);
+				
+				if (verifyChunk(chunkData, chunkPosition.getChecksum(), chunkDigest)) {
+					writeChunkToCache(chunkPosition.getChecksum(), chunkData);
+					extractedChunks.add(chunkPosition.getChecksum());
+				}
+				else {
+					logger.log(Level.FINE, "  + Skipping {0}; checksum does not match.", chunkPosition);
+				}
+			}
+		}
+		catch (IOException e) {
+			logger.log(Level.FINE, "  + Cannot read chunks from " + localFile + ". Skipping file.", e);
+		}
+	}
+
+	private boolean verifyChunk(byte[] chunkData, ChunkChecksum expectedChecksum, MessageDigest chunkDigest) {
+		chunkDigest.reset();		
+		return expectedChecksum.equals(new ChunkChecksum(chunkDigest.digest(chunkData)));
+	}
+	
+	/**
+	 * Writes the chunk to a temporary file first, and then atomically renames it. Because 
+	 * existing local chunk files are used without verifying them, a crash must never leave
+	 * a truncated chunk file behind.
+	 */
+	private void writeChunkToCache(ChunkChecksum chunkChecksum, byte[] chunkData) throws IOException {
+		File localChunkFile = config.getCache().getLocalChunkFile(chunkChecksum);
+		File tempLocalChunkFile = File.createTempFile(localChunkFile.getName() + "-", ".tmp", localChunkFile.getParentFile());
+		
+		try {
+			try (FileOutputStream localChunkOutputStream = new FileOutputStream(tempLocalChunkFile)) {
+				localChunkOutputStream.write(chunkData);
+			}
+			
+			Files.move(tempLocalChunkFile.toPath(), localChunkFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			tempLocalChunkFile.delete();
+		}
+	}
+	
+	private Map<String, List<ChunkPosition>> groupByPath(Map<ChunkChecksum, List<ChunkPosition>> chunkPositions) {
+		Map<String, List<ChunkPosition>> chunkPositionsByPath = new TreeMap<String, List<ChunkPosition>>();
+		
+		for (List<ChunkPosition> positionsForChunk : chunkPositions.values()) {
+			for (ChunkPosition chunkPosition : positionsForChunk) {
+				List<ChunkPosition> positionsForPath = chunkPositionsByPath.get(chunkPosition.getPath());
+				
+				if (positionsForPath == null) {
+					positionsForPath = new ArrayList<ChunkPosition>();
+					chunkPositionsByPath.put(chunkPosition.getPath(), positionsForPath);
+				}
+				
+				positionsForPath.add(chunkPosition);
+			}
+		}
+		
+		// Read chunks in the order they appear in the file 
+		for (List<ChunkPosition> positionsForPath : chunkPositionsByPath.values()) {
+			Collections.sort(positionsForPath, new Comparator<ChunkPosition>() {
+				@Override
+				public int compare(ChunkPosition position1, ChunkPosition position2) {
+					return Long.compare(position1.getOffset(), position2.getOffset());
+				}				
+			});
+		}
+		
+		return chunkPositionsByPath;
+	}
+	
+	private MessageDigest createChunkDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance(config.getChunker().getChecksumAlgorithm());
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IOException("Unable to create chunk digest.", e);
+		}
+	}
+}
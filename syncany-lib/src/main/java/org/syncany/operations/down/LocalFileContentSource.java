@@ -0,0 +1,139 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.down;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.syncany.config.Config;
+import org.syncany.database.FileVersion;
+import org.syncany.database.FileVersion.FileType;
+import org.syncany.database.FileVersionComparator;
+import org.syncany.database.FileVersionComparator.FileProperties;
+import org.syncany.database.PartialFileHistory;
+import org.syncany.database.SqlDatabase;
+
+/**
+ * The local file content source materializes new files by copying a local file with
+ * identical content, instead of reassembling them from chunks. This is the case if a 
+ * remote client copied a file, or duplicated a whole directory tree.
+ * 
+ * <p>Candidate files are determined by their checksum using the local database (see 
+ * {@link SqlDatabase#getFileHistoriesWithLastVersionByChecksum(org.syncany.database.FileContent.FileChecksum) 
+ * getFileHistoriesWithLastVersionByChecksum()}). A candidate is only used if its size and 
+ * last modified date still match the local database before and after the copy. 
+ * 
+ * <p>Files are copied to the local cache before any file system action is applied, so 
+ * that the copy does not depend on the order of the actions (e.g. the candidate file
+ * being deleted or moved by another action). Copies are made using 
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel) transferTo()},
+ * which allows the operating system to copy the data without passing it through the
+ * application. Hardlinks are not used, because changing one of the files would also 
+ * change the other one. 
+ * 
+ * @author agent <agent@local>
+ */
+public class LocalFileContentSource {
+	private static final Logger logger = Logger.getLogger(LocalFileContentSource.class.getSimpleName());
+
+	private Config config;
+	private SqlDatabase localDatabase;
+	private FileVersionComparator fileVersionComparator;
+	
+	public LocalFileContentSource(Config config, SqlDatabase localDatabase) {
+		this.config = config;
+		this.localDatabase = localDatabase;
+		this.fileVersionComparator = new FileVersionComparator(config.getLocalDir(), config.getChunker().getChecksumAlgorithm());
+	}
+	
+	/**
+	 * Tries to find a local file with the same content as the given file version, and 
+	 * copies it to a temporary file in the local cache. 
+	 * 
+	 * @param fileVersion File version to be created 
+	 * @return Returns the copy in the local cache, or <tt>null</tt> if no matching local file was found
+	 */
+	public File copyToCache(FileVersion fileVersion) throws Exception {
+		if (fileVersion.getType() != FileType.FILE || fileVersion.getChecksum() == null) {
+			return null;
+		}
+		
+		List<PartialFileHistory> localFileHistories = localDatabase.getFileHistoriesWithLastVersionByChecksum(fileVersion.getChecksum());
+		
+		for (PartialFileHistory localFileHistory : localFileHistories) {
+			FileVersion localFileVersion = localFileHistory.getLastVersion();
+			File localFile = new File(config.getLocalDir(), localFileVersion.getPath());
+
+			if (localFileVersion.getType() == FileType.FILE && fileAsExpected(localFileVersion, localFile)) {
+				File localFileCopyInCache = config.getCache().createTempFile("localFileCopy");
+				logger.log(Level.INFO, "  + Copying local file " + localFileVersion.getPath() + " to " + localFileCopyInCache + " (for " + fileVersion.getPath() + ") ...");
+				
+				try {
+					copyFile(localFile, localFileCopyInCache);
+					
+					// Make sure the file did not change while copying 
+					if (fileAsExpected(localFileVersion, localFile) && localFileCopyInCache.length() == fileVersion.getSize()) {
+						return localFileCopyInCache;
+					}
+				}
+				catch (IOException e) {
+					logger.log(Level.FINE, "  + Cannot copy local file " + localFile + ". Trying next candidate.", e);
+				}
+
+				localFileCopyInCache.delete();
+			}
+		}
+		
+		return null;
+	}
+	
+	private boolean fileAsExpected(FileVersion localFileVersion, File localFile) {
+		FileProperties localFileProperties = fileVersionComparator.captureFileProperties(localFile, null, false);
+		
+		return localFileProperties.exists()
+			&& !localFileProperties.isLocked()
+			&& localFileProperties.getType() == FileType.FILE
+			&& localFileProperties.getSize() == localFileVersion.getSize()
+			&& localFileProperties.getLastModified() == localFileVersion.getLastModified().getTime();
+	}
+
+	private void copyFile(File sourceFile, File targetFile) throws IOException {
+		try (FileChannel sourceChannel = new FileInputStream(sourceFile).getChannel();
+				FileChannel targetChannel = new FileOutputStream(targetFile).getChannel()) {
+			
+			long position = 0;
+			long size = sourceChannel.size();
+			
+			while (position < size) {
+				long transferredBytes = sourceChannel.transferTo(position, size - position, targetChannel);
+				
+				if (transferredBytes <= 0) {
+					throw new IOException("Unexpected end of file while copying " + sourceFile);
+				}
+				
+				position += transferredBytes;
+			}
+		}
+	}
+}
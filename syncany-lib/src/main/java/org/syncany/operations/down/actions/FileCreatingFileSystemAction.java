@@ -18,6 +18,7 @@
 package org.syncany.operations.down.actions;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -40,10 +41,24 @@ import org.syncany.util.FileUtil;
 import org.syncany.util.NormalizedPath;
 
 public abstract class FileCreatingFileSystemAction extends FileSystemAction {
+	private File localFileCopyInCache;
+	
 	public FileCreatingFileSystemAction(Config config, MemoryDatabase winningDatabase, FileVersion file1, FileVersion file2) {
 		super(config, winningDatabase, file1, file2);		
 	}
 
+	/**
+	 * Sets a copy of a local file with the same content as the file to be created. If set,
+	 * the file is created from this copy instead of being reassembled from its chunks.
+	 */
+	public void setLocalFileCopy(File localFileCopyInCache) {
+		this.localFileCopyInCache = localFileCopyInCache;
+	}
+	
+	public boolean hasLocalFileCopy() {
+		return localFileCopyInCache != null;
+	}
+
 	protected void createFileFolderOrSymlink(FileVersion reconstructedFileVersion) throws Exception {
 		if (reconstructedFileVersion.getType() == FileType.FILE) {
 			createFile(reconstructedFileVersion);
@@ -82,10 +97,31 @@ public abstract class FileCreatingFileSystemAction extends FileSystemAction {
 	}
 
 	protected void createFile(FileVersion reconstructedFileVersion) throws Exception {
-		File reconstructedFileInCache = assembleFileToCache(reconstructedFileVersion);		
+		File reconstructedFileInCache = null;
+		
+		if (localFileCopyInCache != null && localFileCopyInCache.exists()) {
+			reconstructedFileInCache = useLocalFileCopy(reconstructedFileVersion);
+		}
+		else {
+			reconstructedFileInCache = assembleFileToCache(reconstructedFileVersion);
+		}
+		
 		moveFileToFinalLocation(reconstructedFileInCache, reconstructedFileVersion);	
 	}
 	
+	private File useLocalFileCopy(FileVersion reconstructedFileVersion) throws IOException {
+		logger.log(Level.INFO, "     - Creating file " + reconstructedFileVersion.getPath() + " from local copy " + localFileCopyInCache + " ...");
+
+		File reconstructedFileInCache = localFileCopyInCache;
+		localFileCopyInCache = null; // Can only be used once
+		
+		// Set attributes & timestamp
+		setFileAttributes(reconstructedFileVersion, reconstructedFileInCache);
+		setLastModified(reconstructedFileVersion, reconstructedFileInCache);
+		
+		return reconstructedFileInCache;
+	}
+	
 	private File assembleFileToCache(FileVersion reconstructedFileVersion) throws Exception {
 		SqlDatabase localDatabase = new SqlDatabase(config);
 
@@ -112,7 +148,19 @@ public abstract class FileCreatingFileSystemAction extends FileSystemAction {
 			Collection<ChunkChecksum> fileChunks = fileContent.getChunks();
 
 			for (ChunkChecksum chunkChecksum : fileChunks) {
-				MultiChunkId multiChunkIdForChunk = localDatabase.getMultiChunkId(chunkChecksum);
+				File localChunkFile = config.getCache().getLocalChunkFile(chunkChecksum);
+				
+				if (localChunkFile.exists()) {
+					// Chunk was extracted from a local file (no multichunk download necessary)
+					FileUtil.appendToOutputStream(new FileInputStream(localChunkFile), reconstructedFileOutputStream);
+					continue;
+				}
+				
+				MultiChunkId multiChunkIdForChunk = winningDatabase.getRepackagedMultiChunkIdForChunk(chunkChecksum);
+				
+				if (multiChunkIdForChunk == null) {
+					multiChunkIdForChunk = localDatabase.getMultiChunkId(chunkChecksum);
+				}
 
 				if (multiChunkIdForChunk == null) {
 					multiChunkIdForChunk = winningDatabase.getMultiChunkIdForChunk(chunkChecksum);
@@ -173,7 +221,8 @@ public abstract class FileCreatingFileSystemAction extends FileSystemAction {
 			logger.log(Level.INFO, "     - Creating folder at " + targetDir.toFile() + " ...");
 			boolean targetDirCreated = targetDir.toFile().mkdirs();
 			
-			if (!targetDirCreated) {
+			// Another (concurrently executed) action might have created it in the meantime
+			if (!targetDirCreated && !FileUtil.isDirectory(targetDir.toFile())) {
 				throw new Exception("Cannot create target dir: "+targetDir);
 			}
 		}
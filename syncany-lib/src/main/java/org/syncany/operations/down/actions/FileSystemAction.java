@@ -29,6 +29,7 @@ import java.nio.file.attribute.PosixFilePermissions;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -65,12 +66,14 @@ public abstract class FileSystemAction {
 	protected FileVersion fileVersion2;
 	protected FileVersionComparator fileVersionHelper;
 	
+	private ConcurrentMap<String, Object> conflictLocks;
+	
 	public FileSystemAction(Config config, MemoryDatabase winningDatabase, FileVersion file1, FileVersion file2) {
 		this.config = config;
 		this.winningDatabase = winningDatabase;
 		this.fileVersion1 = file1;
 		this.fileVersion2 = file2;
-		this.fileVersionHelper = new FileVersionComparator(config.getLocalDir(), config.getChunker().getChecksumAlgorithm());
+		this.fileVersionHelper = new FileVersionComparator(config.getLocalDir(), config.getChunker().getChecksumAlgorithm(), config.getFastChecksumCache());
 	}
 	
 	public FileVersion getFile1() {
@@ -81,6 +84,15 @@ public abstract class FileSystemAction {
 		return fileVersion2;
 	}
 	
+	/**
+	 * Sets the per-folder locks used when moving files to conflict files. The map is 
+	 * shared by all actions of one {@link org.syncany.operations.down.FileSystemActionExecutor 
+	 * executor} run. If no map is set, the action is assumed to run on its own.
+	 */
+	public void setConflictLocks(ConcurrentMap<String, Object> conflictLocks) {
+		this.conflictLocks = conflictLocks;
+	}
+	
 	public FileType getType() {
 		if (fileVersion1 != null) {
 			return fileVersion1.getType();
@@ -131,35 +143,53 @@ public abstract class FileSystemAction {
 			return;
 		}
 		
-		int attempts = 0;
-		
-		while (attempts++ < 10) {
-			NormalizedPath conflictedCopyPath = null;
+		// Actions on different files in the same folder may run in parallel (see FileSystemActionExecutor). Finding a free
+		// conflict filename and moving the file must be atomic per parent folder, or two actions could pick the same name.
+		synchronized (getConflictLock(conflictingPath)) {
+			int attempts = 0;
 			
-			try {
-				conflictedCopyPath = findConflictFilename(conflictingPath);
-				logger.log(Level.INFO, "     - Local version conflicts, moving local file "+conflictingPath+" to "+conflictedCopyPath+" ...");
-
-				if (conflictingPath.toFile().isDirectory()) {
-					FileUtils.moveDirectory(conflictingPath.toFile(), conflictedCopyPath.toFile()); 
+			while (attempts++ < 10) {
+				NormalizedPath conflictedCopyPath = null;
+				
+				try {
+					conflictedCopyPath = findConflictFilename(conflictingPath);
+					logger.log(Level.INFO, "     - Local version conflicts, moving local file "+conflictingPath+" to "+conflictedCopyPath+" ...");
+	
+					if (conflictingPath.toFile().isDirectory()) {
+						FileUtils.moveDirectory(conflictingPath.toFile(), conflictedCopyPath.toFile()); 
+					}
+					else {
+						FileUtils.moveFile(conflictingPath.toFile(), conflictedCopyPath.toFile());
+					}
+					
+					// Success!
+					break;
 				}
-				else {
-					FileUtils.moveFile(conflictingPath.toFile(), conflictedCopyPath.toFile());
+				catch (FileExistsException e) {
+					logger.log(Level.SEVERE, "     - Cannot create conflict file; attempt = "+attempts+" for file: "+conflictedCopyPath);
+				}
+				catch (FileNotFoundException e) {
+					logger.log(Level.INFO, "     - Conflict file vanished. Don't care!");
+				}
+				catch (Exception e) {
+					throw new RuntimeException("What to do here?", e);
 				}
-				
-				// Success!
-				break;
-			}
-			catch (FileExistsException e) {
-				logger.log(Level.SEVERE, "     - Cannot create conflict file; attempt = "+attempts+" for file: "+conflictedCopyPath);
-			}
-			catch (FileNotFoundException e) {
-				logger.log(Level.INFO, "     - Conflict file vanished. Don't care!");
-			}
-			catch (Exception e) {
-				throw new RuntimeException("What to do here?", e);
 			}
-		} 		
+		}
+	}
+	
+	private Object getConflictLock(NormalizedPath conflictingPath) {
+		if (conflictLocks == null) {
+			return this;
+		}
+		
+		File parentFolder = conflictingPath.toFile().getAbsoluteFile().getParentFile();
+		String lockKey = (parentFolder != null) ? parentFolder.getPath().toLowerCase() : "";
+		
+		Object newLock = new Object();
+		Object existingLock = conflictLocks.putIfAbsent(lockKey, newLock);
+		
+		return (existingLock != null) ? existingLock : newLock;
 	}
 	
 	private NormalizedPath findConflictFilename(NormalizedPath conflictingPath) throws Exception {
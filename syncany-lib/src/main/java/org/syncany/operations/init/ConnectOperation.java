@@ -30,6 +30,7 @@ import org.apache.commons.io.FileUtils;
 import org.simpleframework.xml.Serializer;
 import org.simpleframework.xml.core.Persister;
 import org.syncany.config.Config;
+import org.syncany.config.UserConfig;
 import org.syncany.config.to.ConfigTO;
 import org.syncany.config.to.ConfigTO.ConnectionTO;
 import org.syncany.config.to.MasterTO;
@@ -46,6 +47,7 @@ import org.syncany.connection.plugins.TransferManager;
 import org.syncany.connection.plugins.UserInteractionListener;
 import org.syncany.crypto.CipherException;
 import org.syncany.crypto.CipherUtil;
+import org.syncany.crypto.MasterKeyCache;
 import org.syncany.crypto.SaltedSecretKey;
 import org.syncany.operations.init.ConnectOperationOptions.ConnectOptionsStrategy;
 import org.syncany.operations.init.ConnectOperationResult.ConnectResultCode;
@@ -361,9 +363,25 @@ public class ConnectOperation extends AbstractInitOperation {
 	}
 	
 	private SaltedSecretKey createMasterKeyFromPassword(String masterPassword, byte[] masterKeySalt) throws CipherException {
+		MasterKeyCache masterKeyCache = null;
+		
+		if (options.isMasterKeyCacheEnabled()) {
+			masterKeyCache = new MasterKeyCache(UserConfig.getUserMasterKeyCacheDir());
+			SaltedSecretKey cachedMasterKey = masterKeyCache.get(masterPassword, masterKeySalt);
+			
+			if (cachedMasterKey != null) {
+				return cachedMasterKey;
+			}
+		}
+		
 		fireNotifyCreateMaster();
 		
 		SaltedSecretKey masterKey = CipherUtil.createMasterKey(masterPassword, masterKeySalt);
+		
+		if (masterKeyCache != null) {
+			masterKeyCache.put(masterPassword, masterKey);
+		}
+		
 		return masterKey;
 	}
 	
@@ -32,6 +32,7 @@ public class ConnectOperationOptions implements OperationOptions {
 	private String connectLink;
 	private File localDir;
 	private String password;
+	private boolean masterKeyCacheEnabled;
 	
 	public ConnectOptionsStrategy getStrategy() {
 		return strategy;
@@ -72,4 +73,12 @@ public class ConnectOperationOptions implements OperationOptions {
 	public void setPassword(String password) {
 		this.password = password;
 	}
-}
\ No newline at end of file
+
+	public boolean isMasterKeyCacheEnabled() {
+		return masterKeyCacheEnabled;
+	}
+
+	public void setMasterKeyCacheEnabled(boolean masterKeyCacheEnabled) {
+		this.masterKeyCacheEnabled = masterKeyCacheEnabled;
+	}
+}
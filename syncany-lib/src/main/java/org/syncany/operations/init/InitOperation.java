@@ -24,6 +24,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.syncany.config.Config;
+import org.syncany.config.UserConfig;
 import org.syncany.config.to.ConfigTO;
 import org.syncany.config.to.MasterTO;
 import org.syncany.config.to.RepoTO;
@@ -37,6 +38,7 @@ import org.syncany.connection.plugins.StorageTestResult;
 import org.syncany.connection.plugins.TransferManager;
 import org.syncany.connection.plugins.UserInteractionListener;
 import org.syncany.crypto.CipherUtil;
+import org.syncany.crypto.MasterKeyCache;
 import org.syncany.crypto.SaltedSecretKey;
 import org.syncany.operations.init.InitOperationResult.InitResultCode;
 
@@ -213,6 +215,11 @@ public class InitOperation extends AbstractInitOperation {
 		fireNotifyCreateMaster();
 		
 		SaltedSecretKey masterKey = CipherUtil.createMasterKey(masterPassword);
+		
+		if (options.isMasterKeyCacheEnabled()) {
+			new MasterKeyCache(UserConfig.getUserMasterKeyCacheDir()).put(masterPassword, masterKey);
+		}
+		
 		return masterKey;
 	}
 
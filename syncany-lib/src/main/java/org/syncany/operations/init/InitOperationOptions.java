@@ -33,6 +33,7 @@ public class InitOperationOptions implements OperationOptions {
 	private boolean encryptionEnabled;
 	private List<CipherSpec> cipherSpecs;
 	private String password;
+	private boolean masterKeyCacheEnabled;
 
 	public boolean isCreateTarget() {
 		return createTarget;
@@ -89,4 +90,12 @@ public class InitOperationOptions implements OperationOptions {
 	public void setPassword(String password) {
 		this.password = password;
 	}
+
+	public boolean isMasterKeyCacheEnabled() {
+		return masterKeyCacheEnabled;
+	}
+
+	public void setMasterKeyCacheEnabled(boolean masterKeyCacheEnabled) {
+		this.masterKeyCacheEnabled = masterKeyCacheEnabled;
+	}
 }
@@ -30,6 +30,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.syncany.chunk.Chunk;
+import org.syncany.chunk.ChunkLayout;
 import org.syncany.chunk.Deduper;
 import org.syncany.chunk.DeduperListener;
 import org.syncany.chunk.MultiChunk;
@@ -54,6 +55,7 @@ import org.syncany.database.SqlDatabase;
 import org.syncany.util.EnvironmentUtil;
 import org.syncany.util.FileUtil;
 import org.syncany.util.StringUtil;
+import org.syncany.util.XxHash64;
 
 /**
  * The indexer combines the chunking process with the corresponding database
@@ -79,12 +81,23 @@ public class Indexer {
 	private Deduper deduper;
 	private SqlDatabase localDatabase;
 	private IndexerListener listener;
+	private long deltaChunkingMinFileSize;
 	
 	public Indexer(Config config, Deduper deduper, IndexerListener listener) {
+		this(config, deduper, listener, -1);
+	}
+	
+	/**
+	 * Creates a new indexer. Files with a size of at least <tt>deltaChunkingMinFileSize</tt> bytes
+	 * are delta-chunked, i.e. their {@link ChunkLayout} is remembered, and unchanged chunks are
+	 * reused when they are indexed again. A negative size disables delta chunking.
+	 */
+	public Indexer(Config config, Deduper deduper, IndexerListener listener, long deltaChunkingMinFileSize) {
 		this.config = config;
 		this.deduper = deduper;
 		this.localDatabase = new SqlDatabase(config);
 		this.listener = listener;
+		this.deltaChunkingMinFileSize = deltaChunkingMinFileSize;
 	}
 	
 	/**
@@ -219,6 +232,9 @@ public class Indexer {
 		private ChunkEntry chunkEntry;		
 		private MultiChunkEntry multiChunkEntry;	
 		private FileContent fileContent;
+		private XxHash64 fastChecksum;
+		private ChunkLayout chunkLayout;
+		private FileChecksum previousChunkLayoutChecksum;
 		
 		private FileProperties startFileProperties;
 		private FileProperties endFileProperties;		
@@ -230,6 +246,7 @@ public class Indexer {
 			
 			this.fileVersionComparator = new FileVersionComparator(config.getLocalDir(), config.getChunker().getChecksumAlgorithm());
 			this.secureRandom = new SecureRandom();
+			this.fastChecksum = new XxHash64();
 			this.newDatabaseVersion = newDatabaseVersion;
 			
 			this.fileChecksumCache = fileChecksumCache;
@@ -256,6 +273,11 @@ public class Indexer {
 			if (startFileProperties.getType() == FileType.FILE) {
 				logger.log(Level.FINER, "- +FileContent: {0}", file);			
 				fileContent = new FileContent();				
+				fastChecksum.reset();
+				
+				if (deltaChunkingMinFileSize >= 0 && startFileProperties.getSize() >= deltaChunkingMinFileSize) {
+					chunkLayout = new ChunkLayout();
+				}
 			}				
 			
 			return true;
@@ -271,6 +293,29 @@ public class Indexer {
 			
 			return processFile;
 		}
+		
+		@Override
+		public ChunkLayout getPreviousChunkLayout(File file) {
+			if (chunkLayout == null) {
+				return null;
+			}
+			
+			PartialFileHistory lastFileHistory = filePathCache.get(startFileProperties.getRelativePath());
+			FileVersion lastFileVersion = (lastFileHistory != null) ? lastFileHistory.getLastVersion() : null;
+			
+			if (lastFileVersion == null || lastFileVersion.getType() != FileType.FILE || lastFileVersion.getChecksum() == null) {
+				return null;
+			}
+			
+			ChunkLayout previousChunkLayout = config.getChunkLayoutCache().get(lastFileVersion.getChecksum());
+			
+			if (previousChunkLayout != null) {
+				logger.log(Level.FINER, "- Found chunk layout of previous version {0}, using delta chunking: {1}", new Object[] { lastFileVersion.getChecksum(), file });
+				previousChunkLayoutChecksum = lastFileVersion.getChecksum();
+			}
+			
+			return previousChunkLayout;
+		}
 
 		@Override
 		public void onFileEnd(File file, byte[] rawFileChecksum) {
@@ -297,6 +342,20 @@ public class Indexer {
 			// If it's still there, add it to the database
 			addFileVersion(endFileProperties);						
 			
+			// Remember fast checksum, so that comparisons don't have to calculate the full checksum
+			if (fileChecksum != null) {
+				config.getFastChecksumCache().put(fileChecksum, fastChecksum.getValue());
+			}
+			
+			// Remember chunk layout of large files (and forget the previous one), so that they can be delta-chunked 
+			if (fileChecksum != null && chunkLayout != null) {
+				config.getChunkLayoutCache().put(fileChecksum, chunkLayout);
+				
+				if (previousChunkLayoutChecksum != null && !previousChunkLayoutChecksum.equals(fileChecksum)) {
+					config.getChunkLayoutCache().remove(previousChunkLayoutChecksum);
+				}
+			}
+			
 			// Reset
 			resetFileEnd();		
 		}
@@ -411,6 +470,8 @@ public class Indexer {
 
 		private void resetFileEnd() {
 			fileContent = null;	
+			chunkLayout = null;
+			previousChunkLayoutChecksum = null;
 			startFileProperties = null;
 			endFileProperties = null;
 		}
@@ -550,6 +611,11 @@ public class Indexer {
 		public void onFileAddChunk(File file, Chunk chunk) {			
 			logger.log(Level.FINER, "- Chunk > FileContent: {0} > {1}", new Object[] { StringUtil.toHex(chunk.getChecksum()), file });
 			fileContent.addChunk(new ChunkChecksum(chunk.getChecksum()));
+			fastChecksum.update(chunk.getContent(), 0, chunk.getSize());
+			
+			if (chunkLayout != null) {
+				chunkLayout.add(chunk.getChecksum(), chunk.getSize(), XxHash64.hash(chunk.getContent(), 0, chunk.getSize(), 0));
+			}
 		}		
 		
 		@Override
@@ -0,0 +1,265 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.operations.up;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.syncany.config.Config.ConfigException;
+import org.syncany.config.to.TransferJournalTO;
+import org.syncany.config.to.TransferJournalTO.TransferEntryTO;
+import org.syncany.connection.plugins.RemoteFile;
+import org.syncany.connection.plugins.StorageException;
+import org.syncany.database.VectorClock;
+import org.syncany.util.FileUtil;
+import org.syncany.util.StringUtil;
+
+/**
+ * The transfer journal keeps track of the files of an upload, so that an interrupted
+ * upload can be resumed by the next {@link UpOperation}, instead of re-indexing and 
+ * re-uploading everything.
+ * 
+ * <p>Before the first file is uploaded, all files of the upload (multichunks and the delta 
+ * database) are moved to the journal folder, and the {@link TransferJournalTO journal file} is 
+ * written. Each completed transfer is then appended to a separate list of completed transfers 
+ * (to avoid rewriting the journal file for each transfer). Once the upload has been completed
+ * and the new database version has been persisted locally, the journal is deleted.
+ * 
+ * @author agent <agent@local>
+ */
+public class TransferJournal {
+	private static final String FILE_JOURNAL = "journal.xml";
+	private static final String FILE_COMPLETED = "completed.list";
+	private static final String FILE_DATABASE_VERSION = "databaseversion";
+	private static final String CHECKSUM_ALGORITHM = "SHA-256";
+	private static final Charset COMPLETED_FILE_CHARSET = Charset.forName("UTF-8");
+
+	private File journalDir;
+	private TransferJournalTO journalTO;
+	private Set<String> completedRemoteFileNames;
+	
+	public TransferJournal(File journalDir) {
+		this.journalDir = journalDir;
+	}
+	
+	/**
+	 * Deletes any existing journal and starts a new one. The journal is not 
+	 * written to disk until {@link #save()} is called.
+	 */
+	public void create(VectorClock previousVectorClock, VectorClock newVectorClock) throws IOException {
+		delete();
+		
+		if (!journalDir.mkdirs()) {
+			throw new IOException("Cannot create transfer journal folder " + journalDir);
+		}
+		
+		journalTO = new TransferJournalTO();
+		journalTO.setPreviousVectorClock(previousVectorClock.toString());
+		journalTO.setNewVectorClock(newVectorClock.toString());
+		
+		completedRemoteFileNames = new HashSet<String>();
+	}
+	
+	/**
+	 * Loads an existing journal from disk.
+	 * 
+	 * @return Returns <tt>true</tt> if a journal exists and has been loaded, <tt>false</tt> otherwise 
+	 */
+	public boolean load() throws IOException {
+		File journalFile = new File(journalDir, FILE_JOURNAL);
+		File completedFile = new File(journalDir, FILE_COMPLETED);
+		
+		if (!journalFile.exists()) {
+			return false;
+		}
+		
+		try {
+			journalTO = TransferJournalTO.load(journalFile);
+			completedRemoteFileNames = new HashSet<String>();
+		}
+		catch (ConfigException e) {
+			throw new IOException(e);
+		}
+		
+		if (completedFile.exists()) {
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(completedFile), COMPLETED_FILE_CHARSET))) {
+				String remoteFileName;
+				
+				while ((remoteFileName = reader.readLine()) != null) {
+					completedRemoteFileNames.add(remoteFileName);
+				}
+			}
+		}
+		
+		return true;
+	}
+	
+	public void save() throws IOException {
+		File journalFile = new File(journalDir, FILE_JOURNAL);
+		File tempJournalFile = new File(journalDir, FILE_JOURNAL + ".tmp");
+		
+		try {
+			TransferJournalTO.save(journalTO, tempJournalFile);
+			Files.move(tempJournalFile.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (ConfigException e) {
+			throw new IOException(e);
+		}
+	}
+	
+	/**
+	 * Moves the given local file to the journal folder and adds it to the list of 
+	 * transfers. Files are uploaded in the order in which they are added.
+	 * 
+	 * @return Returns the new location of the local file (in the journal folder) 
+	 */
+	public File add(File localFile, RemoteFile remoteFile) throws IOException {
+		File journalLocalFile = new File(journalDir, remoteFile.getName());
+		Files.move(localFile.toPath(), journalLocalFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		
+		TransferEntryTO transferEntry = new TransferEntryTO();
+		
+		transferEntry.setLocalFileName(journalLocalFile.getName());
+		transferEntry.setRemoteFileName(remoteFile.getName());
+		transferEntry.setRemoteFileType(remoteFile.getClass().getName());
+		transferEntry.setSize(journalLocalFile.length());
+		transferEntry.setChecksum(createChecksum(journalLocalFile));
+		
+		journalTO.getTransfers().add(transferEntry);
+		
+		return journalLocalFile;
+	}
+
+	/**
+	 * Returns all transfers that have not been {@link #markCompleted(TransferEntryTO) completed},
+	 * in the order in which they were added. 
+	 */
+	public List<TransferEntryTO> getPendingTransfers() {
+		List<TransferEntryTO> pendingTransfers = new ArrayList<TransferEntryTO>();
+		
+		for (TransferEntryTO transferEntry : journalTO.getTransfers()) {
+			if (!completedRemoteFileNames.contains(transferEntry.getRemoteFileName())) {
+				pendingTransfers.add(transferEntry);
+			}
+		}
+		
+		return pendingTransfers;
+	}
+	
+	/**
+	 * Marks the given transfer as completed and deletes its local file.
+	 */
+	public void markCompleted(TransferEntryTO transferEntry) throws IOException {
+		File completedFile = new File(journalDir, FILE_COMPLETED);
+		
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(completedFile, true), COMPLETED_FILE_CHARSET)) {
+			writer.write(transferEntry.getRemoteFileName() + "\n");
+		}
+		
+		completedRemoteFileNames.add(transferEntry.getRemoteFileName());
+		getLocalFile(transferEntry).delete();
+	}
+	
+	/**
+	 * Checks whether the local files of all pending transfers still exist, and whether
+	 * their size and checksum match the values recorded in the journal. 
+	 */
+	public boolean verifyPendingTransfers() throws IOException {
+		for (TransferEntryTO transferEntry : getPendingTransfers()) {
+			File localFile = getLocalFile(transferEntry);
+			
+			if (!localFile.exists() || localFile.length() != transferEntry.getSize()) {
+				return false;
+			}
+			
+			if (!transferEntry.getChecksum().equals(createChecksum(localFile))) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	public File getLocalFile(TransferEntryTO transferEntry) {
+		return new File(journalDir, transferEntry.getLocalFileName());
+	}
+	
+	@SuppressWarnings("unchecked")
+	public RemoteFile getRemoteFile(TransferEntryTO transferEntry) throws StorageException {
+		try {
+			Class<? extends RemoteFile> remoteFileClass = (Class<? extends RemoteFile>) Class.forName(transferEntry.getRemoteFileType());
+			return RemoteFile.createRemoteFile(transferEntry.getRemoteFileName(), remoteFileClass);
+		}
+		catch (ClassNotFoundException e) {
+			throw new StorageException("Invalid remote file type in transfer journal: " + transferEntry.getRemoteFileType(), e);
+		}
+	}
+	
+	/**
+	 * Returns the file in which the new database version is stored, so that it 
+	 * can be persisted to the local database when the upload is resumed.
+	 */
+	public File getDatabaseVersionFile() {
+		return new File(journalDir, FILE_DATABASE_VERSION);
+	}
+	
+	public String getPreviousVectorClock() {
+		return journalTO.getPreviousVectorClock();
+	}
+	
+	public String getNewVectorClock() {
+		return journalTO.getNewVectorClock();
+	}
+	
+	/**
+	 * Deletes the journal and all files in the journal folder.
+	 */
+	public void delete() {
+		File[] journalFiles = journalDir.listFiles();
+		
+		if (journalFiles != null) {
+			for (File journalFile : journalFiles) {
+				journalFile.delete();
+			}
+		}
+		
+		journalDir.delete();
+	}
+	
+	private String createChecksum(File file) throws IOException {
+		try {
+			return StringUtil.toHex(FileUtil.createChecksum(file, CHECKSUM_ALGORITHM));
+		}
+		catch (Exception e) {
+			throw new IOException("Cannot create checksum of file " + file, e);
+		}
+	}
+}
@@ -21,7 +21,6 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -30,8 +29,10 @@ import java.util.logging.Logger;
 
 import org.syncany.chunk.Deduper;
 import org.syncany.config.Config;
+import org.syncany.config.to.TransferJournalTO.TransferEntryTO;
 import org.syncany.connection.plugins.DatabaseRemoteFile;
 import org.syncany.connection.plugins.MultiChunkRemoteFile;
+import org.syncany.connection.plugins.RemoteFile;
 import org.syncany.connection.plugins.StorageException;
 import org.syncany.connection.plugins.TransferManager;
 import org.syncany.database.ChunkEntry;
@@ -46,6 +47,8 @@ import org.syncany.database.PartialFileHistory;
 import org.syncany.database.SqlDatabase;
 import org.syncany.database.VectorClock;
 import org.syncany.database.dao.DatabaseXmlSerializer;
+import org.syncany.metrics.MetricTransferManager;
+import org.syncany.metrics.Timer;
 import org.syncany.operations.ChangeSet;
 import org.syncany.operations.CleanupOperation;
 import org.syncany.operations.CleanupOperation.CleanupOperationResult;
@@ -67,10 +70,12 @@ import org.syncany.operations.up.UpOperationResult.UpResultCode;
  *   <li>Load local database (if not already loaded)</li>
  *   <li>Analyze local directory using the {@link StatusOperation} to determine any changed/new/deleted files</li>
  *   <li>Determine if there are unknown remote databases using the {@link LsRemoteOperation}, and skip the rest if there are</li>
+ *   <li>Resume a previously interrupted upload using the {@link TransferJournal} (if any)</li>
  *   <li>If there are changes, use the {@link Deduper} and {@link Indexer} to create a new {@link DatabaseVersion} 
  *       (including new chunks, multichunks, file contents and file versions).</li>
- *   <li>Upload new multichunks (if any) using a {@link TransferManager}</li>
- *   <li>Save new {@link DatabaseVersion} to a new (delta) {@link MemoryDatabase} and upload it</li>
+ *   <li>Save new {@link DatabaseVersion} to a new (delta) {@link MemoryDatabase}, and write all files
+ *       to be uploaded to a {@link TransferJournal}</li>
+ *   <li>Upload new multichunks (if any) and the delta database using a {@link TransferManager}</li>
  *   <li>Add delta database to local database and store it locally</li>
  * </ol>
  * 
@@ -100,7 +105,7 @@ public class UpOperation extends Operation {
 
 		this.listener = listener;
 		this.options = options;
-		this.transferManager = config.getPlugin().createTransferManager(config.getConnection());
+		this.transferManager = MetricTransferManager.wrap(config.getPlugin().createTransferManager(config.getConnection()), config.getMetrics());
 		this.localDatabase = new SqlDatabase(config);
 	}
 
@@ -111,15 +116,16 @@ public class UpOperation extends Operation {
 		logger.log(Level.INFO, "--------------------------------------------");
 
 		UpOperationResult result = new UpOperationResult();
+		result.setMetrics(config.getMetrics());
 		
-		// Find local changes
-		StatusOperation statusOperation = new StatusOperation(config, options.getStatusOptions());
-		StatusOperationResult statusOperationResult = statusOperation.execute();
-		ChangeSet localChanges = statusOperationResult.getChangeSet();
+		// Load interrupted upload (if any); it is only resumed if there are no unknown remote databases
+		TransferJournal interruptedTransferJournal = loadInterruptedUpload();
 		
+		// Find local changes
+		ChangeSet localChanges = findLocalChanges();		
 		result.getStatusResult().setChangeSet(localChanges);
 
-		if (!localChanges.hasChanges()) {
+		if (!localChanges.hasChanges() && interruptedTransferJournal == null) {
 			logger.log(Level.INFO, "Local database is up-to-date (change set). NOTHING TO DO!");
 			result.setResultCode(UpResultCode.OK_NO_CHANGES);
 
@@ -151,6 +157,28 @@ public class UpOperation extends Operation {
 			logger.log(Level.INFO, "Force (--force) is enabled, ignoring potential remote changes.");
 		}
 
+		// Resume interrupted upload (if any)
+		DatabaseVersion resumedDatabaseVersion = null;
+		
+		if (interruptedTransferJournal != null) {
+			resumedDatabaseVersion = resumeInterruptedUpload(interruptedTransferJournal);
+			addNewDatabaseChangesToResultChanges(resumedDatabaseVersion, result.getChangeSet());
+			
+			// Local database has changed, so the local changes must be re-determined
+			localChanges = findLocalChanges();
+			result.getStatusResult().setChangeSet(localChanges);
+			
+			if (!localChanges.hasChanges()) {
+				logger.log(Level.INFO, "Local database is up-to-date after resuming the interrupted upload. NOTHING ELSE TO DO!");
+				result.setResultCode(UpResultCode.OK_APPLIED_CHANGES);
+
+				disconnectTransferManager();
+				clearCache();
+
+				return result;
+			}
+		}
+
 		List<File> locallyUpdatedFiles = extractLocallyUpdatedFiles(localChanges);
 		localChanges = null; // allow GC to clean up
 
@@ -159,7 +187,7 @@ public class UpOperation extends Operation {
 
 		if (newDatabaseVersion.getFileHistories().size() == 0) {
 			logger.log(Level.INFO, "Local database is up-to-date. NOTHING TO DO!");
-			result.setResultCode(UpResultCode.OK_NO_CHANGES);
+			result.setResultCode((resumedDatabaseVersion != null) ? UpResultCode.OK_APPLIED_CHANGES : UpResultCode.OK_NO_CHANGES);
 
 			disconnectTransferManager();
 			clearCache();
@@ -167,19 +195,17 @@ public class UpOperation extends Operation {
 			return result;
 		}		
 
-		// Upload multichunks
-		logger.log(Level.INFO, "Uploading new multichunks ...");
-		uploadMultiChunks(newDatabaseVersion.getMultiChunks());
-
-		// Create delta database
-		writeAndUploadDeltaDatabase(newDatabaseVersion);
+		// Write transfer journal (multichunks and delta database)
+		Timer.Context journalTimer = config.getMetrics().timer("up.journal").time();
+		TransferJournal transferJournal = writeTransferJournal(newDatabaseVersion);
+		journalTimer.stop();
+		
+		// Upload multichunks and delta database
+		logger.log(Level.INFO, "Uploading new multichunks and delta database ...");
+		uploadTransfers(transferJournal);
 
 		// Save local database		
-		logger.log(Level.INFO, "Persisting local SQL database (new database version {0}) ...", newDatabaseVersion.getHeader().toString());
-		long newDatabaseVersionId = localDatabase.persistDatabaseVersion(newDatabaseVersion);
-
-		logger.log(Level.INFO, "Removing DIRTY database versions from database ...");	
-		localDatabase.removeDirtyDatabaseVersions(newDatabaseVersionId);		
+		persistDatabaseVersion(newDatabaseVersion, transferJournal);
 		
 		if (options.cleanupEnabled()) {
 			CleanupOperationResult cleanupOperationResult = new CleanupOperation(config, options.getCleanupOptions()).execute();
@@ -198,7 +224,130 @@ public class UpOperation extends Operation {
 		return result;
 	}
 
-	private void writeAndUploadDeltaDatabase(DatabaseVersion newDatabaseVersion) throws InterruptedException, StorageException, IOException {
+	private ChangeSet findLocalChanges() throws Exception {
+		Timer.Context statusTimer = config.getMetrics().timer("up.status").time();
+		StatusOperationResult statusOperationResult = new StatusOperation(config, options.getStatusOptions()).execute();
+		statusTimer.stop();
+		
+		return statusOperationResult.getChangeSet();
+	}
+
+	/**
+	 * Loads the {@link TransferJournal} of an upload that has been interrupted, if it can be resumed.
+	 * 
+	 * <p>The journal can only be resumed if the local database has not changed since the interrupted
+	 * upload was started. Otherwise (or if the local files in the journal are not intact), it is 
+	 * discarded, and the changes are re-indexed as usual. 
+	 * 
+	 * <p>If there are unknown remote databases, the journal is kept, but not resumed. Once these
+	 * databases have been applied by the down operation, the local database has changed, and the 
+	 * journal is discarded. 
+	 * 
+	 * @return Returns the transfer journal of the interrupted upload, or <tt>null</tt> if there is nothing to resume
+	 */
+	private TransferJournal loadInterruptedUpload() throws Exception {
+		TransferJournal transferJournal = new TransferJournal(config.getJournalDir());
+
+		try {
+			if (!transferJournal.load()) {
+				return null;
+			}
+		}
+		catch (IOException e) {
+			logger.log(Level.WARNING, "Cannot read transfer journal. Discarding interrupted upload.", e);
+			
+			transferJournal.delete();
+			return null;
+		}
+		
+		String lastLocalVectorClock = getLastLocalVectorClock().toString();
+		
+		if (lastLocalVectorClock.equals(transferJournal.getNewVectorClock())) {
+			logger.log(Level.INFO, "Interrupted upload of database version {0} has already been persisted. Deleting transfer journal.", lastLocalVectorClock);
+			
+			transferJournal.delete();
+			return null;
+		}
+		else if (!lastLocalVectorClock.equals(transferJournal.getPreviousVectorClock())) {
+			logger.log(Level.WARNING, "Local database has changed since upload was interrupted (expected {0}, is {1}). Discarding interrupted upload.", 
+					new Object[] { transferJournal.getPreviousVectorClock(), lastLocalVectorClock });
+			
+			transferJournal.delete();
+			return null;
+		}
+		else if (!transferJournal.verifyPendingTransfers()) {
+			logger.log(Level.WARNING, "Files of interrupted upload are missing or corrupt. Discarding interrupted upload.");
+			
+			transferJournal.delete();
+			return null;
+		}
+		
+		return transferJournal;
+	}
+	
+	/**
+	 * Resumes an upload that has been interrupted, i.e. uploads all pending files from the
+	 * {@link TransferJournal} and persists the corresponding database version locally. 
+	 * 
+	 * @return Returns the database version of the resumed upload
+	 */
+	private DatabaseVersion resumeInterruptedUpload(TransferJournal transferJournal) throws Exception {
+		logger.log(Level.INFO, "Resuming interrupted upload of database version {0} ({1} pending file(s)) ...", 
+				new Object[] { transferJournal.getNewVectorClock(), transferJournal.getPendingTransfers().size() });
+
+		MemoryDatabase resumedDatabase = new MemoryDatabase();
+		
+		DatabaseXmlSerializer databaseSerializer = new DatabaseXmlSerializer(config.getTransformer());
+		databaseSerializer.load(resumedDatabase, transferJournal.getDatabaseVersionFile(), null);		
+		
+		DatabaseVersion resumedDatabaseVersion = resumedDatabase.getLastDatabaseVersion();
+		
+		uploadTransfers(transferJournal);
+		persistDatabaseVersion(resumedDatabaseVersion, transferJournal);
+		
+		return resumedDatabaseVersion;
+	}
+
+	/**
+	 * Writes the delta database, and moves it and all new multichunks to the {@link TransferJournal}.
+	 * The database version itself is stored in the journal as well, so that it can be persisted to the
+	 * local database if the upload is interrupted and resumed later.  
+	 */
+	private TransferJournal writeTransferJournal(DatabaseVersion newDatabaseVersion) throws IOException, StorageException {
+		TransferJournal transferJournal = new TransferJournal(config.getJournalDir());
+		transferJournal.create(getLastLocalVectorClock(), newDatabaseVersion.getVectorClock());
+		
+		// Add multichunks (except the ones from dirty database, they have been uploaded before)
+		List<MultiChunkId> dirtyMultiChunkIds = localDatabase.getDirtyMultiChunkIds();
+
+		for (MultiChunkEntry multiChunkEntry : newDatabaseVersion.getMultiChunks()) {
+			if (dirtyMultiChunkIds.contains(multiChunkEntry.getId())) {
+				logger.log(Level.INFO, "- Ignoring multichunk (from dirty database, already uploaded), " + multiChunkEntry.getId() + " ...");
+			}
+			else {
+				File localMultiChunkFile = config.getCache().getEncryptedMultiChunkFile(multiChunkEntry.getId());
+				transferJournal.add(localMultiChunkFile, new MultiChunkRemoteFile(multiChunkEntry.getId()));
+			}
+		}
+		
+		// Add delta database (must be uploaded last)
+		DatabaseRemoteFile remoteDeltaDatabaseFile = writeDeltaDatabase(newDatabaseVersion);
+		File localDeltaDatabaseFile = config.getCache().getDatabaseFile(remoteDeltaDatabaseFile.getName());
+		
+		transferJournal.add(localDeltaDatabaseFile, remoteDeltaDatabaseFile);
+		
+		// Add database version (to persist locally when resuming)
+		MemoryDatabase newDatabase = new MemoryDatabase();
+		newDatabase.addDatabaseVersion(newDatabaseVersion);
+		
+		saveDeltaDatabase(newDatabase, transferJournal.getDatabaseVersionFile());
+		
+		transferJournal.save();
+		
+		return transferJournal;
+	}
+
+	private DatabaseRemoteFile writeDeltaDatabase(DatabaseVersion newDatabaseVersion) throws IOException, StorageException {
 		// Clone database version (necessary, because the original must not be touched)
 		DatabaseVersion deltaDatabaseVersion = newDatabaseVersion.clone();		
 		
@@ -217,11 +366,27 @@ public class UpOperation extends Operation {
 		logger.log(Level.INFO, "Saving local delta database, version {0} to file {1} ... ", new Object[] {
 				deltaDatabaseVersion.getHeader(), localDeltaDatabaseFile });
 		
-		saveDeltaDatabase(deltaDatabase, localDeltaDatabaseFile);				
+		saveDeltaDatabase(deltaDatabase, localDeltaDatabaseFile);
+		
+		return remoteDeltaDatabaseFile;
+	}
+	
+	private void persistDatabaseVersion(DatabaseVersion newDatabaseVersion, TransferJournal transferJournal) {
+		Timer.Context persistTimer = config.getMetrics().timer("up.persist").time();
+		
+		logger.log(Level.INFO, "Persisting local SQL database (new database version {0}) ...", newDatabaseVersion.getHeader().toString());
+		long newDatabaseVersionId = localDatabase.persistDatabaseVersion(newDatabaseVersion);
 
-		// Upload delta database
-		logger.log(Level.INFO, "- Uploading local delta database file ...");
-		uploadLocalDatabase(localDeltaDatabaseFile, remoteDeltaDatabaseFile);
+		logger.log(Level.INFO, "Removing DIRTY database versions from database ...");	
+		localDatabase.removeDirtyDatabaseVersions(newDatabaseVersionId);
+		
+		transferJournal.delete();
+		persistTimer.stop();
+	}
+	
+	private VectorClock getLastLocalVectorClock() {
+		DatabaseVersionHeader lastDatabaseVersionHeader = localDatabase.getLastDatabaseVersionHeader();
+		return (lastDatabaseVersionHeader != null) ? lastDatabaseVersionHeader.getVectorClock() : new VectorClock();
 	}
 
 	protected void saveDeltaDatabase(MemoryDatabase db, File localDatabaseFile) throws IOException {	
@@ -295,42 +460,47 @@ public class UpOperation extends Operation {
 		}
 	}
 
-	private void uploadMultiChunks(Collection<MultiChunkEntry> multiChunksEntries) throws InterruptedException, StorageException {
-		List<MultiChunkId> dirtyMultiChunkIds = localDatabase.getDirtyMultiChunkIds();
+	/**
+	 * Uploads all pending transfers of the given journal in order, i.e. the 
+	 * multichunks first, and the delta database last.
+	 */
+	private void uploadTransfers(TransferJournal transferJournal) throws IOException, StorageException {
+		Timer.Context uploadTimer = config.getMetrics().timer("up.upload").time();
+		
+		List<TransferEntryTO> pendingTransfers = transferJournal.getPendingTransfers();
+		int multiChunkCount = 0;
 		int multiChunkIndex = 0;
 		
+		for (TransferEntryTO pendingTransfer : pendingTransfers) {
+			if (transferJournal.getRemoteFile(pendingTransfer) instanceof MultiChunkRemoteFile) {
+				multiChunkCount++;
+			}
+		}
+		
 		if (listener != null) {
-			listener.onUploadStart(multiChunksEntries.size());
+			listener.onUploadStart(multiChunkCount);
 		}
 		
-		for (MultiChunkEntry multiChunkEntry : multiChunksEntries) {
-			multiChunkIndex++;
+		for (TransferEntryTO pendingTransfer : pendingTransfers) {
+			File localFile = transferJournal.getLocalFile(pendingTransfer);
+			RemoteFile remoteFile = transferJournal.getRemoteFile(pendingTransfer);
 
-			if (dirtyMultiChunkIds.contains(multiChunkEntry.getId())) {
-				logger.log(Level.INFO, "- Ignoring multichunk (from dirty database, already uploaded), " + multiChunkEntry.getId() + " ...");
-			}
-			else {
-				File localMultiChunkFile = config.getCache().getEncryptedMultiChunkFile(multiChunkEntry.getId());
-				MultiChunkRemoteFile remoteMultiChunkFile = new MultiChunkRemoteFile(multiChunkEntry.getId());
+			logger.log(Level.INFO, "- Uploading {0} to {1} ...", new Object[] { localFile, remoteFile });			
+			transferManager.upload(localFile, remoteFile);
+			
+			if (remoteFile instanceof MultiChunkRemoteFile) {
+				multiChunkIndex++;
 
-				logger.log(Level.INFO, "- Uploading multichunk {0} from {1} to {2} ...", new Object[] { multiChunkEntry.getId(), localMultiChunkFile,
-						remoteMultiChunkFile });
-				
-				transferManager.upload(localMultiChunkFile, remoteMultiChunkFile);
-				
 				if (listener != null) {
-					listener.onUploadFile(remoteMultiChunkFile.getName(), multiChunkIndex);
+					listener.onUploadFile(remoteFile.getName(), multiChunkIndex);
 				}
-
-				logger.log(Level.INFO, "  + Removing " + multiChunkEntry.getId() + " locally ...");
-				localMultiChunkFile.delete();
 			}
-		}
-	}
 
-	private void uploadLocalDatabase(File localDatabaseFile, DatabaseRemoteFile remoteDatabaseFile) throws InterruptedException, StorageException {
-		logger.log(Level.INFO, "- Uploading " + localDatabaseFile + " to " + remoteDatabaseFile + " ...");
-		transferManager.upload(localDatabaseFile, remoteDatabaseFile);
+			logger.log(Level.INFO, "  + Removing " + localFile + " locally ...");
+			transferJournal.markCompleted(pendingTransfer);
+		}
+		
+		uploadTimer.stop();
 	}
 
 	private DatabaseVersion index(List<File> localFiles) throws FileNotFoundException, IOException {
@@ -342,10 +512,14 @@ public class UpOperation extends Operation {
 		VectorClock newVectorClock = findNewVectorClock(lastVectorClock);
 
 		// Index
-		Deduper deduper = new Deduper(config.getChunker(), config.getMultiChunker(), config.getTransformer());
-		Indexer indexer = new Indexer(config, deduper, listener);
+		Deduper deduper = new Deduper(config.getChunker(), config.getMultiChunker(), config.getTransformer(), config.getMetrics());
+		Indexer indexer = new Indexer(config, deduper, listener, options.getDeltaChunkingMinFileSize());
 
+		Timer.Context indexTimer = config.getMetrics().timer("up.index").time();
 		DatabaseVersion newDatabaseVersion = indexer.index(localFiles);
+		indexTimer.stop();
+		
+		config.getMetrics().counter("up.files.indexed").inc(localFiles.size());
 
 		newDatabaseVersion.setVectorClock(newVectorClock);
 		newDatabaseVersion.setTimestamp(new Date());
@@ -25,6 +25,7 @@ public class UpOperationOptions implements OperationOptions {
 	private StatusOperationOptions statusOptions = new StatusOperationOptions();
 	private boolean forceUploadEnabled = false;
 	private boolean cleanupEnabled = true;
+	private long deltaChunkingMinFileSize = 64*1024*1024; // Negative value disables delta chunking
 	private CleanupOperationOptions cleanupOptions = new CleanupOperationOptions();
 
 	public CleanupOperationOptions getCleanupOptions() {
@@ -58,4 +59,12 @@ public class UpOperationOptions implements OperationOptions {
 	public void setCleanupEnabled(boolean cleanupEnabled) {
 		this.cleanupEnabled = cleanupEnabled;
 	}
+
+	public long getDeltaChunkingMinFileSize() {
+		return deltaChunkingMinFileSize;
+	}
+
+	public void setDeltaChunkingMinFileSize(long deltaChunkingMinFileSize) {
+		this.deltaChunkingMinFileSize = deltaChunkingMinFileSize;
+	}
 }
\ No newline at end of file
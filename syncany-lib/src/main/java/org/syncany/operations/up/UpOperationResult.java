@@ -17,6 +17,7 @@
  */
 package org.syncany.operations.up;
 
+import org.syncany.metrics.MetricRegistry;
 import org.syncany.operations.ChangeSet;
 import org.syncany.operations.CleanupOperation.CleanupOperationResult;
 import org.syncany.operations.OperationResult;
@@ -31,6 +32,7 @@ public class UpOperationResult implements OperationResult {
 	private StatusOperationResult statusResult = new StatusOperationResult();
 	private CleanupOperationResult cleanupResult = null;
 	private ChangeSet uploadChangeSet = new ChangeSet();
+	private MetricRegistry metrics = MetricRegistry.disabled();
 
 	public CleanupOperationResult getCleanupResult() {
 		return cleanupResult;
@@ -63,4 +65,12 @@ public class UpOperationResult implements OperationResult {
 	public ChangeSet getChangeSet() {
 		return uploadChangeSet;
 	}
-}
\ No newline at end of file
+
+	public MetricRegistry getMetrics() {
+		return metrics;
+	}
+
+	public void setMetrics(MetricRegistry metrics) {
+		this.metrics = metrics;
+	}
+}
@@ -0,0 +1 @@
+select checksum from filecontent
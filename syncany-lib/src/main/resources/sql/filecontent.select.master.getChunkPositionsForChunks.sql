@@ -0,0 +1,13 @@
+select fcc.chunk_checksum, fv.path, c.size, (
+	select coalesce(sum(c2.size), 0)
+	from filecontent_chunk fcc2
+	join chunk c2 on fcc2.chunk_checksum=c2.checksum
+	where fcc2.filecontent_checksum=fcc.filecontent_checksum 
+	  and fcc2.num<fcc.num
+) as chunk_offset
+from fileversion_master_last fv
+join filecontent_chunk fcc on fv.filecontent_checksum=fcc.filecontent_checksum
+join chunk c on fcc.chunk_checksum=c.checksum
+where fv.type='FILE' 
+  and fcc.chunk_checksum in ( unnest(?) )
+order by fv.path asc, chunk_offset asc
@@ -0,0 +1 @@
+delete from multichunk_chunk where chunk_checksum=?
\ No newline at end of file
@@ -0,0 +1,13 @@
+-- Determine all multichunks with their used chunks, i.e. the chunks
+-- that are still referenced by at least one file version
+
+select mcc.multichunk_id, mc.size, mcc.chunk_checksum, c.size as chunk_size
+from multichunk mc
+join multichunk_chunk mcc on mc.id=mcc.multichunk_id
+join chunk c on mcc.chunk_checksum=c.checksum
+where mcc.chunk_checksum in (
+	select distinct fcc.chunk_checksum
+	from fileversion fv
+	join filecontent_chunk fcc on fv.filecontent_checksum=fcc.filecontent_checksum
+)
+order by mcc.multichunk_id
@@ -18,6 +18,7 @@
 package org.syncany.connection.plugins.unreliable_local;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -147,6 +148,37 @@ public class UnreliableLocalTransferManager extends LocalTransferManager {
     	}
     }
 
+    @Override
+    public void download(Map<? extends RemoteFile, File> remoteFiles) throws StorageException {
+    	// Single operations, so that every file can fail individually
+    	for (Map.Entry<? extends RemoteFile, File> remoteFileEntry : remoteFiles.entrySet()) {
+    		download(remoteFileEntry.getKey(), remoteFileEntry.getValue());
+    	}
+    }
+
+    @Override
+    public void upload(Map<File, ? extends RemoteFile> localFiles) throws StorageException {
+    	for (Map.Entry<File, ? extends RemoteFile> localFileEntry : localFiles.entrySet()) {
+    		upload(localFileEntry.getKey(), localFileEntry.getValue());
+    	}
+    }
+
+    @Override
+    public boolean delete(Collection<? extends RemoteFile> remoteFiles) throws StorageException {
+    	boolean allDeleted = true;
+    	
+    	for (RemoteFile remoteFile : remoteFiles) {
+    		allDeleted &= delete(remoteFile);
+    	}
+    	
+    	return allDeleted;
+    }
+
+    @Override
+    public String getChangeToken(Class<? extends RemoteFile> remoteFileClass) throws StorageException {
+    	return null; // Always list, so that list operations can fail
+    }
+
     @Override
     public <T extends RemoteFile> Map<String, T> list(Class<T> remoteFileClass) throws StorageException {
        	String operationType = "list";
@@ -20,7 +20,9 @@ package org.syncany.tests;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
+import org.syncany.tests.database.CompactVectorClockTest;
 import org.syncany.tests.database.DatabaseReconciliatorTest;
+import org.syncany.tests.database.DirectoryDigestsTest;
 import org.syncany.tests.database.FileVersionComparatorTest;
 import org.syncany.tests.database.MemoryDatabaseCacheTest;
 import org.syncany.tests.database.ObjectIdTest;
@@ -39,8 +41,10 @@ import org.syncany.tests.database.dao.XmlDatabaseDaoTest;
 @SuiteClasses({
 	ApplicationDaoTest.class,
 	ChunkDaoTest.class,
+	CompactVectorClockTest.class,
 	DatabaseReconciliatorTest.class,
 	DatabaseVersionDaoTest.class,
+	DirectoryDigestsTest.class,
 	FileVersionComparatorTest.class,
 	FileVersionDaoTest.class,
 	FileHistoryDaoTest.class,
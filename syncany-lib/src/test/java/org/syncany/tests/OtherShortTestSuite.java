@@ -20,8 +20,13 @@ package org.syncany.tests;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
+import org.syncany.tests.chunk.AdaptiveTransformerTest;
+import org.syncany.tests.chunk.DeltaChunkEnumerationTest;
+import org.syncany.tests.chunk.FastCdcChunkerTest;
+import org.syncany.tests.chunk.FingerprinterTest;
 import org.syncany.tests.chunk.FixedOffsetChunkerTest;
 import org.syncany.tests.chunk.FrameworkCombinationTest;
+import org.syncany.tests.chunk.GzipTransformerTest;
 import org.syncany.tests.chunk.MultiChunkerTest;
 import org.syncany.tests.chunk.TTTDChunkerTest;
 import org.syncany.tests.config.ConfigHelperTest;
@@ -30,12 +35,18 @@ import org.syncany.tests.connection.plugins.PluginOptionSpecTest;
 import org.syncany.tests.connection.plugins.PluginsTest;
 import org.syncany.tests.connection.plugins.local.LocalTransferManagerPluginTest;
 import org.syncany.tests.connection.plugins.unreliable_local.UploadInterruptedTest;
+import org.syncany.tests.connection.plugins.unreliable_local.UploadResumeTest;
 import org.syncany.tests.crypto.CipherSpecsTest;
 import org.syncany.tests.crypto.CipherUtilTest;
+import org.syncany.tests.crypto.JceAesGcmCipherSpecTest;
+import org.syncany.tests.crypto.MasterKeyCacheTest;
 import org.syncany.tests.crypto.MultiCipherStreamsTest;
+import org.syncany.tests.metrics.MetricRegistryTest;
+import org.syncany.tests.metrics.TraceEventsTest;
 import org.syncany.tests.operations.CleanupOperationTest;
 import org.syncany.tests.operations.ConnectOperationTest;
 import org.syncany.tests.operations.FileSystemActionComparatorTest;
+import org.syncany.tests.operations.FileSystemActionExecutorTest;
 import org.syncany.tests.operations.FileSystemActionReconciliatorTest;
 import org.syncany.tests.operations.IndexerTest;
 import org.syncany.tests.operations.InitOperationTest;
@@ -43,6 +54,7 @@ import org.syncany.tests.operations.NotificationListenerTest;
 import org.syncany.tests.operations.OperationPerformanceTest;
 import org.syncany.tests.operations.PluginOperationTest;
 import org.syncany.tests.operations.RecursiveWatcherTest;
+import org.syncany.tests.operations.RemoteListingCacheTest;
 import org.syncany.tests.operations.StatusOperationTest;
 import org.syncany.tests.operations.SyncUpOperationTest;
 import org.syncany.tests.util.FileUtilTest;
@@ -55,12 +67,19 @@ import org.syncany.tests.util.FileUtilTest;
 	// Crypto	
 	CipherSpecsTest.class,
 	CipherUtilTest.class,
+	JceAesGcmCipherSpecTest.class,
+	MasterKeyCacheTest.class,
 	MultiCipherStreamsTest.class,
 	
 	// Chunking Framework
 	MultiChunkerTest.class,
 	FixedOffsetChunkerTest.class,
 	TTTDChunkerTest.class,
+	FastCdcChunkerTest.class,
+	DeltaChunkEnumerationTest.class,
+	FingerprinterTest.class,
+	AdaptiveTransformerTest.class,
+	GzipTransformerTest.class,
 	FrameworkCombinationTest.class,
 	
 	// Connection
@@ -68,11 +87,13 @@ import org.syncany.tests.util.FileUtilTest;
 	PluginOptionSpecTest.class,
 	LocalTransferManagerPluginTest.class,
 	UploadInterruptedTest.class,
+	UploadResumeTest.class,
 	
 	// Operations
 	CleanupOperationTest.class,
 	ConnectOperationTest.class,
 	FileSystemActionComparatorTest.class,
+	FileSystemActionExecutorTest.class,
 	FileSystemActionReconciliatorTest.class,
 	IndexerTest.class,
 	InitOperationTest.class,
@@ -80,12 +101,17 @@ import org.syncany.tests.util.FileUtilTest;
 	OperationPerformanceTest.class,
 	PluginOperationTest.class,
 	RecursiveWatcherTest.class,
+	RemoteListingCacheTest.class,
 	StatusOperationTest.class,
 	SyncUpOperationTest.class,
 	
 	// Config
 	ConfigHelperTest.class,
-	ConfigTest.class
+	ConfigTest.class,
+	
+	// Metrics
+	MetricRegistryTest.class,
+	TraceEventsTest.class
 })
 public class OtherShortTestSuite {
 	// This class executes all tests
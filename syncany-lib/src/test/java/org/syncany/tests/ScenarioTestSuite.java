@@ -25,6 +25,7 @@ import org.syncany.tests.scenarios.CallUpWhileStillWritingFileScenarioTest;
 import org.syncany.tests.scenarios.ChangedAttributesScenarioTest;
 import org.syncany.tests.scenarios.ChangedTypeScenarioTest;
 import org.syncany.tests.scenarios.CleanupMergeDatabaseFilesScenarioTest;
+import org.syncany.tests.scenarios.CopyNoDownloadMultiChunksScenarioTest;
 import org.syncany.tests.scenarios.CreateSimilarFileParallelScenarioTest;
 import org.syncany.tests.scenarios.DirtyDatabaseScenarioTest;
 import org.syncany.tests.scenarios.EmptyFileScenarioTest;
@@ -37,6 +38,7 @@ import org.syncany.tests.scenarios.FilenameCapitalizationWindowsScenarioTest;
 import org.syncany.tests.scenarios.FirstVersionDirtyScenarioTest;
 import org.syncany.tests.scenarios.FolderPermissionChangeScenarioTest;
 import org.syncany.tests.scenarios.IgnoredFileScenarioTest;
+import org.syncany.tests.scenarios.LargeFileDeltaChunkingScenarioTest;
 import org.syncany.tests.scenarios.ManyRenamesScenarioTest;
 import org.syncany.tests.scenarios.ManySyncUpsAndDatabaseFileCleanupScenarioTest;
 import org.syncany.tests.scenarios.ManySyncUpsAndOtherClientSyncDownScenarioTest;
@@ -59,6 +61,7 @@ import org.syncany.tests.scenarios.ThreeClientsOneLoserScenarioTest;
 	ChangedAttributesScenarioTest.class,
 	ChangedTypeScenarioTest.class,
 	CleanupMergeDatabaseFilesScenarioTest.class,
+	CopyNoDownloadMultiChunksScenarioTest.class,
 	CreateSimilarFileParallelScenarioTest.class,
 	DirtyDatabaseScenarioTest.class,
 	EmptyFileScenarioTest.class,
@@ -71,6 +74,7 @@ import org.syncany.tests.scenarios.ThreeClientsOneLoserScenarioTest;
 	FirstVersionDirtyScenarioTest.class,
 	FolderPermissionChangeScenarioTest.class,
 	IgnoredFileScenarioTest.class,
+	LargeFileDeltaChunkingScenarioTest.class,
 	ManyRenamesScenarioTest.class,
 	ManySyncUpsAndDatabaseFileCleanupScenarioTest.class,
 	ManySyncUpsLargeFileScenarioTest.class,
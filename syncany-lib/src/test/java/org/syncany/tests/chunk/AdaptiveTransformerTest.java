@@ -0,0 +1,204 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.chunk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.syncany.chunk.AdaptiveTransformer;
+import org.syncany.chunk.AdaptiveTransformer.Codec;
+import org.syncany.chunk.Lz4BlockCompressor;
+import org.syncany.chunk.Lz4BlockInputStream;
+import org.syncany.chunk.Lz4BlockOutputStream;
+import org.syncany.chunk.Transformer;
+
+public class AdaptiveTransformerTest {
+	@Test
+	public void testRandomDataIsStoredRaw() throws Exception {
+		byte[] data = createRandomData(200*1024, 256);
+		byte[] transformedData = doTestRoundTrip(new AdaptiveTransformer(), data);
+
+		assertEquals(Codec.RAW.getTag(), transformedData[0]);
+		assertEquals(data.length + 1, transformedData.length);
+	}
+
+	@Test
+	public void testTextDataIsDeflated() throws Exception {
+		StringBuilder logLines = new StringBuilder();
+
+		for (int i = 0; logLines.length() < 300*1024; i++) {
+			logLines.append("2014-05-11 12:00:").append(i % 60).append(" INFO  Indexer: Indexing file number ").append(i).append("\n");
+		}
+
+		byte[] data = logLines.toString().getBytes();
+		byte[] transformedData = doTestRoundTrip(new AdaptiveTransformer(), data);
+
+		assertEquals(Codec.DEFLATE.getTag(), transformedData[0]);
+		assertTrue(transformedData.length < data.length / 5);
+	}
+
+	@Test
+	public void testMediumEntropyDataUsesFastCodec() throws Exception {
+		byte[] data = createRepetitiveData(500*1024);
+		byte[] transformedData = doTestRoundTrip(new AdaptiveTransformer(), data);
+
+		assertEquals(Codec.FAST.getTag(), transformedData[0]);
+		assertTrue(transformedData.length < data.length / 2);
+	}
+
+	@Test
+	public void testEmptyAndSmallStreams() throws Exception {
+		doTestRoundTrip(new AdaptiveTransformer(), new byte[0]);
+		doTestRoundTrip(new AdaptiveTransformer(), new byte[] { 1, 2, 3 });
+		doTestRoundTrip(new AdaptiveTransformer(), new byte[AdaptiveTransformer.SAMPLE_SIZE]);
+		doTestRoundTrip(new AdaptiveTransformer(), new byte[AdaptiveTransformer.SAMPLE_SIZE + 1]);
+	}
+
+	@Test
+	public void testSingleByteWrites() throws Exception {
+		byte[] data = createRepetitiveData(100*1024);
+
+		ByteArrayOutputStream bufferOutputStream = new ByteArrayOutputStream();
+		OutputStream outputStream = new AdaptiveTransformer().createOutputStream(bufferOutputStream);
+
+		for (byte b : data) {
+			outputStream.write(b);
+		}
+
+		outputStream.close();
+
+		InputStream inputStream = new AdaptiveTransformer().createInputStream(new ByteArrayInputStream(bufferOutputStream.toByteArray()));
+		assertArrayEquals(data, IOUtils.toByteArray(inputStream));
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidCodecTag() throws Exception {
+		new AdaptiveTransformer().createInputStream(new ByteArrayInputStream(new byte[] { 0x7f, 1, 2, 3 }));
+	}
+
+	@Test
+	public void testLz4BlockCompressorRoundTrip() throws Exception {
+		Lz4BlockCompressor compressor = new Lz4BlockCompressor();
+
+		byte[][] inputs = new byte[][] {
+			new byte[0],
+			new byte[] { 1 },
+			new byte[12],
+			new byte[13],
+			new byte[100000], // Long runs, overlapping matches
+			createRandomData(70000, 256),
+			createRandomData(70000, 4),
+			createRepetitiveData(65536)
+		};
+
+		for (byte[] input : inputs) {
+			byte[] compressed = new byte[Lz4BlockCompressor.maxCompressedLength(input.length)];
+			int compressedLength = compressor.compress(input, 0, input.length, compressed, 0);
+
+			byte[] decompressed = new byte[input.length];
+			int decompressedLength = Lz4BlockCompressor.decompress(compressed, 0, compressedLength, decompressed, 0, decompressed.length);
+
+			assertEquals(input.length, decompressedLength);
+			assertArrayEquals(input, decompressed);
+		}
+	}
+
+	@Test
+	public void testLz4BlockStreamDetectsCorruption() throws Exception {
+		byte[] data = createRepetitiveData(200*1024);
+
+		ByteArrayOutputStream bufferOutputStream = new ByteArrayOutputStream();
+		OutputStream outputStream = new Lz4BlockOutputStream(bufferOutputStream);
+
+		outputStream.write(data);
+		outputStream.close();
+
+		byte[] compressedData = bufferOutputStream.toByteArray();
+		assertArrayEquals(data, IOUtils.toByteArray(new Lz4BlockInputStream(new ByteArrayInputStream(compressedData))));
+
+		// Truncated stream
+		try {
+			IOUtils.toByteArray(new Lz4BlockInputStream(new ByteArrayInputStream(compressedData, 0, compressedData.length / 2)));
+			fail("Truncated stream should throw an exception.");
+		}
+		catch (IOException e) {
+			// Expected
+		}
+	}
+
+	private byte[] doTestRoundTrip(Transformer transformer, byte[] data) throws IOException {
+		ByteArrayOutputStream bufferOutputStream = new ByteArrayOutputStream();
+		OutputStream outputStream = transformer.createOutputStream(bufferOutputStream);
+
+		outputStream.write(data);
+		outputStream.close();
+
+		byte[] transformedData = bufferOutputStream.toByteArray();
+
+		InputStream inputStream = transformer.createInputStream(new ByteArrayInputStream(transformedData));
+		byte[] restoredData = IOUtils.toByteArray(inputStream);
+		inputStream.close();
+
+		assertArrayEquals(data, restoredData);
+		return transformedData;
+	}
+
+	private byte[] createRandomData(int size, int alphabetSize) {
+		Random random = new Random(size);
+		byte[] data = new byte[size];
+
+		for (int i = 0; i < size; i++) {
+			data[i] = (byte) random.nextInt(alphabetSize);
+		}
+
+		return data;
+	}
+
+	private byte[] createRepetitiveData(int size) {
+		// Random phrases of a 128-byte alphabet (~7 bits entropy), repeated in random order
+		byte[][] phrases = new byte[64][];
+
+		for (int i = 0; i < phrases.length; i++) {
+			phrases[i] = createRandomData(32 + i*2, 128);
+		}
+
+		Random random = new Random(size);
+		byte[] data = new byte[size];
+
+		for (int offset = 0; offset < size;) {
+			byte[] phrase = phrases[random.nextInt(phrases.length)];
+			int copyLength = Math.min(phrase.length, size - offset);
+
+			System.arraycopy(phrase, 0, data, offset, copyLength);
+			offset += copyLength;
+		}
+
+		return data;
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.chunk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.syncany.chunk.Chunk;
+import org.syncany.chunk.ChunkLayout;
+import org.syncany.chunk.Chunker;
+import org.syncany.chunk.Chunker.ChunkEnumeration;
+import org.syncany.chunk.DeltaChunkEnumeration;
+import org.syncany.chunk.FastCdcChunker;
+import org.syncany.chunk.FixedChunker;
+import org.syncany.chunk.TttdChunker;
+import org.syncany.tests.util.TestFileUtil;
+import org.syncany.util.FileUtil;
+import org.syncany.util.StringUtil;
+import org.syncany.util.XxHash64;
+
+public class DeltaChunkEnumerationTest {
+	private File tempDir;
+	private File testFile;
+
+	@Before
+	public void setUp() throws Exception {
+		tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		testFile = new File(tempDir, "large-file");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+	
+	@Test
+	public void testUnchangedFile() throws Exception {
+		Chunker chunker = new TttdChunker(8*1024);
+		byte[] fileContents = createRandomContents(1024*1024, 1);
+		
+		FileUtils.writeByteArrayToFile(testFile, fileContents);		
+		ChunkLayout chunkLayout = createChunkLayout(chunker.createChunks(testFile));
+		
+		DeltaChunkEnumeration deltaChunks = new DeltaChunkEnumeration(chunker, testFile, chunkLayout);
+		List<String> deltaChunkChecksums = readChunks(deltaChunks, fileContents);
+		
+		assertEquals(chunkLayout.getChunkCount(), deltaChunks.getReusedChunkCount());
+		assertEquals(fileContents.length, deltaChunks.getReusedBytes());
+		assertEquals(readChunks(chunker.createChunks(testFile), fileContents), deltaChunkChecksums);
+	}
+	
+	@Test
+	public void testInPlaceModificationTttd() throws Exception {
+		testModifiedFile(new TttdChunker(8*1024), false);
+	}
+	
+	@Test
+	public void testInPlaceModificationFastCdc() throws Exception {
+		testModifiedFile(new FastCdcChunker(8*1024), false);
+	}
+	
+	@Test
+	public void testInsertionTttd() throws Exception {
+		testModifiedFile(new TttdChunker(8*1024), true);
+	}
+	
+	@Test
+	public void testInsertionFastCdc() throws Exception {
+		testModifiedFile(new FastCdcChunker(8*1024), true);
+	}
+	
+	@Test
+	public void testTruncatedAndAppendedFileFixed() throws Exception {
+		Chunker chunker = new FixedChunker(8*1024);
+		byte[] fileContents = createRandomContents(1024*1024, 2);
+
+		FileUtils.writeByteArrayToFile(testFile, fileContents);
+		ChunkLayout chunkLayout = createChunkLayout(chunker.createChunks(testFile));
+		
+		// Truncate
+		byte[] truncatedFileContents = Arrays.copyOf(fileContents, 500*1000);
+		FileUtils.writeByteArrayToFile(testFile, truncatedFileContents);
+		
+		DeltaChunkEnumeration deltaChunks = new DeltaChunkEnumeration(chunker, testFile, chunkLayout);
+		
+		assertEquals(readChunks(chunker.createChunks(testFile), truncatedFileContents), readChunks(deltaChunks, truncatedFileContents));
+		assertEquals(500*1000 / (8*1024) * (8*1024), deltaChunks.getReusedBytes());
+		
+		// Append
+		byte[] appendedFileContents = Arrays.copyOf(fileContents, fileContents.length + 10000);
+		FileUtils.writeByteArrayToFile(testFile, appendedFileContents);
+		
+		deltaChunks = new DeltaChunkEnumeration(chunker, testFile, chunkLayout);
+		
+		assertEquals(readChunks(chunker.createChunks(testFile), appendedFileContents), readChunks(deltaChunks, appendedFileContents));
+		assertEquals(fileContents.length, deltaChunks.getReusedBytes());
+	}
+	
+	private void testModifiedFile(Chunker chunker, boolean insertBytes) throws Exception {
+		byte[] fileContents = createRandomContents(2*1024*1024, 3);
+		
+		FileUtils.writeByteArrayToFile(testFile, fileContents);		
+		ChunkLayout chunkLayout = createChunkLayout(chunker.createChunks(testFile));
+
+		// Modify some bytes in the middle of the file
+		byte[] modifiedFileContents;
+		
+		if (insertBytes) {
+			ByteArrayOutputStream modifiedFileOutputStream = new ByteArrayOutputStream();
+			
+			modifiedFileOutputStream.write(fileContents, 0, 1000*1000);
+			modifiedFileOutputStream.write(createRandomContents(1234, 4));
+			modifiedFileOutputStream.write(fileContents, 1000*1000, fileContents.length - 1000*1000);
+			
+			modifiedFileContents = modifiedFileOutputStream.toByteArray();
+		}
+		else {
+			modifiedFileContents = fileContents.clone();
+			System.arraycopy(createRandomContents(100, 4), 0, modifiedFileContents, 1000*1000, 100);
+		}
+		
+		FileUtils.writeByteArrayToFile(testFile, modifiedFileContents);
+		
+		// Delta chunks must be identical to regular chunks, but most of them are reused
+		DeltaChunkEnumeration deltaChunks = new DeltaChunkEnumeration(chunker, testFile, chunkLayout);
+		
+		List<String> deltaChunkChecksums = readChunks(deltaChunks, modifiedFileContents);
+		List<String> regularChunkChecksums = readChunks(chunker.createChunks(testFile), modifiedFileContents);
+		
+		assertEquals(regularChunkChecksums, deltaChunkChecksums);
+		assertTrue("Expected most of the file to be reused, but was " + deltaChunks.getReusedBytes(), 
+				deltaChunks.getReusedBytes() > modifiedFileContents.length - 200*1024);
+		assertTrue(deltaChunks.getReusedBytes() < modifiedFileContents.length);
+	}
+	
+	/**
+	 * Reads all chunks of the given enumeration, checks that the chunk contents and the file 
+	 * checksum match the expected file contents, and returns the chunk checksums.
+	 */
+	private List<String> readChunks(ChunkEnumeration chunks, byte[] expectedFileContents) throws Exception {
+		List<String> chunkChecksums = new ArrayList<String>();
+		ByteArrayOutputStream fileContents = new ByteArrayOutputStream();
+		Chunk chunk = null;
+		
+		while (chunks.hasMoreElements()) {
+			chunk = chunks.nextElement();
+			
+			if (chunk == null) {
+				break;
+			}
+			
+			if (chunk.getSize() > 0) {
+				chunkChecksums.add(StringUtil.toHex(chunk.getChecksum()));
+				fileContents.write(chunk.getContent(), 0, chunk.getSize());
+			}
+		}
+		
+		chunks.close();
+		
+		assertArrayEquals(expectedFileContents, fileContents.toByteArray());
+		assertArrayEquals(FileUtil.createChecksum(testFile, "SHA1"), chunk.getFileChecksum());
+		
+		return chunkChecksums;
+	}
+	
+	private ChunkLayout createChunkLayout(ChunkEnumeration chunks) {
+		ChunkLayout chunkLayout = new ChunkLayout();
+		
+		while (chunks.hasMoreElements()) {
+			Chunk chunk = chunks.nextElement();
+			
+			if (chunk == null) {
+				break;
+			}
+			
+			chunkLayout.add(chunk.getChecksum(), chunk.getSize(), XxHash64.hash(chunk.getContent(), 0, chunk.getSize(), 0));
+		}
+		
+		chunks.close();		
+		return chunkLayout;
+	}
+	
+	private byte[] createRandomContents(int size, long seed) {
+		byte[] contents = new byte[size];
+		new Random(seed).nextBytes(contents);
+		
+		return contents;
+	}
+}
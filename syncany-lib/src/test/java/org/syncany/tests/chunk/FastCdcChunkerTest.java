@@ -0,0 +1,280 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.chunk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.syncany.chunk.Chunk;
+import org.syncany.chunk.Chunker;
+import org.syncany.chunk.Chunker.ChunkEnumeration;
+import org.syncany.chunk.FastCdcChunker;
+import org.syncany.chunk.TttdChunker;
+import org.syncany.tests.util.TestFileUtil;
+import org.syncany.util.FileUtil;
+import org.syncany.util.StringUtil;
+
+public class FastCdcChunkerTest {
+	private static final Logger logger = Logger.getLogger(FastCdcChunkerTest.class.getSimpleName());
+	private static final long RANDOM_SEED = 0x5ca1ab1eL;
+	
+	private File tempDir;
+
+	@Before
+	public void setUp() throws Exception {
+		tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+
+	@Test
+	public void testStringSerialization() {
+		Chunker chunker = new FastCdcChunker(8*1024);
+		assertEquals("FastCDC-2048-8192-65536-2-SHA1", chunker.toString());
+	}
+	
+	@Test
+	public void testGetInstanceAndInitFromSettings() {
+		Map<String, String> settings = new HashMap<String, String>();
+		settings.put(Chunker.PROPERTY_SIZE, "16384");
+		settings.put(FastCdcChunker.PROPERTY_NORMALIZATION_LEVEL, "1");
+		
+		Chunker chunker = Chunker.getInstance(FastCdcChunker.TYPE);
+		chunker.init(settings);
+		
+		assertEquals(FastCdcChunker.class, chunker.getClass());
+		assertEquals("FastCDC-4096-16384-131072-1-SHA1", chunker.toString());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInitWithoutSizeFails() {
+		Chunker.getInstance(FastCdcChunker.TYPE).init(new HashMap<String, String>());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidChunkSizesFail() {
+		new FastCdcChunker(16*1024, 8*1024, 64*1024, 2, "SHA1");
+	}
+	
+	@Test
+	public void testCreateChunksFrom5MBFileAndTestChunkSize() throws Exception {
+		final int TOTAL_FILE_SIZE = 5*1024*1024;
+		final int AVG_CHUNK_SIZE = 32*1024;
+		
+		File inputFile = TestFileUtil.createRandomFileInDirectory(tempDir, TOTAL_FILE_SIZE);
+		File outputFile = TestFileUtil.getRandomFilenameInDirectory(tempDir);
+		FileOutputStream outputFileOutputStream = new FileOutputStream(outputFile);
+		
+		Chunker chunker = new FastCdcChunker(AVG_CHUNK_SIZE);
+		ChunkEnumeration chunkEnumeration = chunker.createChunks(inputFile);
+		
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		
+		while (chunkEnumeration.hasMoreElements()) {
+			Chunk chunk = chunkEnumeration.nextElement();			
+			chunks.add(chunk);
+			
+			assertNotNull("Chunk checksum should not be null.", chunk.getChecksum());
+			outputFileOutputStream.write(chunk.getContent(), 0, chunk.getSize());
+		}
+		
+		chunkEnumeration.close();
+		outputFileOutputStream.close();
+		
+		// Chunk sizes (last chunk may be smaller)
+		for (int i = 0; i < chunks.size(); i++) {
+			int chunkSize = chunks.get(i).getSize();
+			
+			assertTrue("Chunk must not be larger than max. size: " + chunkSize, chunkSize <= AVG_CHUNK_SIZE * 8);
+			assertTrue("Chunk must not be smaller than min. size: " + chunkSize, chunkSize >= AVG_CHUNK_SIZE / 4 || i == chunks.size()-1);
+			assertTrue("Only the last chunk should have a file checksum.", (chunks.get(i).getFileChecksum() != null) == (i == chunks.size()-1));
+		}
+		
+		double avgChunkSize = (double) TOTAL_FILE_SIZE / chunks.size();
+		assertTrue("Average chunk size should be close to configured size: " + avgChunkSize, avgChunkSize > AVG_CHUNK_SIZE / 2 && avgChunkSize < AVG_CHUNK_SIZE * 2);
+		
+		// Checksums
+		byte[] inputFileChecksum = FileUtil.createChecksum(inputFile, FastCdcChunker.DEFAULT_DIGEST_ALG);
+		byte[] outputFileChecksum = FileUtil.createChecksum(outputFile, FastCdcChunker.DEFAULT_DIGEST_ALG);
+		
+		assertArrayEquals("Checksums of input and output file do not match.", inputFileChecksum, outputFileChecksum);
+		assertArrayEquals("Last chunk's getFileChecksum() should be the file checksum.", inputFileChecksum, chunks.get(chunks.size()-1).getFileChecksum());
+	}
+	
+	@Test
+	public void testNextChunkEvenIfThereAreNone() throws IOException {
+		File inputFile = TestFileUtil.createRandomFileInDirectory(tempDir, 5*1024);		
+		ChunkEnumeration chunkEnumeration = new FastCdcChunker(512*1024).createChunks(inputFile);
+		
+		int chunkCount = 0;
+		
+		while (chunkEnumeration.hasMoreElements()) {
+			chunkEnumeration.nextElement();
+			chunkCount++;
+		}
+		
+		assertEquals(1, chunkCount);
+		assertNull("No chunk expected, but data received.", chunkEnumeration.nextElement());
+		assertFalse("hasElements() should return 'false' if no chunk available.", chunkEnumeration.hasMoreElements());
+	}
+	
+	@Test
+	public void testEmptyFileCreatesNoChunks() throws IOException {
+		File inputFile = TestFileUtil.createRandomFileInDirectory(tempDir, 0);
+		ChunkEnumeration chunkEnumeration = new FastCdcChunker(8*1024).createChunks(inputFile);
+		
+		assertFalse(chunkEnumeration.hasMoreElements());
+		chunkEnumeration.close();
+	}
+	
+	@Test
+	public void testChunkBoundariesSurviveInsertedBytes() throws IOException {
+		File originalFile = createSeededFile(2*1024*1024);
+		File modifiedFile = TestFileUtil.getRandomFilenameInDirectory(tempDir);
+		
+		byte[] originalData = FileUtils.readFileToByteArray(originalFile);
+		byte[] modifiedData = new byte[originalData.length + 100];
+		
+		System.arraycopy(originalData, 0, modifiedData, 100, originalData.length);
+		FileUtils.writeByteArrayToFile(modifiedFile, modifiedData);
+		
+		Chunker chunker = new FastCdcChunker(8*1024);
+		
+		List<String> originalChunks = getChunkChecksums(chunker, originalFile);
+		List<String> modifiedChunks = getChunkChecksums(chunker, modifiedFile);
+		
+		Set<String> sharedChunks = new HashSet<String>(modifiedChunks);
+		sharedChunks.retainAll(originalChunks);
+		
+		// Only the first chunk(s) should be different
+		assertTrue("Expected at least 90% of the chunks to be reused, but only " + sharedChunks.size() + " of " + originalChunks.size() + " are.", 
+				sharedChunks.size() >= 0.9 * originalChunks.size());
+	}
+	
+	@Test
+	public void testCompareWithTttdChunker() throws IOException {
+		final int TOTAL_FILE_SIZE = 2*1024*1024;
+		final int AVG_CHUNK_SIZE = 8*1024;
+		
+		File inputFile = createSeededFile(TOTAL_FILE_SIZE);
+		
+		ChunkStats fastCdcStats = createChunkStats(new FastCdcChunker(AVG_CHUNK_SIZE), inputFile);
+		ChunkStats tttdStats = createChunkStats(new TttdChunker(AVG_CHUNK_SIZE), inputFile);
+		
+		logger.log(Level.INFO, "FastCDC: " + fastCdcStats);
+		logger.log(Level.INFO, "TTTD:    " + tttdStats);
+		
+		assertEquals(TOTAL_FILE_SIZE, fastCdcStats.totalSize);
+		assertEquals(TOTAL_FILE_SIZE, tttdStats.totalSize);
+		
+		// Both chunkers should produce a similar number of chunks 
+		assertTrue(fastCdcStats.getAverageSize() > AVG_CHUNK_SIZE / 2 && fastCdcStats.getAverageSize() < AVG_CHUNK_SIZE * 2);
+		assertTrue(tttdStats.getAverageSize() > AVG_CHUNK_SIZE / 2 && tttdStats.getAverageSize() < AVG_CHUNK_SIZE * 2);
+		
+		// Normalized chunking: Chunk sizes are concentrated around the average size
+		assertTrue("Expected narrower chunk size distribution for FastCDC: " + fastCdcStats + " vs. " + tttdStats,
+				fastCdcStats.getStandardDeviation() < tttdStats.getStandardDeviation());
+	}
+	
+	private File createSeededFile(int size) throws IOException {
+		byte[] data = new byte[size];
+		new Random(RANDOM_SEED).nextBytes(data);
+		
+		File file = TestFileUtil.getRandomFilenameInDirectory(tempDir);
+		FileUtils.writeByteArrayToFile(file, data);
+		
+		return file;
+	}
+
+	private List<String> getChunkChecksums(Chunker chunker, File file) throws IOException {
+		List<String> chunkChecksums = new ArrayList<String>();
+		ChunkEnumeration chunkEnumeration = chunker.createChunks(file);
+		
+		while (chunkEnumeration.hasMoreElements()) {
+			chunkChecksums.add(StringUtil.toHex(chunkEnumeration.nextElement().getChecksum()));
+		}
+		
+		chunkEnumeration.close();		
+		return chunkChecksums;
+	}
+	
+	private ChunkStats createChunkStats(Chunker chunker, File file) throws IOException {
+		ChunkStats chunkStats = new ChunkStats();
+		long startTime = System.nanoTime();
+		
+		ChunkEnumeration chunkEnumeration = chunker.createChunks(file);
+		
+		while (chunkEnumeration.hasMoreElements()) {
+			Chunk chunk = chunkEnumeration.nextElement();
+			
+			chunkStats.count++;
+			chunkStats.totalSize += chunk.getSize();
+			chunkStats.totalSquaredSize += (double) chunk.getSize() * chunk.getSize();
+		}
+		
+		chunkEnumeration.close();		
+		chunkStats.duration = System.nanoTime() - startTime;
+		
+		return chunkStats;
+	}
+	
+	private static class ChunkStats {
+		private int count;
+		private long totalSize;
+		private double totalSquaredSize;
+		private long duration;
+		
+		public double getAverageSize() {
+			return (double) totalSize / count;
+		}
+		
+		public double getStandardDeviation() {
+			return Math.sqrt(totalSquaredSize / count - getAverageSize() * getAverageSize());
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("%d chunks, avg. size %.0f bytes, std. dev. %.0f bytes, %.1f MB/s", count, getAverageSize(), getStandardDeviation(),
+					totalSize / 1024.0 / 1024.0 / (duration / 1000000000.0));
+		}
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.chunk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.syncany.chunk.BuzhashFingerprinter;
+import org.syncany.chunk.Chunk;
+import org.syncany.chunk.Chunker.ChunkEnumeration;
+import org.syncany.chunk.Fingerprinter;
+import org.syncany.chunk.RabinFingerprinter;
+import org.syncany.chunk.TttdChunker;
+import org.syncany.tests.util.TestFileUtil;
+
+public class FingerprinterTest {
+	private static final Logger logger = Logger.getLogger(FingerprinterTest.class.getSimpleName());
+	private static final String[] FINGERPRINT_ALGORITHMS = new String[] { "Adler32", "Rabin", "Buzhash" };
+	
+	private File tempDir;
+
+	@Before
+	public void setUp() throws Exception {
+		tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+	
+	@Test
+	public void testGetInstance() throws Exception {
+		assertEquals(RabinFingerprinter.class, Fingerprinter.getInstance("Rabin").getClass());
+		assertEquals(BuzhashFingerprinter.class, Fingerprinter.getInstance("Buzhash").getClass());
+		assertEquals("Rabin", Fingerprinter.getInstance("Rabin").toString());
+		assertEquals("Buzhash", Fingerprinter.getInstance("Buzhash").toString());
+	}
+	
+	@Test(expected = NoSuchAlgorithmException.class)
+	public void testGetInstanceInvalid() throws Exception {
+		Fingerprinter.getInstance("InvalidXXX");
+	}
+
+	@Test
+	public void testRollEqualsCheckOfWindow() throws Exception {
+		final int WINDOW_SIZE = TttdChunker.DEFAULT_WINDOW_SIZE;
+		
+		byte[] data = new byte[4096];
+		new Random(42).nextBytes(data);
+		
+		for (String fingerprintAlgorithm : new String[] { "Rabin", "Buzhash" }) {
+			Fingerprinter rollingFingerprinter = Fingerprinter.getInstance(fingerprintAlgorithm);
+			Fingerprinter checkFingerprinter = Fingerprinter.getInstance(fingerprintAlgorithm);
+			
+			rollingFingerprinter.check(data, 0, WINDOW_SIZE);
+			
+			for (int i = WINDOW_SIZE; i < data.length; i++) {
+				rollingFingerprinter.roll(data[i]);
+				checkFingerprinter.check(data, i - WINDOW_SIZE + 1, WINDOW_SIZE);
+				
+				assertEquals(fingerprintAlgorithm + " fingerprint differs at offset " + i, checkFingerprinter.getValue(), rollingFingerprinter.getValue());
+				assertTrue(rollingFingerprinter.getValue() >= 0);
+			}
+		}
+	}
+	
+	@Test
+	public void testSameWindowSameFingerprint() throws Exception {
+		String text = "Hello this is some text that is repeated. Hello this is some text that is repeated.";
+		byte[] data = text.getBytes();
+		int windowSize = 16;
+		int repeatOffset = text.indexOf("Hello", 1);
+		
+		for (String fingerprintAlgorithm : FINGERPRINT_ALGORITHMS) {
+			Fingerprinter fingerprinter1 = Fingerprinter.getInstance(fingerprintAlgorithm);
+			Fingerprinter fingerprinter2 = Fingerprinter.getInstance(fingerprintAlgorithm);
+			
+			fingerprinter1.check(data, 0, windowSize);
+			fingerprinter2.check(data, repeatOffset, windowSize);
+			
+			for (int i = 0; i < 10; i++) {
+				fingerprinter1.roll(data[windowSize + i]);
+				fingerprinter2.roll(data[repeatOffset + windowSize + i]);
+			}
+			
+			assertEquals(fingerprintAlgorithm, fingerprinter1.getValue(), fingerprinter2.getValue());
+		}
+	}
+	
+	@Test
+	public void testTttdChunkerWithAllFingerprinters() throws Exception {
+		final int AVG_CHUNK_SIZE = 8*1024;
+		
+		// Low-entropy data (text-like), where Adler32 is known to distribute badly
+		byte[] lowEntropyData = createLowEntropyData(1024*1024);
+		File inputFile = new File(tempDir, "lowentropy");
+		FileUtils.writeByteArrayToFile(inputFile, lowEntropyData);
+		
+		for (String fingerprintAlgorithm : FINGERPRINT_ALGORITHMS) {
+			TttdChunker chunker = new TttdChunker(AVG_CHUNK_SIZE, TttdChunker.DEFAULT_WINDOW_SIZE, TttdChunker.DEFAULT_DIGEST_ALG, fingerprintAlgorithm);
+			ChunkEnumeration chunkEnumeration = chunker.createChunks(inputFile);
+			
+			ByteArrayOutputStream outputData = new ByteArrayOutputStream();
+			int chunkCount = 0;
+			double sumSquaredSizes = 0;
+			
+			while (chunkEnumeration.hasMoreElements()) {
+				Chunk chunk = chunkEnumeration.nextElement();
+				
+				outputData.write(chunk.getContent(), 0, chunk.getSize());
+				chunkCount++;
+				sumSquaredSizes += (double) chunk.getSize() * chunk.getSize();
+			}
+			
+			chunkEnumeration.close();
+			
+			double avgChunkSize = (double) lowEntropyData.length / chunkCount;
+			double stdDevChunkSize = Math.sqrt(sumSquaredSizes / chunkCount - avgChunkSize * avgChunkSize);
+			
+			logger.log(Level.INFO, String.format("TTTD with %s: %d chunks, avg. size %.0f bytes, std. dev. %.0f bytes", fingerprintAlgorithm, chunkCount, avgChunkSize, stdDevChunkSize));
+			
+			assertArrayEquals(fingerprintAlgorithm, lowEntropyData, outputData.toByteArray());
+			assertTrue(fingerprintAlgorithm + " should create content-defined chunks", chunkCount > 1);
+		}
+	}
+	
+	private byte[] createLowEntropyData(int size) {
+		String[] words = new String[] { "sync", "any", "file", "chunk", "the", "data", "a", "of", "and", "multi", "version", "database" };
+		Random random = new Random(1);
+		StringBuilder text = new StringBuilder();
+		
+		while (text.length() < size) {
+			text.append(words[random.nextInt(words.length)]).append(random.nextInt(10) == 0 ? ".\n" : " ");
+		}
+		
+		return text.substring(0, size).getBytes();
+	}
+}
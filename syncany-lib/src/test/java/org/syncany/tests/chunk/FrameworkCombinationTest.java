@@ -37,7 +37,9 @@ import javax.crypto.NoSuchPaddingException;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.syncany.chunk.AdaptiveTransformer;
 import org.syncany.chunk.Chunk;
+import org.syncany.chunk.ChunkLayout;
 import org.syncany.chunk.Chunker;
 import org.syncany.chunk.CipherTransformer;
 import org.syncany.chunk.Deduper;
@@ -46,6 +48,7 @@ import org.syncany.chunk.GzipTransformer;
 import org.syncany.chunk.MultiChunk;
 import org.syncany.chunk.MultiChunker;
 import org.syncany.chunk.NoTransformer;
+import org.syncany.chunk.ParallelGzipTransformer;
 import org.syncany.chunk.Transformer;
 import org.syncany.chunk.TttdChunker;
 import org.syncany.chunk.ZipMultiChunker;
@@ -144,6 +147,9 @@ public class FrameworkCombinationTest {
 		transformerChains.add(new GzipTransformer());
 		transformerChains.add(new CipherTransformer(cipherSpecs, masterKey));
 		transformerChains.add(new GzipTransformer(new CipherTransformer(cipherSpecs, masterKey)));
+		transformerChains.add(new ParallelGzipTransformer(new CipherTransformer(cipherSpecs, masterKey)));
+		transformerChains.add(new AdaptiveTransformer());
+		transformerChains.add(new AdaptiveTransformer(new CipherTransformer(cipherSpecs, masterKey)));
 
 		for (MultiChunker multiChunker : multiChunkers) {
 			for (Transformer transformer : transformerChains) {
@@ -234,6 +240,7 @@ public class FrameworkCombinationTest {
 			
 			@Override public boolean onFileFilter(File file) { return true; } 
 			@Override public boolean onFileStart(File file, int index) { return file.isFile() && !FileUtil.isSymlink(file); }
+			@Override public ChunkLayout getPreviousChunkLayout(File file) { return null; }
 			@Override public void onFileEnd(File file, byte[] checksum) { }				
 			@Override public void onMultiChunkOpen(MultiChunk multiChunk) { }
 			@Override public void onMultiChunkClose(MultiChunk multiChunk) { }
@@ -0,0 +1,163 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.chunk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.syncany.chunk.GzipTransformer;
+import org.syncany.chunk.ParallelGzipInputStream;
+import org.syncany.chunk.ParallelGzipOutputStream;
+import org.syncany.chunk.ParallelGzipTransformer;
+import org.syncany.chunk.Transformer;
+
+public class GzipTransformerTest {
+	@Test
+	public void testParallelRoundTrip() throws Exception {
+		int[] sizes = new int[] { 0, 1, 1000, ParallelGzipOutputStream.BLOCK_SIZE, ParallelGzipOutputStream.BLOCK_SIZE + 1, 3*1024*1024 + 17 };
+
+		for (int size : sizes) {
+			byte[] data = createCompressibleData(size);
+			byte[] compressedData = compress(new ParallelGzipTransformer(), data);
+
+			assertArrayEquals(data, decompress(new ParallelGzipTransformer(), compressedData));
+		}
+	}
+
+	@Test
+	public void testParallelRoundTripWithoutAvailableBytes() throws Exception {
+		// Cipher input streams always report available() == 0, which makes GZIPInputStream stop early 
+		// after a member in some cases (JDK-7036144). The parallel input stream must read all members.
+		Random random = new Random(7036144);
+
+		for (int i = 0; i < 20; i++) {
+			byte[] data = createCompressibleData(2*1024*1024 + random.nextInt(1024*1024));
+			byte[] compressedData = compress(new ParallelGzipTransformer(), data);
+
+			assertArrayEquals("Stream " + i + " truncated", data, decompress(new ParallelGzipTransformer(), new NoAvailableBytesInputStream(compressedData)));
+		}
+	}
+
+	@Test
+	public void testGzipOutputReadableWithoutAvailableBytes() throws Exception {
+		// The regular Gzip transformer writes a single member, so older clients (plain 
+		// GZIPInputStream behind a cipher stream) can read it entirely.
+		byte[] data = createCompressibleData(3*1024*1024 + 17);
+		byte[] compressedData = compress(new GzipTransformer(), data);
+
+		assertFalse(ParallelGzipInputStream.isParallelGzipHeader(compressedData));
+		assertArrayEquals(data, IOUtils.toByteArray(new GZIPInputStream(new NoAvailableBytesInputStream(compressedData))));
+	}
+
+	@Test
+	public void testSequentialStreamCanBeReadByParallelTransformer() throws Exception {
+		byte[] data = createCompressibleData(1024*1024);
+		byte[] compressedData = compress(new GzipTransformer(), data);
+
+		assertArrayEquals(data, decompress(new ParallelGzipTransformer(), new NoAvailableBytesInputStream(compressedData)));
+	}
+
+	@Test
+	public void testParallelTransformerIsOwnType() throws Exception {
+		Transformer gzipTransformer = Transformer.getInstance(GzipTransformer.TYPE);
+		Transformer parallelGzipTransformer = Transformer.getInstance(ParallelGzipTransformer.TYPE);
+
+		assertTrue(gzipTransformer instanceof GzipTransformer);
+		assertTrue(parallelGzipTransformer instanceof ParallelGzipTransformer);
+
+		assertEquals("Gzip", gzipTransformer.toString());
+		assertEquals("ParallelGzip", parallelGzipTransformer.toString());
+
+		byte[] compressedData = compress(parallelGzipTransformer, createCompressibleData(1000));
+		assertTrue(ParallelGzipInputStream.isParallelGzipHeader(compressedData));
+	}
+
+	@Test
+	public void testParallelStreamDetectsCorruption() throws Exception {
+		byte[] data = createCompressibleData(1024*1024);
+		byte[] compressedData = compress(new ParallelGzipTransformer(), data);
+
+		compressedData[compressedData.length - 6] ^= 0x01; // CRC of last member
+
+		try {
+			decompress(new ParallelGzipTransformer(), new ByteArrayInputStream(compressedData));
+			fail("Corrupt stream should throw an exception.");
+		}
+		catch (IOException e) {
+			// Expected
+		}
+	}
+
+	private byte[] compress(Transformer transformer, byte[] data) throws IOException {
+		ByteArrayOutputStream bufferOutputStream = new ByteArrayOutputStream();
+		OutputStream outputStream = transformer.createOutputStream(bufferOutputStream);
+
+		outputStream.write(data);
+		outputStream.close();
+
+		return bufferOutputStream.toByteArray();
+	}
+
+	private byte[] decompress(Transformer transformer, byte[] compressedData) throws IOException {
+		return decompress(transformer, new ByteArrayInputStream(compressedData));
+	}
+
+	private byte[] decompress(Transformer transformer, InputStream compressedInputStream) throws IOException {
+		InputStream inputStream = transformer.createInputStream(compressedInputStream);
+		byte[] data = IOUtils.toByteArray(inputStream);
+
+		inputStream.close();
+		return data;
+	}
+
+	private byte[] createCompressibleData(int size) {
+		Random random = new Random(size);
+		byte[] data = new byte[size];
+
+		for (int i = 0; i < size; i++) {
+			data[i] = (byte) ('a' + random.nextInt(8));
+		}
+
+		return data;
+	}
+
+	private static class NoAvailableBytesInputStream extends FilterInputStream {
+		public NoAvailableBytesInputStream(byte[] data) {
+			super(new ByteArrayInputStream(data));
+		}
+
+		@Override
+		public int available() throws IOException {
+			return 0;
+		}
+	}
+}
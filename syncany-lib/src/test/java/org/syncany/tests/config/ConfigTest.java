@@ -29,10 +29,13 @@ import javax.crypto.spec.SecretKeySpec;
 
 import org.junit.Ignore;
 import org.junit.Test;
+import org.syncany.chunk.Chunker;
+import org.syncany.chunk.FastCdcChunker;
 import org.syncany.config.Config;
 import org.syncany.config.Config.ConfigException;
 import org.syncany.config.to.ConfigTO;
 import org.syncany.config.to.RepoTO;
+import org.syncany.config.to.RepoTO.ChunkerTO;
 import org.syncany.config.to.RepoTO.TransformerTO;
 import org.syncany.crypto.SaltedSecretKey;
 import org.syncany.tests.util.TestAssertUtil;
@@ -191,6 +194,79 @@ public class ConfigTest {
 		}		
 	}
 	
+	@Test
+	public void testConfigChunkerFixedUsesDefaultChunkSize() throws Exception {
+		// Setup
+		File localDir = new File("/some/folder"); 
+		ConfigTO configTO = new ConfigTO();
+		RepoTO repoTO = new RepoTO();
+		
+		configTO.setMachineName("somevalidmachinename"); // <<< valid
+		
+		repoTO.setChunkerTO(TestConfigUtil.createFixedChunkerTO()); // <<< valid, but 'size' is ignored
+		repoTO.setMultiChunker(TestConfigUtil.createZipMultiChunkerTO()); // <<< valid
+		repoTO.setRepoId(new byte[] { 0x01, 0x02 }); // <<< valid
+		
+		// Run!
+		Config config = new Config(localDir, configTO, repoTO);
+		
+		// Test
+		assertEquals("Fixed-524288-SHA1", config.getChunker().toString());
+	}
+	
+	@Test
+	public void testConfigChunkerFastCdc() throws Exception {
+		// Setup
+		File localDir = new File("/some/folder"); 
+		ConfigTO configTO = new ConfigTO();
+		RepoTO repoTO = new RepoTO();
+		
+		ChunkerTO chunkerTO = new ChunkerTO();
+		chunkerTO.setType(FastCdcChunker.TYPE);
+		chunkerTO.setSettings(new HashMap<String, String>());
+		chunkerTO.getSettings().put(Chunker.PROPERTY_SIZE, "65536");
+		
+		configTO.setMachineName("somevalidmachinename"); // <<< valid
+		
+		repoTO.setChunkerTO(chunkerTO); // <<< valid
+		repoTO.setMultiChunker(TestConfigUtil.createZipMultiChunkerTO()); // <<< valid
+		repoTO.setRepoId(new byte[] { 0x01, 0x02 }); // <<< valid
+		
+		// Run!
+		Config config = new Config(localDir, configTO, repoTO);
+		
+		// Test
+		assertEquals(FastCdcChunker.class, config.getChunker().getClass());
+		assertEquals("FastCDC-16384-65536-524288-2-SHA1", config.getChunker().toString());
+	}
+	
+	@Test
+	public void testConfigChunkerInvalidType() throws Exception {
+		// Setup
+		File localDir = new File("/some/folder"); 
+		ConfigTO configTO = new ConfigTO();
+		RepoTO repoTO = new RepoTO();
+		
+		ChunkerTO chunkerTO = new ChunkerTO();
+		chunkerTO.setType("invalid-chunkerXXX");
+		chunkerTO.setSettings(new HashMap<String, String>());
+		
+		configTO.setMachineName("somevalidmachinename"); // <<< valid
+		
+		repoTO.setChunkerTO(chunkerTO); // <<< INVALID !
+		repoTO.setMultiChunker(TestConfigUtil.createZipMultiChunkerTO()); // <<< valid
+		repoTO.setRepoId(new byte[] { 0x01, 0x02 }); // <<< valid
+		
+		// Run!
+		try {
+			new Config(localDir, configTO, repoTO);
+			fail("Chunker should NOT have been found.");
+		}
+		catch (ConfigException e) {	
+			TestAssertUtil.assertErrorStackTraceContains("invalid-chunkerXXX", e);			
+		}		
+	}
+	
 	@Test
 	public void testConfigCipherTransformersInvalidType() throws Exception {
 		// Setup
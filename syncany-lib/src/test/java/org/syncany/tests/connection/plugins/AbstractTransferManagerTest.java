@@ -23,6 +23,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.junit.After;
@@ -134,6 +135,58 @@ public abstract class AbstractTransferManagerTest {
 		TestFileUtil.deleteDirectory(tempToDir);
 	}
 
+	@Test
+	public void testBatchUploadListDownloadAndDelete() throws Exception {
+		// Setup
+		File tempFromDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		File tempToDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		
+		TransferManager transferManager = loadPluginAndCreateTransferManager();
+		
+		transferManager.init(true);		
+		transferManager.connect();
+
+		cleanTestLocation(transferManager);
+
+		// Run!
+		Map<File, MultiChunkRemoteFile> uploadFiles = new LinkedHashMap<File, MultiChunkRemoteFile>();
+		Map<MultiChunkRemoteFile, File> downloadFiles = new LinkedHashMap<MultiChunkRemoteFile, File>();
+		
+		for (int i = 0; i < 10; i++) {
+			MultiChunkRemoteFile remoteFile = new MultiChunkRemoteFile(String.format("multichunk-%040x", i));
+			File originalLocalFile = new File(tempFromDir, remoteFile.getName());
+			
+			TestFileUtil.createNonRandomFile(originalLocalFile, 5*1024 + i);
+			
+			uploadFiles.put(originalLocalFile, remoteFile);
+			downloadFiles.put(remoteFile, new File(tempToDir, remoteFile.getName()));
+		}
+		
+		transferManager.upload(uploadFiles);
+		assertEquals(10, transferManager.list(MultiChunkRemoteFile.class).size());
+		
+		transferManager.download(downloadFiles);
+		
+		for (Map.Entry<File, MultiChunkRemoteFile> uploadFileEntry : uploadFiles.entrySet()) {
+			File originalLocalFile = uploadFileEntry.getKey();
+			File downloadedLocalFile = downloadFiles.get(uploadFileEntry.getValue());
+			
+			String checksumOriginalFile = StringUtil.toHex(TestFileUtil.createChecksum(originalLocalFile));
+			String checksumDownloadedFile = StringUtil.toHex(TestFileUtil.createChecksum(downloadedLocalFile));
+
+			assertEquals("Uploaded file differs from original file, for file " + originalLocalFile, checksumOriginalFile, checksumDownloadedFile);
+		}
+		
+		assertTrue(transferManager.delete(downloadFiles.keySet()));
+		assertEquals(0, transferManager.list(MultiChunkRemoteFile.class).size());
+
+		// Clean local location
+		transferManager.disconnect();
+		
+		TestFileUtil.deleteDirectory(tempFromDir);
+		TestFileUtil.deleteDirectory(tempToDir);
+	}
+
 	private <T extends RemoteFile> void uploadDownloadListDelete(TransferManager transferManager, File tempFromDir, File tempToDir, Class<T> remoteFileClass, T[] remoteFiles) throws Exception {
 		for (RemoteFile remoteFile : remoteFiles) {
 			File originalLocalFile = new File(tempFromDir, remoteFile.getName());
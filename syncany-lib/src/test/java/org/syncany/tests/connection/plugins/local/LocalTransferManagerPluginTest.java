@@ -17,10 +17,21 @@
  */
 package org.syncany.tests.connection.plugins.local;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.junit.Test;
+import org.syncany.connection.plugins.MultiChunkRemoteFile;
+import org.syncany.connection.plugins.local.LocalConnection;
+import org.syncany.connection.plugins.local.LocalTransferManager;
 import org.syncany.tests.connection.plugins.AbstractTransferManagerTest;
 import org.syncany.tests.util.TestFileUtil;
 
@@ -57,4 +68,108 @@ public class LocalTransferManagerPluginTest extends AbstractTransferManagerTest
 	public String getPluginId() {
 		return "local";
 	}
+
+	@Test
+	public void testDownloadWithHardlinks() throws Exception {
+		File tempLocalDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		
+		try {
+			localPluginSettings.put(LocalConnection.OPTION_HARDLINKS, "true");
+			LocalTransferManager transferManager = createLocalTransferManager();
+			
+			File localFile = new File(tempLocalDir, "upload");
+			File downloadedFile = new File(tempLocalDir, "download");
+			MultiChunkRemoteFile remoteFile = new MultiChunkRemoteFile("multichunk-84f7e2b31440aaef9b73de3cadcf4e449aeb55a1");
+			
+			TestFileUtil.createRandomFile(localFile, 100*1024);
+			
+			transferManager.upload(localFile, remoteFile);
+			transferManager.download(remoteFile, downloadedFile);
+			
+			File repoFile = new File(tempRepoPath, "multichunks/" + remoteFile.getName());
+			
+			assertArrayEquals(Files.readAllBytes(localFile.toPath()), Files.readAllBytes(downloadedFile.toPath()));
+			assertTrue(Files.isSameFile(repoFile.toPath(), downloadedFile.toPath()));
+			assertFalse(new File(tempLocalDir, ".temp-download").exists());
+		}
+		finally {
+			TestFileUtil.deleteDirectory(tempLocalDir);
+		}
+	}
+	
+	@Test
+	public void testUploadWithFsyncReplacesChangedFile() throws Exception {
+		File tempLocalDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		
+		try {
+			localPluginSettings.put(LocalConnection.OPTION_FSYNC, "true");
+			LocalTransferManager transferManager = createLocalTransferManager();
+			
+			File localFile = new File(tempLocalDir, "upload");
+			File downloadedFile = new File(tempLocalDir, "download");
+			MultiChunkRemoteFile remoteFile = new MultiChunkRemoteFile("multichunk-84f7e2b31440aaef9b73de3cadcf4e449aeb55a1");
+			
+			TestFileUtil.createRandomFile(localFile, 10*1024);
+			transferManager.upload(localFile, remoteFile);
+			
+			File changedLocalFile = new File(tempLocalDir, "upload-changed");
+			TestFileUtil.createRandomFile(changedLocalFile, 20*1024); // Different size
+			transferManager.upload(changedLocalFile, remoteFile);
+			transferManager.disconnect();
+			
+			transferManager.download(remoteFile, downloadedFile);
+			
+			assertEquals(20*1024, downloadedFile.length());
+			assertArrayEquals(Files.readAllBytes(changedLocalFile.toPath()), Files.readAllBytes(downloadedFile.toPath()));
+			assertEquals(1, transferManager.list(MultiChunkRemoteFile.class).size());
+		}
+		finally {
+			TestFileUtil.deleteDirectory(tempLocalDir);
+		}
+	}
+	
+	@Test
+	public void testUploadResumesPartialTempFile() throws Exception {
+		File tempLocalDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		
+		try {
+			LocalTransferManager transferManager = createLocalTransferManager();
+			
+			File localFile = new File(tempLocalDir, "upload");
+			MultiChunkRemoteFile remoteFile = new MultiChunkRemoteFile("multichunk-84f7e2b31440aaef9b73de3cadcf4e449aeb55a1");
+			File repoFile = new File(tempRepoPath, "multichunks/" + remoteFile.getName());
+			File tempRepoFile = new File(tempRepoPath, "multichunks/.temp-" + remoteFile.getName());
+			
+			TestFileUtil.createRandomFile(localFile, 100*1024);
+			byte[] localFileContents = Files.readAllBytes(localFile.toPath());
+			
+			// Matching partial upload is resumed
+			Files.write(tempRepoFile.toPath(), Arrays.copyOf(localFileContents, 40*1024));
+			transferManager.upload(localFile, remoteFile);
+
+			assertArrayEquals(localFileContents, Files.readAllBytes(repoFile.toPath()));
+			assertFalse(tempRepoFile.exists());
+			
+			// Non-matching partial upload is overwritten
+			transferManager.delete(remoteFile);
+			
+			Files.write(tempRepoFile.toPath(), new byte[40*1024]);
+			transferManager.upload(localFile, remoteFile);
+			
+			assertArrayEquals(localFileContents, Files.readAllBytes(repoFile.toPath()));
+		}
+		finally {
+			TestFileUtil.deleteDirectory(tempLocalDir);
+		}
+	}
+	
+	private LocalTransferManager createLocalTransferManager() throws Exception {
+		LocalConnection connection = new LocalConnection();
+		connection.init(localPluginSettings);
+		
+		LocalTransferManager transferManager = new LocalTransferManager(connection);
+		transferManager.init(true);
+		
+		return transferManager;
+	}
 }
@@ -17,7 +17,6 @@
  */
 package org.syncany.tests.connection.plugins.unreliable_local;
 
-import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -65,11 +64,12 @@ public class UploadInterruptedTest {
 			}
 		}
 				
+		// Interrupted uploads are resumed by the next 'up', so no database version is lost
 		assertTrue(new File(testConnection.getRepositoryPath()+"/databases/db-A-0000000001").exists());
 		assertTrue(new File(testConnection.getRepositoryPath()+"/databases/db-A-0000000002").exists());
 		assertTrue(new File(testConnection.getRepositoryPath()+"/databases/db-A-0000000003").exists());
-		assertFalse(new File(testConnection.getRepositoryPath()+"/databases/db-A-0000000004").exists());
-		assertFalse(new File(testConnection.getRepositoryPath()+"/databases/db-A-0000000005").exists());
+		assertTrue(new File(testConnection.getRepositoryPath()+"/databases/db-A-0000000004").exists());
+		assertTrue(new File(testConnection.getRepositoryPath()+"/databases/db-A-0000000005").exists());
 		
 		// Tear down
 		clientA.deleteTestData();
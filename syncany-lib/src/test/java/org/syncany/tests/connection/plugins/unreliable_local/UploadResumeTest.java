@@ -0,0 +1,189 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.connection.plugins.unreliable_local;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.syncany.connection.plugins.StorageException;
+import org.syncany.connection.plugins.unreliable_local.UnreliableLocalConnection;
+import org.syncany.operations.up.UpOperationResult;
+import org.syncany.operations.up.UpOperationResult.UpResultCode;
+import org.syncany.tests.util.TestAssertUtil;
+import org.syncany.tests.util.TestClient;
+import org.syncany.tests.util.TestConfigUtil;
+
+public class UploadResumeTest {
+	@Test
+	public void testResumeInterruptedUpload() throws Exception {
+		// Setup 
+		UnreliableLocalConnection testConnection = TestConfigUtil.createTestUnreliableLocalConnection(
+			Arrays.asList(new String[] { 
+				// 2nd multichunk upload fails
+				"rel=2 .+upload.+multichunk"
+			}
+		));
+		
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+		
+		File journalDir = clientA.getConfig().getJournalDir();
+		File multiChunksDir = new File(testConnection.getRepositoryPath(), "multichunks");
+		File databasesDir = new File(testConnection.getRepositoryPath(), "databases");
+		
+		clientA.createNewFile("A-file1", 5*1024*1024);
+		clientA.createNewFile("A-file2", 5*1024*1024);
+		
+		// Run (interrupted)
+		try {
+			clientA.up();
+			fail("Upload should have failed.");
+		}
+		catch (StorageException e) {
+			// Expected
+		}
+		
+		assertTrue(journalDir.exists());
+		assertEquals(1, multiChunksDir.list().length);
+		assertFalse(new File(databasesDir, "db-A-0000000001").exists());
+		
+		// Run (resumed)
+		UpOperationResult upResult = clientA.up();
+		
+		assertEquals(UpResultCode.OK_APPLIED_CHANGES, upResult.getResultCode());
+		assertEquals(2, upResult.getChangeSet().getNewFiles().size());
+		
+		assertFalse(journalDir.exists());
+		assertTrue(new File(databasesDir, "db-A-0000000001").exists());
+		assertFalse(new File(databasesDir, "db-A-0000000002").exists());
+		
+		// Nothing left to do
+		assertEquals(UpResultCode.OK_NO_CHANGES, clientA.up().getResultCode());
+		
+		// Other client must see all files
+		clientB.down();
+		TestAssertUtil.assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}
+	
+	@Test
+	public void testDoNotResumeIfUnknownRemoteDatabases() throws Exception {
+		// Setup 
+		UnreliableLocalConnection testConnection = TestConfigUtil.createTestUnreliableLocalConnection(
+			Arrays.asList(new String[] { 
+				// 1st database upload fails (after one multichunk upload)
+				"rel=2 .+upload.+db-A-0000000001"
+			}
+		));
+		
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+		
+		File journalDir = clientA.getConfig().getJournalDir();
+		File databasesDir = new File(testConnection.getRepositoryPath(), "databases");
+		
+		clientA.createNewFile("A-file1", 50*1024);
+		
+		try {
+			clientA.up();
+			fail("Upload should have failed.");
+		}
+		catch (StorageException e) {
+			// Expected
+		}
+		
+		assertTrue(journalDir.exists());
+		
+		// Other client uploads in the mean time
+		clientB.createNewFile("B-file1", 50*1024);
+		clientB.up();
+		
+		// Run (not resumed, because there are unknown remote databases)
+		assertEquals(UpResultCode.NOK_UNKNOWN_DATABASES, clientA.up().getResultCode());
+		assertTrue(journalDir.exists());
+		assertFalse(new File(databasesDir, "db-A-0000000001").exists());
+		
+		// Run (journal is discarded after down, and file is re-indexed)
+		clientA.down();
+		UpOperationResult upResult = clientA.up();
+		
+		assertEquals(UpResultCode.OK_APPLIED_CHANGES, upResult.getResultCode());
+		assertFalse(journalDir.exists());
+		assertEquals(1, upResult.getChangeSet().getNewFiles().size());
+		
+		// Other client must see all files
+		clientB.down();
+		TestAssertUtil.assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}
+	
+	@Test
+	public void testDiscardJournalIfLocalDatabaseChanged() throws Exception {
+		// Setup 
+		UnreliableLocalConnection testConnection = TestConfigUtil.createTestUnreliableLocalConnection(
+			Arrays.asList(new String[] { 
+				// 1st database upload fails (after one multichunk upload)
+				"rel=2 .+upload.+db-A-0000000001"
+			}
+		));
+		
+		TestClient clientA = new TestClient("A", testConnection);
+		File journalDir = clientA.getConfig().getJournalDir();
+		
+		clientA.createNewFile("A-file1", 50*1024);
+		
+		try {
+			clientA.up();
+			fail("Upload should have failed.");
+		}
+		catch (StorageException e) {
+			// Expected
+		}
+		
+		assertTrue(journalDir.exists());
+		
+		// Pretend the local database has changed (in a way that does not match the journal)
+		File journalFile = new File(journalDir, "journal.xml");
+		String journal = new String(Files.readAllBytes(journalFile.toPath()), "UTF-8");
+		Files.write(journalFile.toPath(), journal.replace("<previousVectorClock>()", "<previousVectorClock>(X1)").getBytes("UTF-8"));
+		
+		// Run (journal is discarded, and file is re-indexed)
+		clientA.createNewFile("A-file2", 50*1024);		
+		UpOperationResult upResult = clientA.up();
+		
+		assertEquals(UpResultCode.OK_APPLIED_CHANGES, upResult.getResultCode());
+		assertFalse(journalDir.exists());
+		assertEquals(2, upResult.getChangeSet().getNewFiles().size());
+		
+		// Tear down
+		clientA.deleteTestData();
+	}
+}
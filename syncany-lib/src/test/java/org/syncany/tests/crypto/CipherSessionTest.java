@@ -19,6 +19,17 @@ package org.syncany.tests.crypto;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.crypto.spec.SecretKeySpec;
 
@@ -83,6 +94,56 @@ public class CipherSessionTest {
 		// TODO [medium] This does NOT TEST the actual read cache. How to test this. The cache is completely hidden/private?!
 	}	
 	
+	@Test
+	public void testCipherSessionConcurrentWriteAndReadKeys() throws Exception {
+		SaltedSecretKey masterKey = createDummyMasterKey();		
+		final CipherSession cipherSession = new CipherSession(masterKey, 5, 10);		
+		final CipherSpec cipherSpecAes128 = CipherSpecs.getCipherSpec(CipherSpecs.AES_128_GCM);
+		
+		final ConcurrentHashMap<String, AtomicInteger> writeKeyUseCounts = new ConcurrentHashMap<String, AtomicInteger>();
+		final AtomicInteger readKeyMismatches = new AtomicInteger(0);
+		
+		ExecutorService executorService = Executors.newFixedThreadPool(8);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		
+		for (int thread = 0; thread < 8; thread++) {
+			futures.add(executorService.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for (int i = 0; i < 50; i++) {
+						SaltedSecretKey writeSecretKey = cipherSession.getWriteSecretKey(cipherSpecAes128);						
+						String writeKeySalt = StringUtil.toHex(writeSecretKey.getSalt());
+						
+						writeKeyUseCounts.putIfAbsent(writeKeySalt, new AtomicInteger(0));
+						writeKeyUseCounts.get(writeKeySalt).incrementAndGet();
+						
+						// Deriving the read key from the same salt must return the same key
+						SaltedSecretKey readSecretKey = cipherSession.getReadSecretKey(cipherSpecAes128, writeSecretKey.getSalt());
+						
+						if (!Arrays.equals(writeSecretKey.getEncoded(), readSecretKey.getEncoded())) {
+							readKeyMismatches.incrementAndGet();
+						}
+					}
+					
+					return null;
+				}
+			}));
+		}
+		
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		
+		executorService.shutdown();
+		
+		assertEquals(0, readKeyMismatches.get());
+		assertTrue(writeKeyUseCounts.size() >= 400 / 10);
+		
+		for (AtomicInteger writeKeyUseCount : writeKeyUseCounts.values()) {
+			assertTrue(writeKeyUseCount.get() <= 10);
+		}
+	}
+	
 	private SaltedSecretKey createDummyMasterKey() {
 		return new SaltedSecretKey(
 			new SecretKeySpec(
@@ -0,0 +1,116 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.syncany.config.Logging;
+import org.syncany.crypto.CipherSpec;
+import org.syncany.crypto.specs.AesGcm128CipherSpec;
+import org.syncany.crypto.specs.AesGcm256CipherSpec;
+import org.syncany.crypto.specs.JceAesGcm128CipherSpec;
+import org.syncany.crypto.specs.JceAesGcm256CipherSpec;
+
+public class JceAesGcmCipherSpecTest {
+	static {
+		Logging.init();
+	}
+	
+	@Test
+	public void testJceAndBouncyCastleAes128AreCompatible() throws Exception {
+		doTestCompatibility(new AesGcm128CipherSpec(0x01), new JceAesGcm128CipherSpec(0x01));
+	}
+	
+	@Test
+	public void testJceAndBouncyCastleAes256AreCompatible() throws Exception {
+		doTestCompatibility(new AesGcm256CipherSpec(0x03), new JceAesGcm256CipherSpec(0x03));
+	}
+	
+	@Test
+	public void testJceDetectsModifiedCiphertext() throws Exception {
+		CipherSpec jceCipherSpec = new JceAesGcm128CipherSpec(0x01);
+		
+		byte[] key = createRandomArray(16);
+		byte[] iv = createRandomArray(16);
+		byte[] ciphertext = encrypt(jceCipherSpec, key, iv, createRandomArray(100*1024));
+		
+		ciphertext[ciphertext.length / 2] ^= 0x01;
+		
+		try {
+			decrypt(jceCipherSpec, key, iv, ciphertext);
+			fail("Modified ciphertext should not decrypt.");
+		}
+		catch (IOException e) {
+			// Expected
+		}
+	}
+	
+	private void doTestCompatibility(CipherSpec bcCipherSpec, CipherSpec jceCipherSpec) throws Exception {
+		byte[] key = createRandomArray(bcCipherSpec.getKeySize() / 8);
+		byte[] iv = createRandomArray(bcCipherSpec.getIvSize() / 8);
+		
+		for (int size : new int[] { 0, 1, 15, 16, 17, 64*1024-1, 64*1024, 64*1024+1, 300*1024 }) {
+			byte[] plaintext = createRandomArray(size);
+			
+			byte[] bcCiphertext = encrypt(bcCipherSpec, key, iv, plaintext);
+			byte[] jceCiphertext = encrypt(jceCipherSpec, key, iv, plaintext);
+			
+			assertArrayEquals("Ciphertexts differ for size " + size, bcCiphertext, jceCiphertext);
+			assertArrayEquals("JCE cannot decrypt BC ciphertext of size " + size, plaintext, decrypt(jceCipherSpec, key, iv, bcCiphertext));
+			assertArrayEquals("BC cannot decrypt JCE ciphertext of size " + size, plaintext, decrypt(bcCipherSpec, key, iv, jceCiphertext));
+		}
+	}
+	
+	private byte[] encrypt(CipherSpec cipherSpec, byte[] key, byte[] iv, byte[] plaintext) throws Exception {
+		ByteArrayOutputStream ciphertextOutputStream = new ByteArrayOutputStream();
+		OutputStream cipherOutputStream = cipherSpec.newCipherOutputStream(ciphertextOutputStream, key, iv);
+		
+		// Write in odd-sized pieces to test the buffering
+		for (int offset = 0; offset < plaintext.length; offset += 1000) {
+			cipherOutputStream.write(plaintext, offset, Math.min(1000, plaintext.length - offset));
+		}
+		
+		cipherOutputStream.close();		
+		return ciphertextOutputStream.toByteArray();
+	}
+	
+	private byte[] decrypt(CipherSpec cipherSpec, byte[] key, byte[] iv, byte[] ciphertext) throws Exception {
+		InputStream cipherInputStream = cipherSpec.newCipherInputStream(new ByteArrayInputStream(ciphertext), key, iv);
+		byte[] plaintext = IOUtils.toByteArray(cipherInputStream);
+		
+		cipherInputStream.close();		
+		return plaintext;
+	}
+	
+	private byte[] createRandomArray(int size) {
+		byte[] randomArray = new byte[size];
+		new Random().nextBytes(randomArray);
+		
+		return randomArray;
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.syncany.config.Logging;
+import org.syncany.crypto.CipherParams;
+import org.syncany.crypto.CipherUtil;
+import org.syncany.crypto.MasterKeyCache;
+import org.syncany.crypto.SaltedSecretKey;
+import org.syncany.tests.util.TestFileUtil;
+
+public class MasterKeyCacheTest {
+	private File tempDir;
+	private File cacheDir;
+	
+	static {
+		Logging.init();
+	}
+	
+	@Before
+	public void setUp() throws Exception {
+		tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		cacheDir = new File(tempDir, "keycache");
+	}
+	
+	@After
+	public void tearDown() {
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+	
+	@Test
+	public void testPutAndGetMasterKey() throws Exception {
+		SaltedSecretKey masterKey = createDummyMasterKey();
+		
+		MasterKeyCache masterKeyCache = new MasterKeyCache(cacheDir);
+		assertNull(masterKeyCache.get("some password", masterKey.getSalt()));
+		
+		masterKeyCache.put("some password", masterKey);
+		
+		// New instance to make sure the local key is read from disk
+		SaltedSecretKey cachedMasterKey = new MasterKeyCache(cacheDir).get("some password", masterKey.getSalt());
+		
+		assertNotNull(cachedMasterKey);
+		assertArrayEquals(masterKey.getEncoded(), cachedMasterKey.getEncoded());
+		assertArrayEquals(masterKey.getSalt(), cachedMasterKey.getSalt());
+		assertEquals(masterKey.getAlgorithm(), cachedMasterKey.getAlgorithm());
+	}
+	
+	@Test
+	public void testGetWithWrongPasswordOrSalt() throws Exception {
+		SaltedSecretKey masterKey = createDummyMasterKey();
+		
+		MasterKeyCache masterKeyCache = new MasterKeyCache(cacheDir);
+		masterKeyCache.put("some password", masterKey);
+		
+		assertNull(masterKeyCache.get("other password", masterKey.getSalt()));
+		assertNull(masterKeyCache.get("some password", CipherUtil.createRandomArray(CipherParams.MASTER_KEY_SALT_SIZE / 8)));
+	}
+	
+	@Test
+	public void testCorruptEntryIsIgnoredAndDeleted() throws Exception {
+		SaltedSecretKey masterKey = createDummyMasterKey();
+		
+		MasterKeyCache masterKeyCache = new MasterKeyCache(cacheDir);
+		masterKeyCache.put("some password", masterKey);
+		
+		File entryFile = getEntryFiles()[0];
+		byte[] entryBytes = Files.readAllBytes(entryFile.toPath());
+		entryBytes[entryBytes.length-1] ^= 0x01;
+		
+		FileOutputStream entryOutputStream = new FileOutputStream(entryFile);
+		entryOutputStream.write(entryBytes);
+		entryOutputStream.close();
+		
+		assertNull(masterKeyCache.get("some password", masterKey.getSalt()));
+		assertFalse(entryFile.exists());
+	}
+	
+	@Test
+	public void testInvalidate() throws Exception {
+		SaltedSecretKey masterKey1 = createDummyMasterKey();
+		SaltedSecretKey masterKey2 = createDummyMasterKey();
+		
+		MasterKeyCache masterKeyCache = new MasterKeyCache(cacheDir);
+		masterKeyCache.put("password 1", masterKey1);
+		masterKeyCache.put("password 2", masterKey2);
+		
+		assertEquals(2, getEntryFiles().length);
+		assertEquals(2, masterKeyCache.invalidate());
+		assertEquals(0, getEntryFiles().length);
+		assertFalse(new File(cacheDir, "local.key").exists());
+		
+		assertNull(masterKeyCache.get("password 1", masterKey1.getSalt()));
+		
+		// Cache can be used again after invalidating it
+		masterKeyCache.put("password 1", masterKey1);
+		assertNotNull(masterKeyCache.get("password 1", masterKey1.getSalt()));
+	}
+	
+	@Test
+	public void testCacheFilesOnlyReadableByOwner() throws Exception {
+		new MasterKeyCache(cacheDir).put("some password", createDummyMasterKey());
+		
+		if (Files.getFileStore(cacheDir.toPath()).supportsFileAttributeView("posix")) {
+			EnumSet<PosixFilePermission> ownerOnly = EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE);
+			
+			assertEquals(ownerOnly, Files.getPosixFilePermissions(new File(cacheDir, "local.key").toPath()));
+			assertEquals(ownerOnly, Files.getPosixFilePermissions(getEntryFiles()[0].toPath()));
+		}
+		
+		assertTrue(new File(cacheDir, "local.key").canRead());
+	}
+	
+	private File[] getEntryFiles() {
+		File[] entryFiles = cacheDir.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".entry");
+			}			
+		});
+		
+		return (entryFiles != null) ? entryFiles : new File[0];
+	}
+	
+	private SaltedSecretKey createDummyMasterKey() {
+		// Deriving a real master key takes too long for a unit test
+		byte[] keyBytes = CipherUtil.createRandomArray(CipherParams.MASTER_KEY_SIZE / 8);
+		byte[] saltBytes = CipherUtil.createRandomArray(CipherParams.MASTER_KEY_SALT_SIZE / 8);
+		
+		return CipherUtil.toSaltedSecretKey(keyBytes, saltBytes, CipherParams.MASTER_KEY_DERIVATION_FUNCTION);
+	}
+}
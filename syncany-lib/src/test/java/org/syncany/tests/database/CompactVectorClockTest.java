@@ -0,0 +1,102 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.syncany.database.CompactVectorClock;
+import org.syncany.database.VectorClock;
+import org.syncany.database.VectorClock.VectorClockComparison;
+import org.syncany.database.VectorClockInterner;
+
+public class CompactVectorClockTest {
+	@Test
+	public void testCompareLikeVectorClock() {
+		VectorClock[] vectorClocks = new VectorClock[] {
+			createVectorClock(),
+			createVectorClock("A", 1L),
+			createVectorClock("A", 2L),
+			createVectorClock("A", 1L, "B", 1L),
+			createVectorClock("B", 1L),
+			createVectorClock("A", 2L, "C", 3L),
+			createVectorClock("A", 1L, "B", 0L),
+			createVectorClock("C", 3L, "B", 2L, "A", 2L)
+		};
+		
+		VectorClockInterner interner = new VectorClockInterner();
+		
+		for (VectorClock vectorClock1 : vectorClocks) {
+			for (VectorClock vectorClock2 : vectorClocks) {
+				VectorClockComparison expectedComparison = VectorClock.compare(vectorClock1, vectorClock2);
+				VectorClockComparison actualComparison = CompactVectorClock.compare(interner.intern(vectorClock1), interner.intern(vectorClock2));
+				
+				assertEquals("Comparison of " + vectorClock1 + " and " + vectorClock2 + " differs.", expectedComparison, actualComparison);
+			}
+		}
+	}
+	
+	@Test
+	public void testEqualsAndHashCode() {
+		VectorClockInterner interner = new VectorClockInterner();
+		
+		CompactVectorClock vectorClock1 = interner.intern(createVectorClock("A", 1L, "B", 2L));
+		CompactVectorClock vectorClock2 = interner.intern(createVectorClock("B", 2L, "A", 1L, "C", 0L));
+		CompactVectorClock vectorClock3 = interner.intern(createVectorClock("A", 1L, "B", 3L));
+		
+		assertEquals(vectorClock1, vectorClock2);
+		assertEquals(vectorClock1.hashCode(), vectorClock2.hashCode());
+		assertFalse(vectorClock1.equals(vectorClock3));
+	}
+	
+	@Test
+	public void testInternSameInstance() {
+		VectorClockInterner interner = new VectorClockInterner();
+		VectorClock vectorClock = createVectorClock("A", 5L);
+		
+		assertSame(interner.intern(vectorClock), interner.intern(vectorClock));
+		
+		vectorClock.incrementClock("A");
+		interner.clearCache();
+
+		assertEquals(6L, interner.intern(vectorClock).getClock(interner.getClientIndex("A")));
+	}
+	
+	@Test
+	public void testToString() {
+		VectorClockInterner interner = new VectorClockInterner();
+		
+		interner.intern(createVectorClock("Z", 1L)); // Make sure 'Z' has a lower index than 'A'
+		CompactVectorClock compactVectorClock = interner.intern(createVectorClock("A", 3L, "Z", 7L));
+		
+		assertEquals("(A3,Z7)", compactVectorClock.toString());
+		assertEquals(createVectorClock("A", 3L, "Z", 7L), compactVectorClock.toVectorClock());
+	}
+	
+	private VectorClock createVectorClock(Object... unitsAndValues) {
+		VectorClock vectorClock = new VectorClock();
+		
+		for (int i = 0; i < unitsAndValues.length; i += 2) {
+			vectorClock.setClock((String) unitsAndValues[i], (Long) unitsAndValues[i+1]);
+		}
+		
+		return vectorClock;
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.syncany.database.DirectoryDigests;
+import org.syncany.database.DirectoryDigests.FileStatDigestBuilder;
+import org.syncany.database.FileContent.FileChecksum;
+import org.syncany.database.FileVersion;
+import org.syncany.database.FileVersion.FileStatus;
+import org.syncany.database.FileVersion.FileType;
+import org.syncany.tests.util.TestDatabaseUtil;
+
+public class DirectoryDigestsTest {
+	@Test
+	public void testEqualFileTrees() {
+		DirectoryDigests directoryDigests1 = new DirectoryDigests(createFileTree());
+		DirectoryDigests directoryDigests2 = new DirectoryDigests(createFileTree());
+		
+		assertNotNull(directoryDigests1.getFileStatDigest(DirectoryDigests.ROOT_DIRECTORY));
+		assertEquals(directoryDigests1.getFileStatDigest(DirectoryDigests.ROOT_DIRECTORY), directoryDigests2.getFileStatDigest(DirectoryDigests.ROOT_DIRECTORY));
+		assertEquals(directoryDigests1.getFileStatDigest("folder1/sub1"), directoryDigests2.getFileStatDigest("folder1/sub1"));
+		
+		assertNull(directoryDigests1.getFileStatDigest("does/not/exist"));
+	}
+	
+	@Test
+	public void testChangedFileDeepInTree() {
+		List<FileVersion> fileTree = createFileTree();
+		List<FileVersion> changedFileTree = createFileTree();
+		
+		findFileVersion(changedFileTree, "folder1/sub1/deep/file3.txt").setSize(999L);
+		
+		DirectoryDigests directoryDigests = new DirectoryDigests(fileTree);
+		DirectoryDigests changedDirectoryDigests = new DirectoryDigests(changedFileTree);
+		
+		// Only the digest of the file's own directory changes
+		assertEquals(directoryDigests.getFileStatDigest(DirectoryDigests.ROOT_DIRECTORY), changedDirectoryDigests.getFileStatDigest(DirectoryDigests.ROOT_DIRECTORY));
+		assertEquals(directoryDigests.getFileStatDigest("folder2"), changedDirectoryDigests.getFileStatDigest("folder2"));
+		assertEquals(directoryDigests.getFileStatDigest("folder1/sub1"), changedDirectoryDigests.getFileStatDigest("folder1/sub1"));
+		assertFalse(directoryDigests.getFileStatDigest("folder1/sub1/deep").equals(changedDirectoryDigests.getFileStatDigest("folder1/sub1/deep")));
+	}
+	
+	@Test
+	public void testAddedAndDeletedFiles() {
+		List<FileVersion> fileTree = createFileTree();
+		List<FileVersion> changedFileTree = createFileTree();
+		
+		changedFileTree.add(createFile("folder2/new/file5.txt", 5));
+		findFileVersion(changedFileTree, "file0.txt").setStatus(FileStatus.DELETED);
+		
+		DirectoryDigests directoryDigests = new DirectoryDigests(fileTree);
+		DirectoryDigests changedDirectoryDigests = new DirectoryDigests(changedFileTree);
+
+		// Parent directories without a file version have a digest
+		assertNull(directoryDigests.getFileStatDigest("folder2/new"));
+		assertNotNull(changedDirectoryDigests.getFileStatDigest("folder2/new"));
+		
+		// Deleted files are ignored; subdirectories are not part of the digest
+		assertFalse(directoryDigests.getFileStatDigest(DirectoryDigests.ROOT_DIRECTORY).equals(changedDirectoryDigests.getFileStatDigest(DirectoryDigests.ROOT_DIRECTORY)));
+		assertEquals((Long) new FileStatDigestBuilder().getValue(), changedDirectoryDigests.getFileStatDigest(DirectoryDigests.ROOT_DIRECTORY));
+		assertEquals(directoryDigests.getFileStatDigest("folder2"), changedDirectoryDigests.getFileStatDigest("folder2"));
+	}
+	
+	@Test
+	public void testFileStatDigestMatchesFileVersions() {
+		FileStatDigestBuilder fileStatDigest = new FileStatDigestBuilder();
+		
+		// Add in different order than in tree
+		fileStatDigest.addFile("file4.txt", 4, 100004, "rw-r--r--", null);
+		fileStatDigest.addFile("file3.txt", 3, 100003, "rw-r--r--", null);
+		
+		DirectoryDigests directoryDigests = new DirectoryDigests(createFileTree());		
+		assertEquals(directoryDigests.getFileStatDigest("folder1/sub1/deep"), (Long) fileStatDigest.getValue());
+		
+		fileStatDigest.addFile("file3.txt", 3, 100003, "rwxr--r--", null);
+		assertFalse(directoryDigests.getFileStatDigest("folder1/sub1/deep").equals(fileStatDigest.getValue()));
+	}
+	
+	private List<FileVersion> createFileTree() {
+		List<FileVersion> fileTree = new ArrayList<FileVersion>();
+		
+		fileTree.add(createFile("file0.txt", 0));
+		fileTree.add(createFolder("folder1"));
+		fileTree.add(createFolder("folder1/sub1"));
+		fileTree.add(createFile("folder1/sub1/file1.txt", 1));
+		fileTree.add(createFolder("folder1/sub1/deep"));
+		fileTree.add(createFile("folder1/sub1/deep/file3.txt", 3));
+		fileTree.add(createFile("folder1/sub1/deep/file4.txt", 4));
+		fileTree.add(createFolder("folder2"));
+		fileTree.add(createFile("folder2/file2.txt", 2));
+		
+		return fileTree;
+	}
+	
+	private FileVersion createFile(String path, int number) {
+		FileVersion fileVersion = TestDatabaseUtil.createFileVersion(path);
+		
+		fileVersion.setChecksum(new FileChecksum(new byte[] { (byte) number }));
+		fileVersion.setSize((long) number);
+		fileVersion.setLastModified(new Date(100000 + number));
+		fileVersion.setPosixPermissions("rw-r--r--");
+		
+		return fileVersion;
+	}
+	
+	private FileVersion createFolder(String path) {
+		FileVersion fileVersion = createFile(path, 0);
+		
+		fileVersion.setType(FileType.FOLDER);
+		fileVersion.setChecksum(null);
+		
+		return fileVersion;
+	}
+	
+	private FileVersion findFileVersion(List<FileVersion> fileTree, String path) {
+		for (FileVersion fileVersion : fileTree) {
+			if (fileVersion.getPath().equals(path)) {
+				return fileVersion;
+			}
+		}
+		
+		return null;
+	}
+}
@@ -24,6 +24,7 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.RandomAccessFile;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -33,6 +34,7 @@ import java.util.Date;
 
 import org.junit.Test;
 import org.syncany.config.Config;
+import org.syncany.database.FastChecksumCache;
 import org.syncany.database.FileContent.FileChecksum;
 import org.syncany.database.FileVersion;
 import org.syncany.database.FileVersion.FileStatus;
@@ -211,4 +213,61 @@ public class FileVersionComparatorTest {
 		TestConfigUtil.deleteTestLocalConfigAndData(config);
 	}
 	
+	@Test
+	public void testCompareFileVersionToFileWithFastChecksum() throws Exception {
+		// Setup
+		Config config = TestConfigUtil.createTestLocalConfig();
+		FileVersionComparator versionComparator = new FileVersionComparator(config.getLocalDir(), config.getChunker().getChecksumAlgorithm(), 
+				config.getFastChecksumCache());
+		
+		File somefile = new File(config.getLocalDir()+"/file1");		
+		TestFileUtil.createRandomFile(somefile, 130*1024);		
+		
+		FileProperties somefileProperties = versionComparator.captureFileProperties(somefile, null, false);
+		FileChecksum somefileChecksum = new FileChecksum(FileUtil.createChecksum(somefile, config.getChunker().getChecksumAlgorithm()));
+		
+		FileVersion fileVersion = new FileVersion();
+		fileVersion.setVersion(1L);
+		fileVersion.setChecksum(somefileChecksum);
+		fileVersion.setLastModified(new Date(somefileProperties.getLastModified()));
+		fileVersion.setPath("file1");
+		fileVersion.setSize(130*1024L);
+		fileVersion.setStatus(FileStatus.NEW);
+		fileVersion.setType(FileType.FILE);		
+		fileVersion.setPosixPermissions(somefileProperties.getPosixPermissions());
+		fileVersion.setDosAttributes(somefileProperties.getDosAttributes());
+		
+		// Run 1: Fast checksum unknown, full checksum calculated and fast checksum cached
+		FileVersionComparison fileComparison1 = versionComparator.compare(fileVersion, somefile, null, true); 
+		
+		assertTrue(fileComparison1.equals());
+		assertEquals(somefileChecksum, fileComparison1.getActualFileProperties().getChecksum());
+		assertEquals(FileUtil.createFastChecksum(somefile), (long) config.getFastChecksumCache().get(somefileChecksum));
+		assertEquals(1, new FastChecksumCache(config.getFastChecksumCacheFile()).size());
+		
+		// Run 2: Change file without changing size or modified date; fast checksum differs, full checksum is not calculated
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(somefile, "rw")) {
+			randomAccessFile.seek(1000);
+			randomAccessFile.write(~randomAccessFile.read());
+		}
+		
+		somefile.setLastModified(somefileProperties.getLastModified());
+		FileVersionComparison fileComparison2 = versionComparator.compare(fileVersion, somefile, null, true); 
+		
+		assertFalse(fileComparison2.equals());
+		assertTrue(CollectionUtil.containsExactly(fileComparison2.getFileChanges(), FileChange.CHANGED_CHECKSUM));
+		assertNull(fileComparison2.getActualFileProperties().getChecksum());
+		assertEquals(1, config.getFastChecksumCache().size());
+		
+		// Run 3: Size differs, no checksum calculated
+		fileVersion.setSize(130*1024L + 1);
+		FileVersionComparison fileComparison3 = versionComparator.compare(fileVersion, somefile, null, true); 
+		
+		assertTrue(fileComparison3.getFileChanges().contains(FileChange.CHANGED_SIZE));
+		assertTrue(fileComparison3.getFileChanges().contains(FileChange.CHANGED_CHECKSUM));
+		assertNull(fileComparison3.getActualFileProperties().getChecksum());
+		
+		// Tear down
+		TestConfigUtil.deleteTestLocalConfigAndData(config);
+	}
 }
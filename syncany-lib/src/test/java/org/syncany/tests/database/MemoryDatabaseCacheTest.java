@@ -132,6 +132,56 @@ public class MemoryDatabaseCacheTest {
 		assertEquals(multiChunkP3, database.getMultiChunk(new MultiChunkId(new byte[] { 5, 5, 5, 5, 5, 5, 5, 5, 5 })));
 	}
 
+	@Test
+	public void testMultiChunkIdForChunkCache() throws IOException {
+		MemoryDatabase database = new MemoryDatabase();
+		DatabaseVersion databaseVersion1 = TestDatabaseUtil.createDatabaseVersion();
+		
+		// Enough 20-byte chunks to grow the index a few times
+		for (int multiChunkIndex = 0; multiChunkIndex < 100; multiChunkIndex++) {
+			MultiChunkEntry multiChunk = new MultiChunkEntry(new MultiChunkId(new byte[] { 8, 8, (byte) multiChunkIndex }), 10);
+			
+			for (int chunkIndex = 0; chunkIndex < 100; chunkIndex++) {
+				multiChunk.addChunk(new ChunkChecksum(createChecksum(multiChunkIndex, chunkIndex)));
+			}
+			
+			databaseVersion1.addMultiChunk(multiChunk);
+		}
+		
+		database.addDatabaseVersion(databaseVersion1);
+		
+		// Different checksum length in a second version
+		DatabaseVersion databaseVersion2 = TestDatabaseUtil.createDatabaseVersion(databaseVersion1);		
+		MultiChunkEntry multiChunkP2 = new MultiChunkEntry(new MultiChunkId(new byte[] { 7, 7, 7 }), 11);
+		
+		multiChunkP2.addChunk(new ChunkChecksum(new byte[] { 1, 2, 3 }));
+		databaseVersion2.addMultiChunk(multiChunkP2);
+		
+		database.addDatabaseVersion(databaseVersion2);
+		
+		assertEquals(new MultiChunkId(new byte[] { 8, 8, 0 }), database.getMultiChunkIdForChunk(new ChunkChecksum(createChecksum(0, 0))));
+		assertEquals(new MultiChunkId(new byte[] { 8, 8, 42 }), database.getMultiChunkIdForChunk(new ChunkChecksum(createChecksum(42, 17))));
+		assertEquals(new MultiChunkId(new byte[] { 8, 8, 99 }), database.getMultiChunkIdForChunk(new ChunkChecksum(createChecksum(99, 99))));
+		assertEquals(new MultiChunkId(new byte[] { 7, 7, 7 }), database.getMultiChunkIdForChunk(new ChunkChecksum(new byte[] { 1, 2, 3 })));
+		assertNull(database.getMultiChunkIdForChunk(new ChunkChecksum(createChecksum(100, 0))));
+		assertNull(database.getMultiChunkIdForChunk(new ChunkChecksum(new byte[] { 1, 2, 4 })));
+		
+		// Remove version, rebuilds the index
+		database.removeDatabaseVersion(databaseVersion2);
+		
+		assertEquals(new MultiChunkId(new byte[] { 8, 8, 42 }), database.getMultiChunkIdForChunk(new ChunkChecksum(createChecksum(42, 17))));
+		assertNull(database.getMultiChunkIdForChunk(new ChunkChecksum(new byte[] { 1, 2, 3 })));
+	}
+	
+	private byte[] createChecksum(int multiChunkIndex, int chunkIndex) {
+		byte[] checksum = new byte[20];
+		
+		checksum[0] = (byte) multiChunkIndex;
+		checksum[19] = (byte) chunkIndex;
+		
+		return checksum;
+	}
+
 	@Test
 	public void testFilenameCache() throws IOException {
 		MemoryDatabase database = new MemoryDatabase();
@@ -232,6 +282,66 @@ public class MemoryDatabaseCacheTest {
 		assertEquals(fileHistory3, database.getFileHistory("file1.jpg"));
 	}
 
+	@Test
+	public void testFilenameCacheHistoriesSharingPath() throws IOException {
+		MemoryDatabase database = new MemoryDatabase();
+
+		// Round 1: Add two file histories with the same path (e.g. after a conflict)
+		DatabaseVersion databaseVersion1 = TestDatabaseUtil.createDatabaseVersion();
+
+		FileVersion fileVersionA1 = TestDatabaseUtil.createFileVersion("file1.jpg");
+		FileHistoryId idFileA = FileHistoryId.parseFileId("1111111111111111");
+		PartialFileHistory fileHistoryA1 = new PartialFileHistory(idFileA);
+
+		fileHistoryA1.addFileVersion(fileVersionA1);
+		databaseVersion1.addFileHistory(fileHistoryA1);
+
+		FileVersion fileVersionB1 = TestDatabaseUtil.createFileVersion("file1.jpg");
+		FileHistoryId idFileB = FileHistoryId.parseFileId("2222222222222222");
+		PartialFileHistory fileHistoryB1 = new PartialFileHistory(idFileB);
+
+		fileHistoryB1.addFileVersion(fileVersionB1);
+		databaseVersion1.addFileHistory(fileHistoryB1);
+
+		database.addDatabaseVersion(databaseVersion1);
+
+		assertNotNull(database.getFileHistory("file1.jpg"));
+
+		// Round 2: Move the history that the path currently points to 
+		PartialFileHistory movedFileHistory = database.getFileHistory("file1.jpg");
+		FileHistoryId idRemainingFile = (movedFileHistory.getFileHistoryId().equals(idFileA)) ? idFileB : idFileA;
+
+		DatabaseVersion databaseVersion2 = TestDatabaseUtil.createDatabaseVersion(databaseVersion1);
+
+		FileVersion movedFileVersion = TestDatabaseUtil.createFileVersion("file2.jpg", movedFileHistory.getLastVersion());
+		PartialFileHistory movedFileHistory2 = new PartialFileHistory(movedFileHistory.getFileHistoryId()); // same ID
+
+		movedFileHistory2.addFileVersion(movedFileVersion);
+		databaseVersion2.addFileHistory(movedFileHistory2);
+
+		database.addDatabaseVersion(databaseVersion2);
+
+		assertNotNull("Remaining history must still be found by its path", database.getFileHistory("file1.jpg"));
+		assertEquals(idRemainingFile, database.getFileHistory("file1.jpg").getFileHistoryId());
+		assertEquals(movedFileHistory.getFileHistoryId(), database.getFileHistory("file2.jpg").getFileHistoryId());
+
+		// Round 3: Delete the remaining history
+		DatabaseVersion databaseVersion3 = TestDatabaseUtil.createDatabaseVersion(databaseVersion2);
+
+		FileVersion deletedFileVersion = TestDatabaseUtil.createFileVersion("file1.jpg", database.getFileHistory(idRemainingFile).getLastVersion());
+		deletedFileVersion.setStatus(FileStatus.DELETED);
+
+		PartialFileHistory deletedFileHistory = new PartialFileHistory(idRemainingFile); // same ID
+
+		deletedFileHistory.addFileVersion(deletedFileVersion);
+		databaseVersion3.addFileHistory(deletedFileHistory);
+
+		database.addDatabaseVersion(databaseVersion3);
+
+		assertNull(database.getFileHistory("file1.jpg"));
+		assertEquals(movedFileHistory.getFileHistoryId(), database.getFileHistory("file2.jpg").getFileHistoryId());
+	}
+
 	@Test
 	public void testContentChecksumCache() throws IOException {
 		MemoryDatabase database = new MemoryDatabase();
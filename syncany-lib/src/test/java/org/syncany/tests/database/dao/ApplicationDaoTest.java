@@ -24,6 +24,7 @@ import java.io.File;
 import java.sql.Connection;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 import org.junit.Test;
 import org.syncany.config.Config;
@@ -44,7 +45,7 @@ public class ApplicationDaoTest {
 		TestSqlDatabaseUtil.runSqlFromResource(databaseConnection, "/sql/test.insert.set3.sql");
 		
 		ApplicationSqlDao applicationDao = new ApplicationSqlDao(databaseConnection);
-		List<DatabaseRemoteFile> actualKnownDatabases = applicationDao.getKnownDatabases();
+		Set<DatabaseRemoteFile> actualKnownDatabases = applicationDao.getKnownDatabases();
 		
 		// Test
 		assertTrue(CollectionUtil.containsExactly(Arrays.asList(new DatabaseRemoteFile[] { 
@@ -75,7 +76,7 @@ public class ApplicationDaoTest {
 		});
 		
 		applicationDao.writeKnownRemoteDatabases(expectedKnownDatabases);
-		List<DatabaseRemoteFile> actualKnownDatabases = applicationDao.getKnownDatabases();
+		Set<DatabaseRemoteFile> actualKnownDatabases = applicationDao.getKnownDatabases();
 		
 		// Test
 		assertTrue(CollectionUtil.containsExactly(expectedKnownDatabases, actualKnownDatabases));
@@ -0,0 +1,114 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+import org.syncany.config.Config;
+import org.syncany.metrics.Histogram;
+import org.syncany.metrics.MetricRegistry;
+import org.syncany.metrics.Timer;
+import org.syncany.operations.up.UpOperation;
+import org.syncany.operations.up.UpOperationResult;
+import org.syncany.tests.util.TestConfigUtil;
+import org.syncany.tests.util.TestFileUtil;
+
+public class MetricRegistryTest {
+	@Test
+	public void testCounterAndTimer() throws Exception {
+		MetricRegistry metrics = new MetricRegistry();
+		
+		metrics.counter("some.counter").inc();
+		metrics.counter("some.counter").inc(41);
+
+		Timer.Context timerContext = metrics.timer("some.timer").time();
+		Thread.sleep(10);
+		long duration = timerContext.stop();
+		
+		assertTrue(metrics.isEnabled());
+		assertSame(metrics.counter("some.counter"), metrics.counter("some.counter"));
+		assertEquals(42, metrics.getCounters().get("some.counter").getCount());
+		assertEquals(1, metrics.getTimers().get("some.timer").getCount());
+		assertEquals(duration, metrics.getTimers().get("some.timer").getSum());
+		assertTrue(duration >= 10000000L);
+	}
+	
+	@Test
+	public void testHistogramStatistics() {
+		Histogram histogram = new MetricRegistry().histogram("some.histogram");
+		
+		for (int i = 1; i <= 100; i++) {
+			histogram.update(i);
+		}
+		
+		assertEquals(100, histogram.getCount());
+		assertEquals(5050, histogram.getSum());
+		assertEquals(1, histogram.getMin());
+		assertEquals(100, histogram.getMax());
+		assertEquals(50.5, histogram.getMean(), 0.001);
+		
+		// Percentiles are estimated with power-of-two buckets
+		assertTrue(histogram.getPercentile(0.5) >= 50 && histogram.getPercentile(0.5) <= 63);
+		assertEquals(100, histogram.getPercentile(0.99));
+	}
+	
+	@Test
+	public void testDisabledRegistryRecordsNothing() {
+		MetricRegistry metrics = MetricRegistry.disabled();
+		
+		metrics.counter("some.counter").inc(10);
+		metrics.histogram("some.histogram").update(10);
+		metrics.timer("some.timer").time().stop();
+		
+		assertFalse(metrics.isEnabled());
+		assertEquals(0, metrics.counter("some.counter").getCount());
+		assertEquals(0, metrics.histogram("some.histogram").getCount());
+		assertEquals(0, metrics.timer("some.timer").getCount());
+		assertTrue(metrics.getCounters().isEmpty());
+		assertTrue(metrics.getTimers().isEmpty());
+	}
+	
+	@Test
+	public void testUpOperationMetrics() throws Exception {
+		Config testConfig = TestConfigUtil.createTestLocalConfig();
+		testConfig.setMetrics(new MetricRegistry());
+		
+		try {
+			List<File> originalFiles = TestFileUtil.createRandomFilesInDirectory(testConfig.getLocalDir(), 100*1024, 3);
+			
+			UpOperationResult result = new UpOperation(testConfig).execute();
+			MetricRegistry metrics = result.getMetrics();
+			
+			assertSame(testConfig.getMetrics(), metrics);
+			assertEquals(originalFiles.size(), metrics.getCounters().get("deduper.files").getCount());
+			assertEquals(1, metrics.getTimers().get("up.index").getCount());
+			assertTrue(metrics.getCounters().get("transfer.upload.files").getCount() >= 2); // At least one multichunk and one database
+			assertTrue(metrics.getCounters().get("transfer.upload.bytes").getCount() > 0);
+		}
+		finally {
+			TestConfigUtil.deleteTestLocalConfigAndData(testConfig);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.syncany.config.Config;
+import org.syncany.metrics.TraceEventType;
+import org.syncany.metrics.TraceEvents;
+import org.syncany.operations.up.UpOperation;
+import org.syncany.tests.util.TestConfigUtil;
+import org.syncany.tests.util.TestFileUtil;
+
+public class TraceEventsTest {
+	@Test
+	public void testEventsDisabledWithoutRecording() throws Exception {
+		for (TraceEventType type : TraceEventType.values()) {
+			assertFalse(TraceEvents.isEnabled(type));
+			assertFalse(TraceEvents.begin(type).isEnabled());
+		}
+		
+		TraceEvents.begin(TraceEventType.CHUNK_EMITTED).commit("no-op", 1, false);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongNumberOfFieldsFails() throws Exception {
+		assumeTrue(TraceEvents.isAvailable());
+		
+		Object recording = startRecording();
+		
+		try {
+			TraceEvents.begin(TraceEventType.CHUNK_EMITTED).commit("too few fields");
+		}
+		finally {
+			invoke(recording, "close");
+		}
+	}
+	
+	@Test
+	public void testUpOperationEmitsEvents() throws Exception {
+		assumeTrue(TraceEvents.isAvailable());
+		
+		Config testConfig = TestConfigUtil.createTestLocalConfig();
+		File recordingFile = new File(testConfig.getAppDir(), "sync.jfr");
+		
+		Object recording = startRecording();
+		
+		try {
+			TestFileUtil.createRandomFilesInDirectory(testConfig.getLocalDir(), 100*1024, 3);
+			new UpOperation(testConfig).execute();
+			
+			invoke(recording, "stop");
+			recording.getClass().getMethod("dump", Path.class).invoke(recording, recordingFile.toPath());
+			
+			Map<String, Integer> eventCounts = countEvents(recordingFile);
+			
+			assertTrue(eventCounts.get(TraceEventType.CHUNK_EMITTED.getName()) >= 3);
+			assertTrue(eventCounts.get(TraceEventType.MULTICHUNK_CLOSED.getName()) >= 1);
+			assertTrue(eventCounts.get(TraceEventType.TRANSFER.getName()) >= 2);
+			assertTrue(eventCounts.get(TraceEventType.SQL_STATEMENT.getName()) >= 1);
+			assertEquals(null, eventCounts.get(TraceEventType.FILE_ACTION.getName()));
+		}
+		finally {
+			invoke(recording, "close");
+			TestConfigUtil.deleteTestLocalConfigAndData(testConfig);
+		}
+	}
+
+	private Object startRecording() throws Exception {
+		// Note: The JFR API is used via reflection, because the tests are compiled for Java 7
+		Object recording = Class.forName("jdk.jfr.Recording").newInstance();
+		
+		for (TraceEventType type : TraceEventType.values()) {
+			recording.getClass().getMethod("enable", String.class).invoke(recording, type.getName());
+		}
+		
+		invoke(recording, "start");
+		return recording;
+	}
+
+	private Map<String, Integer> countEvents(File recordingFile) throws Exception {
+		Map<String, Integer> eventCounts = new HashMap<String, Integer>();
+		
+		Method readAllEventsMethod = Class.forName("jdk.jfr.consumer.RecordingFile").getMethod("readAllEvents", Path.class);
+		List<?> events = (List<?>) readAllEventsMethod.invoke(null, recordingFile.toPath());
+		
+		for (Object event : events) {
+			Object eventType = invoke(event, "getEventType");
+			String eventName = (String) invoke(eventType, "getName");
+			
+			Integer eventCount = eventCounts.get(eventName);
+			eventCounts.put(eventName, (eventCount != null) ? eventCount + 1 : 1);
+		}
+		
+		return eventCounts;
+	}
+
+	private Object invoke(Object target, String methodName) throws Exception {
+		Method method = target.getClass().getMethod(methodName);
+		method.setAccessible(true);
+		
+		return method.invoke(target);
+	}
+}
@@ -18,12 +18,17 @@
 package org.syncany.tests.operations;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.FilenameFilter;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 import org.syncany.connection.plugins.local.LocalConnection;
 import org.syncany.database.DatabaseConnectionFactory;
+import org.syncany.database.FastChecksumCache;
 import org.syncany.operations.CleanupOperation.CleanupOperationOptions;
 import org.syncany.operations.CleanupOperation.CleanupOperationResult;
 import org.syncany.operations.CleanupOperation.CleanupResultCode;
@@ -32,6 +37,7 @@ import org.syncany.operations.up.UpOperationOptions;
 import org.syncany.tests.util.TestAssertUtil;
 import org.syncany.tests.util.TestClient;
 import org.syncany.tests.util.TestConfigUtil;
+import org.syncany.tests.util.TestFileUtil;
 
 public class CleanupOperationTest {
 	@Test
@@ -296,6 +302,192 @@ public class CleanupOperationTest {
 		clientB.deleteTestData();	
 	}
 	
+	@Test
+	public void testRepackageMultiChunks() throws Exception {
+		// Setup
+		LocalConnection testConnection = (LocalConnection) TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+		TestClient clientC = new TestClient("C", testConnection);
+		
+		CleanupOperationOptions options = new CleanupOperationOptions();
+		options.setMergeRemoteFiles(false);
+		options.setRemoveOldVersions(true);
+		options.setRepackageMultiChunks(true);
+		options.setRepackageUnusedThreshold(0.3);
+		options.setKeepVersionsCount(2);
+
+		// Run
+		
+		// A: Create some file versions
+		clientA.createNewFile("someotherfile.jpg");	// These two files' chunks will be in one multichunk	
+		clientA.createNewFile("file.jpg");		    // Only one of the chunks will be needed after cleanup!
+		                                            // The multichunk will be 50% useless --> repackaged
+		for (int i=1; i<=4; i++) {
+			clientA.changeFile("file.jpg");
+			clientA.upWithForceChecksum();			
+		}
+		
+		// B: Sync down by other client
+		clientB.down();
+		
+		// A: Cleanup (remove old versions, then repackage the half-used multichunk)
+		CleanupOperationResult cleanupOperationResult = clientA.cleanup(options);		
+		assertEquals(CleanupResultCode.OK, cleanupOperationResult.getResultCode());
+		assertEquals(2, cleanupOperationResult.getRemovedOldVersionsCount() + cleanupOperationResult.getRemovedMultiChunks().size());
+		assertEquals(1, cleanupOperationResult.getRepackagedMultiChunks().size());
+		assertEquals(1, cleanupOperationResult.getNewRepackagedMultiChunks().size());
+		
+		// Old multichunk is replaced by the repackaged multichunk (one for "someotherfile.jpg", two for "file.jpg")
+		java.sql.Connection databaseConnectionA = DatabaseConnectionFactory.createConnection(clientA.getDatabaseFile());		
+		assertEquals("3", TestAssertUtil.runSqlQuery("select count(*) from multichunk", databaseConnectionA));
+		assertEquals("0", TestAssertUtil.runSqlQuery("select count(*) from multichunk where id='" 
+				+ cleanupOperationResult.getRepackagedMultiChunks().get(0).getId() + "'", databaseConnectionA));
+		
+		assertEquals(3, new File(testConnection.getRepositoryPath()+"/multichunks/").list().length);
+		assertFalse(new File(testConnection.getRepositoryPath()+"/multichunks/multichunk-"
+				+ cleanupOperationResult.getRepackagedMultiChunks().get(0).getId()).exists());
+
+		// B: Sync down cleanup
+		clientB.down();
+		TestAssertUtil.assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientB.getDatabaseFile());
+		
+		// C: New client must be able to restore all files (using the repackaged multichunk)
+		clientC.down();
+		TestAssertUtil.assertFileListEquals(clientA.getLocalFiles(), clientC.getLocalFiles());
+		
+		// Tear down
+		clientA.deleteTestData();	
+		clientB.deleteTestData();
+		clientC.deleteTestData();
+	}
+	
+	@Test
+	public void testRepackageMultiChunksFailureDeletesNewMultiChunks() throws Exception {
+		// Setup
+		LocalConnection testConnection = (LocalConnection) TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+		File remoteMultiChunksDir = new File(testConnection.getRepositoryPath()+"/multichunks/");
+		
+		CleanupOperationOptions options = new CleanupOperationOptions();
+		options.setMergeRemoteFiles(false);
+		options.setRemoveOldVersions(true);
+		options.setRepackageMultiChunks(true);
+		options.setRepackageUnusedThreshold(0.3);
+		options.setKeepVersionsCount(2);
+		
+		StatusOperationOptions forceChecksumStatusOperationOptions = new StatusOperationOptions();
+		forceChecksumStatusOperationOptions.setForceChecksum(true);
+		
+		UpOperationOptions noCleanupUpOperationOptions = new UpOperationOptions();
+		noCleanupUpOperationOptions.setCleanupEnabled(false);
+		noCleanupUpOperationOptions.setStatusOptions(forceChecksumStatusOperationOptions);
+
+		// Run
+		
+		// A: Create two multichunks with different unused ratios after cleanup: 
+		//    multichunk 1 will be 80% unused, multichunk 2 will be 40% unused (repackaged second)
+		TestFileUtil.createRandomFile(clientA.getLocalFile("file1-keep.jpg"), 32*1024);
+		TestFileUtil.createRandomFile(clientA.getLocalFile("file1-change.jpg"), 128*1024);
+		clientA.up(noCleanupUpOperationOptions);
+		
+		File remoteMultiChunkFile1 = remoteMultiChunksDir.listFiles()[0];
+		
+		TestFileUtil.createRandomFile(clientA.getLocalFile("file2-keep.jpg"), 96*1024);
+		TestFileUtil.createRandomFile(clientA.getLocalFile("file2-change.jpg"), 64*1024);
+		clientA.up(noCleanupUpOperationOptions);
+		
+		File remoteMultiChunkFile2 = null;
+		
+		for (File remoteMultiChunkFile : remoteMultiChunksDir.listFiles()) {
+			if (!remoteMultiChunkFile.equals(remoteMultiChunkFile1)) {
+				remoteMultiChunkFile2 = remoteMultiChunkFile;
+			}
+		}
+		
+		for (int i=1; i<=3; i++) {
+			clientA.deleteFile("file1-change.jpg");
+			clientA.deleteFile("file2-change.jpg");
+			
+			TestFileUtil.createRandomFile(clientA.getLocalFile("file1-change.jpg"), 128*1024);
+			TestFileUtil.createRandomFile(clientA.getLocalFile("file2-change.jpg"), 64*1024);
+			clientA.up(noCleanupUpOperationOptions);			
+		}
+		
+		// Replace multichunk 2 with multichunk 1: Repackaging fails with an open new multichunk, 
+		// because the used chunks of multichunk 2 cannot be found
+		FileUtils.copyFile(remoteMultiChunkFile1, remoteMultiChunkFile2);
+		
+		// A: Cleanup (repackaging fails)
+		try {
+			clientA.cleanup(options);
+			fail("Repackaging should fail.");
+		}
+		catch (Exception e) {
+			// Expected
+		}
+		
+		// No new multichunks must be left in the cache
+		String[] cachedMultiChunkFiles = clientA.getConfig().getCacheDir().list(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith("multichunk-");
+			}			
+		});
+		
+		assertEquals(0, cachedMultiChunkFiles.length);
+		
+		// Tear down
+		clientA.deleteTestData();	
+	}
+	
+	@Test
+	public void testCleanupCompactsFastChecksumCache() throws Exception {
+		// Setup
+		LocalConnection testConnection = (LocalConnection) TestConfigUtil.createTestLocalConnection();
+		TestClient clientA = new TestClient("A", testConnection);
+		File fastChecksumCacheFile = clientA.getConfig().getFastChecksumCacheFile();
+		
+		CleanupOperationOptions options = new CleanupOperationOptions();
+		options.setMergeRemoteFiles(false);
+		options.setRemoveOldVersions(true);
+		options.setRepackageMultiChunks(false);
+		options.setKeepVersionsCount(2);
+		
+		StatusOperationOptions forceChecksumStatusOperationOptions = new StatusOperationOptions();
+		forceChecksumStatusOperationOptions.setForceChecksum(true);
+		
+		UpOperationOptions noCleanupUpOperationOptions = new UpOperationOptions();
+		noCleanupUpOperationOptions.setCleanupEnabled(false);
+		noCleanupUpOperationOptions.setStatusOptions(forceChecksumStatusOperationOptions);
+
+		// Run
+		
+		// A: Create some file versions; each content is added to the fast checksum cache
+		clientA.createNewFile("file.jpg");
+		
+		for (int i=1; i<=4; i++) {
+			clientA.changeFile("file.jpg");
+			clientA.up(noCleanupUpOperationOptions);			
+		}
+		
+		assertEquals(4, FileUtils.readLines(fastChecksumCacheFile).size());
+		
+		// A: Cleanup (remove old versions, then compact the cache)
+		CleanupOperationResult cleanupOperationResult = clientA.cleanup(options);
+		assertEquals(CleanupResultCode.OK, cleanupOperationResult.getResultCode());
+		
+		// Only the contents of the remaining versions are left in the cache
+		java.sql.Connection databaseConnectionA = DatabaseConnectionFactory.createConnection(clientA.getDatabaseFile());		
+		assertEquals("2", TestAssertUtil.runSqlQuery("select count(*) from filecontent", databaseConnectionA));
+		
+		assertEquals(2, FileUtils.readLines(fastChecksumCacheFile).size());
+		assertEquals(2, new FastChecksumCache(fastChecksumCacheFile).size());
+		
+		// Tear down
+		clientA.deleteTestData();	
+	}
+	
 	@Test
 	public void testCleanupNoChangeBecauseDirty() throws Exception {
 		// Setup
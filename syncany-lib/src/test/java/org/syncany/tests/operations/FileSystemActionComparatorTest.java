@@ -18,6 +18,8 @@
 package org.syncany.tests.operations;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -74,6 +76,26 @@ public class FileSystemActionComparatorTest {
 		System.out.println(actions);
 	}
 	
+	@Test
+	public void testFileSystemActionComparatorPhases() throws Exception {
+		// Setup
+		List<FileSystemAction> actions = new ArrayList<FileSystemAction>();
+		
+		actions.add(createNewFileSystemAction("newfile.jpg", FileType.FILE));
+		actions.add(createDeleteFileSystemAction("deletedfile.jpg", FileType.FILE));
+		actions.add(createNewFileSystemAction("newfile2.jpg", FileType.FILE));
+		actions.add(createNewFileSystemAction("newfolder", FileType.FOLDER));
+		
+		// Run
+		FileSystemActionComparator actionComparator = new FileSystemActionComparator();		
+		actionComparator.sort(actions);
+		
+		// Test
+		assertEquals(actionComparator.getPhase(actions.get(1)), actionComparator.getPhase(actions.get(2)) - 1);
+		assertEquals(actionComparator.getPhase(actions.get(2)), actionComparator.getPhase(actions.get(3)));
+		assertTrue(actionComparator.getPhase(actions.get(0)) < actionComparator.getPhase(actions.get(1)));		
+	}
+	
 	private DeleteFileSystemAction createDeleteFileSystemAction(String path, FileType type) throws Exception {
 		FileVersion firstFileVersion = createFileVersion(path, type);
 		FileVersion secondFileVersion = createFileVersion(path, type, firstFileVersion);
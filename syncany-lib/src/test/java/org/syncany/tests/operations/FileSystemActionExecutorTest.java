@@ -0,0 +1,182 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.operations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.syncany.config.Config;
+import org.syncany.database.FileVersion;
+import org.syncany.database.FileVersion.FileType;
+import org.syncany.operations.down.FileSystemActionComparator;
+import org.syncany.operations.down.FileSystemActionExecutor;
+import org.syncany.operations.down.actions.FileSystemAction;
+import org.syncany.tests.util.TestConfigUtil;
+import org.syncany.util.NormalizedPath;
+
+public class FileSystemActionExecutorTest {
+	@Test
+	public void testActionsInSameFolderExecutedSequentiallyInOrder() throws Exception {
+		// Setup
+		Config config = TestConfigUtil.createDummyConfig();
+
+		final List<String> executedPaths = Collections.synchronizedList(new ArrayList<String>());
+		final AtomicInteger runningActions = new AtomicInteger(0);
+		final AtomicInteger maxRunningActions = new AtomicInteger(0);
+
+		List<FileSystemAction> actions = new ArrayList<FileSystemAction>();
+		String[] paths = new String[] { "folder", "folder/file1.jpg", "folder/file2.jpg", "FOLDER/file3.jpg", "folder/file1.jpg" };
+
+		for (final String path : paths) {
+			actions.add(new TestFileSystemAction(config, path) {
+				@Override
+				public void execute() throws Exception {
+					int currentlyRunningActions = runningActions.incrementAndGet();
+
+					synchronized (maxRunningActions) {
+						maxRunningActions.set(Math.max(maxRunningActions.get(), currentlyRunningActions));
+					}
+
+					Thread.sleep(20);
+					executedPaths.add(path);
+
+					runningActions.decrementAndGet();
+				}
+			});
+		}
+
+		// Run
+		new FileSystemActionExecutor(new FileSystemActionComparator(), 4).execute(actions);
+
+		// Test
+		assertEquals("Actions on the same folder must not run concurrently", 1, maxRunningActions.get());
+		assertEquals("Actions on the same folder must run in their original order", toList(paths), executedPaths);
+	}
+
+	@Test
+	public void testIndependentActionsExecutedInParallel() throws Exception {
+		// Setup
+		Config config = TestConfigUtil.createDummyConfig();
+
+		final CountDownLatch allActionsStartedLatch = new CountDownLatch(2);
+		final AtomicInteger concurrentActions = new AtomicInteger(0);
+
+		List<FileSystemAction> actions = new ArrayList<FileSystemAction>();
+
+		for (String path : new String[] { "folder1/file.jpg", "folder2/file.jpg" }) {
+			actions.add(new TestFileSystemAction(config, path) {
+				@Override
+				public void execute() throws Exception {
+					allActionsStartedLatch.countDown();
+
+					if (allActionsStartedLatch.await(10, TimeUnit.SECONDS)) {
+						concurrentActions.incrementAndGet();
+					}
+				}
+			});
+		}
+
+		// Run
+		new FileSystemActionExecutor(new FileSystemActionComparator(), 2).execute(actions);
+
+		// Test
+		assertEquals("Independent actions should run concurrently", 2, concurrentActions.get());
+	}
+
+	@Test
+	public void testConflictFilesInSameFolderExecutedInParallel() throws Exception {
+		// Setup
+		final Config config = TestConfigUtil.createTestLocalConfig();
+
+		try {
+			int fileCount = 12;
+			File folder = new File(config.getLocalDir(), "folder");
+
+			List<FileSystemAction> actions = new ArrayList<FileSystemAction>();
+
+			for (int i = 0; i < fileCount; i++) {
+				final String path = "folder/file" + i + ".jpg";
+				FileUtils.writeStringToFile(new File(config.getLocalDir(), path), "content" + i);
+
+				actions.add(new TestFileSystemAction(config, path) {
+					@Override
+					public void execute() throws Exception {
+						moveToConflictFile(new NormalizedPath(config.getLocalDir(), path));
+					}
+				});
+			}
+
+			// Run
+			new FileSystemActionExecutor(new FileSystemActionComparator(), 4).execute(actions);
+
+			// Test
+			File[] conflictFiles = folder.listFiles();
+			Set<String> conflictFileContents = new HashSet<String>();
+
+			assertEquals("Every file should have its own conflict file", fileCount, conflictFiles.length);
+
+			for (File conflictFile : conflictFiles) {
+				assertTrue("Not a conflict file: " + conflictFile, conflictFile.getName().contains("conflicted copy"));
+				conflictFileContents.add(FileUtils.readFileToString(conflictFile));
+			}
+
+			for (int i = 0; i < fileCount; i++) {
+				assertFalse("Original file should have been moved", new File(folder, "file" + i + ".jpg").exists());
+				assertTrue("Content of file" + i + " lost", conflictFileContents.contains("content" + i));
+			}
+		}
+		finally {
+			TestConfigUtil.deleteTestLocalConfigAndData(config);
+		}
+	}
+
+	private List<String> toList(String[] paths) {
+		List<String> pathList = new ArrayList<String>();
+		Collections.addAll(pathList, paths);
+
+		return pathList;
+	}
+
+	private static FileVersion createFileVersion(String path) {
+		FileVersion fileVersion = new FileVersion();
+		fileVersion.setPath(path);
+		fileVersion.setType(FileType.FILE);
+		fileVersion.setVersion(1L);
+
+		return fileVersion;
+	}
+
+	private static abstract class TestFileSystemAction extends FileSystemAction {
+		public TestFileSystemAction(Config config, String path) {
+			super(config, null, createFileVersion(path), createFileVersion(path));
+		}
+	}
+}
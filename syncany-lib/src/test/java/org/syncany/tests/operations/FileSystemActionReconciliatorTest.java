@@ -20,6 +20,9 @@ package org.syncany.tests.operations;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.List;
 
 import org.junit.Test;
@@ -32,7 +35,9 @@ import org.syncany.database.MemoryDatabase;
 import org.syncany.database.PartialFileHistory;
 import org.syncany.operations.down.DownOperationResult;
 import org.syncany.operations.down.FileSystemActionReconciliator;
+import org.syncany.operations.down.actions.ChangeFileSystemAction;
 import org.syncany.operations.down.actions.FileSystemAction;
+import org.syncany.operations.down.actions.RenameFileSystemAction;
 import org.syncany.tests.util.TestClient;
 import org.syncany.tests.util.TestConfigUtil;
 import org.syncany.tests.util.TestDatabaseUtil;
@@ -82,4 +87,95 @@ public class FileSystemActionReconciliatorTest {
 		// Tear down
 		clientA.deleteTestData();
 	}
+	
+	@Test
+	public void testFileSystemActionReconWithPrefetchedComparisons() throws Exception {
+		// Setup
+		Connection testConnection = TestConfigUtil.createTestLocalConnection();
+		
+		TestClient clientA = new TestClient("A", testConnection);
+		Config testConfigA = clientA.getConfig();
+		
+		// - Create first database version
+		for (int i = 0; i < 10; i++) {
+			clientA.createNewFile("file" + i, 50*1024);
+		}
+		
+		clientA.upWithForceChecksum();
+		
+		// - Change three files without changing their size (only checksum detects this!)
+		for (int i = 0; i < 3; i++) {
+			File changedFile = clientA.getLocalFile("file" + i);
+			long lastModified = changedFile.lastModified();
+			
+			flipByte(changedFile);			
+			changedFile.setLastModified(lastModified + 5000);
+		}
+		
+		// - Change one file without changing its size and modified date (file is not read, like in 'status')
+		File statEqualFile = clientA.getLocalFile("file3");
+		long statEqualFileLastModified = statEqualFile.lastModified();
+		
+		flipByte(statEqualFile);
+		statEqualFile.setLastModified(statEqualFileLastModified);
+		
+		// - Create new version (rename all files)
+		TestSqlDatabase sqlDatabaseA = new TestSqlDatabase(testConfigA);
+		DatabaseVersion winnersDatabaseVersion = TestDatabaseUtil.createDatabaseVersion(sqlDatabaseA.getLastDatabaseVersionHeader());		
+		
+		for (int i = 0; i < 10; i++) {
+			PartialFileHistory fileHistoryWithLastVersion = sqlDatabaseA.getFileHistoryWithLastVersion("file" + i);
+	
+			FileVersion renamedFileVersion = fileHistoryWithLastVersion.getLastVersion().clone();
+			renamedFileVersion.setPath("renamed" + i);
+			renamedFileVersion.setStatus(FileStatus.RENAMED);
+			renamedFileVersion.setVersion(renamedFileVersion.getVersion()+1);
+			
+			PartialFileHistory renamedFileHistory = new PartialFileHistory(fileHistoryWithLastVersion.getFileHistoryId());
+			renamedFileHistory.addFileVersion(renamedFileVersion);
+			
+			winnersDatabaseVersion.addFileHistory(renamedFileHistory);
+		}
+		
+		MemoryDatabase winnersDatabase = new MemoryDatabase();
+		winnersDatabase.addDatabaseVersion(winnersDatabaseVersion);
+		
+		// Run! (sequentially and with prefetched comparisons)
+		for (int checksumThreads : new int[] { 1, 4 }) {
+			DownOperationResult outDownOperationResult = new DownOperationResult();
+			FileSystemActionReconciliator fileSystemActionReconciliator = new FileSystemActionReconciliator(testConfigA, outDownOperationResult, checksumThreads);
+			List<FileSystemAction> fileSystemActions = fileSystemActionReconciliator.determineFileSystemActions(winnersDatabase);
+			
+			int renameActionCount = 0;
+			int changeActionCount = 0;
+			
+			for (FileSystemAction fileSystemAction : fileSystemActions) {
+				if (fileSystemAction instanceof RenameFileSystemAction) {
+					renameActionCount++;
+				}
+				else if (fileSystemAction instanceof ChangeFileSystemAction) {
+					changeActionCount++;
+				}
+			}
+			
+			assertEquals(10, fileSystemActions.size());
+			assertEquals(7, renameActionCount);
+			assertEquals(3, changeActionCount);
+			assertEquals(10, outDownOperationResult.getChangeSet().getChangedFiles().size());
+		}
+		
+		// Tear down
+		clientA.deleteTestData();
+	}
+	
+	private void flipByte(File file) throws IOException {
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+			randomAccessFile.seek(100);
+			
+			int originalByte = randomAccessFile.read();
+			
+			randomAccessFile.seek(100);
+			randomAccessFile.write(~originalByte);
+		}
+	}
 }
@@ -0,0 +1,139 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.operations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.syncany.connection.plugins.DatabaseRemoteFile;
+import org.syncany.connection.plugins.local.LocalConnection;
+import org.syncany.connection.plugins.local.LocalTransferManager;
+import org.syncany.operations.RemoteListingCache;
+import org.syncany.tests.util.TestFileUtil;
+
+public class RemoteListingCacheTest {
+	private File tempDir;
+	private File repoDir;
+	private File databasesDir;
+	private File cacheFile;
+	private LocalTransferManager transferManager;
+	private FileTime oneHourAgo;
+	private FileTime halfAnHourAgo;
+	
+	@Before
+	public void setUp() throws Exception {
+		tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		repoDir = new File(tempDir, "repo");
+		databasesDir = new File(repoDir, "databases");
+		cacheFile = new File(tempDir, "remotedbs.list");
+		
+		Map<String, String> localPluginSettings = new HashMap<String, String>();
+		localPluginSettings.put("path", repoDir.getAbsolutePath());
+		
+		LocalConnection connection = new LocalConnection();
+		connection.init(localPluginSettings);
+		
+		transferManager = new LocalTransferManager(connection);
+		transferManager.init(true);
+		
+		oneHourAgo = FileTime.fromMillis(System.currentTimeMillis() - 60*60*1000);
+		halfAnHourAgo = FileTime.fromMillis(System.currentTimeMillis() - 30*60*1000);
+	}
+	
+	@After
+	public void tearDown() {
+		TestFileUtil.deleteDirectory(tempDir);
+	}
+	
+	@Test
+	public void testListingCachedIfUnchanged() throws Exception {
+		RemoteListingCache<DatabaseRemoteFile> listingCache = new RemoteListingCache<DatabaseRemoteFile>(cacheFile, DatabaseRemoteFile.class);
+		
+		TestFileUtil.createRandomFile(new File(databasesDir, "db-A-0000000001"), 10);
+		setLastModified(databasesDir, oneHourAgo);
+
+		Map<String, DatabaseRemoteFile> firstListing = listingCache.list(transferManager);
+		
+		assertEquals(1, firstListing.size());
+		assertTrue(cacheFile.exists());
+		
+		// Sneak in a file without changing the folder's modification time (pretend the listing is unchanged)
+		TestFileUtil.createRandomFile(new File(databasesDir, "db-B-0000000001"), 10);
+		setLastModified(databasesDir, oneHourAgo);
+		
+		Map<String, DatabaseRemoteFile> secondListing = listingCache.list(transferManager);
+		
+		assertEquals(1, secondListing.size());
+		assertNotNull(secondListing.get("db-A-0000000001"));
+		
+		// Now change the modification time
+		setLastModified(databasesDir, halfAnHourAgo);
+		
+		Map<String, DatabaseRemoteFile> thirdListing = listingCache.list(transferManager);
+		
+		assertEquals(2, thirdListing.size());
+		assertNotNull(thirdListing.get("db-B-0000000001"));
+	}
+	
+	@Test
+	public void testListingNotCachedIfRecentlyChanged() throws Exception {
+		RemoteListingCache<DatabaseRemoteFile> listingCache = new RemoteListingCache<DatabaseRemoteFile>(cacheFile, DatabaseRemoteFile.class);
+		
+		TestFileUtil.createRandomFile(new File(databasesDir, "db-A-0000000001"), 10);
+		
+		assertNull(transferManager.getChangeToken(DatabaseRemoteFile.class));		
+		assertEquals(1, listingCache.list(transferManager).size());
+		assertFalse(cacheFile.exists());
+
+		TestFileUtil.createRandomFile(new File(databasesDir, "db-A-0000000002"), 10);
+		
+		assertEquals(2, listingCache.list(transferManager).size());
+	}
+	
+	@Test
+	public void testInvalidate() throws Exception {
+		RemoteListingCache<DatabaseRemoteFile> listingCache = new RemoteListingCache<DatabaseRemoteFile>(cacheFile, DatabaseRemoteFile.class);
+		
+		setLastModified(databasesDir, oneHourAgo);
+		assertEquals(0, listingCache.list(transferManager).size());
+		
+		TestFileUtil.createRandomFile(new File(databasesDir, "db-A-0000000001"), 10);
+		setLastModified(databasesDir, oneHourAgo);
+		
+		assertEquals(0, listingCache.list(transferManager).size());
+
+		listingCache.invalidate();
+		assertEquals(1, listingCache.list(transferManager).size());
+	}
+	
+	private void setLastModified(File folder, FileTime lastModified) throws Exception {
+		Files.setLastModifiedTime(folder.toPath(), lastModified);
+	}
+}
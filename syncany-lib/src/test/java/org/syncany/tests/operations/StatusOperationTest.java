@@ -18,8 +18,14 @@
 package org.syncany.tests.operations;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.List;
 
 import org.junit.Test;
@@ -31,6 +37,7 @@ import org.syncany.operations.up.UpOperation;
 import org.syncany.operations.up.UpOperationOptions;
 import org.syncany.tests.util.TestConfigUtil;
 import org.syncany.tests.util.TestFileUtil;
+import org.syncany.util.EnvironmentUtil;
 
 public class StatusOperationTest {
 
@@ -161,4 +168,63 @@ public class StatusOperationTest {
 		// Cleanup 
 		TestConfigUtil.deleteTestLocalConfigAndData(config);
 	}
+	
+	@Test
+	public void testStatusWithUnchangedAndChangedDirectories() throws Exception {
+		// Setup
+		Config config = TestConfigUtil.createTestLocalConfig();
+		
+		File deepFolder = new File(config.getLocalDir(), "folder1/sub1/deep");
+		File otherFolder = new File(config.getLocalDir(), "folder2");
+		
+		deepFolder.mkdirs();
+		otherFolder.mkdirs();
+		
+		List<File> deepFiles = TestFileUtil.createRandomFilesInDirectory(deepFolder, 1024, 3);
+		List<File> otherFiles = TestFileUtil.createRandomFilesInDirectory(otherFolder, 1024, 3);
+		
+		// Up
+		new UpOperation(config).execute();
+		
+		// Run 'status', all files and folders are unchanged
+		ChangeSet changeSet = (new StatusOperation(config).execute()).getChangeSet();
+		
+		assertEquals(changeSet.getNewFiles().size(), 0);
+		assertEquals(changeSet.getChangedFiles().size(), 0);
+		assertEquals(changeSet.getDeletedFiles().size(), 0);
+		assertEquals(changeSet.getUnchangedFiles().size(), 10); // 4 folders, 6 files
+		
+		// Change the permissions of one file, and add a new file to the same folder
+		if (EnvironmentUtil.isUnixLikeOperatingSystem()) {
+			Files.setPosixFilePermissions(deepFiles.get(0).toPath(), PosixFilePermissions.fromString("rwxrwxrwx"));
+		}
+		else {
+			TestFileUtil.changeRandomPartOfBinaryFile(deepFiles.get(0));
+		}
+		
+		TestFileUtil.createRandomFileInDirectory(deepFolder, 1024);
+		
+		// Run 'status', this SHOULD find the changed and the new file
+		changeSet = (new StatusOperation(config).execute()).getChangeSet();
+		
+		assertEquals(changeSet.getNewFiles().size(), 1);
+		assertEquals(changeSet.getChangedFiles().size(), 1);
+		assertEquals(changeSet.getDeletedFiles().size(), 0);
+		assertEquals(changeSet.getUnchangedFiles().size(), 9);
+		assertTrue(changeSet.getChangedFiles().contains("folder1/sub1/deep/" + deepFiles.get(0).getName()));
+		
+		// Lock a file in an unchanged folder; locked files must be ignored even if the folder digest matches
+		File lockedFile = otherFiles.get(0);
+		
+		try (RandomAccessFile lockedFileAccess = new RandomAccessFile(lockedFile, "rw"); FileLock fileLock = lockedFileAccess.getChannel().lock()) {
+			changeSet = (new StatusOperation(config).execute()).getChangeSet();
+			
+			assertEquals(changeSet.getChangedFiles().size(), 1);
+			assertEquals(changeSet.getUnchangedFiles().size(), 8);
+			assertFalse(changeSet.getUnchangedFiles().contains("folder2/" + lockedFile.getName()));
+		}
+		
+		// Cleanup 
+		TestConfigUtil.deleteTestLocalConfigAndData(config);
+	}
 }
@@ -0,0 +1,124 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.scenarios;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.syncany.tests.util.TestAssertUtil.assertFileEquals;
+import static org.syncany.tests.util.TestAssertUtil.assertFileListEquals;
+import static org.syncany.tests.util.TestAssertUtil.assertSqlDatabaseEquals;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.syncany.connection.plugins.Connection;
+import org.syncany.operations.down.DownOperationResult;
+import org.syncany.tests.util.TestClient;
+import org.syncany.tests.util.TestConfigUtil;
+import org.syncany.tests.util.TestFileUtil;
+
+public class CopyNoDownloadMultiChunksScenarioTest {
+	@Test
+	public void testCopyAndCheckIfMultiChunksAreDownloaded() throws Exception {
+		// Setup 
+		Connection testConnection = TestConfigUtil.createTestLocalConnection();		
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+
+		// Run 
+		
+		// Prepare, create file at A, sync it to B
+		TestFileUtil.createRandomFile(clientA.getLocalFile("A-file1"), 2*1024*1024);
+		clientA.sync();		
+		clientB.sync();
+				
+		// Now copy file (twice), and sync
+		clientA.createNewFolder("folder");
+		clientA.copyFile("A-file1", "A-file1-copy");
+		clientA.copyFile("A-file1", "folder/A-file1-copy");
+		clientA.up();
+		
+		DownOperationResult downOperationResult = clientB.down();		
+		assertEquals("No multichunks should have been downloaded.", 0, downOperationResult.getDownloadedMultiChunks().size());
+		assertTrue("Copied files should exist.", clientB.getLocalFile("A-file1-copy").exists());		
+		assertTrue("Copied files should exist.", clientB.getLocalFile("folder/A-file1-copy").exists());		
+		assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientB.getDatabaseFile());
+		
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}	
+	
+	@Test
+	public void testCopyFolderTreeAndCheckIfMultiChunksAreDownloaded() throws Exception {
+		// Setup 
+		Connection testConnection = TestConfigUtil.createTestLocalConnection();		
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+
+		// Run 
+		
+		// Prepare, create folder tree at A, sync it to B
+		clientA.createNewFolder("folder");
+		clientA.createNewFiles("folder");
+		clientA.sync();		
+		clientB.sync();
+				
+		// Now duplicate the whole tree, and sync
+		FileUtils.copyDirectory(clientA.getLocalFile("folder"), clientA.getLocalFile("folder-copy"));
+		clientA.up();
+		
+		DownOperationResult downOperationResult = clientB.down();		
+		assertEquals("No multichunks should have been downloaded.", 0, downOperationResult.getDownloadedMultiChunks().size());
+		assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientB.getDatabaseFile());
+		
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}	
+	
+	@Test
+	public void testCopyWithLocallyChangedSourceFile() throws Exception {
+		// Setup 
+		Connection testConnection = TestConfigUtil.createTestLocalConnection();		
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+
+		// Run 
+		
+		// Prepare, create file at A, sync it to B
+		TestFileUtil.createRandomFile(clientA.getLocalFile("A-file1"), 2*1024*1024);
+		clientA.sync();		
+		clientB.sync();
+				
+		// Copy file at A, but change the original at B (without indexing it!)
+		clientA.copyFile("A-file1", "A-file1-copy");
+		clientA.up();
+		
+		clientB.changeFile("A-file1");
+		
+		DownOperationResult downOperationResult = clientB.down();		
+		assertTrue("Multichunks should have been downloaded.", downOperationResult.getDownloadedMultiChunks().size() > 0);
+		assertFileEquals(clientA.getLocalFile("A-file1-copy"), clientB.getLocalFile("A-file1-copy"));
+		
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}	
+}
@@ -0,0 +1,73 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.scenarios;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.syncany.tests.util.TestAssertUtil.assertFileListEquals;
+import static org.syncany.tests.util.TestAssertUtil.assertSqlDatabaseEquals;
+
+import org.junit.Test;
+import org.syncany.connection.plugins.Connection;
+import org.syncany.metrics.MetricRegistry;
+import org.syncany.operations.StatusOperation.StatusOperationOptions;
+import org.syncany.operations.up.UpOperationOptions;
+import org.syncany.tests.util.TestClient;
+import org.syncany.tests.util.TestConfigUtil;
+
+public class LargeFileDeltaChunkingScenarioTest {
+	@Test
+	public void testChangeLargeFileWithDeltaChunking() throws Exception {		
+		// Setup 
+		Connection testConnection = TestConfigUtil.createTestLocalConnection();		
+		TestClient clientA = new TestClient("A", testConnection);
+		TestClient clientB = new TestClient("B", testConnection);
+		
+		MetricRegistry metrics = new MetricRegistry();
+		clientA.getConfig().setMetrics(metrics);
+		
+		StatusOperationOptions statusOptions = new StatusOperationOptions();
+		statusOptions.setForceChecksum(true);
+		
+		UpOperationOptions upOptions = new UpOperationOptions();
+		upOptions.setStatusOptions(statusOptions);
+		upOptions.setDeltaChunkingMinFileSize(1024*1024);
+
+		// Run 
+		clientA.createNewFile("small-file", 50*1024);
+		clientA.createNewFile("large-file", 4*1024*1024);
+		clientA.up(upOptions);
+		
+		assertEquals(1, clientA.getConfig().getChunkLayoutCacheDir().list().length);
+		assertEquals(0, metrics.counter("deduper.bytes.reused").getCount());
+		
+		clientA.changeFile("large-file");
+		clientA.up(upOptions);
+		
+		assertEquals(1, clientA.getConfig().getChunkLayoutCacheDir().list().length); // Previous layout removed
+		assertTrue(metrics.counter("deduper.bytes.reused").getCount() > 3*1024*1024);
+		
+		clientB.down();
+		assertFileListEquals(clientA.getLocalFilesExcludeLockedAndNoRead(), clientB.getLocalFilesExcludeLockedAndNoRead());
+		assertSqlDatabaseEquals(clientA.getDatabaseFile(), clientB.getDatabaseFile());
+		
+		// Tear down
+		clientA.deleteTestData();
+		clientB.deleteTestData();
+	}	
+}
@@ -47,6 +47,7 @@ import org.syncany.crypto.CipherSpecs;
 import org.syncany.crypto.CipherUtil;
 import org.syncany.crypto.SaltedSecretKey;
 import org.syncany.operations.init.InitOperationOptions;
+import org.syncany.util.StringUtil;
 
 import com.google.common.collect.Lists;
 
@@ -186,6 +187,14 @@ public class TestConfigUtil {
 		connectionTO.setType("local");
 		connectionTO.setSettings(localConnectionSettings);
 		
+		if (connection instanceof UnreliableLocalConnection) {
+			// Use unreliable plugin, so that the operations create an unreliable transfer manager
+			List<String> failingOperationPatterns = ((UnreliableLocalConnection) connection).getFailingOperationPatterns();
+			
+			connectionTO.setType("unreliable_local");
+			localConnectionSettings.put("patterns", StringUtil.join(failingOperationPatterns, ","));
+		}
+		
 		configTO.setConnectionTO(connectionTO);
 				
 		// Create 
@@ -18,17 +18,19 @@
 package org.syncany.util;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.DosFileAttributes;
 import java.security.MessageDigest;
 
@@ -38,6 +40,8 @@ import java.security.MessageDigest;
  * @author Philipp C. Heckel <philipp.heckel@gmail.com>
  */
 public class FileUtil {
+	private static final int CHECKSUM_BUFFER_SIZE = 256 * 1024;
+	
 	public static String getRelativePath(File base, File file) {
 		return removeTrailingSlash(base.toURI().relativize(file.toURI()).getPath());
 	}
@@ -98,22 +102,54 @@ public class FileUtil {
 		inputStream.close();
 	}
 
-	public static byte[] createChecksum(File filename, String digestAlgorithm) throws Exception {
-		FileInputStream fis = new FileInputStream(filename);
+	public static byte[] createChecksum(File file, String digestAlgorithm) throws Exception {
+		return createChecksum(file, digestAlgorithm, null);
+	}
+
+	/**
+	 * Creates a checksum of the given file using the given digest algorithm. If 
+	 * <tt>fastChecksum</tt> is set, it is updated with the file contents in the same pass,
+	 * so that the file only has to be read once to calculate both checksums.
+	 */
+	public static byte[] createChecksum(File file, String digestAlgorithm, XxHash64 fastChecksum) throws Exception {
+		MessageDigest digest = MessageDigest.getInstance(digestAlgorithm);
+		ByteBuffer buffer = ByteBuffer.allocate(CHECKSUM_BUFFER_SIZE);
+
+		try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			while (fileChannel.read(buffer) != -1) {
+				buffer.flip();
+				
+				digest.update(buffer.array(), 0, buffer.limit());
+				
+				if (fastChecksum != null) {
+					fastChecksum.update(buffer.array(), 0, buffer.limit());
+				}
+				
+				buffer.clear();
+			}
+		}
 
-		byte[] buffer = new byte[1024];
-		MessageDigest complete = MessageDigest.getInstance(digestAlgorithm);
-		int numRead;
+		return digest.digest();
+	}
 
-		do {
-			numRead = fis.read(buffer);
-			if (numRead > 0) {
-				complete.update(buffer, 0, numRead);
+	/**
+	 * Creates a non-cryptographic {@link XxHash64 xxHash64} checksum of the given file. The
+	 * fast checksum is much cheaper to calculate than a digest, and can be used to quickly 
+	 * determine that a file has changed.
+	 */
+	public static long createFastChecksum(File file) throws IOException {
+		XxHash64 fastChecksum = new XxHash64();
+		ByteBuffer buffer = ByteBuffer.allocate(CHECKSUM_BUFFER_SIZE);
+
+		try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			while (fileChannel.read(buffer) != -1) {
+				buffer.flip();
+				fastChecksum.update(buffer.array(), 0, buffer.limit());
+				buffer.clear();
 			}
-		} while (numRead != -1);
+		}
 
-		fis.close();
-		return complete.digest();
+		return fastChecksum.getValue();
 	}
 
 	public static boolean isFileLocked(File file) {
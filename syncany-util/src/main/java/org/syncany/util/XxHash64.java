@@ -0,0 +1,235 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Pure Java implementation of the 64-bit xxHash algorithm (XXH64). xxHash is a
+ * non-cryptographic hash function that is an order of magnitude faster than
+ * SHA-1, but still has excellent distribution and collision properties for
+ * accidental (non-adversarial) changes.
+ * 
+ * <p>The hash can be calculated in one go using {@link #hash(byte[], int, int, long) hash()},
+ * or incrementally using the {@link #update(byte[], int, int) update()} methods. Both
+ * produce the same result as the reference implementation. Instances are not thread-safe.
+ * 
+ * @see <a href="https://github.com/Cyan4973/xxHash">xxHash reference implementation</a>
+ * @author agent <agent@local>
+ */
+public class XxHash64 {
+	private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME64_3 = 0x165667B19E3779F9L;
+	private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+	
+	private static final int STRIPE_SIZE = 32;
+
+	private final long seed;
+	private final byte[] buffer;
+	
+	private long v1;
+	private long v2;
+	private long v3;
+	private long v4;
+	private int bufferSize;
+	private long totalLength;
+	
+	public XxHash64() {
+		this(0);
+	}
+	
+	public XxHash64(long seed) {
+		this.seed = seed;
+		this.buffer = new byte[STRIPE_SIZE];
+		
+		reset();
+	}
+	
+	public void reset() {
+		v1 = seed + PRIME64_1 + PRIME64_2;
+		v2 = seed + PRIME64_2;
+		v3 = seed;
+		v4 = seed - PRIME64_1;
+		
+		bufferSize = 0;
+		totalLength = 0;
+	}
+	
+	public void update(byte[] data) {
+		update(data, 0, data.length);
+	}
+	
+	public void update(byte[] data, int offset, int length) {
+		totalLength += length;
+		
+		// Not enough for a full stripe, remember for later
+		if (bufferSize + length < STRIPE_SIZE) {
+			System.arraycopy(data, offset, buffer, bufferSize, length);
+			bufferSize += length;
+			
+			return;
+		}
+		
+		// Complete buffered stripe 
+		if (bufferSize > 0) {
+			int fillLength = STRIPE_SIZE - bufferSize;
+			System.arraycopy(data, offset, buffer, bufferSize, fillLength);
+			
+			processStripe(buffer, 0);
+			
+			offset += fillLength;
+			length -= fillLength;
+			bufferSize = 0;
+		}
+		
+		// Process full stripes directly from the input
+		while (length >= STRIPE_SIZE) {
+			processStripe(data, offset);
+			
+			offset += STRIPE_SIZE;
+			length -= STRIPE_SIZE;
+		}
+		
+		// Remember remaining bytes
+		if (length > 0) {
+			System.arraycopy(data, offset, buffer, 0, length);
+			bufferSize = length;
+		}
+	}
+	
+	/**
+	 * Updates the hash with the remaining bytes of the given buffer. After this 
+	 * method, the buffer's position is equal to its limit.
+	 */
+	public void update(ByteBuffer data) {
+		if (data.hasArray()) {
+			update(data.array(), data.arrayOffset() + data.position(), data.remaining());
+			data.position(data.limit());
+		}
+		else {
+			byte[] copyBuffer = new byte[Math.min(data.remaining(), 8192)];
+			
+			while (data.hasRemaining()) {
+				int copyLength = Math.min(data.remaining(), copyBuffer.length);
+				
+				data.get(copyBuffer, 0, copyLength);
+				update(copyBuffer, 0, copyLength);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the hash of all bytes that have been passed to the <tt>update</tt>-methods
+	 * since the last {@link #reset()}. This method does not change the state of the hash, 
+	 * i.e. more bytes can be added afterwards.
+	 */
+	public long getValue() {
+		long hash;
+		
+		if (totalLength >= STRIPE_SIZE) {
+			hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+			
+			hash = mergeRound(hash, v1);
+			hash = mergeRound(hash, v2);
+			hash = mergeRound(hash, v3);
+			hash = mergeRound(hash, v4);
+		}
+		else {
+			hash = seed + PRIME64_5;
+		}
+		
+		hash += totalLength;
+		
+		int position = 0;
+		
+		while (position + 8 <= bufferSize) {
+			hash ^= round(0, getLong(buffer, position));
+			hash = Long.rotateLeft(hash, 27) * PRIME64_1 + PRIME64_4;
+			
+			position += 8;
+		}
+		
+		if (position + 4 <= bufferSize) {
+			hash ^= (getInt(buffer, position) & 0xFFFFFFFFL) * PRIME64_1;
+			hash = Long.rotateLeft(hash, 23) * PRIME64_2 + PRIME64_3;
+			
+			position += 4;
+		}
+		
+		while (position < bufferSize) {
+			hash ^= (buffer[position] & 0xFF) * PRIME64_5;
+			hash = Long.rotateLeft(hash, 11) * PRIME64_1;
+			
+			position++;
+		}
+		
+		hash ^= hash >>> 33;
+		hash *= PRIME64_2;
+		hash ^= hash >>> 29;
+		hash *= PRIME64_3;
+		hash ^= hash >>> 32;
+		
+		return hash;
+	}
+	
+	public static long hash(byte[] data, int offset, int length, long seed) {
+		XxHash64 xxHash64 = new XxHash64(seed);
+		xxHash64.update(data, offset, length);
+		
+		return xxHash64.getValue();
+	}
+	
+	private void processStripe(byte[] data, int offset) {
+		v1 = round(v1, getLong(data, offset));
+		v2 = round(v2, getLong(data, offset + 8));
+		v3 = round(v3, getLong(data, offset + 16));
+		v4 = round(v4, getLong(data, offset + 24));
+	}
+	
+	private static long round(long accumulator, long input) {
+		accumulator += input * PRIME64_2;
+		accumulator = Long.rotateLeft(accumulator, 31);
+		
+		return accumulator * PRIME64_1;
+	}
+	
+	private static long mergeRound(long accumulator, long value) {
+		accumulator ^= round(0, value);
+		return accumulator * PRIME64_1 + PRIME64_4;
+	}
+	
+	private static long getLong(byte[] data, int offset) {
+		return (data[offset] & 0xFFL) 
+			| (data[offset + 1] & 0xFFL) << 8
+			| (data[offset + 2] & 0xFFL) << 16
+			| (data[offset + 3] & 0xFFL) << 24
+			| (data[offset + 4] & 0xFFL) << 32
+			| (data[offset + 5] & 0xFFL) << 40
+			| (data[offset + 6] & 0xFFL) << 48
+			| (data[offset + 7] & 0xFFL) << 56;
+	}
+	
+	private static int getInt(byte[] data, int offset) {
+		return (data[offset] & 0xFF) 
+			| (data[offset + 1] & 0xFF) << 8
+			| (data[offset + 2] & 0xFF) << 16
+			| (data[offset + 3] & 0xFF) << 24;
+	}
+}
@@ -25,6 +25,7 @@ import org.syncany.tests.util.FileUtilTest;
 import org.syncany.tests.util.LimitedDosFileAttributesTest;
 import org.syncany.tests.util.NormalizedPathTest;
 import org.syncany.tests.util.StringUtilTest;
+import org.syncany.tests.util.XxHash64Test;
 
 @RunWith(Suite.class)
 @SuiteClasses({	
@@ -32,7 +33,8 @@ import org.syncany.tests.util.StringUtilTest;
 	FileUtilTest.class,
 	LimitedDosFileAttributesTest.class,
 	NormalizedPathTest.class,
-	StringUtilTest.class	
+	StringUtilTest.class,
+	XxHash64Test.class
 })
 public class UtilTestSuite {
 	// This class executes all tests
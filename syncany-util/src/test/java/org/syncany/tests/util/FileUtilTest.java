@@ -17,6 +17,7 @@
  */
 package org.syncany.tests.util;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -28,10 +29,12 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
 
 import org.junit.Test;
 import org.syncany.util.EnvironmentUtil;
 import org.syncany.util.FileUtil;
+import org.syncany.util.XxHash64;
 
 public class FileUtilTest {	
 	@Test
@@ -115,4 +118,28 @@ public class FileUtilTest {
 		// Tear down
 		TestFileUtil.deleteDirectory(tempDir);
 	}
+	
+	@Test
+	public void testCreateChecksumAndFastChecksum() throws Exception {
+		// Setup
+		File tempDir = TestFileUtil.createTempDirectoryInSystemTemp();
+		File file = TestFileUtil.createRandomFileInDirectory(tempDir, 1024*1024 + 123);
+		byte[] fileContents = Files.readAllBytes(file.toPath());
+		
+		// Run
+		XxHash64 fastChecksum = new XxHash64();
+		byte[] checksum = FileUtil.createChecksum(file, "SHA1", fastChecksum);
+		
+		// Test
+		byte[] expectedChecksum = MessageDigest.getInstance("SHA1").digest(fileContents);
+		long expectedFastChecksum = XxHash64.hash(fileContents, 0, fileContents.length, 0);
+		
+		assertArrayEquals(expectedChecksum, checksum);
+		assertArrayEquals(expectedChecksum, FileUtil.createChecksum(file, "SHA1"));
+		assertEquals(expectedFastChecksum, fastChecksum.getValue());
+		assertEquals(expectedFastChecksum, FileUtil.createFastChecksum(file));
+		
+		// Tear down
+		TestFileUtil.deleteDirectory(tempDir);
+	}
 }
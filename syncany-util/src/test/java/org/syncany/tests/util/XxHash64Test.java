@@ -0,0 +1,102 @@
+/*
+ * Syncany, www.syncany.org
+ * Copyright (C) 2011-2014 Philipp C. Heckel <philipp.heckel@gmail.com> 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.syncany.tests.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import org.syncany.util.XxHash64;
+
+public class XxHash64Test {
+	@Test
+	public void testReferenceValues() {
+		// Reference values created with the xxHash reference implementation (XXH64)
+		assertEquals(0xEF46DB3751D8E999L, XxHash64.hash(new byte[0], 0, 0, 0));
+		assertEquals(0xD24EC4F1A98C6E5BL, XxHash64.hash("a".getBytes(), 0, 1, 0));
+		assertEquals(0x44BC2CF5AD770999L, XxHash64.hash("abc".getBytes(), 0, 3, 0));
+		
+		byte[] quickBrownFox = "The quick brown fox jumps over the lazy dog".getBytes();
+		
+		assertEquals(0x0B242D361FDA71BCL, XxHash64.hash(quickBrownFox, 0, quickBrownFox.length, 0));
+		assertEquals(0xDF5091B6DAD2C6DBL, XxHash64.hash(quickBrownFox, 0, quickBrownFox.length, 1));
+		
+		byte[] data = createData(1000);
+		
+		assertEquals(0x99594F4828043D35L, XxHash64.hash(data, 0, data.length, 0));
+		assertEquals(0x80405EF89BD17BB5L, XxHash64.hash(data, 0, data.length, 0x1234));		
+	}
+	
+	@Test
+	public void testIncrementalUpdateEqualsOneShot() {
+		byte[] data = createData(1000);
+		long expectedHash = XxHash64.hash(data, 0, data.length, 0);
+		
+		for (int updateSize : new int[] { 1, 3, 7, 31, 32, 33, 100, 999 }) {
+			XxHash64 xxHash64 = new XxHash64();
+			
+			for (int offset = 0; offset < data.length; offset += updateSize) {
+				xxHash64.update(data, offset, Math.min(updateSize, data.length - offset));
+			}
+			
+			assertEquals("Hash differs for update size " + updateSize, expectedHash, xxHash64.getValue());
+		}
+	}
+	
+	@Test
+	public void testByteBufferUpdate() {
+		byte[] data = createData(1000);
+		long expectedHash = XxHash64.hash(data, 0, data.length, 0);
+		
+		XxHash64 heapBufferHash = new XxHash64();
+		heapBufferHash.update(ByteBuffer.wrap(data));
+
+		ByteBuffer directBuffer = ByteBuffer.allocateDirect(data.length);
+		directBuffer.put(data).flip();
+		
+		XxHash64 directBufferHash = new XxHash64();
+		directBufferHash.update(directBuffer);
+		
+		assertEquals(expectedHash, heapBufferHash.getValue());
+		assertEquals(expectedHash, directBufferHash.getValue());
+		assertEquals(0, directBuffer.remaining());
+	}
+	
+	@Test
+	public void testReset() {
+		byte[] data = createData(100);
+		
+		XxHash64 xxHash64 = new XxHash64(1);
+		xxHash64.update(data);
+		xxHash64.reset();
+		xxHash64.update(data);
+		
+		assertEquals(XxHash64.hash(data, 0, data.length, 1), xxHash64.getValue());
+	}
+	
+	private byte[] createData(int size) {
+		byte[] data = new byte[size];
+		
+		for (int i = 0; i < size; i++) {
+			data[i] = (byte) (i * 31 + 7);
+		}
+		
+		return data;
+	}
+}